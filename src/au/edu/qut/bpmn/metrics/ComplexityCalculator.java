@@ -21,6 +21,7 @@
 package au.edu.qut.bpmn.metrics;
 
 import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.qut.processmining.log.VariantStore;
 import au.edu.unimelb.processmining.accuracy.abstraction.distances.Levenshtein;
 import de.hpi.bpt.graph.DirectedEdge;
 import de.hpi.bpt.graph.DirectedGraph;
@@ -62,7 +63,7 @@ public class ComplexityCalculator {
     }
 
     public double logComplexity(SimpleLog log) {
-        Map<String, Integer> traces = log.getTraces();
+        VariantStore traces = log.getVariants();
         Map<Integer, String> events = log.getEvents();
 
         ArrayList<int[]> intTraces = new ArrayList<>();
@@ -71,10 +72,8 @@ public class ComplexityCalculator {
 
         int totalTraces = log.size();
 
-        StringTokenizer trace;
         int length;
 
-        int event;
         int i = 0;
         int j = 0;
 
@@ -82,27 +81,16 @@ public class ComplexityCalculator {
         double comparisons = 0;
 
 //      we generate all the integer-arrays traces
-        for (String t : traces.keySet()) {
-            trace = new StringTokenizer(t, "::");
-            length = trace.countTokens()-2;
+        for (int t = 0; t < traces.size(); t++) {
+            length = traces.getLength(t)-2;
             if(length == 0) continue;
-            intTrace = new int[length];
 
-//            consuming the start event that is always 0
-            trace.nextToken();
-
-            i = 0;
-            while (i<length) {
-//                we read the next event of the trace until it is finished
-                event = Integer.valueOf(trace.nextToken());
-                intTrace[i] = event;
-                i++;
-            }
+//            skipping the start and the end events
+            intTrace = Arrays.copyOfRange(traces.getActivities(), traces.getStart(t)+1, traces.getEnd(t)-1);
 
             intTraces.add(intTrace);
-            frequencies.add(traces.get(t));
-//            System.out.println("DEBUG - trace ( "+ traces.get(t) + ")" + t);
-//            System.out.println("DEBUG - trace ( "+ frequencies.get(frequencies.size()-1) + ")" + t);
+            frequencies.add(traces.getFrequency(t));
+//            System.out.println("DEBUG - trace ( "+ traces.getFrequency(t) + ")" + traces.print(t));
         }
 
 //       we calculate the average distance for each pair of different trace
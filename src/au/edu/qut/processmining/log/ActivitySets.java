@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts how many traces executed each set of activities, each set being a long[] bitset over the activity codes.
+ * Traces executing the same set of activities are counted once, weighted by their frequency,
+ * and the co-occurrence and exclusiveness matrices are derived from these counts.
+ * reminder: matrix[i][j] = array[i*size + j];
+ */
+public class ActivitySets {
+
+    private Map<ActivitySet, int[]> frequencies = new HashMap<>();
+    private int size;   // highest activity code + 1
+
+    public static long[] newSet(int totalActivities) { return new long[(totalActivities + 63) >>> 6]; }
+    public static long[] include(long[] set, int activity) {
+        if( (activity >>> 6) >= set.length ) set = Arrays.copyOf(set, Math.max((activity >>> 6) + 1, set.length * 2));
+        set[activity >>> 6] |= 1L << activity;
+        return set;
+    }
+
+    /**
+     * activity sets of the variants, without the artificial start and end events (first and last code of each variant)
+     */
+    public static ActivitySets fromVariants(VariantStore variants, int totalActivities) {
+        ActivitySets sets = new ActivitySets();
+        int[] activities = variants.getActivities();
+        long[] set = newSet(totalActivities);
+
+        for( int v = 0; v < variants.size(); v++ ) {
+            Arrays.fill(set, 0L);
+            for( int i = variants.getStart(v) + 1; i < variants.getEnd(v) - 1; i++ ) set[activities[i] >>> 6] |= 1L << activities[i];
+            sets.add(set, variants.getFrequency(v));
+        }
+
+        return sets;
+    }
+
+    public void add(long[] set, int frequency) {
+        ActivitySet key = new ActivitySet(set);
+        int[] frequency0 = frequencies.get(key);
+
+        if( frequency0 == null ) {
+            key.set = Arrays.copyOf(set, key.length);
+            frequencies.put(key, new int[] {frequency});
+            size = Math.max(size, key.highest() + 1);
+        } else frequency0[0] += frequency;
+    }
+
+    public int distinctSets() { return frequencies.size(); }
+
+    /**
+     * @return the matrix counting the traces executing both i and j, its diagonal counts the traces executing i.
+     */
+    public int[] getCooccurrences(int totalActivities) {
+        int[] cooccurrences = new int[totalActivities * totalActivities];
+        int[] executed = new int[size];
+        int totalExecuted;
+        int frequency;
+
+        for( Map.Entry<ActivitySet, int[]> entry : frequencies.entrySet() ) {
+            totalExecuted = entry.getKey().toArray(executed);
+            frequency = entry.getValue()[0];
+            for( int x = 0; x < totalExecuted; x++ )
+                for( int y = 0; y < totalExecuted; y++ )
+                    cooccurrences[executed[x] * totalActivities + executed[y]] += frequency;
+        }
+
+        return cooccurrences;
+    }
+
+    /**
+     * @return the matrix counting the traces executing exactly one of i and j.
+     * it is the same of incrementing [x][a] and [a][x] for every trace, executed activity x, and not executed activity a.
+     */
+    public int[] getExclusiveness(int totalActivities) {
+        int[] cooccurrences = getCooccurrences(totalActivities);
+        return toExclusiveness(cooccurrences, cooccurrences, totalActivities);
+    }
+
+    /**
+     * writes into exclusiveness the matrix derived from the given co-occurrences, the two arrays can be the same one.
+     */
+    public static int[] toExclusiveness(int[] cooccurrences, int[] exclusiveness, int totalActivities) {
+        int[] executions = new int[totalActivities];
+
+        for( int i = 0; i < totalActivities; i++ ) executions[i] = cooccurrences[i * totalActivities + i];
+
+        for( int i = 0; i < totalActivities; i++ )
+            for( int j = 0; j < totalActivities; j++ )
+                exclusiveness[i * totalActivities + j] = executions[i] + executions[j] - 2 * cooccurrences[i * totalActivities + j];
+
+        return exclusiveness;
+    }
+
+//    key of the frequencies map, trailing empty words are ignored so that sets of different capacity can be equal
+    private static class ActivitySet {
+        private long[] set;
+        private int length;
+        private int hash;
+
+        ActivitySet(long[] set) {
+            this.set = set;
+            length = set.length;
+            while( length > 0 && set[length - 1] == 0L ) length--;
+            hash = 1;
+            for( int i = 0; i < length; i++ ) hash = 31 * hash + Long.hashCode(set[i]);
+        }
+
+        int highest() {
+            return length == 0 ? -1 : ((length - 1) << 6) + 63 - Long.numberOfLeadingZeros(set[length - 1]);
+        }
+
+        int toArray(int[] activities) {
+            int total = 0;
+            long word;
+            for( int w = 0; w < length; w++ ) {
+                word = set[w];
+                while( word != 0L ) {
+                    activities[total++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object o) {
+            if( !(o instanceof ActivitySet) ) return false;
+            ActivitySet other = (ActivitySet) o;
+            if( length != other.length || hash != other.hash ) return false;
+            for( int i = 0; i < length; i++ ) if( set[i] != other.set[i] ) return false;
+            return true;
+        }
+    }
+}
@@ -19,6 +19,10 @@ public class ComplexLog extends SimpleLog {
         super(traces, events, xlog);
     }
 
+    public ComplexLog(VariantStore variants, Map<Integer, String> events, XLog xlog) {
+        super(variants, events, xlog);
+    }
+
     public void computePercentages() {
         int totalActivities = getEvents().size();
         relativeConcurrencyMatrix = new double[concurrencyMatrix.length];
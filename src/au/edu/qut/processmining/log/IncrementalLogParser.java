@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.log;
+
+import org.deckfour.xes.classification.XEventClassifier;
+import org.deckfour.xes.model.XTrace;
+
+import java.util.*;
+
+import static au.edu.qut.processmining.log.LogParser.ENDCODE;
+import static au.edu.qut.processmining.log.LogParser.STARTCODE;
+
+/**
+ * Builds a SimpleLog from batches of traces arriving over time, without parsing again the traces already appended.
+ * The activity codes never change: the new activities of each batch are sorted and appended after the existing ones,
+ * so that the first batch is encoded exactly as LogParser.getSimpleLog would do.
+ * The SimpleLog returned by getSimpleLog() is always the same object, updated in place by each append.
+ */
+public class IncrementalLogParser {
+
+    private XEventClassifier xEventClassifier;
+
+    private HashMap<String, Integer> labelsToIDs = new HashMap<>();  //this maps the original name of an event to its code
+    private HashMap<Integer, String> events = new HashMap<>();  //this maps the code of the event to its original name
+    private HashMap<String, Integer> reverseMap = new HashMap<>();  //this maps the event name to its code
+    private VariantStore.Builder traces = new VariantStore.Builder();
+    private int LID = 1;
+
+    private int[] cooccurrences = new int[LID * LID];   //cooccurrences[i*LID + j] counts the traces executing both i and j
+    private long totalEvents = 0;
+    private long longestTrace = Integer.MIN_VALUE;
+    private long shortestTrace = Integer.MAX_VALUE;
+
+    private SimpleLog log;
+
+    public IncrementalLogParser(XEventClassifier xEventClassifier) {
+        this.xEventClassifier = xEventClassifier;
+
+        events.put(STARTCODE, "autogen-start");
+        events.put(ENDCODE, "autogen-end");
+
+        log = new SimpleLog(traces.snapshot(), events, null);
+        log.setReverseMap(reverseMap);
+        log.setStartcode(STARTCODE);
+        log.setEndcode(ENDCODE);
+        log.setExclusiveness(new int[LID * LID]);
+    }
+
+    public SimpleLog getSimpleLog() { return log; }
+
+    public SimpleLogDelta append(XTrace trace) {
+        return append(Collections.singletonList(trace));
+    }
+
+    /**
+     * appends the batch of traces (e.g. an XLog) to the log, and updates the log statistics accordingly.
+     * @return the appended traces, to be given to DirectlyFollowGraphPlus.updateDirectlyFollowsGraph
+     */
+    public SimpleLogDelta append(List<XTrace> batch) {
+        HashMap<Integer, String> newEvents = new HashMap<>();
+        ArrayList<String> newLabels = new ArrayList<>();
+        LogParser.EncodedTraces encoded;
+        VariantStore appended;
+        int[] appendedCooccurrences;
+        int oldLID = LID;
+
+        for( String label : LogParser.collectLabels(batch, xEventClassifier, 0, batch.size()) )
+            if( !labelsToIDs.containsKey(label) ) newLabels.add(label);
+        Collections.sort(newLabels);
+
+        for( String label : newLabels ) {
+            labelsToIDs.put(label, LID);
+            events.put(LID, label);
+            reverseMap.put(label, LID);
+            newEvents.put(LID, label);
+            LID++;
+        }
+
+        encoded = LogParser.encodeTraces(batch, xEventClassifier, labelsToIDs, 0, batch.size());
+        appended = encoded.variants.build();
+        for( int v = 0; v < appended.size(); v++ )
+            traces.add(appended.getVariant(v), appended.getFrequency(v));
+
+        totalEvents += encoded.totalEvents;
+        longestTrace = Math.max(longestTrace, encoded.longestTrace);
+        shortestTrace = Math.min(shortestTrace, encoded.shortestTrace);
+
+//        the co-occurrences are counted only for the appended traces, the exclusiveness is then derived from them
+        if( LID != oldLID ) cooccurrences = resize(cooccurrences, oldLID, LID);
+        appendedCooccurrences = ActivitySets.fromVariants(appended, LID).getCooccurrences(LID);
+        for( int i = 0; i < cooccurrences.length; i++ ) cooccurrences[i] += appendedCooccurrences[i];
+
+        log.setVariants(traces.snapshot());
+        log.setSize(log.size() + appended.getTotalFrequency());
+        log.setTotalEvents(totalEvents);
+        log.setLongestTrace(longestTrace);
+        log.setShortestTrace(shortestTrace);
+        if( LID != oldLID ) log.setExclusiveness(new int[LID * LID]);
+        ActivitySets.toExclusiveness(cooccurrences, log.getExclusiveness(), LID);
+
+        return new SimpleLogDelta(appended, newEvents, encoded.totalEvents);
+    }
+
+    private static int[] resize(int[] matrix, int size, int newSize) {
+        int[] resized = new int[newSize * newSize];
+        for( int i = 0; i < size; i++ ) System.arraycopy(matrix, i * size, resized, i * newSize, size);
+        return resized;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.log;
+
+import org.deckfour.xes.classification.XEventClassifier;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of the SimpleLogs (and ComplexLogs) parsed from XES files.
+ * The cache of a log is stored next to it (log-path.slog or log-path.clog) and it is reused
+ * as long as the log has the same size and either the same last-modified time or the same CRC32 checksum.
+ * The cache is read through a memory mapping: the variants and the matrices are bulk-copied into the arrays,
+ * nothing is parsed. The SimpleLogs loaded from the cache have no XLog (SimpleLog.getXLog() returns null).
+ *
+ * Format (big endian): header, label dictionary, reverse map, packed variants (offsets, frequencies, codes, as in VariantStore), matrices.
+ */
+public class LogCache {
+
+    private static final int MAGIC = 0x534C4F47;    // "SLOG"
+    private static final int VERSION = 1;
+
+    private static final byte SIMPLE = 0;
+    private static final byte COMPLEX = 1;
+
+    public static SimpleLog getSimpleLog(String path, XEventClassifier xEventClassifier) {
+        return getLog(path, xEventClassifier, false);
+    }
+
+//    as LogParser.getComplexLog, the returned log is a ComplexLog only if the log has enough start events
+    public static SimpleLog getComplexLog(String path, XEventClassifier xEventClassifier) {
+        return getLog(path, xEventClassifier, true);
+    }
+
+    private static SimpleLog getLog(String path, XEventClassifier xEventClassifier, boolean complex) {
+        File source = new File(path);
+        File cache = new File(path + (complex ? ".clog" : ".slog"));
+        String classifier = xEventClassifier.name();
+        SimpleLog log;
+        Header header;
+        long checksum;
+
+        try {
+            if( cache.exists() && (header = readHeader(cache)) != null && header.classifier.equals(classifier) && header.length == source.length() ) {
+                if( header.modified == source.lastModified() ) {
+                    log = read(cache);
+                    System.out.println("LOGP - log loaded from cache: " + cache.getPath());
+                    return log;
+                }
+
+                checksum = checksum(source);
+                if( header.checksum == checksum ) {
+                    log = read(cache);
+                    System.out.println("LOGP - log loaded from cache: " + cache.getPath());
+                    update(log, cache, source, checksum, classifier);
+                    return log;
+                }
+            }
+        } catch( IOException | RuntimeException e ) {
+            System.out.println("WARNING - corrupted log cache, parsing the log again: " + cache.getPath());
+        }
+
+        log = complex ? StreamingLogParser.getComplexLog(path, xEventClassifier) : StreamingLogParser.getSimpleLog(path, xEventClassifier);
+        if( log == null ) return null;
+
+        try {
+            update(log, cache, source, checksum(source), classifier);
+        } catch( IOException e ) {
+            System.out.println("WARNING - impossible to read the log file: " + path);
+        }
+
+        return log;
+    }
+
+    private static void update(SimpleLog log, File cache, File source, long checksum, String classifier) {
+        try {
+            write(log, cache, source.length(), source.lastModified(), checksum, classifier);
+        } catch( IOException e ) {
+            System.out.println("WARNING - impossible to write the log cache: " + cache.getPath());
+        }
+    }
+
+    public static void write(SimpleLog log, File cache, long length, long modified, long checksum, String classifier) throws IOException {
+        File tmp = File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile());
+        VariantStore variants = log.getVariants();
+        boolean complex = log instanceof ComplexLog;
+        int totalCodes = variants.size() == 0 ? 0 : variants.getEnd(variants.size() - 1);
+
+        try {
+            try( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16)) ) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(length);
+                out.writeLong(modified);
+                out.writeLong(checksum);
+                writeString(out, classifier);
+
+                out.writeByte(complex ? COMPLEX : SIMPLE);
+                out.writeInt(log.getStartcode());
+                out.writeInt(log.getEndcode());
+                out.writeInt(log.size());
+                out.writeLong(log.getTotalEvents());
+                out.writeLong(log.getLongestTrace());
+                out.writeLong(log.getShortestTrace());
+
+                out.writeInt(log.getEvents().size());
+                for( Map.Entry<Integer, String> event : log.getEvents().entrySet() ) {
+                    out.writeInt(event.getKey());
+                    writeString(out, event.getValue());
+                }
+
+                out.writeInt(log.getReverseMap().size());
+                for( Map.Entry<String, Integer> label : log.getReverseMap().entrySet() ) {
+                    writeString(out, label.getKey());
+                    out.writeInt(label.getValue());
+                }
+
+                out.writeInt(variants.size());
+                for( int v = 0; v <= variants.size(); v++ ) out.writeInt(v == variants.size() ? totalCodes : variants.getStart(v));
+                for( int v = 0; v < variants.size(); v++ ) out.writeInt(variants.getFrequency(v));
+                for( int i = 0; i < totalCodes; i++ ) out.writeInt(variants.getActivities()[i]);
+
+                writeMatrix(out, log.getExclusiveness());
+                if( complex ) {
+                    writeMatrix(out, ((ComplexLog) log).getDFG());
+                    writeMatrix(out, ((ComplexLog) log).getConcurrencyMatrix());
+                    writeMatrix(out, ((ComplexLog) log).getActivityObserved());
+                    writeMatrix(out, ((ComplexLog) log).getPotentialORs());
+                }
+            }
+
+//            the cache is replaced in one step, so that concurrent readers never see it half written
+            Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    public static SimpleLog read(File cache) throws IOException {
+        MappedByteBuffer buffer;
+        SimpleLog log;
+
+        try( FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ) ) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        Header header = readHeader(buffer);
+        if( header == null ) throw new IOException("not a log cache: " + cache.getPath());
+
+        boolean complex = buffer.get() == COMPLEX;
+        int startcode = buffer.getInt();
+        int endcode = buffer.getInt();
+        int size = buffer.getInt();
+        long totalEvents = buffer.getLong();
+        long longestTrace = buffer.getLong();
+        long shortestTrace = buffer.getLong();
+
+        HashMap<Integer, String> events = new HashMap<>();
+        for( int e = buffer.getInt(); e > 0; e-- ) events.put(buffer.getInt(), readString(buffer));
+
+        HashMap<String, Integer> reverseMap = new HashMap<>();
+        for( int l = buffer.getInt(); l > 0; l-- ) reverseMap.put(readString(buffer), buffer.getInt());
+
+        int totalVariants = buffer.getInt();
+        int[] offsets = readInts(buffer, totalVariants + 1);
+        int[] frequencies = readInts(buffer, totalVariants);
+        int[] activities = readInts(buffer, offsets[totalVariants]);
+        VariantStore variants = new VariantStore(activities, offsets, frequencies, totalVariants);
+
+        if( complex ) log = new ComplexLog(variants, events, null);
+        else log = new SimpleLog(variants, events, null);
+
+        log.setExclusiveness(readMatrix(buffer));
+        if( complex ) {
+            ((ComplexLog) log).setDFG(readMatrix(buffer));
+            ((ComplexLog) log).setConcurrencyMatrix(readMatrix(buffer));
+            ((ComplexLog) log).setActivityObserved(readMatrix(buffer));
+            ((ComplexLog) log).setPotentialORs(readMatrix(buffer));
+            ((ComplexLog) log).computePercentages();
+        }
+
+        log.setReverseMap(reverseMap);
+        log.setStartcode(startcode);
+        log.setEndcode(endcode);
+        log.setSize(size);
+        log.setTotalEvents(totalEvents);
+        log.setLongestTrace(longestTrace);
+        log.setShortestTrace(shortestTrace);
+
+        return log;
+    }
+
+    private static Header readHeader(File cache) throws IOException {
+        try( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache), 1024)) ) {
+            if( in.readInt() != MAGIC || in.readInt() != VERSION ) return null;
+            Header header = new Header();
+            header.length = in.readLong();
+            header.modified = in.readLong();
+            header.checksum = in.readLong();
+            byte[] classifier = new byte[in.readInt()];
+            in.readFully(classifier);
+            header.classifier = new String(classifier, StandardCharsets.UTF_8);
+            return header;
+        }
+    }
+
+    private static Header readHeader(ByteBuffer buffer) {
+        if( buffer.getInt() != MAGIC || buffer.getInt() != VERSION ) return null;
+        Header header = new Header();
+        header.length = buffer.getLong();
+        header.modified = buffer.getLong();
+        header.checksum = buffer.getLong();
+        header.classifier = readString(buffer);
+        return header;
+    }
+
+    private static long checksum(File source) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+        try( FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ) ) {
+            while( channel.read(buffer) != -1 ) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+//    a null matrix is stored with length -1
+    private static void writeMatrix(DataOutputStream out, int[] matrix) throws IOException {
+        if( matrix == null ) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(matrix.length);
+        for( int value : matrix ) out.writeInt(value);
+    }
+
+    private static int[] readMatrix(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        return length == -1 ? null : readInts(buffer, length);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(values);
+        buffer.position(buffer.position() + length * 4);
+        return values;
+    }
+
+    private static class Header {
+        long length;
+        long modified;
+        long checksum;
+        String classifier;
+    }
+}
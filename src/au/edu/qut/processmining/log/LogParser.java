@@ -29,6 +29,8 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Created by Adriano on 14/06/2016.
@@ -39,6 +41,9 @@ public class LogParser {
     public static final int STARTCODE = 0;
     public static final int ENDCODE = -1;
 
+//    minimum number of traces encoded by a single fork/join task
+    private static final int MIN_CHUNK = 1024;
+
 
     public static SimpleLog getSimpleLog(String path) {
         SimpleLog log;
@@ -48,11 +53,12 @@ public class LogParser {
         HashMap<String, Integer> labelsToIDs = new HashMap<>();  //this maps the original name of an event to its code
         HashMap<Integer, String> events = new HashMap<>();  //this maps the code of the event to its original name
         HashMap<String, Integer> reverseMap = new HashMap<>();  //this maps the event name to its code
-        HashMap<String, Integer> traces = new HashMap<>();  //this is the simple log, each trace is a string associated to its frequency
+        VariantStore.Builder traces = new VariantStore.Builder();  //this is the simple log, each trace is an array of codes associated to its frequency
 
         int frequency;
         String trace;
-        String strace;
+        int[] codes = new int[16];
+        int length;
         String event;
         StringTokenizer tokenizer;
 
@@ -99,20 +105,21 @@ public class LogParser {
                 tokenizer = new StringTokenizer(trace, "::");
                 frequency = Integer.valueOf(tokenizer.nextToken());
 
-                strace = "::" + STARTCODE + "::";
+                length = 0;
+                codes[length++] = STARTCODE;
                 while( tokenizer.hasMoreTokens() ) {
                     event = tokenizer.nextToken();
-                    strace += (labelsToIDs.get(event) + "::");
+                    if( length + 1 == codes.length ) codes = Arrays.copyOf(codes, codes.length*2);
+                    codes[length++] = labelsToIDs.get(event);
                 }
-                strace += ENDCODE + "::";
+                codes[length++] = ENDCODE;
 
-                if(!traces.containsKey(strace))  traces.put(strace, frequency);
-                else traces.put(strace, traces.get(strace) + frequency);
+                traces.add(codes, length, frequency);
             }
 
             reader.close();
 
-            log = new SimpleLog(traces, events, null);
+            log = new SimpleLog(traces.build(), events, null);
             log.setReverseMap(reverseMap);
             log.setStartcode(STARTCODE);
             log.setEndcode(ENDCODE);
@@ -127,58 +134,37 @@ public class LogParser {
     }
 
     public static SimpleLog getSimpleLog(XLog log, XEventClassifier xEventClassifier) {
+        return getSimpleLog(log, xEventClassifier, false);
+    }
+
+    /**
+     * @param parallel if true, labels collection and traces encoding are split in chunks of traces
+     *                 processed on the common fork/join pool, the resulting log is identical to the sequential one.
+     */
+    public static SimpleLog getSimpleLog(XLog log, XEventClassifier xEventClassifier, boolean parallel) {
 //        System.out.println("LOGP - starting ... ");
 //        System.out.println("LOGP - input log size: " + log.size());
 
         SimpleLog sLog;
 
-        HashSet<String> labels = new HashSet<>();
+        Set<String> labels;
         ArrayList<String> orderedLabels;
         HashMap<String, Integer> labelsToIDs = new HashMap<>();  //this maps the original name of an event to its code
         HashMap<Integer, String> events = new HashMap<>();  //this maps the code of the event to its original name
         HashMap<String, Integer> reverseMap = new HashMap<>();  //this maps the event name to its code
-        HashMap<String, Integer> traces = new HashMap<>();  //this is the simple log, each trace is a string associated to its frequency
-
-        int tIndex; //index to iterate on the log traces
-        int eIndex; //index to iterate on the events of the trace
-
-        XTrace trace;
-        String sTrace;
-
-        XEvent event;
-        String label;
+        EncodedTraces traces;  //this is the simple log, each trace is an array of codes associated to its frequency
 
         int LID;
-        long totalEvents;
-        long oldTotalEvents;
-
-        long traceLength;
-        long longestTrace = Integer.MIN_VALUE;
-        long shortestTrace = Integer.MAX_VALUE;
-
         int totalTraces = log.size();
-        long traceSize;
-
-        int[] exclusiveness;
-        Set<Integer> executed = new HashSet<>();
 
         events.put(STARTCODE, "autogen-start");
         events.put(ENDCODE, "autogen-end");
 
-        for (tIndex = 0; tIndex < totalTraces; tIndex++) {
-            /*  we firstly get all the concept names
-             *   and we map them into numbers for fast processing
-             */
-
-            trace = log.get(tIndex);
-            traceSize = trace.size();
-
-            for (eIndex = 0; eIndex < traceSize; eIndex++) {
-                event = trace.get(eIndex);
-                label = xEventClassifier.getClassIdentity(event);
-                labels.add(label);
-            }
-        }
+        /*  we firstly get all the concept names
+         *   and we map them into numbers for fast processing
+         */
+        if (parallel) labels = ForkJoinPool.commonPool().invoke(new LabelsCollection(log, xEventClassifier, 0, totalTraces));
+        else labels = collectLabels(log, xEventClassifier, 0, totalTraces);
 
         orderedLabels = new ArrayList<>(labels);
         Collections.sort(orderedLabels);
@@ -192,87 +178,199 @@ public class LogParser {
             LID++;
         }
 
-        exclusiveness = new int[LID * LID];
-        for (int i = 0; i < exclusiveness.length; i++) exclusiveness[i] = 0;
+        if (parallel) traces = ForkJoinPool.commonPool().invoke(new TracesEncoding(log, xEventClassifier, labelsToIDs, 0, totalTraces));
+        else traces = encodeTraces(log, xEventClassifier, labelsToIDs, 0, totalTraces);
+
+//        System.out.println("LOGP - total events parsed: " + traces.totalEvents);
+//        System.out.println("LOGP - total distinct events: " + (events.size() - 2) );
+//        System.out.println("LOGP - total distinct traces: " + traces.variants.size() );
+
+//        System.out.println("DEBUG - final mapping:");
+//        for( int code : events.keySet() ) System.out.println("DEBUG - " + code + " = " + events.get(code));
+
+        VariantStore variants = traces.variants.build();
+
+//        the exclusiveness is computed once per set of executed activities, weighting it by the frequency of its traces
+        sLog = new SimpleLog(variants, events, log);
+        sLog.setExclusiveness(ActivitySets.fromVariants(variants, LID).getExclusiveness(LID));
+        sLog.setReverseMap(reverseMap);
+        sLog.setStartcode(STARTCODE);
+        sLog.setEndcode(ENDCODE);
+        sLog.setTotalEvents(traces.totalEvents);
+        sLog.setShortestTrace(traces.shortestTrace);
+        sLog.setLongestTrace(traces.longestTrace);
+
+        return sLog;
+    }
+
+    static Set<String> collectLabels(List<XTrace> log, XEventClassifier xEventClassifier, int from, int to) {
+        HashSet<String> labels = new HashSet<>();
+        XTrace trace;
+
+        for (int tIndex = from; tIndex < to; tIndex++) {
+            trace = log.get(tIndex);
+            for (XEvent event : trace) labels.add(xEventClassifier.getClassIdentity(event));
+        }
+
+        return labels;
+    }
+
+    static EncodedTraces encodeTraces(List<XTrace> log, XEventClassifier xEventClassifier, Map<String, Integer> labelsToIDs, int from, int to) {
+        EncodedTraces encoded = new EncodedTraces();
+
+        int tIndex; //index to iterate on the log traces
+        int eIndex; //index to iterate on the events of the trace
+
+        XTrace trace;
+        int[] sTrace = new int[16];
+        int sLength;
+
+        XEvent event;
+        String label;
+        int code;
+
+        long totalEvents;
+        long oldTotalEvents;
+
+        long traceLength;
+        long traceSize;
 
         totalEvents = 0;
-        for (tIndex = 0; tIndex < totalTraces; tIndex++) {
-            executed.clear();
-            /* we convert each trace in the log into a string
-             *  each string will be a sequence of "::x" terminated with "::", where:
-             *  '::' is a separator
-             *  'x' is an integer encoding the name of the original event
+        for (tIndex = from; tIndex < to; tIndex++) {
+            /* we convert each trace in the log into an array of integers
+             *  starting with STARTCODE and terminated with ENDCODE,
+             *  each integer encoding the name of the original event
              */
             trace = log.get(tIndex);
             traceSize = trace.size();
+            if (sTrace.length < traceSize + 2) sTrace = new int[(int) traceSize + 2];
 
             oldTotalEvents = totalEvents;
-            sTrace = "::" + Integer.toString(STARTCODE) + ":";
+            sLength = 0;
+            sTrace[sLength++] = STARTCODE;
             for (eIndex = 0; eIndex < traceSize; eIndex++) {
                 totalEvents++;
                 event = trace.get(eIndex);
                 label = xEventClassifier.getClassIdentity(event);
-                sTrace += ":" + labelsToIDs.get(label).toString() + ":";
-                executed.add(labelsToIDs.get(label));
+                code = labelsToIDs.get(label);
+                sTrace[sLength++] = code;
             }
-            sTrace += ":" + Integer.toString(ENDCODE) + "::";
+            sTrace[sLength++] = ENDCODE;
 
             traceLength = totalEvents - oldTotalEvents;
-            if (longestTrace < traceLength) longestTrace = traceLength;
-            if (shortestTrace > traceLength) shortestTrace = traceLength;
+            if (encoded.longestTrace < traceLength) encoded.longestTrace = traceLength;
+            if (encoded.shortestTrace > traceLength) encoded.shortestTrace = traceLength;
 
-            if (!traces.containsKey(sTrace)) traces.put(sTrace, 0);
-            traces.put(sTrace, traces.get(sTrace) + 1);
+            encoded.variants.add(sTrace, sLength, 1);
+        }
 
-            for (int a = 0; a < LID; a++) {
-                if (!executed.contains(a)) {
-                    for (int x : executed) {
-                        exclusiveness[x * LID + a]++;
-                        exclusiveness[a * LID + x]++;
-                    }
-                }
-            }
+        encoded.totalEvents = totalEvents;
+        return encoded;
+    }
+
+//    partial result of the encoding of a contiguous chunk of traces
+    static class EncodedTraces {
+        VariantStore.Builder variants = new VariantStore.Builder();
+        long totalEvents = 0;
+        long longestTrace = Integer.MIN_VALUE;
+        long shortestTrace = Integer.MAX_VALUE;
+
+//        the following chunk must be merged after this one, so that the variants keep the order of first appearance
+        void merge(EncodedTraces following) {
+            VariantStore followingVariants = following.variants.build();
+            for (int v = 0; v < followingVariants.size(); v++)
+                variants.add(followingVariants.getVariant(v), followingVariants.getFrequency(v));
+
+            totalEvents += following.totalEvents;
+            longestTrace = Math.max(longestTrace, following.longestTrace);
+            shortestTrace = Math.min(shortestTrace, following.shortestTrace);
         }
+    }
 
-//        System.out.println("LOGP - total events parsed: " + totalEvents);
-//        System.out.println("LOGP - total distinct events: " + (events.size() - 2) );
-//        System.out.println("LOGP - total distinct traces: " + traces.size() );
+    private static int chunkSize(int totalTraces) {
+        return Math.max(MIN_CHUNK, totalTraces / (ForkJoinPool.getCommonPoolParallelism() * 4));
+    }
 
-//        for( String t : traces.keySet() ) System.out.println("DEBUG - ["+ traces.get(t) +"] trace: " + t);
+    private static class LabelsCollection extends RecursiveTask<Set<String>> {
+        private static final long serialVersionUID = 1L;
 
-//        System.out.println("DEBUG - final mapping:");
-//        for( int code : events.keySet() ) System.out.println("DEBUG - " + code + " = " + events.get(code));
+        private XLog log;
+        private XEventClassifier xEventClassifier;
+        private int from;
+        private int to;
 
-        sLog = new SimpleLog(traces, events, log);
-        sLog.setExclusiveness(exclusiveness);
-        sLog.setReverseMap(reverseMap);
-        sLog.setStartcode(STARTCODE);
-        sLog.setEndcode(ENDCODE);
-        sLog.setTotalEvents(totalEvents);
-        sLog.setShortestTrace(shortestTrace);
-        sLog.setLongestTrace(longestTrace);
+        LabelsCollection(XLog log, XEventClassifier xEventClassifier, int from, int to) {
+            this.log = log;
+            this.xEventClassifier = xEventClassifier;
+            this.from = from;
+            this.to = to;
+        }
 
-        return sLog;
+        @Override
+        protected Set<String> compute() {
+            if (to - from <= chunkSize(log.size())) return collectLabels(log, xEventClassifier, from, to);
+
+            int middle = (from + to) >>> 1;
+            LabelsCollection left = new LabelsCollection(log, xEventClassifier, from, middle);
+            LabelsCollection right = new LabelsCollection(log, xEventClassifier, middle, to);
+            left.fork();
+            Set<String> labels = right.compute();
+            labels.addAll(left.join());
+            return labels;
+        }
+    }
+
+    private static class TracesEncoding extends RecursiveTask<EncodedTraces> {
+        private static final long serialVersionUID = 1L;
+
+        private XLog log;
+        private XEventClassifier xEventClassifier;
+        private Map<String, Integer> labelsToIDs;
+        private int from;
+        private int to;
+
+        TracesEncoding(XLog log, XEventClassifier xEventClassifier, Map<String, Integer> labelsToIDs, int from, int to) {
+            this.log = log;
+            this.xEventClassifier = xEventClassifier;
+            this.labelsToIDs = labelsToIDs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected EncodedTraces compute() {
+            if (to - from <= chunkSize(log.size())) return encodeTraces(log, xEventClassifier, labelsToIDs, from, to);
+
+            int middle = (from + to) >>> 1;
+            TracesEncoding left = new TracesEncoding(log, xEventClassifier, labelsToIDs, from, middle);
+            TracesEncoding right = new TracesEncoding(log, xEventClassifier, labelsToIDs, middle, to);
+            right.fork();
+            EncodedTraces encoded = left.compute();
+            encoded.merge(right.join());
+            return encoded;
+        }
     }
 
     public SimpleLog getSimpleLog(XLog log, XEventClassifier xEventClassifier, double percentage) {
         SimpleLog sLog = getSimpleLog(log, xEventClassifier);
-        Map<String, Integer> traces = sLog.getTraces();
+        VariantStore traces = sLog.getVariants();
+        VariantStore.Builder kept = new VariantStore.Builder();
 
-        TracesComparator tracesComparator = new TracesComparator(traces);
-        TreeMap<String, Integer> sortedTraces = new TreeMap(tracesComparator);
-        sortedTraces.putAll(traces);
+        ArrayList<Integer> sortedTraces = new ArrayList<>(traces.size());
+        for (int v = 0; v < traces.size(); v++) sortedTraces.add(v);
+        sortedTraces.sort(new TracesComparator(traces));
 
         int maxTraces = (int) (sLog.size() * percentage);
         int parsed = 0;
         int leastFrequent = 0;
 
-        for (String trace : sortedTraces.keySet()) {
+        for (int trace : sortedTraces) {
             if (parsed < maxTraces) {
-//                System.out.println("DEBUG - trace, frequency: " + trace + "," + traces.get(trace) );
-                parsed += traces.get(trace);
-                leastFrequent = traces.get(trace);
-            } else sLog.getTraces().remove(trace);
+//                System.out.println("DEBUG - trace, frequency: " + traces.print(trace) + "," + traces.getFrequency(trace) );
+                parsed += traces.getFrequency(trace);
+                leastFrequent = traces.getFrequency(trace);
+                kept.add(traces.getVariant(trace), traces.getFrequency(trace));
+            }
         }
 
 //        System.out.println("DEBUG - log size: " + sLog.size());
@@ -281,6 +379,7 @@ public class LogParser {
 //        System.out.println("DEBUG - parsed: " + parsed);
 //        System.out.println("DEBUG - min frequency: " + leastFrequent);
 
+        sLog.setVariants(kept.build());
         sLog.setSize(parsed);
         return sLog;
     }
@@ -296,7 +395,7 @@ public class LogParser {
         HashMap<String, Integer> labelsToIDs = new HashMap<>();  //this maps the original name of an event to its code
         HashMap<Integer, String> events = new HashMap<>();  //this maps the code of the event to its original name
         HashMap<String, Integer> reverseMap = new HashMap<>();  //this maps the event name to its code
-        HashMap<String, Integer> traces = new HashMap<>();  //this is the simple log, each trace is a string associated to its frequency
+        VariantStore.Builder traces = new VariantStore.Builder();  //this is the simple log, each trace is an array of codes associated to its frequency
 
 //------------------------------- SPLIT MINER 2.0 -----------------------------
         int totalActivities;
@@ -310,7 +409,9 @@ public class LogParser {
 // reminder: matrix[i][j] = array[i*size + j];
         int[] dfg;
         int[] exclusiveness;
-        Set<Integer> executed;
+// the set of activities executed in each trace is a bitset, traces executing the same set are counted together
+        ActivitySets executedSets = new ActivitySets();
+        long[] executed;
 
 // we need to keep track of all the activities that are still executing
 // as well as the last activity that was completed
@@ -325,7 +426,8 @@ public class LogParser {
         int eIndex; //index to iterate on the events of the trace
 
         XTrace trace;
-        String sTrace;
+        int[] sTrace = new int[16];
+        int sLength;
 
         XEvent event;
         String label;
@@ -385,7 +487,7 @@ public class LogParser {
         parallelism = new int[totalActivities * totalActivities];
         dfg = new int[totalActivities * totalActivities];
         activityObserved = new int[totalActivities];
-        exclusiveness = new int[totalActivities * totalActivities];
+        executed = ActivitySets.newSet(totalActivities);
 //        this minus one is to ensure we do not go out bound on the array
         endEvent = totalActivities - 1;
         events.put(endEvent, "autogen-end");
@@ -397,7 +499,6 @@ public class LogParser {
                 dfg[i * totalActivities + j] = 0;
                 potentialORs[i * totalActivities + j] = 0;
                 parallelism[i * totalActivities + j] = 0;
-                exclusiveness[i * totalActivities + j] = 0;
             }
         }
 
@@ -406,21 +507,22 @@ public class LogParser {
         completeEvents = 0;
         totalConcurrencies = 0;
         for (tIndex = 0; tIndex < totalTraces; tIndex++) {
-            /* we convert each trace in the log into a string
-             *  each string will be a sequence of "::x" terminated with "::", where:
-             *  '::' is a separator
-             *  'x' is an integer encoding the name of the original event
+            /* we convert each trace in the log into an array of integers
+             *  starting with STARTCODE and terminated with the end event code,
+             *  each integer encoding the name of the original (completed) event
              */
             trace = log.get(tIndex);
             traceSize = trace.size();
+            if (sTrace.length < traceSize + 2) sTrace = new int[(int) traceSize + 2];
 
             oldTotalEvents = totalEvents;
 
-            sTrace = "::" + Integer.toString(STARTCODE) + ":";
+            sLength = 0;
+            sTrace[sLength++] = STARTCODE;
             lastComplete = STARTCODE;
             executing = new HashSet<>();
-            executed = new HashSet<>();
-            executed.add(STARTCODE);
+            Arrays.fill(executed, 0L);
+            executed = ActivitySets.include(executed, STARTCODE);
             for (eIndex = 0; eIndex < traceSize; eIndex++) {
                 totalEvents++;
                 event = trace.get(eIndex);
@@ -438,7 +540,7 @@ public class LogParser {
                     }
                     executing.add(LID);
 //                    dfg[lastComplete*totalActivities + LID]++;
-                    executed.add(LID);
+                    executed = ActivitySets.include(executed, LID);
                 }
 
                 if (event.getAttributes().get("lifecycle:transition").toString().equalsIgnoreCase("COMPLETE")) {
@@ -448,31 +550,24 @@ public class LogParser {
                     dfg[lastComplete * totalActivities + LID]++;
                     lastComplete = LID;
                     activityObserved[LID]++;
-                    sTrace += ":" + labelsToIDs.get(label).toString() + ":";
-                    executed.add(LID);
+                    sTrace[sLength++] = LID;
+                    executed = ActivitySets.include(executed, LID);
                 }
             }
             dfg[lastComplete * totalActivities + endEvent]++;
-            sTrace += ":" + endEvent + "::";
-            executed.add(endEvent);
-
-            for (int a = 0; a < totalActivities; a++) {
-                if (!executed.contains(a)) {
-                    for (int x : executed) {
-                        exclusiveness[x * totalActivities + a]++;
-                        exclusiveness[a * totalActivities + x]++;
-                    }
-                }
-            }
+            sTrace[sLength++] = endEvent;
+            executed = ActivitySets.include(executed, endEvent);
+            executedSets.add(executed, 1);
 
             traceLength = totalEvents - oldTotalEvents;
             if (longestTrace < traceLength) longestTrace = traceLength;
             if (shortestTrace > traceLength) shortestTrace = traceLength;
 
-            if (!traces.containsKey(sTrace)) traces.put(sTrace, 0);
-            traces.put(sTrace, traces.get(sTrace) + 1);
+            traces.add(sTrace, sLength, 1);
         }
 
+        exclusiveness = executedSets.getExclusiveness(totalActivities);
+
         System.out.println("LOGP - total events parsed: " + totalEvents);
         System.out.println("LOGP - start events parsed: " + startEvents);
         System.out.println("LOGP - complete events parsed: " + completeEvents);
@@ -488,7 +583,7 @@ public class LogParser {
 
         if (Math.abs(startEvents - completeEvents) < ((double) totalEvents * 0.50)) {
             System.out.println("DEBUG - generating complex log");
-            sLog = new ComplexLog(traces, events, log);
+            sLog = new ComplexLog(traces.build(), events, log);
             ((ComplexLog) sLog).setDFG(dfg);
             ((ComplexLog) sLog).setConcurrencyMatrix(parallelism);
             sLog.setExclusiveness(exclusiveness);
@@ -506,7 +601,7 @@ public class LogParser {
 
             ((ComplexLog) sLog).setPotentialORs(potentialORs);
         } else {
-            sLog = new SimpleLog(traces, events, log);
+            sLog = new SimpleLog(traces.build(), events, log);
             sLog.setExclusiveness(exclusiveness);
         }
 
@@ -519,19 +614,17 @@ public class LogParser {
         return sLog;
     }
 
-    private class TracesComparator implements Comparator<String> {
-        Map<String, Integer> base;
+    private class TracesComparator implements Comparator<Integer> {
+        VariantStore base;
 
-        public TracesComparator(Map<String, Integer> base) {
+        public TracesComparator(VariantStore base) {
             this.base = base;
         }
 
         @Override
-        public int compare(String a, String b) {
-            if (base.get(a) >= base.get(b)) return -1;
-            else return 1;
-            // returning 0 would merge keys
+        public int compare(Integer a, Integer b) {
+            return Integer.compare(base.getFrequency(b), base.getFrequency(a));
         }
     }
 
-}
\ No newline at end of file
+}
@@ -22,7 +22,7 @@ package au.edu.qut.processmining.log;
 
 import org.deckfour.xes.model.XLog;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -30,7 +30,8 @@ import java.util.Map;
  */
 public class SimpleLog {
     private XLog xlog;
-    private Map<String, Integer> traces;
+    private VariantStore variants;
+    private Map<String, Integer> traces;    //string view of the variants, built only on request
     private Map<Integer, String> events;
     private Map<String, Integer> reverseMap;
     private int size;
@@ -51,22 +52,36 @@ public class SimpleLog {
     }
 
     public SimpleLog(Map<String, Integer> traces, Map<Integer, String> events, XLog xlog) {
-        this.traces = traces;
+        this(VariantStore.fromMap(traces), events, xlog);
+    }
+
+    public SimpleLog(VariantStore variants, Map<Integer, String> events, XLog xlog) {
+        this.variants = variants;
         this.events = events;
-        this.size = 0;
 
         totalEvents = -1;
         longestTrace = -1;
         shortestTrace = -1;
 
-        for( int traceFrequency : traces.values() ) this.size += traceFrequency;
+        this.size = variants.getTotalFrequency();
 
         this.xlog = xlog;
     }
 
     public XLog getXLog() { return xlog; }
 
-    public Map<String, Integer> getTraces() { return traces; }
+    public VariantStore getVariants() { return variants; }
+    public void setVariants(VariantStore variants) {
+        this.variants = variants;
+        this.traces = null;
+    }
+
+//    backward compatibility only: read-only view of the variants encoded as strings (e.g. "::0::3::5::-1::"),
+//    built on the first call. Use getVariants() instead.
+    public Map<String, Integer> getTraces() {
+        if( traces == null ) traces = Collections.unmodifiableMap(variants.toMap());
+        return traces;
+    }
     public Map<Integer, String> getEvents() { return events; }
 
     public int size() { return size; }
@@ -84,7 +99,7 @@ public class SimpleLog {
     public void setTotalEvents(long totalEvents) { this.totalEvents = totalEvents; }
     public long getTotalEvents() { return totalEvents; }
 
-    public int getDistinctTraces() { return traces.size(); }
+    public int getDistinctTraces() { return variants.size(); }
     public int getDistinctEvents() { return (events.size()-2); }
 
     public void setLongestTrace(long length) { longestTrace = length; }
@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.log;
+
+import java.util.Map;
+
+/**
+ * The traces appended to a SimpleLog by one call of IncrementalLogParser.append,
+ * encoded with the same activity codes of the SimpleLog.
+ */
+public class SimpleLogDelta {
+    private VariantStore variants;
+    private Map<Integer, String> newEvents;
+    private long totalEvents;
+
+    SimpleLogDelta(VariantStore variants, Map<Integer, String> newEvents, long totalEvents) {
+        this.variants = variants;
+        this.newEvents = newEvents;
+        this.totalEvents = totalEvents;
+    }
+
+//    the appended traces, each variant with the frequency it was appended with
+    public VariantStore getVariants() { return variants; }
+
+//    the activities appearing for the first time in the appended traces, with their new codes
+    public Map<Integer, String> getNewEvents() { return newEvents; }
+
+    public int size() { return variants.getTotalFrequency(); }
+    public long getTotalEvents() { return totalEvents; }
+    public boolean isEmpty() { return variants.size() == 0; }
+}
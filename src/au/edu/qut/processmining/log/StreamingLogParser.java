@@ -0,0 +1,413 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.log;
+
+import org.deckfour.xes.classification.XEventClassifier;
+import org.deckfour.xes.model.XAttributeMap;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.impl.XAttributeLiteralImpl;
+import org.deckfour.xes.model.impl.XEventImpl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static au.edu.qut.processmining.log.LogParser.ENDCODE;
+import static au.edu.qut.processmining.log.LogParser.STARTCODE;
+
+/**
+ * Single-pass StAX importer of .xes and .xes.gz files into SimpleLogs and ComplexLogs.
+ * Unlike LogParser, it never materializes an XLog: each trace is encoded while it is read
+ * and immediately merged into a VariantStore, so that memory grows with the distinct variants.
+ * The output is the same of LogParser.getSimpleLog/getComplexLog on the imported XLog,
+ * but SimpleLog.getXLog() returns null.
+ */
+public class StreamingLogParser {
+
+//    while streaming, activities are coded in order of appearance.
+//    these codes are reserved for the artificial start and end events,
+//    and they are all mapped to the codes used by LogParser once the whole file has been read.
+    private static final int STREAM_START = 0;
+    private static final int STREAM_END = 1;
+    private static final int FIRST_LABEL = 2;
+
+    private static final String LIFECYCLE = "lifecycle:transition";
+
+    public static SimpleLog getSimpleLog(String path, XEventClassifier xEventClassifier) {
+        XesStream stream = new XesStream(xEventClassifier, false);
+
+        if( !stream.parse(path) ) return null;
+
+        int[] toLogParserCodes = stream.toLogParserCodes(ENDCODE);
+        VariantStore variants = stream.traces.build().relabel(code -> toLogParserCodes[code]);
+        int LID = stream.labels.size() + 1;
+
+        SimpleLog sLog = new SimpleLog(variants, stream.getEvents(ENDCODE), null);
+        sLog.setExclusiveness(ActivitySets.fromVariants(variants, LID).getExclusiveness(LID));
+        sLog.setReverseMap(stream.getReverseMap());
+        sLog.setStartcode(STARTCODE);
+        sLog.setEndcode(ENDCODE);
+        sLog.setTotalEvents(stream.totalEvents);
+        sLog.setShortestTrace(stream.shortestTrace);
+        sLog.setLongestTrace(stream.longestTrace);
+        return sLog;
+    }
+
+    public static SimpleLog getComplexLog(String path, XEventClassifier xEventClassifier) {
+        XesStream stream = new XesStream(xEventClassifier, true);
+        SimpleLog sLog;
+
+        if( !stream.parse(path) ) return null;
+
+//        as in LogParser.getComplexLog, the artificial end event is the last activity
+        int totalActivities = stream.labels.size() + 2;
+        int endEvent = totalActivities - 1;
+        int[] toLogParserCodes = stream.toLogParserCodes(endEvent);
+        VariantStore variants = stream.traces.build().relabel(code -> toLogParserCodes[code]);
+
+        int[] parallelism = stream.parallelism.toArray(toLogParserCodes, totalActivities);
+        int[] dfg = stream.dfg.toArray(toLogParserCodes, totalActivities);
+        int[] exclusiveness = relabel(stream.executedSets.getExclusiveness(toLogParserCodes.length), toLogParserCodes, totalActivities);
+        int[] activityObserved = new int[totalActivities];
+        for( int code = 0; code < toLogParserCodes.length; code++ )
+            activityObserved[toLogParserCodes[code]] = code < stream.activityObserved.length ? stream.activityObserved[code] : 0;
+
+        Map<Integer, String> events = stream.getEvents(endEvent);
+
+        System.out.println("LOGP - total events parsed: " + stream.totalEvents);
+        System.out.println("LOGP - start events parsed: " + stream.startEvents);
+        System.out.println("LOGP - complete events parsed: " + stream.completeEvents);
+        System.out.println("LOGP - total distinct events: " + (events.size() - 2));
+        System.out.println("LOGP - total distinct traces: " + variants.size());
+
+        if( Math.abs(stream.startEvents - stream.completeEvents) < ((double) stream.totalEvents * 0.50) ) {
+            System.out.println("DEBUG - generating complex log");
+            sLog = new ComplexLog(variants, events, null);
+            ((ComplexLog) sLog).setDFG(dfg);
+            ((ComplexLog) sLog).setConcurrencyMatrix(parallelism);
+            sLog.setExclusiveness(exclusiveness);
+            ((ComplexLog) sLog).setActivityObserved(activityObserved);
+            ((ComplexLog) sLog).computePercentages();
+
+            int[] potentialORs = new int[totalActivities * totalActivities];
+            for( int i = 0; i < totalActivities; i++ )
+                for( int j = 0; j < i; j++ )
+                    if( exclusiveness[i * totalActivities + j] != 0 && parallelism[i * totalActivities + j] != 0 ) {
+                        potentialORs[i * totalActivities + j]++;
+                        potentialORs[j * totalActivities + i]++;
+                    }
+
+            ((ComplexLog) sLog).setPotentialORs(potentialORs);
+        } else {
+            sLog = new SimpleLog(variants, events, null);
+            sLog.setExclusiveness(exclusiveness);
+        }
+
+        sLog.setReverseMap(stream.getReverseMap());
+        sLog.setStartcode(STARTCODE);
+        sLog.setEndcode(endEvent);
+        sLog.setTotalEvents(stream.totalEvents);
+        sLog.setShortestTrace(stream.shortestTrace);
+        sLog.setLongestTrace(stream.longestTrace);
+        return sLog;
+    }
+
+//    moves a square matrix over the streaming codes to the codes used by LogParser
+    private static int[] relabel(int[] matrix, int[] codes, int totalActivities) {
+        int[] relabelled = new int[totalActivities * totalActivities];
+        for( int i = 0; i < codes.length; i++ )
+            for( int j = 0; j < codes.length; j++ )
+                relabelled[codes[i] * totalActivities + codes[j]] = matrix[i * codes.length + j];
+        return relabelled;
+    }
+
+    private static class XesStream {
+        private XEventClassifier xEventClassifier;
+        private boolean lifecycle;
+
+        private HashMap<String, Integer> labels = new HashMap<>();  //this maps the original name of an event to its streaming code
+        private ArrayList<String> codesToLabels = new ArrayList<>();
+        private VariantStore.Builder traces = new VariantStore.Builder();
+
+//        reusable event holding the attributes of the event being read, this is what the classifier sees
+        private XEvent event = new XEventImpl();
+        private Map<String, String> globalEventAttributes = new HashMap<>();
+
+        private int[] trace = new int[64];
+        private int traceLength;
+        private int traceHash;
+
+        private long totalEvents = 0;
+        private long traceEvents;
+        private long longestTrace = Integer.MIN_VALUE;
+        private long shortestTrace = Integer.MAX_VALUE;
+
+//        the following are used only for complex logs
+        private long startEvents = 0;
+        private long completeEvents = 0;
+        private GrowableMatrix parallelism = new GrowableMatrix();
+        private GrowableMatrix dfg = new GrowableMatrix();
+        private ActivitySets executedSets = new ActivitySets();
+        private int[] activityObserved = new int[64];
+        private Set<Integer> executing = new HashSet<>();
+        private long[] executed = ActivitySets.newSet(64);
+        private int lastComplete;
+
+        XesStream(XEventClassifier xEventClassifier, boolean lifecycle) {
+            this.xEventClassifier = xEventClassifier;
+            this.lifecycle = lifecycle;
+        }
+
+        boolean parse(String path) {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+
+            try( InputStream in = open(path) ) {
+                XMLStreamReader reader = factory.createXMLStreamReader(in);
+                read(reader);
+                reader.close();
+            } catch( IOException | XMLStreamException e ) {
+                System.out.println("ERROR - something went wrong while reading the log file: " + path);
+                e.printStackTrace();
+                return false;
+            }
+
+            return true;
+        }
+
+        private InputStream open(String path) throws IOException {
+            InputStream in = new BufferedInputStream(new FileInputStream(path), 1 << 16);
+            if( path.toLowerCase().endsWith(".gz") ) in = new GZIPInputStream(in, 1 << 16);
+            return in;
+        }
+
+        private void read(XMLStreamReader reader) throws XMLStreamException {
+//            depth of the element currently open, and depths of the enclosing global/trace/event elements (-1 if none)
+            int depth = 0;
+            int globalDepth = -1;
+            int traceDepth = -1;
+            int eventDepth = -1;
+            String element;
+            String key;
+
+            while( reader.hasNext() ) {
+                switch( reader.next() ) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        element = reader.getLocalName();
+                        if( element.equals("global") && "event".equals(reader.getAttributeValue(null, "scope")) ) {
+                            globalDepth = depth;
+                        } else if( element.equals("trace") && traceDepth == -1 ) {
+                            traceDepth = depth;
+                            startTrace();
+                        } else if( element.equals("event") && traceDepth != -1 && eventDepth == -1 ) {
+                            eventDepth = depth;
+                            startEvent();
+                        } else if( (key = reader.getAttributeValue(null, "key")) != null ) {
+//                            only the attributes directly attached to the event (or to the global event) are relevant
+                            if( eventDepth != -1 && depth == eventDepth + 1 )
+                                event.getAttributes().put(key, new XAttributeLiteralImpl(key, reader.getAttributeValue(null, "value")));
+                            else if( globalDepth != -1 && depth == globalDepth + 1 )
+                                globalEventAttributes.put(key, reader.getAttributeValue(null, "value"));
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if( depth == eventDepth ) {
+                            eventDepth = -1;
+                            endEvent();
+                        } else if( depth == traceDepth ) {
+                            traceDepth = -1;
+                            endTrace();
+                        } else if( depth == globalDepth ) {
+                            globalDepth = -1;
+                        }
+                        depth--;
+                        break;
+                }
+            }
+        }
+
+        private void startTrace() {
+            traceLength = 0;
+            traceHash = VariantStore.Builder.INITIAL_HASH;
+            traceEvents = 0;
+            append(STREAM_START);
+
+            if( lifecycle ) {
+                lastComplete = STREAM_START;
+                executing.clear();
+                Arrays.fill(executed, 0L);
+                executed = ActivitySets.include(executed, STREAM_START);
+            }
+        }
+
+        private void startEvent() {
+            XAttributeMap attributes = event.getAttributes();
+            attributes.clear();
+            for( Map.Entry<String, String> global : globalEventAttributes.entrySet() )
+                attributes.put(global.getKey(), new XAttributeLiteralImpl(global.getKey(), global.getValue()));
+        }
+
+        private void endEvent() {
+            int code = intern(xEventClassifier.getClassIdentity(event));
+            String transition;
+
+            totalEvents++;
+            traceEvents++;
+
+            if( !lifecycle ) {
+                append(code);
+                return;
+            }
+
+            transition = event.getAttributes().containsKey(LIFECYCLE) ? event.getAttributes().get(LIFECYCLE).toString() : "";
+
+            if( transition.equalsIgnoreCase("START") ) {
+                startEvents++;
+                for( int e : executing ) {
+                    parallelism.increase(e, code, 1);
+                    parallelism.increase(code, e, 1);
+                }
+                executing.add(code);
+                executed = ActivitySets.include(executed, code);
+            }
+
+            if( transition.equalsIgnoreCase("COMPLETE") ) {
+                completeEvents++;
+                executing.remove(code);
+                dfg.increase(lastComplete, code, 1);
+                lastComplete = code;
+                if( code >= activityObserved.length ) activityObserved = Arrays.copyOf(activityObserved, Math.max(code + 1, activityObserved.length * 2));
+                activityObserved[code]++;
+                append(code);
+                executed = ActivitySets.include(executed, code);
+            }
+        }
+
+        private void endTrace() {
+            if( lifecycle ) {
+                dfg.increase(lastComplete, STREAM_END, 1);
+                executed = ActivitySets.include(executed, STREAM_END);
+                executedSets.add(executed, 1);
+            }
+
+            append(STREAM_END);
+
+            if( longestTrace < traceEvents ) longestTrace = traceEvents;
+            if( shortestTrace > traceEvents ) shortestTrace = traceEvents;
+
+            traces.add(trace, traceLength, traceHash, 1);
+        }
+
+        private void append(int code) {
+            if( traceLength == trace.length ) trace = Arrays.copyOf(trace, traceLength * 2);
+            trace[traceLength++] = code;
+            traceHash = VariantStore.Builder.rollHash(traceHash, code);
+        }
+
+        private int intern(String label) {
+            Integer code = labels.get(label);
+            if( code == null ) {
+                code = codesToLabels.size() + FIRST_LABEL;
+                labels.put(label, code);
+                codesToLabels.add(label);
+            }
+            return code;
+        }
+
+//        LogParser assigns the codes to the labels in alphabetical order, starting from 1
+        int[] toLogParserCodes(int endcode) {
+            ArrayList<String> orderedLabels = new ArrayList<>(codesToLabels);
+            int[] codes = new int[codesToLabels.size() + FIRST_LABEL];
+            int LID;
+
+            Collections.sort(orderedLabels);
+            codes[STREAM_START] = STARTCODE;
+            codes[STREAM_END] = endcode;
+            LID = 1;
+            for( String l : orderedLabels ) codes[labels.get(l)] = LID++;
+
+            return codes;
+        }
+
+        HashMap<Integer, String> getEvents(int endcode) {
+            HashMap<Integer, String> events = new HashMap<>();
+            ArrayList<String> orderedLabels = new ArrayList<>(codesToLabels);
+            int LID;
+
+            Collections.sort(orderedLabels);
+            events.put(STARTCODE, "autogen-start");
+            LID = 1;
+            for( String l : orderedLabels ) events.put(LID++, l);
+            events.put(endcode, "autogen-end");
+
+            return events;
+        }
+
+        HashMap<String, Integer> getReverseMap() {
+            HashMap<String, Integer> reverseMap = new HashMap<>();
+            ArrayList<String> orderedLabels = new ArrayList<>(codesToLabels);
+            int LID;
+
+            Collections.sort(orderedLabels);
+            LID = 1;
+            for( String l : orderedLabels ) reverseMap.put(l, LID++);
+
+            return reverseMap;
+        }
+    }
+
+//    square matrix of counters that grows with the number of activities read so far
+    private static class GrowableMatrix {
+        private int size = 16;
+        private int[] matrix = new int[size * size];
+
+        void increase(int i, int j, int delta) {
+            if( i >= size || j >= size ) grow(Math.max(i, j) + 1);
+            matrix[i * size + j] += delta;
+        }
+
+        int get(int i, int j) { return (i < size && j < size) ? matrix[i * size + j] : 0; }
+
+        int[] toArray(int[] codes, int totalActivities) {
+            int[] array = new int[totalActivities * totalActivities];
+            for( int i = 0; i < codes.length; i++ )
+                for( int j = 0; j < codes.length; j++ )
+                    array[codes[i] * totalActivities + codes[j]] = get(i, j);
+            return array;
+        }
+
+        private void grow(int minimum) {
+            int newSize = Math.max(minimum, size * 2);
+            int[] newMatrix = new int[newSize * newSize];
+            for( int i = 0; i < size; i++ ) System.arraycopy(matrix, i * size, newMatrix, i * newSize, size);
+            matrix = newMatrix;
+            size = newSize;
+        }
+    }
+}
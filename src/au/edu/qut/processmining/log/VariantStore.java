@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Packed storage of the distinct traces (variants) of a SimpleLog.
+ * All the variants are stored back to back in one int array of activity codes,
+ * variant v spans [getStart(v), getEnd(v)) and includes the artificial start and end codes.
+ * Variants are numbered in order of first appearance.
+ */
+public class VariantStore {
+
+    private final int[] activities;
+    private final int[] offsets;
+    private final int[] frequencies;
+    private final int size;
+
+    VariantStore(int[] activities, int[] offsets, int[] frequencies, int size) {
+        this.activities = activities;
+        this.offsets = offsets;
+        this.frequencies = frequencies;
+        this.size = size;
+    }
+
+    public int size() { return size; }
+
+    public int[] getActivities() { return activities; }
+    public int getStart(int variant) { return offsets[variant]; }
+    public int getEnd(int variant) { return offsets[variant+1]; }
+    public int getLength(int variant) { return offsets[variant+1] - offsets[variant]; }
+    public int getActivity(int variant, int index) { return activities[offsets[variant] + index]; }
+    public int getFrequency(int variant) { return frequencies[variant]; }
+
+    public int[] getVariant(int variant) {
+        return Arrays.copyOfRange(activities, offsets[variant], offsets[variant+1]);
+    }
+
+    public int getTotalFrequency() {
+        int total = 0;
+        for( int v = 0; v < size; v++ ) total += frequencies[v];
+        return total;
+    }
+
+    /**
+     * @return the variant in the legacy string encoding, e.g. "::0::3::5::-1::"
+     */
+    public String print(int variant) {
+        StringBuilder sb = new StringBuilder("::");
+        for( int i = offsets[variant]; i < offsets[variant+1]; i++ ) sb.append(activities[i]).append("::");
+        return sb.toString();
+    }
+
+    /**
+     * @return a copy of this store where each code c is replaced by relabelling.applyAsInt(c)
+     */
+    public VariantStore relabel(IntUnaryOperator relabelling) {
+        int[] relabelled = new int[activities.length];
+        for( int i = 0; i < activities.length; i++ ) relabelled[i] = relabelling.applyAsInt(activities[i]);
+        return new VariantStore(relabelled, offsets, frequencies, size);
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> traces = new HashMap<>();
+        for( int v = 0; v < size; v++ ) traces.merge(print(v), frequencies[v], Integer::sum);
+        return traces;
+    }
+
+    public static VariantStore fromMap(Map<String, Integer> traces) {
+        Builder builder = new Builder();
+        StringTokenizer tokenizer;
+        int[] buffer = new int[16];
+        int length;
+
+        for( Map.Entry<String, Integer> trace : traces.entrySet() ) {
+            tokenizer = new StringTokenizer(trace.getKey(), ":");
+            length = 0;
+            while( tokenizer.hasMoreTokens() ) {
+                if( length == buffer.length ) buffer = Arrays.copyOf(buffer, length*2);
+                buffer[length++] = Integer.parseInt(tokenizer.nextToken());
+            }
+            builder.add(buffer, length, trace.getValue());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Accumulates traces, merging identical ones into a single variant.
+     * The lookup is an open-addressing table over the variant indexes, so no key objects are allocated.
+     */
+    public static class Builder {
+        public static final int INITIAL_HASH = 1;
+        public static int rollHash(int hash, int code) { return 31*hash + code; }
+
+        private int[] activities = new int[1024];
+        private int[] offsets = new int[65];
+        private int[] frequencies = new int[64];
+        private int[] hashes = new int[64];
+        private int size = 0;
+
+        private int[] table = new int[128];     // variant index + 1, 0 means empty slot
+
+        public int size() { return size; }
+
+        public int add(int[] trace, int frequency) { return add(trace, trace.length, frequency); }
+
+        /**
+         * adds the first length codes of the trace with the given frequency.
+         * @return the index of the variant the trace was merged into
+         */
+        public int add(int[] trace, int length, int frequency) {
+            int hash = INITIAL_HASH;
+            for( int i = 0; i < length; i++ ) hash = rollHash(hash, trace[i]);
+            return add(trace, length, hash, frequency);
+        }
+
+        /**
+         * same as add(trace, length, frequency), but the hash of the trace is given in input,
+         * so that it can be rolled while the trace is read (see INITIAL_HASH and rollHash).
+         */
+        public int add(int[] trace, int length, int rolledHash, int frequency) {
+            int hash = rolledHash ^ (rolledHash >>> 16);
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            int variant;
+
+            while( (variant = table[slot] - 1) != -1 ) {
+                if( hashes[variant] == hash && sameAs(variant, trace, length) ) {
+                    frequencies[variant] += frequency;
+                    return variant;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            ensureCapacity(length);
+            variant = size++;
+            System.arraycopy(trace, 0, activities, offsets[variant], length);
+            offsets[variant+1] = offsets[variant] + length;
+            frequencies[variant] = frequency;
+            hashes[variant] = hash;
+            table[slot] = variant + 1;
+            if( size*2 > table.length ) rehash();
+
+            return variant;
+        }
+
+        public VariantStore build() {
+            return new VariantStore(Arrays.copyOf(activities, offsets[size]),
+                                    Arrays.copyOf(offsets, size+1),
+                                    Arrays.copyOf(frequencies, size),
+                                    size);
+        }
+
+        /**
+         * same as build(), but the activity codes and the offsets are shared with this builder instead of copied.
+         * it is safe because the builder only appends to them, while the frequencies (updated in place) are copied.
+         */
+        public VariantStore snapshot() {
+            return new VariantStore(activities, offsets, Arrays.copyOf(frequencies, size), size);
+        }
+
+        private boolean sameAs(int variant, int[] trace, int length) {
+            int start = offsets[variant];
+            if( offsets[variant+1] - start != length ) return false;
+            for( int i = 0; i < length; i++ ) if( activities[start+i] != trace[i] ) return false;
+            return true;
+        }
+
+        private void ensureCapacity(int length) {
+            if( size == frequencies.length ) {
+                frequencies = Arrays.copyOf(frequencies, size*2);
+                hashes = Arrays.copyOf(hashes, size*2);
+                offsets = Arrays.copyOf(offsets, size*2 + 1);
+            }
+            int required = offsets[size] + length;
+            if( required > activities.length ) activities = Arrays.copyOf(activities, Math.max(required, activities.length*2));
+        }
+
+        private void rehash() {
+            int[] old = table;
+            int mask;
+            int slot;
+
+            table = new int[old.length*2];
+            mask = table.length - 1;
+            for( int entry : old ) {
+                if( entry == 0 ) continue;
+                slot = hashes[entry-1] & mask;
+                while( table[slot] != 0 ) slot = (slot + 1) & mask;
+                table[slot] = entry;
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@ import au.edu.qut.bpmn.helper.GatewayMap;
 import au.edu.qut.bpmn.structuring.StructuringService;
 import au.edu.qut.processmining.log.LogParser;
 import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.qut.processmining.log.VariantStore;
 import au.edu.qut.processmining.miners.splitminer.dfgp.DirectlyFollowGraphPlus;
 import au.edu.qut.processmining.miners.splitminer.oracle.Oracle;
 import au.edu.qut.processmining.miners.splitminer.oracle.OracleItem;
@@ -69,6 +70,12 @@ public class SplitMiner {
     private DirectlyFollowGraphPlus dfgp;
     private BPMNDiagram bpmnDiagram;
 
+//    the DFGP before parallelisms detection and filtering, reused while the log and the settings do not change
+    private DirectlyFollowGraphPlus unfilteredDFGP;
+    private VariantStore unfilteredVariants;
+    private DFGPUIResult.FilterType unfilteredFilterType;
+    private boolean unfilteredParallelismsFirst;
+
     private boolean replaceIORs;
     private boolean removeLoopActivities;
     private SplitMinerUIResult.StructuringTime structuringTime;
@@ -91,6 +98,15 @@ public class SplitMiner {
         this.structuringTime = SplitMinerUIResult.StructuringTime.NONE;
     }
 
+//    a new miner sharing the unfiltered DFGP of the given one, the two miners can mine the same log concurrently
+    public SplitMiner(SplitMiner miner) {
+        this(miner.replaceIORs, miner.removeLoopActivities);
+        this.unfilteredDFGP = miner.unfilteredDFGP;
+        this.unfilteredVariants = miner.unfilteredVariants;
+        this.unfilteredFilterType = miner.unfilteredFilterType;
+        this.unfilteredParallelismsFirst = miner.unfilteredParallelismsFirst;
+    }
+
     public DirectlyFollowGraphPlus getDFGP() { return dfgp; }
 
     public BPMNDiagram getBPMNDiagram() { return bpmnDiagram; }
@@ -159,10 +175,37 @@ public class SplitMiner {
         return bpmnDiagram;
     }
 
+    /**
+     * builds the DFGP of the log before the parallelisms detection and the filtering (if not built yet),
+     * so that the miners created with SplitMiner(this) reuse it instead of building their own.
+     */
+    public void prepareDFGP(SimpleLog log, DFGPUIResult.FilterType filterType, boolean parallelismsFirst) {
+        this.log = log;
+        buildUnfilteredDFGP(filterType, parallelismsFirst);
+    }
+
+    private void buildUnfilteredDFGP(DFGPUIResult.FilterType filterType, boolean parallelismsFirst) {
+        if( unfilteredDFGP == null || unfilteredDFGP.getSimpleLog() != log || unfilteredVariants != log.getVariants() ||
+                unfilteredFilterType != filterType || unfilteredParallelismsFirst != parallelismsFirst )
+        {
+//            the thresholds are set on the copies, by detectParallelisms() and filter()
+            unfilteredDFGP = new DirectlyFollowGraphPlus(log, 0.0, 0.0, filterType, parallelismsFirst);
+            unfilteredDFGP.setOracle(!parallelismsFirst);
+            unfilteredDFGP.buildUnfilteredDFGP();
+            unfilteredVariants = log.getVariants();
+            unfilteredFilterType = filterType;
+            unfilteredParallelismsFirst = parallelismsFirst;
+        }
+    }
+
     private void generateDFGP(double percentileFrequencyThreshold, double parallelismsThreshold, DFGPUIResult.FilterType filterType, boolean parallelismsFirst) {
-        dfgp = new DirectlyFollowGraphPlus(log, percentileFrequencyThreshold, parallelismsThreshold, filterType, parallelismsFirst);
-        dfgp.setOracle(!parallelismsFirst);
-        dfgp.buildDFGP();
+        buildUnfilteredDFGP(filterType, parallelismsFirst);
+
+//        the filter actually applied: a frequency threshold of zero means no filtering, as in DirectlyFollowGraphPlus.filter()
+        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + (percentileFrequencyThreshold == 0 ? DFGPUIResult.FilterType.NOF : filterType).toString());
+        dfgp = unfilteredDFGP.copyUnfiltered();
+        dfgp.detectParallelisms(parallelismsThreshold);
+        dfgp.filter(percentileFrequencyThreshold);
     }
 
     public BPMNDiagram discoverFromDFGP(DirectlyFollowGraphPlus idfgp) {
@@ -402,14 +445,15 @@ public class SplitMiner {
         HashMap<Integer, Integer> distances = new HashMap<>();
 
 
-        StringTokenizer trace;
+        int[] activities;
         int traceFrequency;
         int event;
         int MAXD = 4;
         int skipcounter =0;
         int i;
 
-        Map<String, Integer> traces = log.getTraces();
+        VariantStore traces = log.getVariants();
+        activities = traces.getActivities();
 
         int size;
         int TID; // this is the split task ID
@@ -432,16 +476,14 @@ public class SplitMiner {
             }
 
 
-        for( String t : traces.keySet() ) {
-            trace = new StringTokenizer(t, "::");
-            traceFrequency = traces.get(t);
+        for( int t = 0; t < traces.size(); t++ ) {
+            traceFrequency = traces.getFrequency(t);
             splitTasksInTrace.clear();
 
-//            consuming the start event that is always 0
+//            skipping the start event that is always 0
 //            we assume that the start event is not a successor of any split or a split itself
-            trace.nextToken();
-            while( trace.hasMoreTokens() ) {
-                event = Integer.valueOf(trace.nextToken());
+            for( int e = traces.getStart(t) + 1; e < traces.getEnd(t); e++ ) {
+                event = activities[e];
                 if (splitMaps.containsKey(event)) {
                     distances.put(event, 0); // not sure we need this, for the moment we keep it
                     if (!splitTasksInTrace.containsKey(event)) splitTasksInTrace.put(event, new BitSet());
@@ -54,6 +54,14 @@ public class DFGEdge extends LogEdge {
         isLoop = false;
     }
 
+//    a copy of the edge (same id) between the given copies of its nodes
+    public DFGEdge(DFGEdge edge, DFGNode source, DFGNode target){
+        super(source, target, edge.label);
+        id = edge.id;
+        frequency = edge.frequency;
+        isLoop = edge.isLoop;
+    }
+
     public void increaseFrequency() { frequency++; }
     public void increaseFrequency(int amount) { frequency += amount; }
 
@@ -31,5 +31,13 @@ public class DFGNode extends LogNode {
     public DFGNode(String label) { super(label); }
     public DFGNode(String label, int code) { super(label, code); }
 
+    public DFGNode(DFGNode node) {
+        super(node.label, node.code);
+        id = node.id;
+        frequency = node.frequency;
+        startFrequency = node.startFrequency;
+        endFrequency = node.endFrequency;
+    }
+
     public String print() { return getCode() + " [" + getFrequency() + "]";}
 }
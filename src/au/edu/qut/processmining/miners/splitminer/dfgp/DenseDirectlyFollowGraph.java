@@ -0,0 +1,886 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.miners.splitminer.dfgp;
+
+import au.edu.qut.processmining.log.ComplexLog;
+import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.qut.processmining.log.SimpleLogDelta;
+import au.edu.qut.processmining.log.VariantStore;
+import au.edu.qut.processmining.miners.splitminer.ui.dfgp.DFGPUIResult;
+
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+
+import java.util.*;
+
+/**
+ * The same DFGP of DirectlyFollowGraphPlus, discovered from a SimpleLog, but stored in dense primitive arrays:
+ * the activity codes are the indexes of the arrays, except the end code that is mapped to the last index (size-1).
+ * Building, filtering and detecting loops and parallelisms never allocate nodes, edges or boxed integers,
+ * the DFGNode and DFGEdge objects are created only when the graph is read through getEdges().
+ * Nodes and edges are removed in the order of DirectlyFollowGraphPlus (ascending codes, DFGEdge.compareTo()),
+ * so the two produce the same DFGP also when the filters have to choose among equal edges.
+ * reminder: matrix[i][j] = array[i*n + j];
+ */
+public class DenseDirectlyFollowGraph implements DirectlyFollowGraph {
+
+    private SimpleLog log;
+    private int startcode;
+    private int endcode;
+
+    private double percentileFrequencyThreshold;
+    private double parallelismsThreshold;
+    private DFGPUIResult.FilterType filterType;
+    private boolean parallelismsFirst;
+    private int filterThreshold;
+
+    private int n;                  // number of activities, including start and end
+    private int[] codes;            // index -> activity code
+    private int[] byCode;           // the indexes in ascending order of activity code
+    private int[] ranks;            // index -> position in byCode
+
+//    the graph as it is built from the log, before any filtering,
+//    these arrays are never modified once built: they are shared by the copies, and replaced by updateDirectlyFollowsGraph()
+    private int[] nodeFrequencies;
+    private boolean[] unfilteredNodes;
+    private boolean[] unfilteredEdges;
+    private int[] unfilteredFrequencies;
+    private int[] unfilteredOutgoings;
+    private int[] unfilteredIncomings;
+    private int unfilteredTotalNodes;
+    private boolean[] loopsL1;
+    private int[] loopsL1Freq;
+    private boolean[] loopsL2;
+
+    private boolean[] nodes;
+    private int totalNodes;
+    private boolean[] edges;        // edges[src*n + tgt] is TRUE if the edge is in the DFGP
+    private int[] frequencies;      // frequencies of the directly-follows relations observed in the log
+    private int[] outgoings;        // out-degree of each node
+    private int[] incomings;        // in-degree of each node
+
+    private boolean[] parallelisms;
+    private boolean[] parallelismsKeys;     // nodes that had at least one parallelism (as the keys of DirectlyFollowGraphPlus.parallelisms)
+    private boolean[] bestEdges;
+    private boolean[] untouchableEdges;
+
+//    the objects returned by getEdges(), cached until the graph changes
+    private DFGNode[] dfgNodes;
+    private DFGEdge[] dfgEdges;
+    private Set<DFGEdge> edgesView;
+
+    public DenseDirectlyFollowGraph(SimpleLog log) {
+        this(log, DFGPUIResult.FREQUENCY_THRESHOLD, DFGPUIResult.PARALLELISMS_THRESHOLD, DFGPUIResult.STD_FILTER, DFGPUIResult.PARALLELISMS_FIRST);
+    }
+
+    public DenseDirectlyFollowGraph(SimpleLog log, double percentileFrequencyThreshold, double parallelismsThreshold, DFGPUIResult.FilterType filterType, boolean parallelismsFirst) {
+        if( log instanceof ComplexLog ) throw new IllegalArgumentException("ComplexLogs are supported only by DirectlyFollowGraphPlus");
+
+        this.log = log;
+        this.startcode = log.getStartcode();
+        this.endcode = log.getEndcode();
+        this.percentileFrequencyThreshold = percentileFrequencyThreshold;
+        this.parallelismsThreshold = parallelismsThreshold;
+        this.filterType = filterType;
+        this.parallelismsFirst = parallelismsFirst;
+    }
+
+//    the copy shares the unfiltered graph, and can be filtered without affecting the original
+    public DenseDirectlyFollowGraph(DenseDirectlyFollowGraph dense) {
+        this(dense.log, dense.percentileFrequencyThreshold, dense.parallelismsThreshold, dense.filterType, dense.parallelismsFirst);
+        shareUnfiltered(dense);
+        this.filterThreshold = dense.filterThreshold;
+        this.nodes = clone(dense.nodes);
+        this.totalNodes = dense.totalNodes;
+        this.edges = clone(dense.edges);
+        this.frequencies = dense.frequencies == null ? null : dense.frequencies.clone();
+        this.outgoings = dense.outgoings == null ? null : dense.outgoings.clone();
+        this.incomings = dense.incomings == null ? null : dense.incomings.clone();
+        this.parallelisms = clone(dense.parallelisms);
+        this.parallelismsKeys = clone(dense.parallelismsKeys);
+        this.bestEdges = clone(dense.bestEdges);
+        this.untouchableEdges = clone(dense.untouchableEdges);
+        this.dfgNodes = new DFGNode[n];
+        this.dfgEdges = new DFGEdge[n*n];
+    }
+
+    private static boolean[] clone(boolean[] array) { return array == null ? null : array.clone(); }
+
+    private void shareUnfiltered(DenseDirectlyFollowGraph dense) {
+        this.n = dense.n;
+        this.codes = dense.codes;
+        this.byCode = dense.byCode;
+        this.ranks = dense.ranks;
+        this.nodeFrequencies = dense.nodeFrequencies;
+        this.unfilteredNodes = dense.unfilteredNodes;
+        this.unfilteredEdges = dense.unfilteredEdges;
+        this.unfilteredFrequencies = dense.unfilteredFrequencies;
+        this.unfilteredOutgoings = dense.unfilteredOutgoings;
+        this.unfilteredIncomings = dense.unfilteredIncomings;
+        this.unfilteredTotalNodes = dense.unfilteredTotalNodes;
+        this.loopsL1 = dense.loopsL1;
+        this.loopsL1Freq = dense.loopsL1Freq;
+        this.loopsL2 = dense.loopsL2;
+    }
+
+    private int index(int code) { return code == endcode ? n-1 : code; }
+    private int code(int index) { return codes[index]; }
+
+//    edges sorting key, it follows DFGEdge.compareTo(): frequency, then source code, then target code
+    private long key(int e) {
+        return ((long) frequencies[e] << 32) | (ranks[e/n] * n + ranks[e%n]);
+    }
+
+    private int edge(long key) {
+        int low = (int) key;
+        return byCode[low/n]*n + byCode[low%n];
+    }
+
+//    the keys of the selected edges, sorted
+    private long[] ordered(boolean[] selection) {
+        long[] keys = new long[n*n];
+        int total = 0;
+        for( int e = 0; e < n*n; e++ ) if( selection[e] ) keys[total++] = key(e);
+        keys = Arrays.copyOf(keys, total);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /* the primitive-arrays getters */
+
+    public int totalActivities() { return n; }
+    public boolean isEdge(int src, int tgt) { return edges[index(src)*n + index(tgt)]; }
+    public int getFrequency(int src, int tgt) { return frequencies[index(src)*n + index(tgt)]; }
+
+    /* the DirectlyFollowGraphPlus getters */
+
+    @Override
+    public SimpleLog getSimpleLog() { return log; }
+
+    @Override
+    public int getStartcode() { return startcode; }
+
+    @Override
+    public int getEndcode() { return endcode; }
+
+    @Override
+    public int size() { return totalNodes; }
+
+    @Override
+    public Set<DFGEdge> getEdges() {
+        if( edgesView != null ) return edgesView;
+
+        DFGEdge edge;
+        edgesView = new HashSet<>();
+        for( int e = 0; e < n*n; e++ )
+            if( edges[e] ) {
+                if( (edge = dfgEdges[e]) == null ) edge = dfgEdges[e] = new DFGEdge(getNode(e/n), getNode(e%n), frequencies[e]);
+                edgesView.add(edge);
+            }
+
+        return edgesView;
+    }
+
+    private DFGNode getNode(int i) {
+        if( dfgNodes[i] == null ) {
+            dfgNodes[i] = new DFGNode(log.getEvents().get(code(i)), code(i));
+            dfgNodes[i].increaseFrequency(nodeFrequencies[i]);
+        }
+        return dfgNodes[i];
+    }
+
+    @Override
+    public Set<Integer> getLoopsL1() {
+        Set<Integer> set = new HashSet<>();
+        for( int i = 0; i < n; i++ ) if( loopsL1[i] ) set.add(code(i));
+        return set;
+    }
+
+    @Override
+    public Map<Integer, HashSet<Integer>> getParallelisms() {
+        Map<Integer, HashSet<Integer>> map = new HashMap<>();
+        if( parallelisms == null ) return map;
+
+        for( int i = 0; i < n; i++ )
+            if( parallelismsKeys[i] ) {
+                map.put(code(i), new HashSet<Integer>());
+                for( int j = 0; j < n; j++ ) if( parallelisms[i*n + j] ) map.get(code(i)).add(code(j));
+            }
+
+        return map;
+    }
+
+    @Override
+    public boolean areConcurrent(int A, int B) {
+        if( parallelisms == null || A < -1 || B < -1 || A >= n-1 || B >= n-1 ) return false;
+        return parallelisms[index(A)*n + index(B)];
+    }
+
+//    the diagram is built from the edge matrix, the nodes and the edges in ascending order of activity code
+    @Override
+    public BPMNDiagram getDFGP(boolean labels) {
+        Map<Integer, String> events = log.getEvents();
+        BPMNDiagram diagram = new BPMNDiagramImpl("DFGP-diagram");
+        BPMNNode[] mapping = new BPMNNode[n];
+        String label;
+
+        for( int i : byCode )
+            if( nodes[i] ) {
+                label = events.get(code(i)) + "\n(" + nodeFrequencies[i] + ")";
+                mapping[i] = diagram.addActivity( (labels ? label : Integer.toString(code(i))), false, false, false, false, false);
+            }
+
+        for( int src : byCode )
+            for( int tgt : byCode )
+                if( edges[src*n + tgt] ) diagram.addFlow(mapping[src], mapping[tgt], Integer.toString(frequencies[src*n + tgt]));
+
+        return diagram;
+    }
+
+    /* the DFGP discovery, same steps of DirectlyFollowGraphPlus */
+
+    @Override
+    public void buildDFGP() {
+        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + getFilterType().toString());
+        untouchableEdges = null;
+
+        buildUnfilteredDFGP();
+        detectParallelisms(parallelismsThreshold);
+        filter(percentileFrequencyThreshold);
+    }
+
+    @Override
+    public void buildUnfilteredDFGP() {
+        buildDirectlyFollowsGraph();
+        detectLoops();
+    }
+
+    @Override
+    public DenseDirectlyFollowGraph copyUnfiltered() {
+        DenseDirectlyFollowGraph copy = new DenseDirectlyFollowGraph(log, percentileFrequencyThreshold, parallelismsThreshold, filterType, parallelismsFirst);
+        copy.shareUnfiltered(this);
+        copy.restoreUnfilteredDirectlyFollowsGraph();
+        return copy;
+    }
+
+    @Override
+    public void detectParallelisms(double parallelismsThreshold) {
+        this.parallelismsThreshold = parallelismsThreshold;
+        detectParallelismsOnDFG();
+    }
+
+    public void buildSafeDFGP() {
+        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + getFilterType().toString());
+
+        buildDirectlyFollowsGraph();
+        untouchableEdges = bestEdgesOnMaxCapacities();
+        detectLoops();
+        detectParallelismsOnDFG();
+        filter(percentileFrequencyThreshold);
+    }
+
+    /**
+     * same as buildDFGP(), but the directly-follows graph is updated with the appended traces instead of being built again.
+     */
+    @Override
+    public void updateDFGP(SimpleLogDelta delta) {
+        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + getFilterType().toString());
+        untouchableEdges = null;
+
+        updateDirectlyFollowsGraph(delta);
+        detectLoops();
+        detectParallelismsOnDFG();
+        filter(percentileFrequencyThreshold);
+    }
+
+    @Override
+    public void filter(double percentileFrequencyThreshold) {
+        this.percentileFrequencyThreshold = percentileFrequencyThreshold;
+
+        switch(getFilterType()) {
+            case FWG:
+                filterWithGuarantees();
+                break;
+            case WTH:
+                filterWithThreshold();
+                exploreAndRemove();
+                break;
+            case STD:
+                standardFilter();
+                exploreAndRemove();
+                break;
+            case NOF:
+                break;
+        }
+    }
+
+//    a frequency threshold of zero means no filtering
+    private DFGPUIResult.FilterType getFilterType() {
+        return percentileFrequencyThreshold == 0 ? DFGPUIResult.FilterType.NOF : filterType;
+    }
+
+    public void buildDirectlyFollowsGraph() {
+        indexActivities();
+
+        nodeFrequencies = new int[n];
+        unfilteredNodes = new boolean[n];
+        unfilteredEdges = new boolean[n*n];
+        unfilteredFrequencies = new int[n*n];
+        unfilteredOutgoings = new int[n];
+        unfilteredIncomings = new int[n];
+        loopsL1 = new boolean[n];
+        loopsL1Freq = new int[n];
+
+        unfilteredNodes[index(startcode)] = true;
+        unfilteredNodes[index(endcode)] = true;
+        unfilteredTotalNodes = 2;
+
+        addTraces(log.getVariants(), log.size());
+    }
+
+    /**
+     * adds to the directly-follows graph the traces appended to the log (see IncrementalLogParser),
+     * the result is the same of buildDirectlyFollowsGraph() on the whole log, but the traces already seen are not parsed again.
+     * the unfiltered arrays are copied (resized if the delta has new activities) before being updated,
+     * the copies of this DFGP (see copyUnfiltered()) are not affected.
+     */
+    @Override
+    public void updateDirectlyFollowsGraph(SimpleLogDelta delta) {
+        if( unfilteredNodes == null ) {
+            buildDirectlyFollowsGraph();
+            return;
+        }
+
+        int m = n;
+        int[] oldCodes = codes;
+        int[] oldNodeFrequencies = nodeFrequencies;
+        boolean[] oldNodes = unfilteredNodes;
+        boolean[] oldEdges = unfilteredEdges;
+        int[] oldFrequencies = unfilteredFrequencies;
+        int[] oldOutgoings = unfilteredOutgoings;
+        int[] oldIncomings = unfilteredIncomings;
+        boolean[] oldLoopsL1 = loopsL1;
+        int[] oldLoopsL1Freq = loopsL1Freq;
+        int i, j;
+
+        indexActivities();
+
+        nodeFrequencies = new int[n];
+        unfilteredNodes = new boolean[n];
+        unfilteredEdges = new boolean[n*n];
+        unfilteredFrequencies = new int[n*n];
+        unfilteredOutgoings = new int[n];
+        unfilteredIncomings = new int[n];
+        loopsL1 = new boolean[n];
+        loopsL1Freq = new int[n];
+
+        for( int oi = 0; oi < m; oi++ ) {
+            i = index(oldCodes[oi]);
+            nodeFrequencies[i] = oldNodeFrequencies[oi];
+            unfilteredNodes[i] = oldNodes[oi];
+            unfilteredOutgoings[i] = oldOutgoings[oi];
+            unfilteredIncomings[i] = oldIncomings[oi];
+            loopsL1[i] = oldLoopsL1[oi];
+            loopsL1Freq[i] = oldLoopsL1Freq[oi];
+            for( int oj = 0; oj < m; oj++ ) {
+                j = index(oldCodes[oj]);
+                unfilteredEdges[i*n + j] = oldEdges[oi*m + oj];
+                unfilteredFrequencies[i*n + j] = oldFrequencies[oi*m + oj];
+            }
+        }
+
+//        as in DirectlyFollowGraphPlus, whose updated edges are copies, the length 2 loops are lost until detectLoops()
+        loopsL2 = new boolean[n*n];
+        addTraces(delta.getVariants(), delta.size());
+    }
+
+//    the activities of the log as array indexes, the end code last
+    private void indexActivities() {
+        Map<Integer, String> events = log.getEvents();
+        long[] sorted;
+
+        n = events.size();
+        codes = new int[n];
+        for( int code : events.keySet() ) {
+            if( code != endcode && (code < 0 || code >= n-1) ) throw new IllegalArgumentException("the activity codes are not contiguous: " + code);
+            codes[index(code)] = code;
+        }
+
+        sorted = new long[n];
+        for( int i = 0; i < n; i++ ) sorted[i] = ((long) codes[i] << 32) | i;
+        Arrays.sort(sorted);
+        byCode = new int[n];
+        ranks = new int[n];
+        for( int r = 0; r < n; r++ ) {
+            byCode[r] = (int) sorted[r];
+            ranks[byCode[r]] = r;
+        }
+    }
+
+    private void addTraces(VariantStore traces, int totalTraces) {
+        int[] activities = traces.getActivities();
+        int traceFrequency;
+        int event, prevEvent, e;
+
+//        while parsing the simple log we will always skip the start event,
+//        so we set now the maximum frequency because it is an artificial start event
+        nodeFrequencies[index(startcode)] += totalTraces;
+
+        for( int t = 0; t < traces.size(); t++ ) {
+            traceFrequency = traces.getFrequency(t);
+            prevEvent = index(startcode);
+
+            for( int i = traces.getStart(t) + 1; i < traces.getEnd(t); i++ ) {
+                event = index(activities[i]);
+
+                if( prevEvent == event ) {
+                    if( loopsL1[event] ) loopsL1Freq[event]++;
+                    else {
+                        loopsL1[event] = true;
+                        loopsL1Freq[event] = 1;
+                    }
+                    continue;
+                }
+
+                if( !unfilteredNodes[event] ) {
+                    unfilteredNodes[event] = true;
+                    unfilteredTotalNodes++;
+                }
+                nodeFrequencies[event] += traceFrequency;
+
+                e = prevEvent*n + event;
+                if( !unfilteredEdges[e] ) {
+                    unfilteredEdges[e] = true;
+                    unfilteredOutgoings[prevEvent]++;
+                    unfilteredIncomings[event]++;
+                }
+                unfilteredFrequencies[e] += traceFrequency;
+
+                prevEvent = event;
+            }
+        }
+
+        restoreUnfilteredDirectlyFollowsGraph();
+    }
+
+    private void restoreUnfilteredDirectlyFollowsGraph() {
+        nodes = unfilteredNodes.clone();
+        totalNodes = unfilteredTotalNodes;
+        edges = unfilteredEdges.clone();
+        frequencies = unfilteredFrequencies.clone();
+        outgoings = unfilteredOutgoings.clone();
+        incomings = unfilteredIncomings.clone();
+        parallelisms = null;
+        parallelismsKeys = new boolean[n];
+        bestEdges = null;
+        dfgNodes = new DFGNode[n];
+        dfgEdges = new DFGEdge[n*n];
+        edgesView = null;
+    }
+
+    public void detectLoops() {
+        VariantStore traces = log.getVariants();
+        int[] activities = traces.getActivities();
+        boolean[] patterns = new boolean[n*n];
+        int totalLoopsL2 = 0;
+        int src, tgt;
+
+        loopsL2 = new boolean[n*n];
+
+//        one pass over the log: patterns[src*n + tgt] is TRUE if we found [src :: tgt :: src]
+        for( int trace = 0; trace < traces.size(); trace++ )
+            for( int i = traces.getStart(trace); i < traces.getEnd(trace) - 2; i++ )
+                if( activities[i] == activities[i+2] && activities[i] != activities[i+1] )
+                    patterns[index(activities[i])*n + index(activities[i+1])] = true;
+
+//        if src OR tgt are length 1 loops, we do not evaluate length 2 loops for this edge,
+//        because a length 1 loop in parallel with something else
+//        can generate pattern of the type [src :: tgt :: src] OR [tgt :: src :: tgt]
+        for( int e = 0; e < n*n; e++ ) {
+            src = e/n;
+            tgt = e%n;
+            if( edges[e] && !loopsL2[e] && edges[tgt*n + src] && !loopsL1[src] && !loopsL1[tgt] && (patterns[e] || patterns[tgt*n + src]) ) {
+                loopsL2[e] = true;
+                loopsL2[tgt*n + src] = true;
+                totalLoopsL2++;
+            }
+        }
+
+        System.out.println("DFGP - loops length TWO found: " + totalLoopsL2);
+    }
+
+    public void detectParallelismsOnDFG() {
+        boolean priorityCheck;
+        boolean[] removableEdges = new boolean[n*n];
+        int src, tgt, e2;
+        int src2tgt_frequency, tgt2src_frequency;
+        double parallelismScore;
+
+        parallelisms = new boolean[n*n];
+        parallelismsKeys = new boolean[n];
+
+        if( parallelismsThreshold == 0 ) return;
+
+        for( int e1 = 0; e1 < n*n; e1++ ) {
+            if( !edges[e1] ) continue;
+            src = e1/n;
+            tgt = e1%n;
+            e2 = tgt*n + src;
+
+            if( parallelismsFirst ) priorityCheck = !loopsL2[e1];
+            else priorityCheck = !loopsL2[e1] && !loopsL1[src] && !loopsL1[tgt];
+
+            if( edges[e2] && priorityCheck && !removableEdges[e1] ) {
+//                this means: src || tgt is candidate parallelism
+                src2tgt_frequency = frequencies[e1];
+                tgt2src_frequency = frequencies[e2];
+                parallelismScore = (double) (src2tgt_frequency - tgt2src_frequency) / (src2tgt_frequency + tgt2src_frequency);
+
+                if( Math.abs(parallelismScore) < parallelismsThreshold ) {
+                    parallelisms[e1] = parallelisms[e2] = true;
+                    parallelismsKeys[src] = parallelismsKeys[tgt] = true;
+                    removableEdges[e1] = removableEdges[e2] = true;
+                } else {
+//                    otherwise we remove the least frequent edge, e1 or e2
+                    removableEdges[parallelismScore > 0 ? e2 : e1] = true;
+                }
+            }
+        }
+
+        for( long re : ordered(removableEdges) ) {
+            int e = edge(re);
+            if( !removeEdge(e, true) ) {
+                src = e/n;
+                tgt = e%n;
+                parallelisms[e] = parallelisms[tgt*n + src] = false;
+                if( edges[tgt*n + src] ) removeEdge(tgt*n + src, true);
+            }
+        }
+    }
+
+    public void removeEventSubprocesses() {
+        int maxP = (int) (totalNodes * 0.30);
+        boolean[] eventSubprocesses = new boolean[n];
+        int totalEventSubprocesses = 0;
+        int totalParallelisms;
+
+        System.out.println("DEBUG - max parallelisms allowed: " + maxP );
+        for( int i = 0; i < n; i++ )
+            if( nodes[i] && parallelismsKeys[i] ) {
+                totalParallelisms = 0;
+                for( int j = 0; j < n; j++ ) if( parallelisms[i*n + j] ) totalParallelisms++;
+                if( totalParallelisms >= maxP ) {
+                    eventSubprocesses[i] = true;
+                    totalEventSubprocesses++;
+                }
+            }
+        System.out.println("DEBUG - total event subprocesses: " + totalEventSubprocesses);
+
+        for( int i : byCode ) if( eventSubprocesses[i] ) removeNode(i);
+
+        exploreAndRemove();
+    }
+
+    private void standardFilter() {
+        long[] frequencyOrderedBestEdges;
+        int e;
+
+        bestEdgesOnMaxFrequencies();
+        frequencyOrderedBestEdges = ordered(bestEdges);
+
+        for( long re : ordered(edges) ) removeEdge(edge(re), false);
+
+        for( int i = frequencyOrderedBestEdges.length-1; i >= 0; i-- ) {
+            e = edge(frequencyOrderedBestEdges[i]);
+            if( outgoings[e/n] == 0 || incomings[e%n] == 0 ) addEdge(e);
+        }
+    }
+
+//    as Collections.max on the outgoing (incoming) edges: the most frequent one, ties broken by the highest target (source) code
+    private void bestEdgesOnMaxFrequencies() {
+        int best, e;
+        bestEdges = new boolean[n*n];
+
+        for( int node = 0; node < n; node++ ) {
+            if( !nodes[node] ) continue;
+
+            if( code(node) != endcode ) {
+                best = -1;
+                for( int tgt = 0; tgt < n; tgt++ )
+                    if( edges[e = node*n + tgt] && (best == -1 || frequencies[e] > frequencies[best] || (frequencies[e] == frequencies[best] && code(tgt) > code(best%n))) ) best = e;
+                if( best != -1 ) bestEdges[best] = true;
+            }
+
+            if( code(node) != startcode ) {
+                best = -1;
+                for( int src = 0; src < n; src++ )
+                    if( edges[e = src*n + node] && (best == -1 || frequencies[e] > frequencies[best] || (frequencies[e] == frequencies[best] && code(src) > code(best/n))) ) best = e;
+                if( best != -1 ) bestEdges[best] = true;
+            }
+        }
+    }
+
+    private void filterWithThreshold() {
+        long[] orderedMostFrequentEdges;
+        int totalEdges;
+        int e;
+
+        bestEdgesOnMaxFrequencies();
+        computeFilterThreshold();
+
+        orderedMostFrequentEdges = ordered(bestEdges);
+        totalEdges = orderedMostFrequentEdges.length;
+        for( long re : orderedMostFrequentEdges ) removeEdge(edge(re), false);
+
+        orderedMostFrequentEdges = Arrays.copyOf(orderedMostFrequentEdges, totalEdges + n*n);
+        for( long re : ordered(edges) ) {
+            e = edge(re);
+            if( frequencies[e] > filterThreshold ) orderedMostFrequentEdges[totalEdges++] = re;
+            removeEdge(e, false);
+        }
+
+        Arrays.sort(orderedMostFrequentEdges, 0, totalEdges);
+        for( int i = totalEdges-1; i >= 0; i-- ) {
+            e = edge(orderedMostFrequentEdges[i]);
+            if( frequencies[e] > filterThreshold ) addEdge(e);
+            else if( outgoings[e/n] == 0 || incomings[e%n] == 0 ) addEdge(e);
+        }
+    }
+
+    private void computeFilterThreshold() {
+        int[] orderedFrequencies = new int[n*n];
+        int totalBestEdges = 0;
+        int i;
+
+        for( int e = 0; e < n*n; e++ ) if( bestEdges[e] ) orderedFrequencies[totalBestEdges++] = frequencies[e];
+
+        Arrays.sort(orderedFrequencies, 0, totalBestEdges);
+        i = (int) Math.round(totalBestEdges*percentileFrequencyThreshold);
+        if( i == totalBestEdges ) i--;
+        filterThreshold = orderedFrequencies[i];
+    }
+
+    public void filterWithGuarantees() {
+        bestEdgesOnMaxFrequencies();
+        computeFilterThreshold();
+
+        bestEdges = bestEdgesOnMaxCapacities();
+        for( long re : ordered(edges) ) {
+            int e = edge(re);
+            if( !bestEdges[e] && !(frequencies[e] >= filterThreshold) ) removeEdge(e, false);
+        }
+    }
+
+    /**
+     * the edges on the paths of maximum capacity from the start to each node and from each node to the end,
+     * the capacity of a path being the frequency of its least frequent edge (see WidestPaths).
+     */
+    private boolean[] bestEdgesOnMaxCapacities() {
+        boolean[] best = new boolean[n*n];
+        int[] maxCapacities = new int[n];
+        int[] offsets = new int[n+1];
+        int[] heads = new int[n*n];
+        int[] capacities = new int[n*n];
+        int[] csrEdges = new int[n*n];
+        int[] bestEdge;
+        int i, e;
+
+//      forward exploration
+        i = 0;
+        for( int node = 0; node < n; node++ ) {
+            offsets[node] = i;
+            for( int next = 0; next < n; next++ )
+                if( nodes[node] && nodes[next] && edges[e = node*n + next] ) {
+                    heads[i] = next;
+                    capacities[i] = frequencies[e];
+                    csrEdges[i++] = e;
+                }
+        }
+        offsets[n] = i;
+        bestEdge = WidestPaths.compute(index(startcode), offsets, heads, capacities, maxCapacities);
+        for( int node = 0; node < n; node++ )
+            if( nodes[node] && bestEdge[node] != -1 ) best[csrEdges[bestEdge[node]]] = true;
+
+//      backward exploration
+        i = 0;
+        for( int node = 0; node < n; node++ ) {
+            offsets[node] = i;
+            for( int prev = 0; prev < n; prev++ )
+                if( nodes[node] && nodes[prev] && edges[e = prev*n + node] ) {
+                    heads[i] = prev;
+                    capacities[i] = frequencies[e];
+                    csrEdges[i++] = e;
+                }
+        }
+        offsets[n] = i;
+        bestEdge = WidestPaths.compute(index(endcode), offsets, heads, capacities, maxCapacities);
+        for( int node = 0; node < n; node++ )
+            if( nodes[node] && bestEdge[node] != -1 ) best[csrEdges[bestEdge[node]]] = true;
+
+        return best;
+    }
+
+    private void exploreAndRemove() {
+        boolean[] unvisited;
+
+        unvisited = explore(index(startcode), true);
+        for( int i : byCode )
+            if( unvisited[i] ) {
+                System.out.println("DEBUG - fwd removed: " + code(i) + " [" + nodeFrequencies[i] + "]");
+                removeNode(i);
+            }
+
+        unvisited = explore(index(endcode), false);
+        for( int i : byCode )
+            if( unvisited[i] ) {
+                System.out.println("DEBUG - bkw removed: " + code(i) + " [" + nodeFrequencies[i] + "]");
+                removeNode(i);
+            }
+    }
+
+//    returns the nodes not reachable from the root (forward), or not reaching the root (backward)
+    private boolean[] explore(int root, boolean forward) {
+        boolean[] unvisited = new boolean[n];
+        int[] toVisit = new int[n];
+        int head = 0, tail = 0;
+        int node;
+
+        for( int i = 0; i < n; i++ ) unvisited[i] = nodes[i] && i != root;
+        toVisit[tail++] = root;
+
+        while( head != tail ) {
+            node = toVisit[head++];
+            for( int next = 0; next < n; next++ )
+                if( unvisited[next] && edges[forward ? node*n + next : next*n + node] ) {
+                    toVisit[tail++] = next;
+                    unvisited[next] = false;
+                }
+        }
+
+        return unvisited;
+    }
+
+    /* data objects management */
+
+    private void removeNode(int node) {
+        boolean[] removable = new boolean[n*n];
+
+        if( nodes[node] ) totalNodes--;
+        nodes[node] = false;
+        for( int i = 0; i < n; i++ ) {
+            removable[i*n + node] = edges[i*n + node];
+            removable[node*n + i] = edges[node*n + i];
+        }
+        for( long re : ordered(removable) ) removeEdge(edge(re), false);
+        edgesView = null;
+    }
+
+    private void addEdge(int e) {
+        if( edges[e] ) return;
+        edges[e] = true;
+        outgoings[e/n]++;
+        incomings[e%n]++;
+        edgesView = null;
+    }
+
+    private boolean removeEdge(int e, boolean safe) {
+        int src = e/n;
+        int tgt = e%n;
+        if( untouchableEdges != null && untouchableEdges[e] ) {
+            System.out.println("DEBUG - this edge ensures connectedness! not removable!");
+            return false;
+        }
+        if( safe && (incomings[tgt] == 1) || (outgoings[src] == 1) ) return false;
+        if( !edges[e] ) return true;
+        edges[e] = false;
+        outgoings[src]--;
+        incomings[tgt]--;
+        edgesView = null;
+        return true;
+    }
+
+    public int enhance( Set<String> subtraces ) {
+        int enhancement = 0;
+        StringTokenizer trace;
+        int event, prevEvent;
+
+        for( String t : subtraces ) {
+            System.out.println("INFO - (dfgp) subtrace : " + t);
+            trace = new StringTokenizer(t, ":");
+            prevEvent = index(Integer.valueOf(trace.nextToken()));
+
+            while( trace.hasMoreTokens() ) {
+                event = index(Integer.valueOf(trace.nextToken()));
+                if( !edges[prevEvent*n + event] ) {
+//                    as in DirectlyFollowGraphPlus, the new edge has no frequency
+                    frequencies[prevEvent*n + event] = 0;
+                    dfgEdges[prevEvent*n + event] = null;
+                    addEdge(prevEvent*n + event);
+                    enhancement++;
+                }
+                prevEvent = event;
+            }
+        }
+
+        return enhancement;
+    }
+
+    public int reduce( Set<String> subtraces ) {
+        int reduction = 0;
+        StringTokenizer trace;
+        int event, prevEvent;
+
+        for( String t : subtraces ) {
+            trace = new StringTokenizer(t, ":");
+            prevEvent = index(Integer.valueOf(trace.nextToken()));
+
+            while( trace.hasMoreTokens() ) {
+                event = index(Integer.valueOf(trace.nextToken()));
+                if( edges[prevEvent*n + event] && removeEdge(prevEvent*n + event, false) ) reduction++;
+                prevEvent = event;
+            }
+        }
+
+        return reduction;
+    }
+
+    public void addLoops1() {
+        for( int i = 0; i < n; i++ )
+            if( loopsL1[i] && !edges[i*n + i] ) {
+                frequencies[i*n + i] = 1;
+                dfgEdges[i*n + i] = null;
+                addEdge(i*n + i);
+            }
+    }
+
+    /* DEBUG methods */
+
+    public void printEdges(boolean includeL1) {
+        Map<Integer, String> events = log.getEvents();
+
+        for( int e = 0; e < n*n; e++ )
+            if( edges[e] ) System.out.println("DEBUG - edge : " + events.get(code(e/n)) + " > " + events.get(code(e%n)) + " [" + frequencies[e] + "]");
+
+        for( int i = 0; i < n; i++ )
+            if( loopsL1[i] ) System.out.println("DEBUG - edge : " + events.get(code(i)) + " > " + events.get(code(i)) + " [ " + loopsL1Freq[i] + " ]");
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.miners.splitminer.dfgp;
+
+import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.qut.processmining.log.SimpleLogDelta;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A DFGP discovered from a SimpleLog: buildDFGP(), or buildUnfilteredDFGP() once and then
+ * detectParallelisms(epsilon) and filter(eta) on each copyUnfiltered().
+ * Implemented by DirectlyFollowGraphPlus and by its dense version DenseDirectlyFollowGraph.
+ */
+public interface DirectlyFollowGraph {
+
+    SimpleLog getSimpleLog();
+    int getStartcode();
+    int getEndcode();
+    int size();
+    Set<DFGEdge> getEdges();
+    Set<Integer> getLoopsL1();
+    Map<Integer, HashSet<Integer>> getParallelisms();
+    boolean areConcurrent(int A, int B);
+    BPMNDiagram getDFGP(boolean labels);
+
+    void buildDFGP();
+    void buildUnfilteredDFGP();
+    DirectlyFollowGraph copyUnfiltered();
+    void detectParallelisms(double parallelismsThreshold);
+    void filter(double percentileFrequencyThreshold);
+
+    void updateDFGP(SimpleLogDelta delta);
+    void updateDirectlyFollowsGraph(SimpleLogDelta delta);
+}
@@ -22,9 +22,10 @@ package au.edu.qut.processmining.miners.splitminer.dfgp;
 
 import au.edu.qut.processmining.log.ComplexLog;
 import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.qut.processmining.log.SimpleLogDelta;
+import au.edu.qut.processmining.log.VariantStore;
 import au.edu.qut.processmining.miners.splitminer.ui.dfgp.DFGPUIResult;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
@@ -38,7 +39,7 @@ import java.util.*;
 /**
  * Created by Adriano on 24/10/2016.
  */
-public class DirectlyFollowGraphPlus {
+public class DirectlyFollowGraphPlus implements DirectlyFollowGraph {
 
     public enum Gate {SAND, AND, OR, XOR};
 
@@ -53,6 +54,8 @@ public class DirectlyFollowGraphPlus {
     private Map<Integer, HashSet<DFGEdge>> outgoings;
     private Map<Integer, HashSet<DFGEdge>> incomings;
     private Map<Integer, HashMap<Integer, DFGEdge>> dfgp;
+    private List<DFGNode> unfilteredNodes;
+    private List<DFGEdge> unfilteredEdges;
 
     private Set<Integer> loopsL1;
     private Map<Integer, Integer> loopsL1Freq;
@@ -63,6 +66,7 @@ public class DirectlyFollowGraphPlus {
     private Set<DFGEdge> untouchableEdges;
     private Set<DFGEdge> potentialConcurrency;
     private HashMap<Pair<Integer,Integer>, Gate> relations = null;
+    private HashMap<Integer, Matrix> splitMatrices = null;
 
     private double percentileFrequencyThreshold;
     private double parallelismsThreshold;
@@ -91,7 +95,7 @@ public class DirectlyFollowGraphPlus {
         this.endcode = log.getEndcode();
         this.percentileFrequencyThreshold = percentileFrequencyThreshold;
         this.parallelismsThreshold = parallelismsThreshold;
-        this.filterType = percentileFrequencyThreshold == 0 ? DFGPUIResult.FilterType.NOF : filterType;
+        this.filterType = filterType;
 //        this.percentileOnBest = percentileOnBest;
         this.parallelismsFirst = parallelismsFirst;
     }
@@ -236,23 +240,92 @@ public class DirectlyFollowGraphPlus {
         else return false;
     }
 
+    /**
+     * same as buildDFGP(), but the directly-follows graph is updated with the appended traces instead of being built again.
+     */
+    public void updateDFGP(SimpleLogDelta delta) {
+        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + getFilterType().toString());
+        untouchableEdges = null;
+
+        updateDirectlyFollowsGraph(delta);
+        detectLoops();          //depends on updateDirectlyFollowsGraph()
+        if(oracle) detectRelationsOnLog();
+        else detectParallelismsOnDFG();   //depends on detectLoops()
+
+        filter(percentileFrequencyThreshold);
+    }
+
     public void buildDFGP() {
-        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + filterType.toString());
+        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + getFilterType().toString());
         untouchableEdges = null;
 
+        buildUnfilteredDFGP();
+        detectParallelisms(parallelismsThreshold);  //depends on buildUnfilteredDFGP()
+
+//        removeEventSubprocesses();
+        filter(percentileFrequencyThreshold);       //depends on detectParallelisms()
+    }
+
+    /**
+     * first stage of buildDFGP(): the directly-follows graph and its loops, which do not depend on the thresholds.
+     * the result can be copied with copyUnfiltered() as many times as needed, and each copy completed with
+     * detectParallelisms(epsilon) and filter(eta), so that a sweep over the thresholds parses the log only once.
+     */
+    public void buildUnfilteredDFGP() {
         if(log instanceof ComplexLog) {
             buildDFGfromComplexLog();
             detectLoops();          //depends on buildDirectlyFollowsGraph()
-            detectParallelismsFromComplexLog();
+            unfilteredNodes = new ArrayList<>(nodes.values());
+            unfilteredEdges = new ArrayList<>(edges);
         } else {
             buildDirectlyFollowsGraph();
             detectLoops();          //depends on buildDirectlyFollowsGraph()
-            if(oracle) detectRelationsOnLog();
-            else detectParallelismsOnDFG();   //depends on detectLoops()
+//            the copies share the split matrices, so they are computed here once for all
+            if(oracle) splitMatrices = computeSplitMatrices();
         }
+    }
 
-//        removeEventSubprocesses();
-        switch(filterType) {                        //depends on detectParallelisms()
+    /**
+     * @return a new DFGP equal to this one as it was after buildUnfilteredDFGP(), filtering the copy does not affect this DFGP
+     */
+    public DirectlyFollowGraphPlus copyUnfiltered() {
+        DirectlyFollowGraphPlus copy = new DirectlyFollowGraphPlus(log, percentileFrequencyThreshold, parallelismsThreshold, filterType, parallelismsFirst);
+
+        copy.oracle = oracle;
+        copy.unfilteredNodes = unfilteredNodes;
+        copy.unfilteredEdges = unfilteredEdges;
+        copy.loopsL1 = loopsL1;
+        copy.loopsL1Freq = loopsL1Freq;
+        copy.loopsL2 = loopsL2;
+        copy.concurrencyMatrix = concurrencyMatrix;
+        copy.splitMatrices = splitMatrices;
+        copy.restoreUnfilteredDirectlyFollowsGraph();
+
+        return copy;
+    }
+
+    /**
+     * second stage of buildDFGP(), to be executed after buildUnfilteredDFGP() (or on a copyUnfiltered()).
+     */
+    public void detectParallelisms(double parallelismsThreshold) {
+        this.parallelismsThreshold = parallelismsThreshold;
+
+        if(log instanceof ComplexLog) {
+            potentialConcurrency = new HashSet<>();
+            for( DFGEdge e : edges )
+                if( concurrencyMatrix[e.getSourceCode()*log.getEvents().size() + e.getTargetCode()] > parallelismsThreshold ) potentialConcurrency.add(e);
+            detectParallelismsFromComplexLog();
+        } else if(oracle) detectRelationsOnLog();
+        else detectParallelismsOnDFG();   //depends on detectLoops()
+    }
+
+    /**
+     * last stage of buildDFGP(), to be executed after detectParallelisms().
+     */
+    public void filter(double percentileFrequencyThreshold) {
+        this.percentileFrequencyThreshold = percentileFrequencyThreshold;
+
+        switch(getFilterType()) {                        //depends on detectParallelisms()
             case FWG:
                 filterWithGuarantees();
                 break;
@@ -271,32 +344,20 @@ public class DirectlyFollowGraphPlus {
         }
     }
 
+//    a frequency threshold of zero means no filtering
+    private DFGPUIResult.FilterType getFilterType() {
+        return percentileFrequencyThreshold == 0 ? DFGPUIResult.FilterType.NOF : filterType;
+    }
+
     public void buildSafeDFGP() {
-        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + filterType.toString());
+        System.out.println("DFGP - settings (eta, epsilon, filter-type) > " + percentileFrequencyThreshold + " : " + parallelismsThreshold + " : " + getFilterType().toString());
 
         buildDirectlyFollowsGraph();                //first method to execute
         bestEdgesOnMaxCapacitiesForConnectedness(); //this ensure a strongly connected graph (density may be impaired)
         detectLoops();                              //depends on buildDirectlyFollowsGraph()
         detectParallelismsOnDFG();                       //depends on detectLoops()
 
-        switch(filterType) {                        //depends on detectParallelisms()
-            case FWG:
-                filterWithGuarantees();
-                break;
-            case WTH:
-                filterWithThreshold();
-                exploreAndRemove();
-                break;
-            case STD:
-                standardFilter();
-                exploreAndRemove();
-                break;
-            case NOF:
-//                filterWithGuarantees();
-//                exploreAndRemove();
-                break;
-        }
-
+        filter(percentileFrequencyThreshold);       //depends on detectParallelisms()
     }
 
     public void buildDFGfromComplexLog() {
@@ -310,6 +371,7 @@ public class DirectlyFollowGraphPlus {
         dfgp = new HashMap<>();
         potentialConcurrency = new HashSet<>();
         loopsL1 = new HashSet<>();
+        splitMatrices = null;
 
 //        cLog.printConcurrencyMatrix();
 //        cLog.printRelativeConcurrencyMatrix();
@@ -355,51 +417,98 @@ public class DirectlyFollowGraphPlus {
     }
 
     public void buildDirectlyFollowsGraph() {
-        Map<String, Integer> traces = log.getTraces();
         Map<Integer, String> events = log.getEvents();
 
-        StringTokenizer trace;
-        int traceFrequency;
+        nodes = new HashMap<>();
+        edges = new HashSet<>();
+        outgoings = new HashMap<>();
+        incomings = new HashMap<>();
+        dfgp = new HashMap<>();
+        loopsL1 = new HashSet<>();
+        loopsL1Freq = new HashMap<>();
+        splitMatrices = null;
 
-        int event;
-        int prevEvent;
+        this.addNode(new DFGNode(events.get(startcode), startcode));
+        this.addNode(new DFGNode(events.get(endcode), endcode));
 
-        DFGNode node;
-        DFGNode prevNode;
-        DFGEdge edge;
+        addTraces(log.getVariants(), log.size());
+    }
 
-        DFGNode autogenStart;
-        DFGNode autogenEnd;
+    /**
+     * adds to the directly-follows graph the traces appended to the log (see IncrementalLogParser),
+     * the result is the same of buildDirectlyFollowsGraph() on the whole log, but the traces already seen are not parsed again.
+     * the graph is restored as it was before any filtering, so the other steps of buildDFGP() have to be executed again,
+     * updateDFGP(delta) does it.
+     * the nodes, edges and loops are copied before being updated, the copies of this DFGP (see copyUnfiltered()) are not affected.
+     */
+    public void updateDirectlyFollowsGraph(SimpleLogDelta delta) {
+        if( unfilteredNodes == null ) {
+            buildDirectlyFollowsGraph();
+            return;
+        }
+
+        copyUnfilteredDirectlyFollowsGraph();
+        splitMatrices = null;
+        addTraces(delta.getVariants(), delta.size());
+    }
+
+//    as restoreUnfilteredDirectlyFollowsGraph(), with copies of the unfiltered nodes, edges and loops, which may be shared with other DFGPs
+    private void copyUnfilteredDirectlyFollowsGraph() {
+        Map<Integer, DFGNode> copies = new HashMap<>();
+        List<DFGEdge> edgeCopies = new ArrayList<>(unfilteredEdges.size());
+
+        for( DFGNode node : unfilteredNodes ) copies.put(node.getCode(), new DFGNode(node));
+        for( DFGEdge edge : unfilteredEdges )
+            edgeCopies.add(new DFGEdge(edge, copies.get(edge.getSourceCode()), copies.get(edge.getTargetCode())));
+
+        unfilteredNodes = new ArrayList<>(copies.values());
+        unfilteredEdges = edgeCopies;
+        loopsL1 = new HashSet<>(loopsL1);
+        loopsL1Freq = new HashMap<>(loopsL1Freq);
 
+        restoreUnfilteredDirectlyFollowsGraph();
+    }
+
+    private void restoreUnfilteredDirectlyFollowsGraph() {
         nodes = new HashMap<>();
         edges = new HashSet<>();
         outgoings = new HashMap<>();
         incomings = new HashMap<>();
         dfgp = new HashMap<>();
-        loopsL1 = new HashSet<>();
-        loopsL1Freq = new HashMap<>();
 
-        autogenStart = new DFGNode(events.get(startcode), startcode);
-        this.addNode(autogenStart);
+        for( DFGNode node : unfilteredNodes ) this.addNode(node);
+        for( DFGEdge edge : unfilteredEdges ) this.addEdge(edge);
+    }
+
+    private void addTraces(VariantStore traces, int totalTraces) {
+        Map<Integer, String> events = log.getEvents();
+
+        int[] activities = traces.getActivities();
+        int traceFrequency;
+
+        int event;
+        int prevEvent;
+
+        DFGNode node;
+        DFGNode prevNode;
+        DFGEdge edge;
+
+        DFGNode autogenStart = nodes.get(startcode);
+
 //        while parsing the simple log we will always skip the start event,
 //        so we set now the maximum frequency because it is an artificial start event
-        autogenStart.increaseFrequency(log.size());
-
-        autogenEnd = new DFGNode(events.get(endcode), endcode);
-        this.addNode(autogenEnd);
+        autogenStart.increaseFrequency(totalTraces);
 
-        for( String t : traces.keySet() ) {
-            trace = new StringTokenizer(t, "::");
-            traceFrequency = traces.get(t);
+        for( int t = 0; t < traces.size(); t++ ) {
+            traceFrequency = traces.getFrequency(t);
 
-//            consuming the start event that is always 0
-            trace.nextToken();
+//            skipping the start event that is always 0
             prevEvent = startcode;
             prevNode = autogenStart;
 
-            while( trace.hasMoreTokens() ) {
+            for( int i = traces.getStart(t) + 1; i < traces.getEnd(t); i++ ) {
 //                we read the next event of the trace until it is finished
-                event = Integer.valueOf(trace.nextToken());
+                event = activities[i];
 
                 if(prevEvent == event) {
                     if(loopsL1.contains(event)) loopsL1Freq.put(event, (loopsL1Freq.get(event)+1));
@@ -430,19 +539,21 @@ public class DirectlyFollowGraphPlus {
                 prevNode = node;
             }
         }
+
+//        the filters remove nodes and edges, we keep them to be able to add more traces later on
+        unfilteredNodes = new ArrayList<>(nodes.values());
+        unfilteredEdges = new ArrayList<>(edges);
     }
 
     public void detectLoops() {
-        Map<String, Integer> traces = log.getTraces();
+        VariantStore traces = log.getVariants();
+        int[] activities = traces.getActivities();
         HashSet<DFGEdge> removableLoopEdges = new HashSet();
 
         DFGEdge e2;
         int src;
         int tgt;
 
-        String src2tgt_loop2Pattern;
-        String tgt2src_loop2Pattern;
-
         int src2tgt_loop2Frequency;
         int tgt2src_loop2Frequency;
 
@@ -459,15 +570,16 @@ public class DirectlyFollowGraphPlus {
             if( !loopsL2.contains(e1) && dfgp.get(tgt).containsKey(src) && !loopsL1.contains(src) && !loopsL1.contains(tgt) ) {
                 e2 = dfgp.get(tgt).get(src);
 
-                src2tgt_loop2Pattern = "::" + src + "::" + tgt + "::" + src + "::";
-                tgt2src_loop2Pattern = "::" + tgt + "::" + src + "::" + tgt + "::";
                 src2tgt_loop2Frequency = 0;
                 tgt2src_loop2Frequency = 0;
 
-                for( String trace : traces.keySet() ) {
-                    src2tgt_loop2Frequency += (StringUtils.countMatches(trace, src2tgt_loop2Pattern)*traces.get(trace));
-                    tgt2src_loop2Frequency += (StringUtils.countMatches(trace, tgt2src_loop2Pattern)*traces.get(trace));
-                }
+//                we look for the patterns [src :: tgt :: src] and [tgt :: src :: tgt]
+                for( int trace = 0; trace < traces.size(); trace++ )
+                    for( int i = traces.getStart(trace); i < traces.getEnd(trace) - 2; i++ )
+                        if( activities[i] == activities[i+2] ) {
+                            if( activities[i] == src && activities[i+1] == tgt ) src2tgt_loop2Frequency += traces.getFrequency(trace);
+                            else if( activities[i] == tgt && activities[i+1] == src ) tgt2src_loop2Frequency += traces.getFrequency(trace);
+                        }
 
                 loop2score = src2tgt_loop2Frequency + tgt2src_loop2Frequency;
 
@@ -566,6 +678,15 @@ public class DirectlyFollowGraphPlus {
     }
 
     private void generateBitmatrixSplits() {
+        if( splitMatrices == null ) splitMatrices = computeSplitMatrices();
+
+//        the matrices are pruned according to the parallelisms threshold, so each DFGP prunes its own copy
+        for( int sti : splitMatrices.keySet() )
+            generateSplitsHierarchyFromObservationMatrix(sti, splitMatrices.get(sti).copy());
+    }
+
+//    the observation matrices of the split tasks, they depend only on the log and on the unfiltered directly-follows graph
+    private HashMap<Integer, Matrix> computeSplitMatrices() {
 //      METHOD-DEPENDENT DATA STRUCTURES
 
 //        for each split task, we have a matrix of bits, each column being a combination of successors tasks that are executed
@@ -589,7 +710,7 @@ public class DirectlyFollowGraphPlus {
         HashMap<Integer, Integer> distances = new HashMap<>();
 
 
-        StringTokenizer trace;
+        int[] activities;
         int traceFrequency;
         int event;
 //        int MAXD = 5;
@@ -597,7 +718,8 @@ public class DirectlyFollowGraphPlus {
         int skipcounter = 0;
         int i;
 
-        Map<String, Integer> traces = log.getTraces();
+        VariantStore traces = log.getVariants();
+        activities = traces.getActivities();
 
         int size;
         int SID; // tmp successors ID
@@ -618,16 +740,14 @@ public class DirectlyFollowGraphPlus {
             }
 
 
-        for( String t : traces.keySet() ) {
-            trace = new StringTokenizer(t, "::");
-            traceFrequency = traces.get(t);
+        for( int t = 0; t < traces.size(); t++ ) {
+            traceFrequency = traces.getFrequency(t);
             splitTasksInTrace.clear();
 
-//            consuming the start event that is always 0
+//            skipping the start event that is always 0
 //            we assume that the start event is not a successor of any split or a split itself
-            trace.nextToken();
-            while( trace.hasMoreTokens() ) {
-                event = Integer.valueOf(trace.nextToken());
+            for( int e = traces.getStart(t) + 1; e < traces.getEnd(t); e++ ) {
+                event = activities[e];
                 if (splitMaps.containsKey(event)) {
                     distances.put(event, 0); // not sure we need this, for the moment we keep it
                     if (!splitTasksInTrace.containsKey(event)) splitTasksInTrace.put(event, new BitSet());
@@ -651,10 +771,8 @@ public class DirectlyFollowGraphPlus {
             for( int sti : splitTasksInTrace.keySet() ) splitMaps.get(sti).addBitset(splitTasksInTrace.get(sti), traceFrequency);
         }
 
-        for( int sti : splitMaps.keySet() )
-            generateSplitsHierarchyFromObservationMatrix(sti, splitMaps.get(sti));
-
         System.out.println("DEBUG - skipcounter = " + skipcounter);
+        return splitMaps;
     }
 
     private void generateSplitsHierarchyFromObservationMatrix(int split, Matrix matrix) {
@@ -923,7 +1041,7 @@ public class DirectlyFollowGraphPlus {
 
     public void removeEventSubprocesses() {
         int maxP = (int) (nodes.size() * 0.30);
-        HashSet<Integer> eventSubprocesses = new HashSet<>();
+        TreeSet<Integer> eventSubprocesses = new TreeSet<>();
 
         System.out.println("DEBUG - max parallelisms allowed: " + maxP );
         for(int n : nodes.keySet())
@@ -943,7 +1061,7 @@ public class DirectlyFollowGraphPlus {
         bestEdgesOnMaxFrequencies();
         ArrayList<DFGEdge> frequencyOrderedBestEdges = new ArrayList<>(bestEdges);
 
-        for( DFGEdge e : new HashSet<>(edges) ) this.removeEdge(e, false);
+        for( DFGEdge e : new TreeSet<>(edges) ) this.removeEdge(e, false);
 
         Collections.sort(frequencyOrderedBestEdges);
         for( int i = (frequencyOrderedBestEdges.size()-1); i >= 0; i-- ) {
@@ -975,10 +1093,10 @@ public class DirectlyFollowGraphPlus {
         bestEdgesOnMaxFrequencies();
         computeFilterThreshold();
 
-        ArrayList<DFGEdge> orderedMostFrequentEdges = new ArrayList<>(bestEdges);
+        ArrayList<DFGEdge> orderedMostFrequentEdges = new ArrayList<>(new TreeSet<>(bestEdges));
 
         for( DFGEdge e : orderedMostFrequentEdges ) this.removeEdge(e, false);
-        for( DFGEdge e : new HashSet<>(edges) ) {
+        for( DFGEdge e : new TreeSet<>(edges) ) {
             if( e.getFrequency() > filterThreshold) orderedMostFrequentEdges.add(e);
             this.removeEdge(e, false);
         }
@@ -1015,93 +1133,71 @@ public class DirectlyFollowGraphPlus {
         computeFilterThreshold();
 
         bestEdgesOnMaxCapacities();
-        for( DFGEdge e : new HashSet<>(edges) )
+        for( DFGEdge e : new TreeSet<>(edges) )
             if( !bestEdges.contains(e) && !(e.getFrequency() >= filterThreshold) ) removeEdge(e, false);
     }
 
     private void bestEdgesOnMaxCapacities() {
-        int src, tgt, cap, maxCap;
-        boolean tiebreak;
-        boolean useTiebreaker = false;
-        DFGEdge bp, bs;
-
-        LinkedList<Integer> toVisit = new LinkedList<>();
-        Set<Integer> unvisited = new HashSet<>();
-
-        HashMap<Integer, DFGEdge> bestPredecessorFromSource = new HashMap<>();
-        HashMap<Integer, DFGEdge> bestSuccessorToSink = new HashMap<>();
-
-        Map<Integer, Integer> maxCapacitiesFromSource = new HashMap<>();
-        Map<Integer, Integer> maxCapacitiesToSink = new HashMap<>();
+        bestEdges = edgesOnMaxCapacities();
+    }
 
-        for( int n : nodes.keySet() ) {
-            maxCapacitiesFromSource.put(n, 0);
-            maxCapacitiesToSink.put(n, 0);
-        }
+    /**
+     * the edges on the paths of maximum capacity from the start to each node and from each node to the end,
+     * the capacity of a path being the frequency of its least frequent edge (see WidestPaths).
+     */
+    private Set<DFGEdge> edgesOnMaxCapacities() {
+        Set<DFGEdge> maxCapacitiesEdges = new HashSet<>();
+        ArrayList<Integer> codes = new ArrayList<>(nodes.keySet());
+        HashMap<Integer, Integer> indexes = new HashMap<>();
+        int totalNodes = codes.size();
+        int[] maxCapacities = new int[totalNodes];
+        int[] offsets = new int[totalNodes+1];
+        int[] heads = new int[edges.size()];
+        int[] capacities = new int[edges.size()];
+        DFGEdge[] csrEdges = new DFGEdge[edges.size()];
+        int[] bestPredecessorFromSource;
+        int[] bestSuccessorToSink;
+        int i;
 
-        maxCapacitiesFromSource.put(startcode, Integer.MAX_VALUE);
-        maxCapacitiesToSink.put(endcode, Integer.MAX_VALUE);
+//        nodes are indexed by code, the end last, as in DenseDirectlyFollowGraph
+        Collections.sort(codes);
+        codes.remove((Integer) endcode);
+        codes.add(endcode);
+        for( int n = 0; n < totalNodes; n++ ) indexes.put(codes.get(n), n);
 
 //      forward exploration
-        toVisit.add(startcode);
-        unvisited.addAll(nodes.keySet());
-        unvisited.remove(startcode);
-
-        while( !toVisit.isEmpty() ) {
-            src = toVisit.removeFirst();
-            cap = maxCapacitiesFromSource.get(src);
-            for( DFGEdge oe : outgoings.get(src) ) {
-                tgt = oe.getTargetCode();
-                maxCap = (cap > oe.getFrequency() ? oe.getFrequency() : cap);
-                tiebreak = (maxCap == maxCapacitiesFromSource.get(tgt)) && bestPredecessorFromSource.get(tgt).isLoop() && useTiebreaker;
-                if( (maxCap > maxCapacitiesFromSource.get(tgt)) || tiebreak ) {
-                    maxCapacitiesFromSource.put(tgt, maxCap);
-                    bestPredecessorFromSource.put(tgt, oe);
-                    if( !toVisit.contains(tgt) ) unvisited.add(tgt);
-                }
-                if( unvisited.contains(tgt) ) {
-                    toVisit.addLast(tgt);
-                    unvisited.remove(tgt);
-                }
+        i = 0;
+        for( int n = 0; n < totalNodes; n++ ) {
+            offsets[n] = i;
+            for( DFGEdge oe : outgoings.get(codes.get(n)) ) {
+                if( !indexes.containsKey(oe.getTargetCode()) ) continue;
+                heads[i] = indexes.get(oe.getTargetCode());
+                capacities[i] = oe.getFrequency();
+                csrEdges[i++] = oe;
             }
         }
-
+        offsets[totalNodes] = i;
+        bestPredecessorFromSource = WidestPaths.compute(indexes.get(startcode), offsets, heads, capacities, maxCapacities);
+        for( int n = 0; n < totalNodes; n++ )
+            if( bestPredecessorFromSource[n] != -1 ) maxCapacitiesEdges.add(csrEdges[bestPredecessorFromSource[n]]);
 
 //      backward exploration
-        toVisit.add(endcode);
-        unvisited.clear();
-        unvisited.addAll(nodes.keySet());
-        unvisited.remove(endcode);
-
-        while( !toVisit.isEmpty() ) {
-            tgt = toVisit.removeFirst();
-            cap = maxCapacitiesToSink.get(tgt);
-            for( DFGEdge ie : incomings.get(tgt) ) {
-                src = ie.getSourceCode();
-                maxCap = (cap > ie.getFrequency() ? ie.getFrequency() : cap);
-                tiebreak = (maxCap == maxCapacitiesToSink.get(src)) && bestSuccessorToSink.get(src).isLoop() && useTiebreaker;
-                if( (maxCap > maxCapacitiesToSink.get(src)) || tiebreak ) {
-                    maxCapacitiesToSink.put(src, maxCap);
-                    bestSuccessorToSink.put(src, ie);
-                    if( !toVisit.contains(src) ) unvisited.add(src);
-                }
-                if( unvisited.contains(src) ) {
-                    toVisit.addLast(src);
-                    unvisited.remove(src);
-                }
+        i = 0;
+        for( int n = 0; n < totalNodes; n++ ) {
+            offsets[n] = i;
+            for( DFGEdge ie : incomings.get(codes.get(n)) ) {
+                if( !indexes.containsKey(ie.getSourceCode()) ) continue;
+                heads[i] = indexes.get(ie.getSourceCode());
+                capacities[i] = ie.getFrequency();
+                csrEdges[i++] = ie;
             }
         }
+        offsets[totalNodes] = i;
+        bestSuccessorToSink = WidestPaths.compute(indexes.get(endcode), offsets, heads, capacities, maxCapacities);
+        for( int n = 0; n < totalNodes; n++ )
+            if( bestSuccessorToSink[n] != -1 ) maxCapacitiesEdges.add(csrEdges[bestSuccessorToSink[n]]);
 
-        bestEdges = new HashSet<>();
-        for( int n : nodes.keySet() ) {
-            bestEdges.add(bestPredecessorFromSource.get(n));
-            bestEdges.add(bestSuccessorToSink.get(n));
-        }
-        bestEdges.remove(null);
-
-//        for( int n : nodes.keySet() ) {
-//            System.out.println("DEBUG - " + n + " : [" + maxCapacitiesFromSource.get(n) + "][" + maxCapacitiesToSink.get(n) + "]");
-//        }
+        return maxCapacitiesEdges;
     }
 
     private void exploreAndRemove() {
@@ -1126,7 +1222,7 @@ public class DirectlyFollowGraphPlus {
             }
         }
 
-        for(int n : unvisited) {
+        for(int n : new TreeSet<>(unvisited)) {
             System.out.println("DEBUG - fwd removed: " + nodes.get(n).print());
             removeNode(n);
         }
@@ -1148,7 +1244,7 @@ public class DirectlyFollowGraphPlus {
             }
         }
 
-        for(int n : unvisited) {
+        for(int n : new TreeSet<>(unvisited)) {
             System.out.println("DEBUG - bkw removed: " + nodes.get(n).print());
             removeNode(n);
         }
@@ -1166,7 +1262,7 @@ public class DirectlyFollowGraphPlus {
     }
 
     private void removeNode(int code) {
-        HashSet<DFGEdge> removable = new HashSet<>();
+        TreeSet<DFGEdge> removable = new TreeSet<>();
         nodes.remove(code);
         for( DFGEdge e : incomings.get(code) ) removable.add(e);
         for( DFGEdge e : outgoings.get(code) ) removable.add(e);
@@ -1292,84 +1388,7 @@ public class DirectlyFollowGraphPlus {
 
 // this method is exactly the same of bestEdgesOnMaxCapacities
     private void bestEdgesOnMaxCapacitiesForConnectedness() {
-        int src, tgt, cap, maxCap;
-        DFGEdge bp, bs;
-
-        LinkedList<Integer> toVisit = new LinkedList<>();
-        Set<Integer> unvisited = new HashSet<>();
-
-        HashMap<Integer, DFGEdge> bestPredecessorFromSource = new HashMap<>();
-        HashMap<Integer, DFGEdge> bestSuccessorToSink = new HashMap<>();
-
-        Map<Integer, Integer> maxCapacitiesFromSource = new HashMap<>();
-        Map<Integer, Integer> maxCapacitiesToSink = new HashMap<>();
-
-        for( int n : nodes.keySet() ) {
-            maxCapacitiesFromSource.put(n, 0);
-            maxCapacitiesToSink.put(n, 0);
-        }
-
-        maxCapacitiesFromSource.put(startcode, Integer.MAX_VALUE);
-        maxCapacitiesToSink.put(endcode, Integer.MAX_VALUE);
-
-//      forward exploration
-        toVisit.add(startcode);
-        unvisited.addAll(nodes.keySet());
-        unvisited.remove(startcode);
-
-        while( !toVisit.isEmpty() ) {
-            src = toVisit.removeFirst();
-            cap = maxCapacitiesFromSource.get(src);
-            for( DFGEdge oe : outgoings.get(src) ) {
-                tgt = oe.getTargetCode();
-                maxCap = (cap > oe.getFrequency() ? oe.getFrequency() : cap);
-                if( (maxCap > maxCapacitiesFromSource.get(tgt)) ) { //|| ((maxCap == maxCapacitiesFromSource.get(tgt)) && (bestPredecessorFromSource.get(tgt).getFrequency() < oe.getFrequency())) ) {
-                    maxCapacitiesFromSource.put(tgt, maxCap);
-                    bestPredecessorFromSource.put(tgt, oe);
-                    if( !toVisit.contains(tgt) ) unvisited.add(tgt);
-                }
-                if( unvisited.contains(tgt) ) {
-                    toVisit.addLast(tgt);
-                    unvisited.remove(tgt);
-                }
-            }
-        }
-
-
-//      backward exploration
-        toVisit.add(endcode);
-        unvisited.clear();
-        unvisited.addAll(nodes.keySet());
-        unvisited.remove(endcode);
-
-        while( !toVisit.isEmpty() ) {
-            tgt = toVisit.removeFirst();
-            cap = maxCapacitiesToSink.get(tgt);
-            for( DFGEdge ie : incomings.get(tgt) ) {
-                src = ie.getSourceCode();
-                maxCap = (cap > ie.getFrequency() ? ie.getFrequency() : cap);
-                if( (maxCap > maxCapacitiesToSink.get(src)) ) { //|| ((maxCap == maxCapacitiesToSink.get(src)) && (bestSuccessorToSink.get(src).getFrequency() < ie.getFrequency())) ) {
-                    maxCapacitiesToSink.put(src, maxCap);
-                    bestSuccessorToSink.put(src, ie);
-                    if( !toVisit.contains(src) ) unvisited.add(src);
-                }
-                if( unvisited.contains(src) ) {
-                    toVisit.addLast(src);
-                    unvisited.remove(src);
-                }
-            }
-        }
-
-        untouchableEdges = new HashSet<>();
-        for( int n : nodes.keySet() ) {
-            untouchableEdges.add(bestPredecessorFromSource.get(n));
-            untouchableEdges.add(bestSuccessorToSink.get(n));
-        }
-        untouchableEdges.remove(null);
-
-//        for( int n : nodes.keySet() ) {
-//            System.out.println("DEBUG - " + n + " : [" + maxCapacitiesFromSource.get(n) + "][" + maxCapacitiesToSink.get(n) + "]");
-//        }
+        untouchableEdges = edgesOnMaxCapacities();
     }
 
     private boolean isConnected() {
@@ -1460,6 +1479,15 @@ class Matrix {
         for(BitSet bs : lowFrequency) matrix.remove(bs);
     }
 
+    Matrix copy() {
+        Matrix copy = new Matrix(successors.length);
+        copy.successors = successors.clone();
+        copy.is = is;
+        copy.matrix = new HashMap<>(matrix);
+        copy.totalFrequency = totalFrequency;
+        return copy;
+    }
+
     int[] getSuccessors() { return successors; }
     int totalSuccessors() { return is; }
     int rows() { return matrix.keySet().size(); }
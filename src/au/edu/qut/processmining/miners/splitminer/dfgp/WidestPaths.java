@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2009-2018 The Apromore Initiative.
+ *
+ * This file is part of "Apromore".
+ *
+ * "Apromore" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * "Apromore" is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program.
+ * If not, see <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ */
+
+package au.edu.qut.processmining.miners.splitminer.dfgp;
+
+import java.util.Arrays;
+
+/**
+ * Bottleneck (widest-path) Dijkstra: the capacity of a path is the capacity of its least frequent edge,
+ * and for each node we look for the path of maximum capacity from the root.
+ * The graph is given in CSR form: the edges leaving the node v are the positions offsets[v] .. offsets[v+1]-1
+ * of the arrays heads (the node reached by the edge) and capacities.
+ * Nodes are settled by decreasing capacity, ties by increasing index, so the result never depends on the order
+ * of the edges, and a node keeps the first edge giving it its maximum capacity (as the old breadth-first search did).
+ */
+public class WidestPaths {
+
+    /**
+     * @param maxCapacities filled with the maximum capacity from the root of each node (0 if not reachable)
+     * @return for each node, the position of the last edge of its widest path, -1 for the root and the nodes not reachable
+     */
+    public static int[] compute(int root, int[] offsets, int[] heads, int[] capacities, int[] maxCapacities) {
+        int n = offsets.length - 1;
+        int[] bestEdges = new int[n];
+        boolean[] settled = new boolean[n];
+        long[] queue = new long[heads.length + 1];
+        int size = 0;
+        long top;
+        int node, next, cap, maxCap;
+
+        Arrays.fill(bestEdges, -1);
+        Arrays.fill(maxCapacities, 0);
+        maxCapacities[root] = Integer.MAX_VALUE;
+        queue[size++] = entry(Integer.MAX_VALUE, root);
+
+        while( size != 0 ) {
+            top = queue[0];
+            queue[0] = queue[--size];
+            siftDown(queue, size);
+
+            node = (int) (Integer.MAX_VALUE - (top & 0xFFFFFFFFL));
+            if( settled[node] ) continue;
+            settled[node] = true;
+            cap = maxCapacities[node];
+
+            for( int e = offsets[node]; e < offsets[node+1]; e++ ) {
+                next = heads[e];
+                if( settled[next] ) continue;
+                maxCap = cap > capacities[e] ? capacities[e] : cap;
+                if( maxCap > maxCapacities[next] ) {
+                    maxCapacities[next] = maxCap;
+                    bestEdges[next] = e;
+                    queue[size] = entry(maxCap, next);
+                    siftUp(queue, size++);
+                }
+            }
+        }
+
+        return bestEdges;
+    }
+
+//    the queue is a max-heap: higher capacity first, then lower index first
+    private static long entry(int capacity, int node) {
+        return ((long) capacity << 32) | (Integer.MAX_VALUE - node);
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long x = heap[i];
+        int parent;
+        while( i > 0 && heap[parent = (i-1) >>> 1] < x ) {
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = x;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        if( size == 0 ) return;
+        long x = heap[0];
+        int i = 0, child;
+        while( (child = 2*i + 1) < size ) {
+            if( child + 1 < size && heap[child+1] > heap[child] ) child++;
+            if( heap[child] <= x ) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = x;
+    }
+}
@@ -1,5 +1,6 @@
 package au.edu.unimelb.processmining.accuracy;
 
+import au.edu.qut.processmining.log.LogCache;
 import au.edu.qut.processmining.log.LogParser;
 import au.edu.qut.processmining.log.SimpleLog;
 import au.edu.unimelb.processmining.accuracy.abstraction.Abstraction;
@@ -9,14 +10,12 @@ import au.edu.unimelb.processmining.accuracy.abstraction.LogAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.markovian.MarkovAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
 import com.raffaeleconforti.context.FakePluginContext;
-import com.raffaeleconforti.log.util.LogImporter;
 import de.drscc.automaton.Automaton;
 import de.drscc.importer.ImportProcessModel;
 
 import au.edu.unimelb.processmining.accuracy.abstraction.ProcessAbstraction;
 
 import org.deckfour.xes.classification.XEventNameClassifier;
-import org.deckfour.xes.factory.XFactoryNaiveImpl;
 import org.deckfour.xes.model.XLog;
 import org.processmining.models.graphbased.directed.petrinet.Petrinet;
 import org.processmining.models.graphbased.directed.transitionsystem.TransitionSystem;
@@ -188,14 +187,13 @@ public class MarkovianAccuracyCalculator {
     }
 
     private boolean importLogFromFile(String lopP, Abs type) {
-        XLog xlog;
         System.out.println("INFO - input log: " + lopP);
 
         logLoadingTime = System.currentTimeMillis();
         try{
             if(!lopP.endsWith(".txt")) {
-                xlog = LogImporter.importFromFile(new XFactoryNaiveImpl(), lopP);
-                log = LogParser.getSimpleLog(xlog, new XEventNameClassifier());
+                log = LogCache.getSimpleLog(lopP, new XEventNameClassifier());
+                if(log == null) return false;
             } else log = LogParser.getSimpleLog(lopP);
 
             logLoadingTime = System.currentTimeMillis() - logLoadingTime;
@@ -1,6 +1,7 @@
 package au.edu.unimelb.processmining.accuracy.abstraction;
 
 import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.qut.processmining.log.VariantStore;
 import au.edu.unimelb.processmining.accuracy.abstraction.markovian.MarkovLabel;
 import au.edu.unimelb.processmining.accuracy.abstraction.markovian.MarkovAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.mkAutomaton.MarkovianAutomatonAbstraction;
@@ -9,8 +10,6 @@ import au.edu.unimelb.processmining.accuracy.abstraction.set.SetLabel;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.Subtrace;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
 
-import java.util.Map;
-import java.util.StringTokenizer;
 
 import static au.edu.unimelb.processmining.accuracy.abstraction.subtrace.Subtrace.INIT;
 
@@ -21,30 +20,30 @@ public class LogAbstraction {
 
     public static MarkovAbstraction markovian(SimpleLog log, int order) {
         MarkovAbstraction abstraction = new MarkovAbstraction();
-        Map<String, Integer> traces = log.getTraces();
+        VariantStore traces = log.getVariants();
+        int[] activities = traces.getActivities();
 
-        StringTokenizer trace;
         int traceFrequency;
+        int i;
 
         int event;
         MarkovLabel label;
         String src;
         String tgt;
 
-        for (String t : traces.keySet()) {
-            trace = new StringTokenizer(t, "::");
-            traceFrequency = traces.get(t);
-//            System.out.println("DEBUG - (" + traceFrequency + ")trace: " + t);
+        for (int t = 0; t < traces.size(); t++) {
+            traceFrequency = traces.getFrequency(t);
+//            System.out.println("DEBUG - (" + traceFrequency + ")trace: " + traces.print(t));
 
-//            consuming the start event (artificial, always 0)
-            trace.nextToken();
+//            skipping the start event (artificial, always 0)
+            i = traces.getStart(t) + 1;
             label = new MarkovLabel(order);
 
 //            we read the next event of the trace until it is finished
 //            we do no parse the final artificial event (that is -1)
             src = label.print();
             abstraction.addNode(src, traceFrequency);
-            while (trace.hasMoreTokens() && ((event = Integer.valueOf(trace.nextToken())) != -1)) {
+            while (i < traces.getEnd(t) && ((event = activities[i++]) != -1)) {
                 label.add(event);
                 tgt = label.print();
 //                System.out.println("DEBUG - from " + src);
@@ -59,28 +58,28 @@ public class LogAbstraction {
 
     public static SetAbstraction set(SimpleLog log) {
         SetAbstraction abstraction = new SetAbstraction();
-        Map<String, Integer> traces = log.getTraces();
+        VariantStore traces = log.getVariants();
+        int[] activities = traces.getActivities();
 
-        StringTokenizer trace;
         int traceFrequency;
+        int i;
 
         int event;
         SetLabel label;
         String src;
         String tgt;
 
-        for (String t : traces.keySet()) {
-//            System.out.println("DEBUG - trace: " + t);
-            trace = new StringTokenizer(t, "::");
-            traceFrequency = traces.get(t);
+        for (int t = 0; t < traces.size(); t++) {
+//            System.out.println("DEBUG - trace: " + traces.print(t));
+            traceFrequency = traces.getFrequency(t);
 
-//            consuming the start event (artificial, always 0)
-            trace.nextToken();
+//            skipping the start event (artificial, always 0)
+            i = traces.getStart(t) + 1;
             label = new SetLabel(log.getReverseMap().size() + 1);
 
 //            we read the next event of the trace until it is finished
 //            we do no parse the final artificial event (that is -1)
-            while (trace.hasMoreTokens() && ((event = Integer.valueOf(trace.nextToken())) != -1)) {
+            while (i < traces.getEnd(t) && ((event = activities[i++]) != -1)) {
 //                the first node of the abstraction is the empty set
                 src = label.print();
                 abstraction.addNode(src, traceFrequency);
@@ -97,27 +96,27 @@ public class LogAbstraction {
 
     public static SubtraceAbstraction subtrace(SimpleLog log, int order) {
         SubtraceAbstraction abstraction = new SubtraceAbstraction(order);
-        Map<String, Integer> traces = log.getTraces();
+        VariantStore traces = log.getVariants();
+        int[] activities = traces.getActivities();
 
-        StringTokenizer trace;
         int traceFrequency;
+        int i;
 
         int event;
         Subtrace subtrace;
 
-        for (String t : traces.keySet()) {
-            trace = new StringTokenizer(t, "::");
-            traceFrequency = traces.get(t);
-//            System.out.println("DEBUG - (" + traceFrequency + ")trace: " + t);
+        for (int t = 0; t < traces.size(); t++) {
+            traceFrequency = traces.getFrequency(t);
+//            System.out.println("DEBUG - (" + traceFrequency + ")trace: " + traces.print(t));
 
-//            consuming the start event (artificial, always 0)
-            trace.nextToken();
+//            skipping the start event (artificial, always 0)
+            i = traces.getStart(t) + 1;
             subtrace = new Subtrace(order);
 
 //            we read the next event of the trace until it is finished
 //            we do no parse the final artificial event (that is -1)
 
-            while (trace.hasMoreTokens() && ((event = Integer.valueOf(trace.nextToken())) != -1)) {
+            while (i < traces.getEnd(t) && ((event = activities[i++]) != -1)) {
                 subtrace.add(event);
                 abstraction.addSubtrace(new Subtrace(subtrace), traceFrequency);
             }
@@ -132,20 +131,20 @@ public class LogAbstraction {
 
     public static SubtraceAbstraction subtraceTree(SimpleLog log, int order) {
         SubtraceAbstraction abstraction = new SubtraceAbstraction(order);
-        Map<String, Integer> traces = log.getTraces();
+        VariantStore traces = log.getVariants();
+        int[] activities = traces.getActivities();
 
-        StringTokenizer trace;
         int traceFrequency;
+        int i;
 
         int event;
         Subtrace subtrace;
 
-        for (String t : traces.keySet()) {
-            trace = new StringTokenizer(t, "::");
-            traceFrequency = traces.get(t);
+        for (int t = 0; t < traces.size(); t++) {
+            traceFrequency = traces.getFrequency(t);
 
-            // Consuming the start event (always 0)
-            trace.nextToken();
+            // Skipping the start event (always 0)
+            i = traces.getStart(t) + 1;
             subtrace = new Subtrace(order);
 
             // Add artificial marker right after START
@@ -153,7 +152,7 @@ public class LogAbstraction {
             abstraction.addSubtrace(new Subtrace(subtrace), traceFrequency);
 
             // Read trace events until the final artificial event (-1)
-            while (trace.hasMoreTokens() && ((event = Integer.valueOf(trace.nextToken())) != -1)) {
+            while (i < traces.getEnd(t) && ((event = activities[i++]) != -1)) {
                 subtrace.add(event);
                 abstraction.addSubtrace(new Subtrace(subtrace), traceFrequency);
             }
@@ -0,0 +1,159 @@
+package au.edu.unimelb.processmining.accuracy.abstraction.intermediate;
+
+import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.Subtrace;
+import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
+
+import java.util.*;
+
+import static au.edu.unimelb.processmining.accuracy.abstraction.intermediate.AutomatonAbstraction.TAU;
+
+/**
+ * The directly-follows graph of the activities of an automaton whose behaviour is local: all the transitions of an
+ * activity lead to the same state, so what can follow an activity does not depend on what came before it
+ * (e.g. the automaton of a BPMN model with only exclusive gateways).
+ * The traces of such an automaton are the walks of its graph from a first activity, and its subtraces of order k
+ * (as computed by ProcessAbstraction.subtrace()) are the windows of k activities of the walks from a first activity,
+ * and the walks shorter than k from a first activity to a last one (after which the automaton can stop).
+ *
+ * When the graphs of two automata have the same first, last and reachable activities, they differ only by their
+ * directly-follows pairs, and the subtraces of one are computed from the ones of the other (see update()):
+ * the windows containing the removed pairs are dropped, and only the windows through the added pairs are walked.
+ */
+public class ActivityGraph {
+
+    private Set<Integer> first;
+    private Set<Integer> last;
+    private Set<Integer> reachable;
+    private boolean empty;          // the automaton can stop before any activity
+    private Map<Integer, Set<Integer>> successors;
+    private Map<Integer, Set<Integer>> predecessors;
+
+    private ActivityGraph() {
+        first = new HashSet<>();
+        last = new HashSet<>();
+        reachable = new HashSet<>();
+        successors = new HashMap<>();
+        predecessors = new HashMap<>();
+    }
+
+    /**
+     * @return the graph of the activities of the automaton, or null if its behaviour is not local,
+     * or if it has activities that are not in the log (their ids depend on the automaton, see AutomatonAbstraction)
+     */
+    public static ActivityGraph of(AutomatonAbstraction automaton) {
+        Map<Integer, AANode> targets = new HashMap<>();
+        ActivityGraph graph = new ActivityGraph();
+        LinkedList<Integer> toVisit;
+        AANode target;
+        int eid;
+
+        for( AAEdge edge : automaton.getEdges() ) {
+            if( (eid = edge.getEID()) == TAU ) continue;
+            if( eid < -1 || eid == Subtrace.INIT ) return null;
+            if( (target = targets.put(eid, edge.getTGT())) != null && !target.equals(edge.getTGT()) ) return null;
+        }
+
+        graph.empty = next(automaton, automaton.getSource(), graph.first);
+        for( Map.Entry<Integer, AANode> entry : targets.entrySet() ) {
+            graph.successors.put(entry.getKey(), new HashSet<Integer>());
+            if( next(automaton, entry.getValue(), graph.successors.get(entry.getKey())) ) graph.last.add(entry.getKey());
+            for( int next : graph.successors.get(entry.getKey()) ) {
+                if( !graph.predecessors.containsKey(next) ) graph.predecessors.put(next, new HashSet<Integer>());
+                graph.predecessors.get(next).add(entry.getKey());
+            }
+        }
+
+        toVisit = new LinkedList<>(graph.first);
+        graph.reachable.addAll(graph.first);
+        while( !toVisit.isEmpty() )
+            for( int next : graph.successors.get(toVisit.removeFirst()) )
+                if( graph.reachable.add(next) ) toVisit.addLast(next);
+
+        return graph;
+    }
+
+//    the activities of the transitions leaving the node, or the nodes reached through tau transitions
+//    @return true if the automaton can stop at the node, or at one of the nodes reached through tau transitions
+    private static boolean next(AutomatonAbstraction automaton, AANode node, Set<Integer> activities) {
+        Map<Integer, Set<AAEdge>> outgoings = automaton.getOutgoings();
+        LinkedList<AANode> toVisit = new LinkedList<>();
+        Set<AANode> visited = new HashSet<>();
+        boolean stops = false;
+
+        toVisit.add(node);
+        visited.add(node);
+        while( !toVisit.isEmpty() ) {
+            node = toVisit.removeFirst();
+            if( outgoings.get(node.getID()).isEmpty() ) stops = true;
+            for( AAEdge edge : outgoings.get(node.getID()) )
+                if( edge.getEID() != TAU ) activities.add(edge.getEID());
+                else if( visited.add(edge.getTGT()) ) toVisit.addLast(edge.getTGT());
+        }
+
+        return stops;
+    }
+
+    /**
+     * @param abstraction the subtraces of order k of the automaton of the given graph
+     * @param graph the graph of another automaton (e.g. of the model this one is a neighbour of)
+     * @return the subtraces of order k of the automaton of this graph,
+     * or null if the two graphs do not have the same first, last and reachable activities
+     */
+    public SubtraceAbstraction update(SubtraceAbstraction abstraction, ActivityGraph graph, int order) {
+        List<String> removed = new ArrayList<>();
+        List<Subtrace> added = new ArrayList<>();
+
+        if( empty != graph.empty || !first.equals(graph.first) || !last.equals(graph.last) || !reachable.equals(graph.reachable) ) return null;
+
+        for( int activity : graph.reachable )
+            for( int next : graph.successors.get(activity) )
+                if( !successors.get(activity).contains(next) ) removed.add(":" + activity + ":" + next + ":");
+
+        for( int activity : reachable )
+            for( int next : successors.get(activity) )
+                if( !graph.successors.get(activity).contains(next) ) walkThrough(activity, next, order, added);
+
+        return abstraction.update(removed, added);
+    }
+
+//    the windows of k activities containing the pair (activity, next) and starting from a reachable activity,
+//    and the walks shorter than k containing it from a first activity to a last one
+    private void walkThrough(int activity, int next, int order, List<Subtrace> subtraces) {
+        List<int[]> befores = new ArrayList<>();
+        List<int[]> afters = new ArrayList<>();
+        List<List<int[]>> aftersByLength = new ArrayList<>();
+        Subtrace subtrace;
+
+        if( order < 2 ) return;
+
+//        the walks ending with the activity are walked backward, the walks starting with the next one forward
+        walks(new int[order - 1], activity, 1, predecessors, befores);
+        walks(new int[order - 1], next, 1, successors, afters);
+
+        for( int length = 0; length < order; length++ ) aftersByLength.add(new ArrayList<int[]>());
+        for( int[] after : afters ) aftersByLength.get(after.length).add(after);
+
+        for( int[] before : befores )
+            for( int length = 1; before.length + length <= order; length++ )
+                for( int[] after : aftersByLength.get(length) ) {
+                    if( before.length + length == order ) {
+                        if( !reachable.contains(before[before.length - 1]) ) continue;
+                    } else if( !first.contains(before[before.length - 1]) || !last.contains(after[length - 1]) ) continue;
+
+                    subtrace = new Subtrace(order);
+                    for( int i = before.length - 1; i >= 0; i-- ) subtrace.add(before[i]);
+                    for( int event : after ) subtrace.add(event);
+                    if( before.length + length < order ) subtrace.add(Subtrace.INIT);
+                    subtraces.add(subtrace);
+                }
+    }
+
+//    the walks of at most walk.length activities from the given one, through the given adjacencies
+    private static void walks(int[] walk, int activity, int length, Map<Integer, Set<Integer>> adjacencies, List<int[]> walks) {
+        walk[length - 1] = activity;
+        walks.add(Arrays.copyOf(walk, length));
+
+        if( length == walk.length || !adjacencies.containsKey(activity) ) return;
+        for( int next : adjacencies.get(activity) ) walks(walk, next, length + 1, adjacencies, walks);
+    }
+}
@@ -3,6 +3,8 @@ package au.edu.unimelb.processmining.accuracy.abstraction.mkAutomaton;
 import au.edu.qut.bpmn.structuring.graph.Path;
 import au.edu.qut.processmining.log.SimpleLog;
 import dk.brics.automaton.*;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
 import org.processmining.plugins.InductiveMiner.efficienttree.*;
 import org.processmining.processtree.ProcessTree;
 import org.processmining.processtree.ptml.importing.PtmlImportTree;
@@ -12,6 +14,8 @@ import java.io.FileInputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveTask;
 
 public class MarkovianAutomatonAbstraction {
     private enum Mode {match, init}
@@ -21,6 +25,19 @@ public class MarkovianAutomatonAbstraction {
     public static final int artificialMarker = 10_000;
     private static final int synthetic = 20_000;
 
+    // the product of mkParallel is abandoned beyond this size (the evaluation of the tree fails)
+    private static final int MAX_PRODUCT_STATES = 1_000_000;
+
+    // the two children of an operator are computed in parallel if both have at least this many nodes (i.e. 3 operators
+    // of a binary subtree). Measured on random trees at k = 2..5, such a subtree takes 0.4-2ms to build from scratch,
+    // over 4000 times a fork and join (~0.1us), while a single operator (3 nodes) can take as little as 0.2ms and
+    // forking each one would flood the pool shared with the other evaluations with tasks
+    private static final int FORK_NODES = 7;
+
+    // the automata of the subtrees, shared by all the abstractions (total number of states)
+    private static final int CACHE_STATES = 200_000;
+    private static final MkCache cache = new MkCache(CACHE_STATES);
+
     private Map<Integer, Character> IDsToChar = new HashMap<>();
     private Map<Character, Integer> CharToIDs = new HashMap<>();
 
@@ -44,32 +61,97 @@ public class MarkovianAutomatonAbstraction {
         this.automaton = computeMk(tree, tree.getRoot(), k);
     }
 
+    public static MkCache getCache() {
+        return cache;
+    }
+
+    // the children are computed in the pool running the evaluation (or in the common pool), see MkConstruction
     private Automaton computeMk(EfficientTree tree, int node, int k) {
-        if (tree.isActivity(node)) {
-            if (mode == Mode.match) {
-                return mkLeafNode(IDsToChar.get(tree.getActivity(node)), k);
-            } else {
-                return mkLeafNode(tree.getActivityName(node).toCharArray()[0], k);
-            }
+        Map<Integer, String> subtrees = new HashMap<>();
+        Construction construction = new Construction();
+        encode(tree, node, subtrees);
+
+        try {
+            return new MkConstruction(tree, node, k, subtrees, construction).invoke();
+        } catch (CancellationException e) {
+            // a task cancelled because another one failed, the failure is the one to report
+            construction.rethrowFailure();
+            throw e;
         }
-        if (tree.isTau(node)) {
-            return mkLeafNode('τ', k);
+    }
+
+    // the automata of the operators are taken from (or added to) the cache, the ones of the leaves are cheaper to build
+    private Automaton computeMk(EfficientTree tree, int node, int k, Map<Integer, String> subtrees, Construction construction) {
+        if (tree.isActivity(node) || tree.isTau(node)) {
+            return mkLeafNode(label(tree, node), k);
+        }
+
+        construction.check();
+
+        String subtree = subtrees.get(node);
+        Automaton result = cache.get(subtree, k);
+        if (result != null) return result;
+
+        Automaton left;
+        Automaton right;
+        int leftChild = tree.getChild(node, 0);
+        int rightChild = tree.getChild(node, 1);
+
+        if (size(tree, leftChild) >= FORK_NODES && size(tree, rightChild) >= FORK_NODES) {
+            MkConstruction leftConstruction = new MkConstruction(tree, leftChild, k, subtrees, construction);
+            leftConstruction.fork();
+            try {
+                right = computeMk(tree, rightChild, k, subtrees, construction);
+            } catch (RuntimeException | Error e) {
+                // the left subtree is not needed anymore: if not started it is never run, otherwise it stops at its next node
+                construction.fail(e);
+                leftConstruction.cancel(true);
+                throw e;
+            }
+            left = leftConstruction.join();
+        } else {
+            left = computeMk(tree, leftChild, k, subtrees, construction);
+            right = computeMk(tree, rightChild, k, subtrees, construction);
         }
 
-        Automaton left = computeMk(tree, tree.getChild(node, 0), k);
-        Automaton right = computeMk(tree, tree.getChild(node, 1), k);
+        construction.check();
 
         if (tree.isSequence(node)) {
-            return mkSequence(left, right, k);
+            result = mkSequence(left, right, k);
         } else if (tree.isXor(node)) {
-            return mkExclusive(left, right);
+            result = mkExclusive(left, right);
         } else if (tree.isConcurrent(node)) {
-            return mkParallel(left, right, k);
+            result = mkParallel(left, right, k);
         } else if (tree.isLoop(node)) {
-            return mkLoop(left, right, k);
+            result = mkLoop(left, right, k);
+        } else {
+            throw new UnsupportedOperationException("Unknown node type at node " + node);
         }
 
-        throw new UnsupportedOperationException("Unknown node type at node " + node);
+        cache.put(subtree, k, result);
+        return result;
+    }
+
+    // the number of nodes of the subtree, stored after its root
+    private static int size(EfficientTree tree, int node) {
+        return tree.traverse(node) - node;
+    }
+
+    private char label(EfficientTree tree, int node) {
+        if (tree.isTau(node)) return 'τ';
+        if (mode == Mode.match) return IDsToChar.get(tree.getActivity(node));
+        return tree.getActivityName(node).toCharArray()[0];
+    }
+
+    // the structure of the subtree (as read by computeMk, i.e. the first two children of each operator) with the chars of its leaves
+    private String encode(EfficientTree tree, int node, Map<Integer, String> subtrees) {
+        String subtree;
+
+        if (tree.isActivity(node) || tree.isTau(node)) subtree = String.valueOf(label(tree, node));
+        else subtree = tree.getNodeType(node) + "(" + encode(tree, tree.getChild(node, 0), subtrees) + "," + encode(tree, tree.getChild(node, 1), subtrees) + ")";
+
+        subtrees.put(node, subtree);
+        return subtree;
     }
 
     private static Automaton mkLeafNode(char label, int k) {
@@ -226,45 +308,40 @@ public class MarkovianAutomatonAbstraction {
         Automaton mk = createMKAutomaton(alphabet, k);
         State q0MK = mk.getInitialState();
 
-        class Triple<A, B, C> {
-            public final A first;
-            public final B second;
-            public final C third;
-
-            public Triple(A first, B second, C third) {
-                this.first = first;
-                this.second = second;
-                this.third = third;
-            }
+        // Step 3: Number the states of the three automata, a product state (a, mk, b) is packed in a long
+        List<State> statesA = new ArrayList<>();
+        List<State> statesMK = new ArrayList<>();
+        List<State> statesB = new ArrayList<>();
+        Map<State, Integer> idsA = numberStates(a, statesA);
+        Map<State, Integer> idsMK = numberStates(mk, statesMK);
+        Map<State, Integer> idsB = numberStates(b, statesB);
+        long sizeMK = statesMK.size();
+        long sizeB = statesB.size();
 
-            @Override
-            public boolean equals(Object o) {
-                if (this == o) return true;
-                if (o == null || getClass() != o.getClass()) return false;
-                Triple<?, ?, ?> triple = (Triple<?, ?, ?>) o;
-                return Objects.equals(first, triple.first) && Objects.equals(second, triple.second) && Objects.equals(third, triple.third);
-            }
-        }
+        if (statesA.size() > Long.MAX_VALUE / (sizeMK * sizeB))
+            throw new IllegalStateException("product of " + statesA.size() + "x" + sizeMK + "x" + sizeB + " states");
 
-        // Step 3: Initialize result automaton and state tracking
+        // Step 4: Initialize result automaton and state tracking, the product states are explored in the order they are found
         Automaton result = new Automaton();
-        Map<Triple<State, State, State>, State> stateMap = new HashMap<>();
-        Queue<Triple<State, State, State>> workList = new LinkedList<>();
+        LongIntHashMap stateIds = new LongIntHashMap();
+        LongArrayList triples = new LongArrayList();
+        List<State> combinedStates = new ArrayList<>();
 
-        Triple<State, State, State> initialTriple = new Triple<>(q0A, q0MK, q0B);
         State initialState = new State();
         result.setInitialState(initialState);
 
-        stateMap.put(initialTriple, initialState);
-        workList.add(initialTriple);
+        long initialTriple = (idsA.get(q0A) * sizeMK + idsMK.get(q0MK)) * sizeB + idsB.get(q0B);
+        stateIds.put(initialTriple, 0);
+        triples.add(initialTriple);
+        combinedStates.add(initialState);
 
-        // Step 4: Construct product automaton based on triple transitions
-        while (!workList.isEmpty()) {
-            Triple<State, State, State> current = workList.poll();
-            State stateA = current.first;
-            State stateMK = current.second;
-            State stateB = current.third;
-            State combined = stateMap.get(current);
+        // Step 5: Construct product automaton based on triple transitions
+        for (int current = 0; current < triples.size(); current++) {
+            long triple = triples.get(current);
+            State stateA = statesA.get((int) (triple / sizeB / sizeMK));
+            State stateMK = statesMK.get((int) (triple / sizeB % sizeMK));
+            State stateB = statesB.get((int) (triple % sizeB));
+            State combined = combinedStates.get(current);
 
             // Stop expanding when Mk reaches accepting state — this is a semantic leaf
             if (stateMK.isAccept()) {
@@ -282,19 +359,22 @@ public class MarkovianAutomatonAbstraction {
                 State nextMK = stepIfPossible(stateMK, letter);
                 State nextB = stepIfPossible(stateB, letter);
 
-                Triple<State, State, State> nextTriple = new Triple<>(nextA, nextMK, nextB);
-                State nextCombined = stateMap.get(nextTriple);
-                if (nextCombined == null) {
-                    nextCombined = new State();
-                    stateMap.put(nextTriple, nextCombined);
-                    workList.add(nextTriple);
+                long nextTriple = (idsA.get(nextA) * sizeMK + idsMK.get(nextMK)) * sizeB + idsB.get(nextB);
+                int next = stateIds.getIfAbsent(nextTriple, -1);
+                if (next == -1) {
+                    if (triples.size() == MAX_PRODUCT_STATES)
+                        throw new IllegalStateException("product of more than " + MAX_PRODUCT_STATES + " states");
+                    next = triples.size();
+                    stateIds.put(nextTriple, next);
+                    triples.add(nextTriple);
+                    combinedStates.add(new State());
                 }
 
-                combined.addTransition(new Transition(letter, nextCombined));
+                combined.addTransition(new Transition(letter, combinedStates.get(next)));
             }
         }
 
-        // Step 5: Final cleanup and DFA transformation
+        // Step 6: Final cleanup and DFA transformation
         result.removeDeadTransitions();
         result.setDeterministic(false);
         result.determinize();
@@ -303,87 +383,97 @@ public class MarkovianAutomatonAbstraction {
         return result;
     }
 
+    // the memory of the last k letters is packed in a long, each letter by its index in the alphabet of the automaton,
+    // if the k letters do not fit in 63 bits (e.g. k > 9 over more than 63 letters) the memory is the string of the letters
     private static Automaton computeMkAbstraction(Automaton automaton, int k) {
         class PES {
             State origState;
-            String memory;
+            long memory;
+            String letters;
+            int length;
             boolean fromInitial;
 
-            PES(State origState, String memory, boolean fromInitial) {
+            PES set(State origState, long memory, String letters, int length, boolean fromInitial) {
                 this.origState = origState;
                 this.memory = memory;
+                this.letters = letters;
+                this.length = length;
                 this.fromInitial = fromInitial;
+                return this;
             }
 
             @Override
             public boolean equals(Object o) {
                 if (!(o instanceof PES)) return false;
                 PES other = (PES) o;
-                return origState.equals(other.origState) && memory.equals(other.memory) && fromInitial == other.fromInitial;
+                return origState.equals(other.origState) && memory == other.memory && Objects.equals(letters, other.letters) && length == other.length && fromInitial == other.fromInitial;
             }
 
             @Override
             public int hashCode() {
-                return origState.hashCode() * 31 + memory.hashCode() + (fromInitial ? 1 : 0);
+                return ((origState.hashCode() * 31 + Long.hashCode(memory)) * 31 + Objects.hashCode(letters)) * 31 + length * 2 + (fromInitial ? 1 : 0);
             }
         }
 
+        char[] alphabet = getLetters(automaton);
+        int bits = 64 - Long.numberOfLeadingZeros(alphabet.length);
+        boolean packed = (long) bits * k <= 63;
+        long mask = packed ? (1L << (bits * k)) - 1 : 0;
+
         Automaton mkAutomaton = new Automaton();
         State s0 = new State(); // initial state of the Mk abstraction
         mkAutomaton.setInitialState(s0);
 
         Map<PES, State> pesToState = new HashMap<>();
-        Queue<PES> queue = new LinkedList<>();
-        Set<PES> visited = new HashSet<>();
+        Queue<PES> queue = new ArrayDeque<>();
+        PES probe = new PES();
 
-        PES initialPES = new PES(automaton.getInitialState(), "", true);
+        PES initialPES = new PES().set(automaton.getInitialState(), 0, packed ? null : "", 0, true);
         pesToState.put(initialPES, s0);
         queue.add(initialPES);
-        visited.add(initialPES);
 
         while (!queue.isEmpty()) {
             PES current = queue.poll();
             State currentOrig = current.origState;
-            String currentMemory = current.memory;
             boolean fromInitial = current.fromInitial;
             State combined = pesToState.get(current);
 
             // Accept if memory has length k, OR if on init path and at original final state
-            if (currentMemory.length() == k || (fromInitial && currentMemory.length() > 0 && currentOrig.isAccept())) {
+            if (current.length == k || (fromInitial && current.length > 0 && currentOrig.isAccept())) {
                 combined.setAccept(true);
                 continue;
             }
 
             for (Transition t : currentOrig.getTransitions()) {
+                State nextOrig = t.getDest();
                 for (char c = t.getMin(); c <= t.getMax(); c++) {
-                    State nextOrig = t.getDest();
-                    String nextMemory = updateMemory(currentMemory, c, k);
+                    long letter = packed ? Arrays.binarySearch(alphabet, c) + 1 : 0;
+                    long nextMemory = ((current.memory << bits) | letter) & mask;
+                    String nextLetters = packed ? null : updateMemory(current.letters, c, k);
+                    int nextLength = Math.min(current.length + 1, k);
 
                     // Continue original path
-                    PES nextPES = new PES(nextOrig, nextMemory, fromInitial);
-                    State nextCombined = pesToState.get(nextPES);
+                    State nextCombined = pesToState.get(probe.set(nextOrig, nextMemory, nextLetters, nextLength, fromInitial));
                     if (nextCombined == null) {
                         nextCombined = new State();
+                        PES nextPES = new PES().set(nextOrig, nextMemory, nextLetters, nextLength, fromInitial);
                         pesToState.put(nextPES, nextCombined);
-                        if (!visited.contains(nextPES)) {
-                            queue.add(nextPES);
-                            visited.add(nextPES);
-                        }
+                        queue.add(nextPES);
                     }
                     combined.addTransition(new Transition(c, nextCombined));
 
                     // Restart from s0, not on initial path anymore
-                    PES restartPES = new PES(nextOrig, String.valueOf(c), false);
-                    State restartState = pesToState.get(restartPES);
+                    String restartLetters = packed ? null : String.valueOf(c);
+                    State restartState = pesToState.get(probe.set(nextOrig, letter, restartLetters, 1, false));
                     if (restartState == null) {
                         restartState = new State();
+                        PES restartPES = new PES().set(nextOrig, letter, restartLetters, 1, false);
                         pesToState.put(restartPES, restartState);
-                        if (!visited.contains(restartPES)) {
-                            queue.add(restartPES);
-                            visited.add(restartPES);
-                        }
+                        queue.add(restartPES);
                     }
                     s0.addTransition(new Transition(c, restartState));
+
+                    if (c == Character.MAX_VALUE) break;
                 }
             }
         }
@@ -405,6 +495,18 @@ public class MarkovianAutomatonAbstraction {
         }
     }
 
+    // the letters of the transitions of the automaton (including '+' and '-'), sorted
+    private static char[] getLetters(Automaton automaton) {
+        BitSet letters = new BitSet(Character.MAX_VALUE + 1);
+        for (State state : automaton.getStates()) {
+            for (Transition t : state.getTransitions()) letters.set(t.getMin(), t.getMax() + 1);
+        }
+
+        char[] alphabet = new char[letters.cardinality()];
+        for (int c = letters.nextSetBit(0), i = 0; c >= 0; c = letters.nextSetBit(c + 1)) alphabet[i++] = (char) c;
+        return alphabet;
+    }
+
     private static Automaton computeAllSubstringsAutomaton(Automaton automaton) {
         automaton.expandSingleton();
 
@@ -439,6 +541,16 @@ public class MarkovianAutomatonAbstraction {
         return letters;
     }
 
+    // Numbers the states of the automaton from 0, in the list (by number) and in the returned map (by state)
+    private static Map<State, Integer> numberStates(Automaton automaton, List<State> states) {
+        Map<State, Integer> ids = new HashMap<>();
+        for (State state : automaton.getStates()) {
+            ids.put(state, states.size());
+            states.add(state);
+        }
+        return ids;
+    }
+
     private static State stepIfPossible(State state, char letter) {
         State next = state.step(letter);
         return next != null ? next : state;
@@ -603,13 +715,13 @@ public class MarkovianAutomatonAbstraction {
             String act = tree.getInt2activity()[id];
             if (act == null) continue;
 
-            // skip reserved characters
-            while (nextChar == '-' || nextChar == '+') nextChar++;
-
             if (!IDsToChar.containsKey(id)) {
-                IDsToChar.put(id, nextChar);
-                CharToIDs.put(nextChar, id);
-                nextChar++;
+                // skip reserved characters
+                char chosen = freeLetter(nextChar, CharToIDs.keySet());
+                nextChar = (char) (chosen + 1);
+
+                IDsToChar.put(id, chosen);
+                CharToIDs.put(chosen, id);
             }
         }
 
@@ -688,10 +800,8 @@ public class MarkovianAutomatonAbstraction {
                 globalId = synt++;
             }
 
-            while (isReserved(nextChar) || usedChars.contains(nextChar)) {
-                nextChar++;
-            }
-            char chosen = nextChar++;
+            char chosen = freeLetter(nextChar, usedChars);
+            nextChar = (char) (chosen + 1);
             usedChars.add(chosen);
 
             IDsToChar.put(tid, chosen);     // tree activity id -> char (used by computeMk)
@@ -711,10 +821,8 @@ public class MarkovianAutomatonAbstraction {
             }
             if (alreadyMapped) continue;
 
-            while (isReserved(nextChar) || usedChars.contains(nextChar)) {
-                nextChar++;
-            }
-            char chosen = nextChar++;
+            char chosen = freeLetter(nextChar, usedChars);
+            nextChar = (char) (chosen + 1);
             usedChars.add(chosen);
 
             CharToIDs.put(chosen, e.getValue());
@@ -727,7 +835,14 @@ public class MarkovianAutomatonAbstraction {
     }
 
     private static boolean isReserved(char c) {
-        return c == '-' || c == '+';
+        return c == '-' || c == '+' || c == 'τ';
+    }
+
+    // the first char from c (wrapping around after the last char) that is neither reserved nor used, the letters of the automata are chars
+    private static char freeLetter(char c, Set<Character> used) {
+        for (int tried = 0; isReserved(c) || used.contains(c); c++)
+            if (++tried > Character.MAX_VALUE) throw new IllegalStateException("more activities than letters");
+        return c;
     }
 
     private static String norm(String s) {
@@ -762,6 +877,64 @@ public class MarkovianAutomatonAbstraction {
         visitedStates.remove(state);
     }
 
+    /**
+     * the automaton of a subtree, its two subtrees are independent until they are combined: the larger ones are
+     * forked and the smaller ones computed in the same thread (see computeMk). The automata of the subtrees are
+     * built from scratch by each task, the only state they share is the cache, which is synchronized,
+     * and their Construction, through which the failure of a task stops the others.
+     */
+    private class MkConstruction extends RecursiveTask<Automaton> {
+        private static final long serialVersionUID = 1L;
+
+        private EfficientTree tree;
+        private int node;
+        private int k;
+        private Map<Integer, String> subtrees;
+        private Construction construction;
+
+        MkConstruction(EfficientTree tree, int node, int k, Map<Integer, String> subtrees, Construction construction) {
+            this.tree = tree;
+            this.node = node;
+            this.k = k;
+            this.subtrees = subtrees;
+            this.construction = construction;
+        }
+
+        @Override
+        protected Automaton compute() {
+            try {
+                return computeMk(tree, node, k, subtrees, construction);
+            } catch (RuntimeException | Error e) {
+                construction.fail(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * the state shared by the tasks of the construction of an automaton: the thread that started it, whose
+     * interruption (e.g. a cancelled evaluation) cancels the forked tasks too, and the first failure of a task.
+     * The tasks check it before and after each operator.
+     */
+    private static class Construction {
+        private final Thread caller = Thread.currentThread();
+        private volatile Throwable failure;
+
+        void check() {
+            if (failure != null) throw new CancellationException("Mk construction aborted, a subtree failed");
+            if (caller.isInterrupted()) throw new CancellationException("Mk construction cancelled");
+        }
+
+        void fail(Throwable e) {
+            if (failure == null && !(e instanceof CancellationException)) failure = e;
+        }
+
+        void rethrowFailure() {
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            if (failure instanceof Error) throw (Error) failure;
+        }
+    }
+
     public Map<Character, Integer> getCharToIDs() {
         return CharToIDs;
     }
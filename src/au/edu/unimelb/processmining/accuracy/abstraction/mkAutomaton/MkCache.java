@@ -0,0 +1,101 @@
+package au.edu.unimelb.processmining.accuracy.abstraction.mkAutomaton;
+
+import dk.brics.automaton.Automaton;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the (minimized) Mk automata of the subtrees of the process trees, shared by the evaluations running
+ * concurrently. A subtree is identified by its structure and the chars of its activities (see
+ * MarkovianAutomatonAbstraction.encode), and the order k. The trees evaluated by the optimizers share most of their
+ * subtrees, so only the path from a changed node up to the root is computed again.
+ *
+ * The cache is bounded by the total number of states of its automata: the least recently used ones are evicted
+ * first, and an automaton larger than the whole capacity is not cached. The cached automata are never handed out,
+ * the callers get copies they can modify (the Mk operations modify their operands).
+ */
+public class MkCache {
+
+    private long capacity;
+    private long states;
+    private Map<String, Entry> automata;
+    private AtomicLong hits;
+    private AtomicLong misses;
+
+    public MkCache(long capacity) {
+        this.capacity = capacity;
+        this.states = 0;
+        this.automata = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * @return a copy of the automaton of the subtree, or null if it is not cached
+     */
+    public Automaton get(String subtree, int k) {
+        Entry entry;
+
+        synchronized (this) { entry = automata.get(key(subtree, k)); }
+
+        if( entry == null ) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+//        the cached automaton is not modified anymore, it can be copied outside the lock
+        return entry.automaton.clone();
+    }
+
+    /**
+     * stores a copy of the automaton of the subtree, the caller can keep modifying the given one.
+     */
+    public void put(String subtree, int k, Automaton automaton) {
+        Entry entry = new Entry(automaton.clone());
+        Entry replaced;
+
+        if( entry.states > capacity ) return;
+
+        synchronized (this) {
+            if( (replaced = automata.put(key(subtree, k), entry)) != null ) states -= replaced.states;
+            states += entry.states;
+
+            for( Iterator<Entry> i = automata.values().iterator(); states > capacity && i.hasNext(); ) {
+                states -= i.next().states;
+                i.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        automata.clear();
+        states = 0;
+    }
+
+    public long getHits() { return hits.get(); }
+
+    public long getMisses() { return misses.get(); }
+
+    @Override
+    public synchronized String toString() {
+        return "subtrees: " + automata.size() + ", states: " + states + ", hits: " + hits.get() + ", misses: " + misses.get();
+    }
+
+    private static String key(String subtree, int k) {
+        return k + "/" + subtree;
+    }
+
+    private static class Entry {
+        private Automaton automaton;
+        private int states;
+
+        Entry(Automaton automaton) {
+            this.automaton = automaton;
+            this.states = automaton.getNumberOfStates();
+        }
+    }
+}
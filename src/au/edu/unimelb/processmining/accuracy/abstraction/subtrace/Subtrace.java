@@ -1,5 +1,11 @@
 package au.edu.unimelb.processmining.accuracy.abstraction.subtrace;
 
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
 public class Subtrace implements Comparable {
     private int[] label;
     private int order;
@@ -7,6 +13,9 @@ public class Subtrace implements Comparable {
     private boolean full;
     private boolean complete;
     private String print;
+    private volatile boolean packed;
+    private long high;
+    private long low;
 
     protected double frequency;
 
@@ -14,6 +23,12 @@ public class Subtrace implements Comparable {
     public static final int MARK = -2; // artificial '-'
 
     private final static int START = 0;
+    final static long UNPACKED = Long.MIN_VALUE;
+
+//    each event takes BITS bits of a two longs key, the last EVENTS of the subtrace are in the low long
+    private final static int BITS = 16;
+    private final static int EVENTS = Long.SIZE / BITS;
+    final static int MAX_PACKED = 2 * EVENTS;
 
     public Subtrace(int order) {
         this.order = order;
@@ -23,6 +38,7 @@ public class Subtrace implements Comparable {
         full = false;
         complete = false;
         print = null;
+        packed = false;
         frequency = 0;
     }
 
@@ -34,6 +50,9 @@ public class Subtrace implements Comparable {
         this.full = label.full;
         this.complete = label.complete;
         this.print = label.print;
+        this.packed = label.packed;
+        this.high = label.high;
+        this.low = label.low;
         this.frequency = label.frequency;
     }
 
@@ -46,7 +65,10 @@ public class Subtrace implements Comparable {
         if( next == INIT ) {
             complete = true;
             return;
-        } else print = null;
+        } else {
+            print = null;
+            packed = false;
+        }
 
         label[i] = next;
         i++;
@@ -87,6 +109,117 @@ public class Subtrace implements Comparable {
         return print;
     }
 
+    /**
+     * the events of the subtrace are packed in two longs, 16 bits each (up to MAX_PACKED = 8 events, of less than
+     * 2^16 activities), so that two subtraces are equal iff they have the same high and low keys.
+     * The subtraces with more events, or an event that does not fit, are unpacked and compared through their print.
+     * The keys are computed once, and published by packed (the log abstractions are shared by the evaluations).
+     * @return true if the subtrace is packed, its keys are then getHigh() and getLow()
+     */
+    public boolean pack() {
+        if( !packed ) {
+            long[] key = new long[2];
+            if( pack(events(), key) ) {
+                high = key[0];
+                low = key[1];
+            } else high = low = UNPACKED;
+            packed = true;
+        }
+        return high != UNPACKED;
+    }
+
+    long getHigh() { return pack() ? high : UNPACKED; }
+    long getLow() { return pack() ? low : UNPACKED; }
+
+    /**
+     * packs the given events as the subtraces do, in key[0] (high) and key[1] (low).
+     * The codes are never 0, so the keys of different numbers of events differ, and the empty subtrace is (0, 0).
+     * @return false if they do not fit (more than MAX_PACKED events, or an event too large)
+     */
+    public static boolean pack(int[] events, long[] key) {
+        long high = 0, low = 0;
+        long code;
+
+        if( events.length > MAX_PACKED ) return false;
+
+        for( int event : events ) {
+            if( (code = code(event)) == UNPACKED ) return false;
+            high = (high << BITS) | (low >>> (Long.SIZE - BITS));
+            low = (low << BITS) | code;
+        }
+
+        key[0] = high;
+        key[1] = low;
+        return true;
+    }
+
+    /**
+     * @return true if the given events (e.g. the ones of another subtrace) occur consecutively in this subtrace
+     */
+    public boolean contains(int[] events) {
+        int length = full ? order : i;
+
+        for( int start = 0; start + events.length <= length; start++ ) {
+            int j = 0;
+            while( j < events.length && events[j] == (full ? label[(i + start + j) % order] : label[start + j]) ) j++;
+            if( j == events.length ) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * the windows of consecutive events of this subtrace are packed incrementally and looked up in the given keys,
+     * i.e. at most order*(order+1)/2 lookups, however many the keys are.
+     * @param keys the packed subtraces to look for
+     * @return true if any of them occurs consecutively in this subtrace
+     */
+    public boolean containsAny(Keys keys) {
+        int[] events = events();
+        long high, low;
+        long code;
+
+        if( keys.contains(0, 0) ) return true;
+
+        for( int start = 0; start < events.length; start++ ) {
+            high = low = 0;
+            for( int end = start; end < events.length && end - start < MAX_PACKED; end++ ) {
+                if( (code = code(events[end])) == UNPACKED ) break;
+                high = (high << BITS) | (low >>> (Long.SIZE - BITS));
+                low = (low << BITS) | code;
+                if( keys.contains(high, low) ) return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int[] events() {
+        int length = full ? order : i;
+        int[] events = new int[length];
+        for( int j = 0; j < length; j++ ) events[j] = full ? label[(i + j) % order] : label[j];
+        return events;
+    }
+
+    private static long code(int event) {
+        long code = (long) event + 3;
+        return (code <= 0 || code >= (1L << BITS)) ? UNPACKED : code;
+    }
+
+    /**
+     * @return the events of a printed subtrace (e.g. ":3:5:7:")
+     */
+    public static int[] parse(String print) {
+        List<Integer> events = new ArrayList<>();
+        int[] parsed;
+
+        for( String event : print.split(":") ) if( !event.isEmpty() ) events.add(Integer.valueOf(event));
+
+        parsed = new int[events.size()];
+        for( int j = 0; j < parsed.length; j++ ) parsed[j] = events.get(j);
+        return parsed;
+    }
+
     public int[] printIA() {
         int[] ia;
 
@@ -117,15 +250,19 @@ public class Subtrace implements Comparable {
 
     @Override
     public int hashCode() {
+        if( pack() ) return 31 * Long.hashCode(high) + Long.hashCode(low);
         return forcePrint().hashCode();
     }
 
 
     @Override
     public boolean equals(Object o) {
-        if( o instanceof Subtrace )
-            return forcePrint().equals(((Subtrace) o).forcePrint());
-        return false;
+        if( !(o instanceof Subtrace) ) return false;
+
+        Subtrace st = (Subtrace) o;
+        if( pack() != st.pack() ) return false;
+        if( pack() ) return high == st.high && low == st.low;
+        return forcePrint().equals(st.forcePrint());
     }
 
 
@@ -134,4 +271,20 @@ public class Subtrace implements Comparable {
         if( o instanceof Subtrace ) return (int)frequency - (int)((Subtrace) o).frequency;
         return -1;
     }
+
+    /**
+     * a set of packed subtraces, the high keys of the ones with the same low key (i.e. the same last events) together.
+     */
+    public static class Keys {
+        private LongObjectHashMap<LongHashSet> keys = new LongObjectHashMap<>();
+
+        public void add(long high, long low) {
+            keys.getIfAbsentPut(low, LongHashSet::new).add(high);
+        }
+
+        public boolean contains(long high, long low) {
+            LongHashSet highs = keys.get(low);
+            return highs != null && highs.contains(high);
+        }
+    }
 }
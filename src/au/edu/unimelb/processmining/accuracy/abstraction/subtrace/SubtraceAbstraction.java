@@ -11,6 +11,11 @@ import com.raffaeleconforti.conversion.bpmn.BPMNToPetriNetConverter;
 import com.raffaeleconforti.conversion.petrinet.PetriNetToBPMNConverter;
 import de.drscc.automaton.Automaton;
 import de.drscc.importer.ImportProcessModel;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.impl.map.mutable.UnifiedMap;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.models.graphbased.directed.petrinet.Petrinet;
 import org.processmining.models.semantics.petrinet.Marking;
@@ -19,9 +24,14 @@ import org.python.antlr.op.Sub;
 
 import java.util.*;
 
+/**
+ * The subtraces are keyed by themselves, i.e. by their packed events (see Subtrace.pack()) or, if they do not fit
+ * in the two longs, by their print. They are printed only when their strings are needed (the differences driving
+ * the searches, debugging, the unpacked ones).
+ */
 public class SubtraceAbstraction extends Abstraction {
 
-    private Map<String, Subtrace> subtraces;
+    private MutableMap<Subtrace, Subtrace> subtraces;
     private ArrayList<String> differences;
     private int order;
     private double globalGramsCount;
@@ -29,48 +39,113 @@ public class SubtraceAbstraction extends Abstraction {
     private ConfusionMatrix matrix;
     Random random;
 
+    private volatile Dictionary dictionary;
+    private volatile Index index;
+    private volatile SubtraceAbstraction origin;
+
+//    the packed subtraces by key, then the others by print
+    private static final Comparator<Subtrace> CANONICAL = (st1, st2) -> {
+        boolean p1 = st1.pack(), p2 = st2.pack();
+        if (p1 && p2) return st1.getHigh() != st2.getHigh() ? Long.compare(st1.getHigh(), st2.getHigh()) : Long.compare(st1.getLow(), st2.getLow());
+        if (p1 || p2) return p1 ? -1 : 1;
+        return st1.print().compareTo(st2.print());
+    };
+
     public SubtraceAbstraction(int order) {
         this.order = order;
-        subtraces = new HashMap<>();
+        subtraces = new UnifiedMap<>();
         matrix = null;
         globalGramsCount = 0.0;
         random = new Random(1);
     }
 
+//    a copy sharing the subtraces (not to be modified anymore) of the given abstraction, with its own differences,
+//    until its subtraces change the copy also shares the dictionary of the abstraction, even if built later
+    public SubtraceAbstraction(SubtraceAbstraction abstraction) {
+        this.order = abstraction.order;
+        subtraces = abstraction.subtraces;
+        matrix = null;
+        globalGramsCount = abstraction.globalGramsCount;
+        random = new Random(1);
+        dictionary = abstraction.dictionary;
+        index = abstraction.index;
+        origin = abstraction;
+    }
+
     public void addSubtrace(Subtrace subtrace) {
         if (!subtrace.isPrintable()) return;
         subtrace.frequency = 1.0;
-        subtraces.put(subtrace.print(), subtrace);
+        subtraces.put(subtrace, subtrace);
+        invalidate();
     }
 
     public void addSubtrace(Subtrace subtrace, int frequency) {
+        Subtrace existing;
+
         if (!subtrace.isPrintable()) return;
         globalGramsCount += (double) frequency;
 
-        if (subtraces.containsKey(subtrace.print())) subtraces.get(subtrace.print()).frequency += frequency;
+        if ((existing = subtraces.get(subtrace)) != null) existing.frequency += frequency;
         else {
             subtrace.frequency = frequency;
-            subtraces.put(subtrace.print(), subtrace);
+            subtraces.put(subtrace, subtrace);
         }
+        invalidate();
     }
 
     public void removeUnusedSubtraces(String subtraceK) {
-        subtraces.entrySet().removeIf(e -> e.getKey().contains(subtraceK));
+        removeUnusedSubtraces(Collections.singletonList(subtraceK));
+    }
+
+//    the subtraces containing any of the given ones (as printed) are dropped in one pass, the copies sharing them are not affected
+    public void removeUnusedSubtraces(Collection<String> subtracesK) {
+        Subtrace.Keys packed = new Subtrace.Keys();
+        List<int[]> unpacked = new ArrayList<>();
+        long[] key = new long[2];
+        int[] events;
+
+        for (String subtraceK : subtracesK) {
+            events = Subtrace.parse(subtraceK);
+//            a subtrace longer than the order is not contained in any of the subtraces
+            if (events.length > order) continue;
+            if (Subtrace.pack(events, key)) packed.add(key[0], key[1]);
+            else unpacked.add(events);
+        }
+
+        subtraces = subtraces.reject((k, subtrace) -> {
+            if (subtrace.containsAny(packed)) return true;
+            for (int[] u : unpacked) if (subtrace.contains(u)) return true;
+            return false;
+        });
+        invalidate();
+    }
+
+//    a copy without the subtraces containing any of the removed ones (as printed), and with the added ones,
+//    e.g. the process abstraction of a model whose behaviour differs from the one of this abstraction (see ActivityGraph)
+    public SubtraceAbstraction update(Collection<String> removed, Collection<Subtrace> added) {
+        SubtraceAbstraction updated = new SubtraceAbstraction(this);
+
+//        removeUnusedSubtraces gives the copy its own subtraces, the added ones do not go in the shared ones
+        updated.removeUnusedSubtraces(removed);
+        for (Subtrace subtrace : added) updated.addSubtrace(subtrace);
+
+        return updated;
     }
 
     public double computeMAFitness(SubtraceAbstraction processAbstraction) {
         if (processAbstraction == null) return 0.0;
 
-        Set<String> missingSubtraces = new HashSet<>(subtraces.keySet());
-        missingSubtraces.removeAll(processAbstraction.subtraces.keySet());
+        Dictionary dictionary = getDictionary();
+        BitSet present = processAbstraction.indexOn(this).present;
+        int size = dictionary.subtraces.length;
 
         if (this.globalGramsCount == 0.0) {
-            return 1.0 - ((double) missingSubtraces.size() / subtraces.size());
+            return 1.0 - ((double) (size - present.cardinality()) / subtraces.size());
         }
 
         double missingFrequency = 0.0;
-        for (String s : missingSubtraces) {
-            missingFrequency += subtraces.get(s).frequency;
+        for (int id = present.nextClearBit(0); id < size; id = present.nextClearBit(id + 1)) {
+            missingFrequency += dictionary.frequencies[id];
         }
 
         return 1.0 - (missingFrequency / globalGramsCount);
@@ -78,34 +153,16 @@ public class SubtraceAbstraction extends Abstraction {
 
     public double computeMAPrecision(SubtraceAbstraction logAbstraction) {
         if (logAbstraction == null) return 0.0;
-
-        // Set of subtraces in the model (this) that do not appear in the log abstraction
-        Set<String> extraSubtraces = new HashSet<>(subtraces.keySet());
-        extraSubtraces.removeAll(logAbstraction.subtraces.keySet());
-
         if (subtraces.isEmpty()) return 1.0;
 
-        return 1.0 - ((double) extraSubtraces.size() / subtraces.size());
+        // subtraces in the model (this) that do not appear in the log abstraction
+        return 1.0 - ((double) indexOn(logAbstraction).overflow / subtraces.size());
     }
 
 
     public double minus(Abstraction a) {
-        double frequencyPenalty;
-        Set<String> ast;
-
         if (!(a instanceof SubtraceAbstraction)) return -1;
-        SubtraceAbstraction m = (SubtraceAbstraction) a;
-
-        ast = new HashSet<>(subtraces.keySet());
-        ast.removeAll(m.subtraces.keySet());
-//        System.out.println("DEBUG - " + ast.size() + " " + subtraces.size() + " " + m.subtraces.size());
-
-        if (globalGramsCount == 0.0)
-            return 1.0 - (double) ast.size() / subtraces.size();
-
-        frequencyPenalty = 0.0;
-        for (String s : ast) frequencyPenalty += subtraces.get(s).frequency;
-        return 1.0 - frequencyPenalty / globalGramsCount;
+        return computeMAFitness((SubtraceAbstraction) a);
     }
 
     public double minusHUN(Abstraction a) {
@@ -156,15 +213,24 @@ public class SubtraceAbstraction extends Abstraction {
         return matrix;
     }
 
+//    the differences are sorted (see CANONICAL), so that nextMismatch() does not depend on the order of the subtraces in the map
     public ArrayList<String> computeDifferences(SubtraceAbstraction sa) {
-        HashSet<String> setdiff;
-        ArrayList<Subtrace> sortedSubtraces;
-        int next;
-
-        setdiff = new HashSet<>(subtraces.keySet());
-        setdiff.removeAll(sa.subtraces.keySet());
+        Dictionary dictionary = this.dictionary;
+        Index index = sa.index;
+        List<Subtrace> missing = new ArrayList<>();
+
+//        when sa was already indexed on the subtraces of this abstraction (e.g. the process on the log one), the differences are its missing ids
+        if (dictionary != null && index != null && index.dictionary == dictionary) {
+            BitSet present = index.present;
+            for (int id = present.nextClearBit(0); id < dictionary.subtraces.length; id = present.nextClearBit(id + 1))
+                missing.add(dictionary.subtraces[id]);
+        } else {
+            for (Subtrace st : subtraces.values()) if (!sa.subtraces.containsKey(st)) missing.add(st);
+        }
 
-        differences = new ArrayList<>(setdiff);
+        missing.sort(CANONICAL);
+        differences = new ArrayList<>(missing.size());
+        for (Subtrace st : missing) differences.add(st.print());
 
 //        if( globalGramsCount == 0.0 ) {
 //            while( !sortedSubtraces.isEmpty() ) {
@@ -185,6 +251,11 @@ public class SubtraceAbstraction extends Abstraction {
     }
 
     public String nextMismatch() {
+        return nextMismatch(random);
+    }
+
+//    the random mismatch is drawn from the given generator, e.g. a stream of the search (see RandomStreams)
+    public String nextMismatch(Random random) {
         if (differences == null || differences.isEmpty()) return null;
         return differences.remove(random.nextInt(differences.size()));
     }
@@ -198,14 +269,12 @@ public class SubtraceAbstraction extends Abstraction {
         ArrayList<Subtrace> sortedSubtraces;
         int next;
 
-        differences = new HashSet<>(subtraces.keySet());
-        differences.removeAll(sa.subtraces.keySet());
+        differences = new HashSet<>();
 
         sortedSubtraces = new ArrayList<>();
-        for (String st : differences) sortedSubtraces.add(subtraces.get(st));
+        for (Subtrace st : subtraces.values()) if (!sa.subtraces.containsKey(st)) sortedSubtraces.add(st);
         Collections.sort(sortedSubtraces);
 
-        differences.clear();
         neighbours = neighbours < sortedSubtraces.size() ? neighbours : sortedSubtraces.size();
 
         if (globalGramsCount == 0.0) {
@@ -232,11 +301,90 @@ public class SubtraceAbstraction extends Abstraction {
     }
 
     public void print() {
-        for (String st : subtraces.keySet()) System.out.println(st + "-" + subtraces.get(st).isComplete());
+        for (Subtrace st : subtraces.values()) System.out.println(st.print() + "-" + st.isComplete());
         System.out.println("INFO - total subtraces: " + subtraces.size());
     }
 
+    private void invalidate() {
+        dictionary = null;
+        index = null;
+        origin = null;
+    }
+
+//    the dictionary is built once, and shared by all the evaluations (running concurrently) against this abstraction
+    private Dictionary getDictionary() {
+        Dictionary dictionary = this.dictionary;
+        SubtraceAbstraction origin = this.origin;
+        if (dictionary == null && origin != null) this.dictionary = dictionary = origin.getDictionary();
+        if (dictionary == null) {
+            synchronized (this) {
+                if ((dictionary = this.dictionary) == null) this.dictionary = dictionary = new Dictionary(subtraces);
+            }
+        }
+        return dictionary;
+    }
+
+    private Index indexOn(SubtraceAbstraction abstraction) {
+        Dictionary dictionary = abstraction.getDictionary();
+        Index index = this.index;
+        if (index == null || index.dictionary != dictionary) this.index = index = new Index(subtraces, dictionary);
+        return index;
+    }
+
+    /**
+     * the subtraces of an abstraction (usually the log one) numbered from 0, with their frequencies.
+     */
+    private static class Dictionary {
+        private ObjectIntHashMap<Subtrace> ids;
+        private Subtrace[] subtraces;
+        private double[] frequencies;
+
+        Dictionary(MutableMap<Subtrace, Subtrace> subtraces) {
+            int id = 0;
+
+            ids = new ObjectIntHashMap<>(subtraces.size());
+            this.subtraces = new Subtrace[subtraces.size()];
+            frequencies = new double[subtraces.size()];
+
+            for (Subtrace subtrace : subtraces.values()) {
+                ids.put(subtrace, id);
+                this.subtraces[id] = subtrace;
+                frequencies[id] = subtrace.frequency;
+                id++;
+            }
+        }
+    }
+
+    /**
+     * the subtraces of an abstraction (usually a process one) over the dictionary of another one:
+     * the subtraces in the dictionary are the bits set in present, the others are only counted (overflow).
+     */
+    private static class Index {
+        private Dictionary dictionary;
+        private BitSet present;
+        private int overflow;
+
+        Index(MutableMap<Subtrace, Subtrace> subtraces, Dictionary dictionary) {
+            int id;
+
+            this.dictionary = dictionary;
+            present = new BitSet(dictionary.subtraces.length);
+            overflow = 0;
+
+            for (Subtrace subtrace : subtraces.values()) {
+                if ((id = dictionary.ids.getIfAbsent(subtrace, -1)) == -1) overflow++;
+                else present.set(id);
+            }
+        }
+    }
+
     public static SubtraceAbstraction abstractProcessBehaviour(BPMNDiagram diagram, int order, SimpleLog slog) {
+        AutomatonAbstraction automatonAbstraction = abstractAutomaton(diagram, slog);
+        return automatonAbstraction == null ? null : abstractProcessBehaviour(automatonAbstraction, order);
+    }
+
+//    the first step of abstractProcessBehaviour(BPMNDiagram, int, SimpleLog): the automaton of the diagram, labelled with the ids of the log
+    public static AutomatonAbstraction abstractAutomaton(BPMNDiagram diagram, SimpleLog slog) {
         ImportProcessModel importer = new ImportProcessModel();
 
         Object[] objects = BPMNToPetriNetConverter.convert(diagram);
@@ -247,9 +395,7 @@ public class SubtraceAbstraction extends Abstraction {
 
         try {
             Automaton automaton = importer.createFSMfromPetrinet((Petrinet) objects[0], (Marking) objects[1], null, null);
-            AutomatonAbstraction automatonAbstraction = new AutomatonAbstraction(automaton, slog);
-
-            return (new ProcessAbstraction(automatonAbstraction)).subtrace(order);
+            return new AutomatonAbstraction(automaton, slog);
         } catch (Exception e) {
 //            e.printStackTrace();
 //            System.out.println("ERROR - impossible to parse the process object.");
@@ -257,6 +403,15 @@ public class SubtraceAbstraction extends Abstraction {
         }
     }
 
+//    the second step of abstractProcessBehaviour(BPMNDiagram, int, SimpleLog)
+    public static SubtraceAbstraction abstractProcessBehaviour(AutomatonAbstraction automatonAbstraction, int order) {
+        try {
+            return (new ProcessAbstraction(automatonAbstraction)).subtrace(order);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public static SubtraceAbstraction abstractProcessBehaviour(Petrinet pnet, Marking iMarking, int order, SimpleLog slog) {
         ImportProcessModel importer = new ImportProcessModel();
 
@@ -272,6 +427,43 @@ public class SubtraceAbstraction extends Abstraction {
         }
     }
 
+    /**
+     * the accepted strings of the Mk automaton are walked depth first, each prefix is a subtrace shared by its
+     * extensions, and the accepted ones are added as they are reached (the same subtraces as from its finite strings,
+     * see abstractProcessBehaviour(Set, int, Map), without building the strings).
+     */
+    public static SubtraceAbstraction abstractProcessBehaviour(MarkovianAutomatonAbstraction mk, int order) {
+        SubtraceAbstraction abstraction = new SubtraceAbstraction(order);
+        abstractProcessBehaviour(mk.getAutomaton().getInitialState(), true, false, new Subtrace(order), mk.getCharToIDs(), new HashSet<>(), abstraction);
+        return abstraction;
+    }
+
+    private static void abstractProcessBehaviour(State state, boolean initial, boolean marked, Subtrace prefix, Map<Character, Integer> charToIDs,
+                                                 Set<State> path, SubtraceAbstraction abstraction) {
+        Subtrace subtrace;
+        Integer id;
+        char letter;
+
+        if (!path.add(state)) throw new IllegalStateException("the Mk automaton accepts infinitely many strings");
+
+        if (state.isAccept()) {
+            subtrace = marked ? new Subtrace(prefix, Subtrace.INIT) : new Subtrace(prefix);
+            abstraction.addSubtrace(subtrace, 1);
+        }
+
+        for (Transition t : state.getTransitions()) {
+            for (int c = t.getMin(); c <= t.getMax(); c++) {
+//                a leading '+' is read as '-', as by abstractProcessBehaviour(Set, int, Map)
+                letter = (initial && c == '+') ? '-' : (char) c;
+                id = charToIDs.get(letter);
+                subtrace = id == null ? prefix : new Subtrace(prefix, id);
+                abstractProcessBehaviour(t.getDest(), false, letter == '-', subtrace, charToIDs, path, abstraction);
+            }
+        }
+
+        path.remove(state);
+    }
+
     public static SubtraceAbstraction abstractProcessBehaviour(Set<String> traces, int order, Map<Character, Integer> charToIDs) {
         SubtraceAbstraction abstraction = new SubtraceAbstraction(order);
 
@@ -1,5 +1,6 @@
 package au.edu.unimelb.processmining.optimization;
 
+import au.edu.qut.processmining.log.LogCache;
 import au.edu.qut.processmining.log.LogParser;
 import au.edu.qut.processmining.log.SimpleLog;
 import au.edu.unimelb.processmining.accuracy.abstraction.mkAutomaton.MarkovianAutomatonAbstraction;
@@ -25,12 +26,16 @@ import org.processmining.processtree.ptml.exporting.PtmlExportTree;
 import java.io.File;
 import java.sql.Time;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class AutomatedProcessDiscoveryOptimizer {
 
     private static int MAXIT = 10;
     private static int NEIGHBOURHOOD = 5;
     private static int TIMEOUT = 300000;
+    private static int CACHE_SIZE = 10000;
 
     public enum MetaOpt {RLS, ILS, TS, SA, RLSTree, ILSTree, TSTree, SATree}
 
@@ -44,7 +49,21 @@ public class AutomatedProcessDiscoveryOptimizer {
 
     private String modelName;
 
-    private Metaheuristics explorer;
+    private volatile Metaheuristics explorer;
+    private volatile IslandModel islandModel;
+    private int islands = 1;
+    private EvaluationCache evaluationCache;
+
+//    by default a search stops after MAXIT iterations or TIMEOUT ms (see getBudget())
+    private SearchBudget budget;
+    private List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+
+//    the seed of the random choices, in a reproducible run the evaluations are also never timed out
+    private RandomStreams randomStreams = new RandomStreams(1);
+    private boolean reproducible;
+
+//    the pool evaluating the candidate solutions, shared by all the optimizers running in the JVM
+    private static EvaluationPool evaluationPool;
 
     public AutomatedProcessDiscoveryOptimizer(int order, MetaOpt metaheuristics, MinerProxy.MinerTAG mtag) {
         this.order = order;
@@ -52,6 +71,49 @@ public class AutomatedProcessDiscoveryOptimizer {
         this.miner = mtag;
     }
 
+    public static synchronized EvaluationPool getEvaluationPool() {
+        if (evaluationPool == null) evaluationPool = new EvaluationPool(Runtime.getRuntime().availableProcessors(), "apdo-evaluator");
+        return evaluationPool;
+    }
+
+    public void setBudget(SearchBudget budget) {
+        this.budget = budget;
+    }
+
+    public void addListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * a reproducible run takes the same steps (and returns the same model) for the same seed, whatever the number of
+     * threads of the EvaluationPool: the evaluations run until they are done instead of timing out, and the
+     * neighbours are compared in the order they were generated. The budget should then bound the iterations
+     * or the evaluations, a wall-clock or CPU time limit ends the run at a different step each time.
+     * to be called before init(), the seed also shuffles the restart parameters of the miner.
+     */
+    public void setReproducible(long seed) {
+        this.randomStreams = new RandomStreams(seed);
+        this.reproducible = true;
+    }
+
+    /**
+     * with more than one island, the search runs that many instances of the metaheuristics concurrently on an
+     * IslandModel, starting from different restart parameters and sharing their evaluations, the abstractions of
+     * the log and their best solutions. The budget is the one of each island.
+     */
+    public void setIslands(int islands) {
+        if( islands < 1 ) throw new IllegalArgumentException("at least one island is needed: " + islands);
+        this.islands = islands;
+    }
+
+//    can be called while searching, from any thread, to take the best model found so far
+    public SearchSolution getBestSolution() {
+        IslandModel islandModel = this.islandModel;
+        Metaheuristics explorer = this.explorer;
+        if( islandModel != null ) return islandModel.getBestSolution();
+        return explorer == null ? null : explorer.getBestSolution();
+    }
+
     public boolean init(String logPath) {
         XLog xlog;
         modelName = logPath.substring(logPath.lastIndexOf("/") + 1);
@@ -61,81 +123,134 @@ public class AutomatedProcessDiscoveryOptimizer {
 //        System.out.println("MODEL NAME = " + modelName);
 
         try {
-            xlog = LogImporter.importFromFile(new XFactoryNaiveImpl(), logPath);
-            slog = LogParser.getSimpleLog(xlog, new XEventNameClassifier());
+//            the XLog is needed only by the inductive miner and to discover process trees, otherwise the cached log is enough
+            if (miner == MinerProxy.MinerTAG.IM || metaheuristics.toString().endsWith("Tree")) {
+                xlog = LogImporter.importFromFile(new XFactoryNaiveImpl(), logPath);
+                slog = LogParser.getSimpleLog(xlog, new XEventNameClassifier(), true);
+            } else slog = LogCache.getSimpleLog(logPath, new XEventNameClassifier());
+            if (slog == null) throw new IOException("log not loaded: " + logPath);
         } catch (Exception e) {
             System.out.println("ERROR - impossible to load the log");
             slog = null;
             return false;
         }
-        minerProxy = new MinerProxy(miner, slog);
+        minerProxy = new MinerProxy(miner, slog, randomStreams.getSeed(), 0);
+        if (reproducible) minerProxy.setTimeout(Integer.MAX_VALUE);
+//        the evaluations depend on the log and the miner, so the cache lives as long as the proxy
+        evaluationCache = new EvaluationCache(CACHE_SIZE);
         return true;
     }
 
     public BPMNDiagram searchOptimalBPMN() throws Exception {
 
+        if( islands > 1 ) {
+            if( metaheuristics.toString().endsWith("Tree") ) {
+                System.out.println("ERROR - " + metaheuristics + " does not discover BPMN models");
+                return null;
+            }
+            bpmn = createIslandModel().searchOptimalSolution(slog, Collections.nCopies(islands, metaheuristics), order, NEIGHBOURHOOD, getBudget(), modelName);
+            System.out.println("INFO - evaluation cache > " + evaluationCache);
+            exportBPMN(bpmn, "./" + metaheuristics.toString() + "_" + islands + "_" + modelName + ".bpmn");
+            return bpmn;
+        }
+
         switch (metaheuristics) {
             case RLS:
-                explorer = new RepeatedLocalSearch(minerProxy);
-                bpmn = explorer.searchOptimalSolution(slog, order, MAXIT, NEIGHBOURHOOD, TIMEOUT, modelName);
+                explorer = createExplorer(new RepeatedLocalSearch(minerProxy, getEvaluationPool(), evaluationCache));
                 break;
             case ILS:
-                explorer = new IteratedLocalSearch(minerProxy);
-                bpmn = explorer.searchOptimalSolution(slog, order, MAXIT, NEIGHBOURHOOD, TIMEOUT, modelName);
+                explorer = createExplorer(new IteratedLocalSearch(minerProxy, getEvaluationPool(), evaluationCache));
                 break;
             case TS:
-                explorer = new TabuSearch(minerProxy);
-                bpmn = explorer.searchOptimalSolution(slog, order, MAXIT, NEIGHBOURHOOD, TIMEOUT, modelName);
+                explorer = createExplorer(new TabuSearch(minerProxy, getEvaluationPool(), evaluationCache));
                 break;
             case SA:
-                explorer = new SimulatedAnnealing(minerProxy);
-                bpmn = explorer.searchOptimalSolution(slog, order, MAXIT, NEIGHBOURHOOD, TIMEOUT, modelName);
+                explorer = createExplorer(new SimulatedAnnealing(minerProxy, getEvaluationPool(), evaluationCache));
                 break;
+            default:
+                System.out.println("ERROR - " + metaheuristics + " does not discover BPMN models");
+                return null;
         }
+        bpmn = explorer.searchOptimalSolution(slog, order, NEIGHBOURHOOD, getBudget(), modelName);
+        System.out.println("INFO - evaluation cache > " + evaluationCache);
 
         //exportBPMN(bpmn, ".\\models\\bpmn" + metaheuristics.toString() + order + ".bpmn");
-        exportBPMN(bpmn, "C:\\Users\\Amer\\Downloads\\Evaluation models" + metaheuristics.toString() + "_" + modelName + ".bpmn");
+        exportBPMN(bpmn, "./" + metaheuristics.toString() + "_" + modelName + ".bpmn");
 
         return bpmn;
     }
 
-    public EfficientTree searchOptimalTree() throws IOException {
+    public EfficientTree searchOptimalTree() throws Exception {
+
+        if( islands > 1 ) {
+            if( !metaheuristics.toString().endsWith("Tree") ) {
+                System.out.println("ERROR - " + metaheuristics + " does not discover process trees");
+                return null;
+            }
+            tree = createIslandModel().searchOptimalTree(slog, Collections.nCopies(islands, metaheuristics), order, NEIGHBOURHOOD, getBudget(), modelName);
+            System.out.println("INFO - evaluation cache > " + evaluationCache);
+            if( tree != null ) exportTree(tree, "./" + metaheuristics.toString() + "_" + islands + "_" + modelName + ".ptml");
+            return tree;
+        }
 
         switch (metaheuristics) {
             case RLSTree:
-                explorer = new RepeatedLocalSearch(minerProxy);
-                tree = explorer.searchOptimalTree(slog, order, MAXIT, NEIGHBOURHOOD, TIMEOUT, modelName);
+                explorer = createExplorer(new RepeatedLocalSearch(minerProxy, getEvaluationPool(), evaluationCache));
                 break;
             case ILSTree:
-                explorer = new IteratedLocalSearch(minerProxy);
-                tree = explorer.searchOptimalTree(slog, order, MAXIT, NEIGHBOURHOOD, TIMEOUT, modelName);
+                explorer = createExplorer(new IteratedLocalSearch(minerProxy, getEvaluationPool(), evaluationCache));
                 break;
             case TSTree:
-                explorer = new TabuSearch(minerProxy);
-                tree = explorer.searchOptimalTree(slog, order, MAXIT, NEIGHBOURHOOD, TIMEOUT, modelName);
+                explorer = createExplorer(new TabuSearch(minerProxy, getEvaluationPool(), evaluationCache));
                 break;
             case SATree:
-                explorer = new SimulatedAnnealing(minerProxy);
-                tree = explorer.searchOptimalTree(slog, order, MAXIT, NEIGHBOURHOOD, TIMEOUT, modelName);
+                explorer = createExplorer(new SimulatedAnnealing(minerProxy, getEvaluationPool(), evaluationCache));
                 break;
+            default:
+                System.out.println("ERROR - " + metaheuristics + " does not discover process trees");
+                return null;
         }
+        tree = explorer.searchOptimalTree(slog, order, NEIGHBOURHOOD, getBudget(), modelName);
+        System.out.println("INFO - evaluation cache > " + evaluationCache);
+        System.out.println("INFO - Mk cache > " + MarkovianAutomatonAbstraction.getCache());
 
 
-        /*AcceptingPetriNet net = EfficientTree2AcceptingPetriNet.convert(tree);
-        PnmlExportNetToPNML exporter = new PnmlExportNetToPNML();
-        try {
-            exporter.exportPetriNetToPNMLFile(new FakePluginContext(), net.getNet(), new File("C:\\Users\\Amer\\gitprojects\\bpmtk\\models\\ILSTree best.pnml"));
-        } catch (java.io.IOException e) {
-            e.printStackTrace();
-        }*/
-
         EfficientTree2processTree.convert(tree);
-        exportTreeAsPTML(tree, "C:\\Users\\Amer\\Downloads\\Raising k models\\" + metaheuristics.toString() + order + ".ptml");
+        exportTreeAsPTML(tree, "./" + metaheuristics.toString() + order + ".ptml");
         exportTree(tree, "./" + metaheuristics.toString() + "_" + modelName + ".ptml");
 
         return tree;
     }
 
+    private IslandModel createIslandModel() {
+        IslandModel islandModel = new IslandModel(miner, getEvaluationPool(), evaluationCache);
+        for (SearchListener listener : listeners) islandModel.addListener(listener);
+        if (reproducible) islandModel.setReproducible(randomStreams.getSeed());
+        this.islandModel = islandModel;
+        return islandModel;
+    }
+
+    private Metaheuristics createExplorer(Metaheuristics explorer) {
+        for (SearchListener listener : listeners) explorer.addListener(listener);
+        explorer.setRandomStreams(randomStreams);
+        return explorer;
+    }
+
+//    the default budgets keep the limits the searches had before the budgets: RLS and the ILS and RLS trees were not
+//    bounded by the wall-clock time, only by MAXIT iterations
+    private SearchBudget getBudget() {
+        if( budget != null ) return budget;
+
+        switch (metaheuristics) {
+            case RLS:
+            case RLSTree:
+            case ILSTree:
+                return SearchBudget.unlimited().iterations(MAXIT);
+            default:
+                return SearchBudget.of(MAXIT, TIMEOUT);
+        }
+    }
+
     public static void exportTreeAsPTML(EfficientTree et, String path) {
         // Convert EfficientTree to ProcessTree
         ProcessTree pt = EfficientTree2processTree.convert(et);
@@ -0,0 +1,77 @@
+package au.edu.unimelb.processmining.optimization;
+
+import java.util.*;
+
+/**
+ * Best solutions found by the islands of an IslandModel, ranked by f-score. Each island offers its improvements
+ * to the archive and takes from it the elites of the other islands better than its own best solution.
+ * An SDFG is archived once, with the best solution found for it.
+ */
+public class EliteArchive {
+
+    private int capacity;
+    private List<Elite> elites;
+    private Map<Integer, Double> islandsBest;
+
+    public EliteArchive(int capacity) {
+        this.capacity = capacity;
+        this.elites = new ArrayList<>();
+        this.islandsBest = new HashMap<>();
+    }
+
+    /**
+     * @return true if the solution is the new best one of the archive
+     */
+    public synchronized boolean offer(int island, SearchSolution solution) {
+        Double best = islandsBest.get(island);
+        if( best == null || solution.getFscore() > best ) islandsBest.put(island, solution.getFscore());
+
+        for( Iterator<Elite> i = elites.iterator(); i.hasNext(); ) {
+            Elite elite = i.next();
+            if( elite.solution.getSDFG().equals(solution.getSDFG()) ) {
+                if( elite.solution.getFscore() >= solution.getFscore() ) return false;
+                i.remove();
+                break;
+            }
+        }
+
+        int position = 0;
+        while( position < elites.size() && elites.get(position).solution.getFscore() >= solution.getFscore() ) position++;
+        if( position == capacity ) return false;
+
+        elites.add(position, new Elite(island, solution));
+        if( elites.size() > capacity ) elites.remove(capacity);
+        return position == 0;
+    }
+
+    /**
+     * @return the best elite found by another island that is better than the best solution of the given island
+     * and that was not taken already (as recorded in taken), or null
+     */
+    public synchronized SearchSolution immigrant(int island, Set<SearchSolution> taken) {
+        Double best = islandsBest.get(island);
+
+        for( Elite elite : elites ) {
+            if( best != null && elite.solution.getFscore() <= best ) return null;
+            if( elite.island != island && taken.add(elite.solution) ) return elite.solution;
+        }
+
+        return null;
+    }
+
+    public synchronized SearchSolution getBest() {
+        return elites.isEmpty() ? null : elites.get(0).solution;
+    }
+
+    public synchronized int size() { return elites.size(); }
+
+    private static class Elite {
+        private int island;
+        private SearchSolution solution;
+
+        Elite(int island, SearchSolution solution) {
+            this.island = island;
+            this.solution = solution;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package au.edu.unimelb.processmining.optimization;
+
+import au.edu.unimelb.processmining.accuracy.abstraction.intermediate.ActivityGraph;
+import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the evaluations of the SDFGs explored by the metaheuristics, which often come back to the same SDFG
+ * (after a perturbation, a restart, or in a tabu cycle). An evaluation is identified by the SDFG (its edges and
+ * its parallelisms), the order k of the subtrace abstraction and the kind of model (BPMN or process tree),
+ * and it is the Object[] returned by MarkovianBasedEvaluator: {fitness, precision, fscore, staProcess, model, time}.
+ * Only the successful evaluations are cached.
+ *
+ * The cache also memoises the process abstractions of the evaluated models by their ModelFingerprint: a neighbour SDFG
+ * whose model is isomorphic to an evaluated one (typically its parent's, when the miner absorbs the edges added or
+ * removed) reuses its abstraction, and only the fitness and precision are computed (see MarkovianBasedEvaluator).
+ * With the abstractions, it memoises the activity graphs of the models whose behaviour is local (see ActivityGraph):
+ * the abstraction of a neighbour whose behaviour differs from its parent's only by directly-follows pairs is updated
+ * from the parent's one, the other abstractions are computed from scratch.
+ */
+public class EvaluationCache {
+
+    private Map<Key, Object[]> evaluations;
+    private Map<String, SubtraceAbstraction> behaviours;
+    private Map<String, ActivityGraph> graphs;
+    private AtomicLong hits;
+    private AtomicLong misses;
+    private AtomicLong reuses;
+    private AtomicLong updates;
+
+    public EvaluationCache(final int capacity) {
+        evaluations = new LinkedHashMap<Key, Object[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object[]> eldest) {
+                return size() > capacity;
+            }
+        };
+        behaviours = new LinkedHashMap<String, SubtraceAbstraction>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SubtraceAbstraction> eldest) {
+                return size() > capacity;
+            }
+        };
+        graphs = new LinkedHashMap<String, ActivityGraph>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ActivityGraph> eldest) {
+                return size() > capacity;
+            }
+        };
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        reuses = new AtomicLong();
+        updates = new AtomicLong();
+    }
+
+    /**
+     * @return the evaluation of the SDFG as a completed Future, or null if the SDFG was not evaluated yet
+     */
+    public Future<Object[]> lookup(SimpleDirectlyFollowGraph sdfg, int order, boolean tree) {
+        Object[] evaluation;
+
+        synchronized (this) { evaluation = evaluations.get(new Key(sdfg, order, tree)); }
+
+        if( evaluation == null ) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+//        the searches iterate over the differences of their current abstraction, each one gets its own copy
+        evaluation = evaluation.clone();
+        evaluation[3] = new SubtraceAbstraction((SubtraceAbstraction) evaluation[3]);
+        return CompletableFuture.completedFuture(evaluation);
+    }
+
+    /**
+     * @return the given evaluation of the SDFG, storing its result in the cache
+     */
+    public Callable<Object[]> memoize(SimpleDirectlyFollowGraph sdfg, int order, boolean tree, final Callable<Object[]> evaluation) {
+        final Key key = new Key(sdfg, order, tree);
+
+        return new Callable<Object[]>() {
+            @Override
+            public Object[] call() throws Exception {
+                Object[] result = evaluation.call();
+//                a failed or cancelled evaluation has no abstraction of the process
+                if( result != null && result.length > 3 && result[3] != null && !Thread.currentThread().isInterrupted() )
+                    synchronized (EvaluationCache.this) { evaluations.put(key, result); }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the memoised process abstraction of order k of the model with the given fingerprint,
+     * or null if no isomorphic model was evaluated yet
+     */
+    public SubtraceAbstraction lookupBehaviour(String fingerprint, int order) {
+        SubtraceAbstraction abstraction;
+
+        synchronized (this) { abstraction = behaviours.get(order + fingerprint); }
+        if( abstraction == null ) return null;
+
+        reuses.incrementAndGet();
+        return new SubtraceAbstraction(abstraction);
+    }
+
+    /**
+     * @return the process abstraction of order k of a model with the given activity graph, updated from the memoised
+     * one of the model with the given fingerprint (e.g. its parent), or null if that model was not evaluated yet,
+     * its behaviour is not local, or the two behaviours differ by more than directly-follows pairs (see ActivityGraph)
+     */
+    public SubtraceAbstraction updateBehaviour(String fingerprint, int order, ActivityGraph graph) {
+        SubtraceAbstraction abstraction;
+        ActivityGraph parent;
+
+        synchronized (this) {
+            abstraction = behaviours.get(order + fingerprint);
+            parent = graphs.get(fingerprint);
+        }
+        if( abstraction == null || parent == null ) return null;
+
+        if( (abstraction = graph.update(abstraction, parent, order)) != null ) updates.incrementAndGet();
+        return abstraction;
+    }
+
+//    the activity graph is null if the behaviour of the model is not local
+    public void storeBehaviour(String fingerprint, int order, SubtraceAbstraction abstraction, ActivityGraph graph) {
+        abstraction = new SubtraceAbstraction(abstraction);
+        synchronized (this) {
+            behaviours.put(order + fingerprint, abstraction);
+            if( graph != null ) graphs.put(fingerprint, graph);
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+
+    public long getMisses() { return misses.get(); }
+
+    public synchronized int size() { return evaluations.size(); }
+
+    public long getReuses() { return reuses.get(); }
+
+    public long getUpdates() { return updates.get(); }
+
+    public synchronized void clear() {
+        evaluations.clear();
+        behaviours.clear();
+        graphs.clear();
+    }
+
+    @Override
+    public String toString() {
+        long h = hits.get(), m = misses.get();
+        return "hits: " + h + ", misses: " + m + ", hit-rate: " + (h + m == 0 ? 0.0 : (double) h / (h + m)) + ", size: " + size() + ", memoised abstractions reused: " + reuses.get() + ", updated: " + updates.get();
+    }
+
+    private static class Key {
+        private BitSet dfg;
+        private Map<Integer, HashSet<Integer>> parallelisms;
+        private int order;
+        private boolean tree;
+        private int hash;
+
+        Key(SimpleDirectlyFollowGraph sdfg, int order, boolean tree) {
+//            the SDFGs can be modified after being evaluated, the key keeps a copy of them
+            this.dfg = (BitSet) sdfg.getMatrixDFG().clone();
+            this.parallelisms = new HashMap<>();
+//            the sets of parallelisms are shared by the copies of an SDFG, and changed in place (see isAddable)
+            if( sdfg.getParallelisms() != null )
+                for( Map.Entry<Integer, HashSet<Integer>> entry : sdfg.getParallelisms().entrySet() )
+                    parallelisms.put(entry.getKey(), new HashSet<>(entry.getValue()));
+            this.order = order;
+            this.tree = tree;
+            this.hash = Objects.hash(dfg, parallelisms, order, tree);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object o) {
+            if( !(o instanceof Key) ) return false;
+            Key k = (Key) o;
+            return hash == k.hash && order == k.order && tree == k.tree && dfg.equals(k.dfg) && parallelisms.equals(k.parallelisms);
+        }
+    }
+}
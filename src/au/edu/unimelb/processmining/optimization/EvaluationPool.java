@@ -0,0 +1,80 @@
+package au.edu.unimelb.processmining.optimization;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived pool evaluating the candidate solutions of the metaheuristics (see AutomatedProcessDiscoveryOptimizer).
+ * It is a work-stealing pool with a bounded number of threads, shared by all the searches running in the JVM,
+ * so that they do not create (and kill) threads at each iteration, nor more threads than cores.
+ *
+ * Cancellation is cooperative: the pool is never shut down by a search, and cancelling an evaluation
+ * (Future.cancel(true)) interrupts the thread running it, the evaluation is expected to check the interrupt.
+ */
+public class EvaluationPool implements Executor {
+
+    private ForkJoinPool pool;
+
+    public EvaluationPool(int threads, final String name) {
+        final AtomicInteger count = new AtomicInteger();
+
+        pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + "-" + count.incrementAndGet());
+                return thread;
+            }
+        }, null, true);
+    }
+
+    public int getThreads() { return pool.getParallelism(); }
+
+//    the tasks are FutureTasks (not ForkJoinTasks), because only the former are interrupted when cancelled
+    public Future<Object[]> submit(Callable<Object[]> evaluation) {
+        FutureTask<Object[]> future = new FutureTask<>(evaluation);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * evaluates and waits for the result, the evaluation is cancelled if it does not complete within the timeout.
+     */
+    public Object[] evaluate(Callable<Object[]> evaluation, long timeout) throws InterruptedException, ExecutionException, TimeoutException {
+        Future<Object[]> future = submit(evaluation);
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch( TimeoutException | InterruptedException e ) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * evaluates within the remaining time of the budget, e.g. the best model again when a search raises its order k.
+     * @return the result of the evaluation, or null if the budget ran out before it completed (the search is then over)
+     */
+    public Object[] evaluate(Callable<Object[]> evaluation, SearchBudget budget) throws InterruptedException, ExecutionException {
+        try {
+            return evaluate(evaluation, budget.getRemainingTime());
+        } catch( TimeoutException e ) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+//                a cancellation may interrupt the thread just after its previous task completed
+                Thread.interrupted();
+                task.run();
+            }
+        });
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
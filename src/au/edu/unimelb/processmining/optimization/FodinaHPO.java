@@ -1,23 +1,23 @@
 package au.edu.unimelb.processmining.optimization;
 
 import au.edu.qut.bpmn.metrics.ComplexityCalculator;
-import au.edu.qut.processmining.log.LogParser;
+import au.edu.qut.processmining.log.LogCache;
 import au.edu.qut.processmining.log.SimpleLog;
 import au.edu.unimelb.processmining.accuracy.abstraction.LogAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
-import com.raffaeleconforti.log.util.LogImporter;
 import org.deckfour.xes.classification.XEventNameClassifier;
-import org.deckfour.xes.factory.XFactoryNaiveImpl;
-import org.deckfour.xes.model.XLog;
 import org.processmining.fodina.Fodina;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.plugins.bpmnminer.types.MinerSettings;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FodinaHPO {
 
     private static int MKO = 5;
+    private static long TIMEOUT = 600000;
 
     private static double l_STEP = 0.05D;
     private static double l_MIN = 0.00D;
@@ -28,27 +28,17 @@ public class FodinaHPO {
     private static double d_MAX = 1.05D;
 
     public BPMNDiagram hyperparamEvaluation(String logPath) {
-        Fodina fodina = new Fodina();
         SimpleLog slog;
-        BPMNDiagram bpmn;
-        BPMNDiagram bestBPMN = null;
-        double[] bestAccuracy = {0.0, 0.0, 0.0};
-
-        ComplexityCalculator complexityCalculator = new ComplexityCalculator();
-        SubtraceAbstraction staLog, staProcess;
-
-        double fit;
-        double prec;
-        Double score;
-        int size;
-        int cfc;
-        double struct;
-        long eTime;
+        SubtraceAbstraction staLog;
         long teTime;
 
-        String combination;
         Double l_threshold;
         Double d_threshold;
+        final List<double[]> thresholds = new ArrayList<>();
+        List<Configuration> configurations = new ArrayList<>();
+
+        final BPMNDiagram[] bestBPMN = {null};
+        final double[] bestAccuracy = {0.0, 0.0, 0.0};
 
         PrintWriter writer;
 
@@ -58,8 +48,8 @@ public class FodinaHPO {
         if(!lName.contains("PRT")) lName = "PUB" + lName;
 
         try {
-            XLog xlog = LogImporter.importFromFile(new XFactoryNaiveImpl(), logPath);
-            slog = LogParser.getSimpleLog(xlog, new XEventNameClassifier());
+            slog = LogCache.getSimpleLog(logPath, new XEventNameClassifier());
+            if (slog == null) throw new IOException("log not loaded: " + logPath);
         } catch (Exception e) {
                     e.printStackTrace();
             System.out.println("ERROR - impossible to load the log");
@@ -76,65 +66,97 @@ public class FodinaHPO {
             System.out.println("ERROR - impossible to create the file for storing the results: printing only on terminal.");
         }
 
-        MinerSettings settings = new MinerSettings();
         staLog = LogAbstraction.subtrace(slog, MKO);
 
-        System.setOut(new PrintStream(new OutputStream() {
-            @Override
-            public void write(int b) throws IOException {}
-        }));
-
         teTime = System.currentTimeMillis();
         d_threshold = d_MIN;
         do {
             l_threshold = l_MIN;
             do {
-                try {
-
-                    eTime = System.currentTimeMillis();
-                    settings.dependencyThreshold = d_threshold;
-                    settings.l1lThreshold = l_threshold;
-                    settings.l2lThreshold = l_threshold;
-                    bpmn = fodina.discoverBPMNDiagram(slog, settings);
-
-                    staProcess = SubtraceAbstraction.abstractProcessBehaviour(bpmn, MKO, slog);
-                    fit = staLog.minus(staProcess);
-                    prec = staProcess.minus(staLog);
-
-                    complexityCalculator.setBPMN(bpmn);
-                    size = Integer.valueOf(complexityCalculator.computeSize());
-                    cfc = Integer.valueOf(complexityCalculator.computeCFC());
-                    struct = Double.valueOf(complexityCalculator.computeStructuredness());
-
-                    score = (fit * prec * 2) / (fit + prec);
-                    if( score.isNaN() ) score = -1.0;
-
-                    eTime = System.currentTimeMillis() - eTime;
-                    combination = d_threshold + "," + l_threshold + "," + fit + "," + prec + "," + score + "," + size + "," + cfc + "," + struct + "," + ((double)eTime/1000.0);
-                    writer.println(combination);
-                    writer.flush();
-
-                    if(bestAccuracy[2] < score) {
-                        bestAccuracy[0] = fit;
-                        bestAccuracy[1] = prec;
-                        bestAccuracy[2] = score;
-                        bestBPMN = bpmn;
-                    }
-
-                } catch (Exception e) {
-//                    e.printStackTrace();
-                    System.out.println("ERROR - fodina output model broken @ " + d_threshold + " : " + l_threshold);
-                }
+                thresholds.add(new double[]{d_threshold, l_threshold});
+                configurations.add(new Configuration(slog, staLog, d_threshold, l_threshold));
                 l_threshold += l_STEP;
             } while ( l_threshold <= l_MAX);
             d_threshold += d_STEP;
         } while( d_threshold <= d_MAX);
 
+        final PrintWriter results = writer;
+        (new GridEvaluator(TIMEOUT)).evaluate(configurations, new GridEvaluator.Listener() {
+            @Override
+            public void onResult(GridEvaluator.Result result) {
+                double[] t = thresholds.get(result.getIndex());
+                Object[] r = result.getValues();
+
+                System.out.print(result.getLog());
+                if( r == null ) {
+                    System.out.println("ERROR - fodina output model " + (result.isTimedOut() ? "timed out" : "broken") + " @ " + t[0] + " : " + t[1]);
+                    return;
+                }
+
+                results.println(t[0] + "," + t[1] + "," + r[1] + "," + r[2] + "," + r[3] + "," + r[4] + "," + r[5] + "," + r[6] + "," + ((Long)r[7]/1000.0));
+                results.flush();
+
+                if(bestAccuracy[2] < (Double) r[3]) {
+                    bestAccuracy[0] = (Double) r[1];
+                    bestAccuracy[1] = (Double) r[2];
+                    bestAccuracy[2] = (Double) r[3];
+                    bestBPMN[0] = (BPMNDiagram) r[0];
+                }
+            }
+        });
+
         writer.println("-,-," + bestAccuracy[0] + "," + bestAccuracy[1] + "," + bestAccuracy[2] + ",-,-,-," + (double)(System.currentTimeMillis() - teTime)/1000.0);
         writer.flush();
         writer.close();
-        AutomatedProcessDiscoveryOptimizer.exportBPMN(bestBPMN, ".\\fohpo_" + lName + "_best.bpmn");
-        return bestBPMN;
+        AutomatedProcessDiscoveryOptimizer.exportBPMN(bestBPMN[0], ".\\fohpo_" + lName + "_best.bpmn");
+        return bestBPMN[0];
     }
 
+//    returns {bpmn, fitness, precision, fscore, size, cfc, structuredness, mining-time}
+    private static class Configuration implements GridEvaluator.Task {
+        private SimpleLog slog;
+        private SubtraceAbstraction staLog;
+        private double d_threshold;
+        private double l_threshold;
+
+        Configuration(SimpleLog slog, SubtraceAbstraction staLog, double d_threshold, double l_threshold) {
+            this.slog = slog;
+            this.staLog = staLog;
+            this.d_threshold = d_threshold;
+            this.l_threshold = l_threshold;
+        }
+
+        @Override
+        public Object[] call(PrintStream log) {
+            Fodina fodina = new Fodina();
+            MinerSettings settings = new MinerSettings();
+            ComplexityCalculator complexityCalculator = new ComplexityCalculator();
+            SubtraceAbstraction staProcess;
+            BPMNDiagram bpmn;
+            double fit, prec;
+            Double score;
+            long eTime = System.currentTimeMillis();
+
+            settings.dependencyThreshold = d_threshold;
+            settings.l1lThreshold = l_threshold;
+            settings.l2lThreshold = l_threshold;
+            bpmn = fodina.discoverBPMNDiagram(slog, settings);
+
+            staProcess = SubtraceAbstraction.abstractProcessBehaviour(bpmn, MKO, slog);
+            fit = staLog.minus(staProcess);
+            prec = staProcess.minus(staLog);
+
+            complexityCalculator.setBPMN(bpmn);
+
+            score = (fit * prec * 2) / (fit + prec);
+            if( score.isNaN() ) score = -1.0;
+            log.println("INFO - fodina @ " + d_threshold + " : " + l_threshold + " > fitness, precision, f-score: " + fit + ", " + prec + ", " + score);
+
+            return new Object[]{bpmn, fit, prec, score,
+                    Integer.valueOf(complexityCalculator.computeSize()),
+                    Integer.valueOf(complexityCalculator.computeCFC()),
+                    Double.valueOf(complexityCalculator.computeStructuredness()),
+                    System.currentTimeMillis() - eTime};
+        }
+    }
 }
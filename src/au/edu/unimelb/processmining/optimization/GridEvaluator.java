@@ -0,0 +1,143 @@
+package au.edu.unimelb.processmining.optimization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Evaluates the configurations of a hyper-parameter grid on a bounded pool of threads.
+ * Each configuration is a Task returning its results (an Object[] as the evaluators of this package),
+ * it must use its own miner instance, while the log and its abstraction can be shared (read-only).
+ * A configuration running for more than the timeout is cancelled (interrupted): its result is null.
+ * The results are delivered to the Listener in the order of the grid, on the calling thread, so that they
+ * can be written as they arrive and still in deterministic order.
+ *
+ * Each configuration is given its own PrintStream, what it prints there ends up in its Result.getLog().
+ * The evaluator never replaces System.out: what the miners print there still goes to the terminal.
+ */
+public class GridEvaluator {
+
+    public interface Listener {
+        void onResult(Result result);
+    }
+
+    public interface Task {
+        Object[] call(PrintStream log) throws Exception;
+    }
+
+    private int threads;
+    private long timeout;
+
+    public GridEvaluator(int threads, long timeout) {
+        this.threads = threads;
+        this.timeout = timeout;
+    }
+
+    public GridEvaluator(long timeout) {
+        this(Runtime.getRuntime().availableProcessors(), timeout);
+    }
+
+    public void evaluate(List<? extends Task> configurations, Listener listener) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, daemonThreads("grid-evaluator"));
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreads("grid-watchdog"));
+        List<Evaluation> evaluations = new ArrayList<>(configurations.size());
+        Evaluation evaluation;
+
+        try {
+            for( int i = 0; i < configurations.size(); i++ ) {
+                evaluation = new Evaluation(configurations.get(i), watchdog);
+                evaluations.add(evaluation);
+                executor.execute(evaluation.future);
+            }
+
+            for( int i = 0; i < evaluations.size(); i++ ) {
+                listener.onResult(evaluations.get(i).result(i));
+                evaluations.set(i, null);
+            }
+        } finally {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    private ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            private int count = 0;
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public static class Result {
+        private int index;
+        private Object[] values;
+        private String log;
+        private Exception error;
+        private boolean timedOut;
+
+        public int getIndex() { return index; }
+
+//        null if the configuration failed or timed out
+        public Object[] getValues() { return values; }
+
+        public String getLog() { return log; }
+
+        public Exception getError() { return error; }
+
+        public boolean isTimedOut() { return timedOut; }
+    }
+
+    private class Evaluation implements Callable<Object[]> {
+        private Task configuration;
+        private ScheduledExecutorService watchdog;
+        private ByteArrayOutputStream log;
+        private FutureTask<Object[]> future;
+
+        Evaluation(Task configuration, ScheduledExecutorService watchdog) {
+            this.configuration = configuration;
+            this.watchdog = watchdog;
+            this.log = new ByteArrayOutputStream();
+            this.future = new FutureTask<>(this);
+        }
+
+        @Override
+        public Object[] call() throws Exception {
+//            the timeout starts when the configuration starts, not when it is queued
+            ScheduledFuture<?> alarm = watchdog.schedule(new Runnable() {
+                @Override
+                public void run() { future.cancel(true); }
+            }, timeout, TimeUnit.MILLISECONDS);
+
+            try {
+                return configuration.call(new PrintStream(log, true));
+            } finally {
+                alarm.cancel(false);
+            }
+        }
+
+        Result result(int index) {
+            Result result = new Result();
+            result.index = index;
+
+            try {
+                result.values = future.get();
+            } catch( CancellationException e ) {
+                result.timedOut = true;
+            } catch( ExecutionException e ) {
+                result.error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                result.error = e;
+            }
+
+            result.log = log.toString();
+            return result;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import au.edu.qut.bpmn.helper.Petrinet2BPMNConverter;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.List;
 
 public class InductiveHPO {
 
@@ -30,32 +31,28 @@ public class InductiveHPO {
     private static float f_MIN = 0.15F;
     private static float f_MAX = 1.01F;
 
+    private static long TIMEOUT = 600000;
+
     public BPMNDiagram hyperparamEvaluation(String logPath) {
         PnmlExportNetToPNML exporter = new PnmlExportNetToPNML();
-        IMPetriNet inductive = new IMPetriNet();
-        MiningParametersIMf imParams = new MiningParametersIMf();
-        Object[] result;
         XLog xlog;
         SimpleLog slog;
 
-        AcceptingPetriNet bestPN = null;
+        final AcceptingPetriNet[] bestPN = {null};
         BPMNDiagram bestBPMN = null;
-        double[] bestAccuracy = {0.0, 0.0, 0.0};
+        final double[] bestAccuracy = {0.0, 0.0, 0.0};
 
         ComplexityCalculator complexityCalculator = new ComplexityCalculator();
-        SubtraceAbstraction staLog, staProcess;
+        SubtraceAbstraction staLog;
 
-        double fit;
-        double prec;
-        Double score;
         int size = 0;
         int cfc = 0;
         double struct = 0;
-        long eTime;
         long teTime;
 
-        String combination;
         float f_threshold;
+        final List<Float> thresholds = new ArrayList<>();
+        List<Configuration> configurations = new ArrayList<>();
 
         PrintWriter writer;
 
@@ -85,50 +82,42 @@ public class InductiveHPO {
 
         staLog = LogAbstraction.subtrace(slog, MKO);
 
-//        System.setOut(new PrintStream(new OutputStream() {
-//            @Override
-//            public void write(int b) throws IOException {}
-//        }));
-
         teTime = System.currentTimeMillis();
-            f_threshold = f_MIN;
-            do {
-                try {
-
-                    eTime = System.currentTimeMillis();
-                    imParams.setNoiseThreshold(f_threshold);
-                    result = inductive.minePetriNetParameters(new org.processmining.plugins.kutoolbox.utils.FakePluginContext(), xlog, imParams);
-
-                    staProcess = SubtraceAbstraction.abstractProcessBehaviour((Petrinet) result[0], (Marking) result[1], MKO, slog);
-                    fit = staLog.minus(staProcess);
-                    prec = staProcess.minus(staLog);
-
-                    score = (fit * prec * 2) / (fit + prec);
-                    if( score.isNaN() ) score = -1.0;
-
-                    eTime = System.currentTimeMillis() - eTime;
-                    combination = + f_threshold + "," + fit + "," + prec + "," + score + "," + size + "," + cfc + "," + struct + "," + ((double)eTime/1000.0);
-                    writer.println(combination);
-                    writer.flush();
-
-                    if(bestAccuracy[2] < score) {
-                        bestAccuracy[0] = fit;
-                        bestAccuracy[1] = prec;
-                        bestAccuracy[2] = score;
-                        bestPN = new AcceptingPetriNetImpl((Petrinet) result[0], (Marking) result[1], (Marking) result[2]);
-                    }
-
-                    System.out.println("DEBUG - hello " + f_threshold);
-                } catch (Exception e) {
-//                    e.printStackTrace();
-                    System.out.println("ERROR - im output model broken @ " + f_threshold);
+        f_threshold = f_MIN;
+        do {
+            thresholds.add(f_threshold);
+            configurations.add(new Configuration(xlog, slog, staLog, f_threshold));
+            f_threshold += f_STEP;
+        } while ( f_threshold <= f_MAX);
+
+        final PrintWriter results = writer;
+        (new GridEvaluator(TIMEOUT)).evaluate(configurations, new GridEvaluator.Listener() {
+            @Override
+            public void onResult(GridEvaluator.Result result) {
+                float t = thresholds.get(result.getIndex());
+                Object[] r = result.getValues();
+
+                System.out.print(result.getLog());
+                if( r == null ) {
+                    System.out.println("ERROR - im output model " + (result.isTimedOut() ? "timed out" : "broken") + " @ " + t);
+                    return;
                 }
-                f_threshold += f_STEP;
-                System.out.println("DEBUG - f_threshold: " + f_threshold);
-            } while ( f_threshold <= f_MAX);
+
+//                the complexity is computed only for the best model, at the end
+                results.println(t + "," + r[3] + "," + r[4] + "," + r[5] + ",0,0,0.0," + ((Long)r[6]/1000.0));
+                results.flush();
+
+                if(bestAccuracy[2] < (Double) r[5]) {
+                    bestAccuracy[0] = (Double) r[3];
+                    bestAccuracy[1] = (Double) r[4];
+                    bestAccuracy[2] = (Double) r[5];
+                    bestPN[0] = new AcceptingPetriNetImpl((Petrinet) r[0], (Marking) r[1], (Marking) r[2]);
+                }
+            }
+        });
 
         try {
-            complexityCalculator.setBPMN(bestBPMN = Petrinet2BPMNConverter.getBPMN(bestPN.getNet(), bestPN.getInitialMarking(), new ArrayList<>(bestPN.getFinalMarkings()).get(0)));
+            complexityCalculator.setBPMN(bestBPMN = Petrinet2BPMNConverter.getBPMN(bestPN[0].getNet(), bestPN[0].getInitialMarking(), new ArrayList<>(bestPN[0].getFinalMarkings()).get(0)));
             AutomatedProcessDiscoveryOptimizer.exportBPMN(bestBPMN, ".\\imhpo_" + lName + "_best.bpmn");
             size = Integer.valueOf(complexityCalculator.computeSize());
             cfc = Integer.valueOf(complexityCalculator.computeCFC());
@@ -142,7 +131,7 @@ public class InductiveHPO {
         writer.close();
 
         try {
-            exporter.exportPetriNetToPNMLFile(new org.processmining.plugins.kutoolbox.utils.FakePluginContext(), bestPN.getNet(), new File(".\\imhpo_" + lName + "_.pnml"));
+            exporter.exportPetriNetToPNMLFile(new org.processmining.plugins.kutoolbox.utils.FakePluginContext(), bestPN[0].getNet(), new File(".\\imhpo_" + lName + "_.pnml"));
         } catch( Exception e) {
             System.out.println("ERROR - impossible to export petrinet!");
         }
@@ -150,4 +139,42 @@ public class InductiveHPO {
         return bestBPMN;
     }
 
+//    returns {petrinet, initial marking, final marking, fitness, precision, fscore, mining-time}
+    private static class Configuration implements GridEvaluator.Task {
+        private XLog xlog;
+        private SimpleLog slog;
+        private SubtraceAbstraction staLog;
+        private float f_threshold;
+
+        Configuration(XLog xlog, SimpleLog slog, SubtraceAbstraction staLog, float f_threshold) {
+            this.xlog = xlog;
+            this.slog = slog;
+            this.staLog = staLog;
+            this.f_threshold = f_threshold;
+        }
+
+        @Override
+        public Object[] call(PrintStream log) {
+            IMPetriNet inductive = new IMPetriNet();
+            MiningParametersIMf imParams = new MiningParametersIMf();
+            SubtraceAbstraction staProcess;
+            Object[] result;
+            double fit, prec;
+            Double score;
+            long eTime = System.currentTimeMillis();
+
+            imParams.setNoiseThreshold(f_threshold);
+            result = inductive.minePetriNetParameters(new org.processmining.plugins.kutoolbox.utils.FakePluginContext(), xlog, imParams);
+
+            staProcess = SubtraceAbstraction.abstractProcessBehaviour((Petrinet) result[0], (Marking) result[1], MKO, slog);
+            fit = staLog.minus(staProcess);
+            prec = staProcess.minus(staLog);
+
+            score = (fit * prec * 2) / (fit + prec);
+            if( score.isNaN() ) score = -1.0;
+            log.println("INFO - im @ " + f_threshold + " > fitness, precision, f-score: " + fit + ", " + prec + ", " + score);
+
+            return new Object[]{result[0], result[1], result[2], fit, prec, score, System.currentTimeMillis() - eTime};
+        }
+    }
 }
@@ -0,0 +1,217 @@
+package au.edu.unimelb.processmining.optimization;
+
+import au.edu.qut.processmining.log.SimpleLog;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several metaheuristics (the islands) concurrently on the same log, each one with its own MinerProxy
+ * starting from different restart parameters, so that they explore different basins of the search space.
+ * The islands share the EvaluationPool, the EvaluationCache, the abstractions of the log (a LogAbstractionCache,
+ * so that each order k is computed once for all the islands), and an EliteArchive of their best solutions:
+ * when an island perturbs (or restarts) its current solution, it takes instead the best SDFG of another island,
+ * if that is better than its own best one and no migration reached the island in the last MIGRATION_INTERVAL ms.
+ *
+ * The search is over when all the islands exhausted their budgets (forks of the budget of the model),
+ * its result is the best solution of the archive.
+ *
+ * In a reproducible run (see setReproducible) the islands do not migrate, since when a migration happens depends
+ * on the threads, and the result is the best solution of the first island finding it.
+ */
+public class IslandModel {
+
+    private static long MIGRATION_INTERVAL = 10000;
+    private static int ARCHIVE_SIZE = 10;
+    private static long SEED = 1;
+
+    private RandomStreams randomStreams = new RandomStreams(SEED);
+    private boolean reproducible;
+
+    private MinerProxy.MinerTAG miner;
+    private EvaluationPool evaluationPool;
+    private EvaluationCache evaluationCache;
+
+    private volatile EliteArchive archive;
+    private List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+
+    public IslandModel(MinerProxy.MinerTAG miner, EvaluationPool evaluationPool, EvaluationCache evaluationCache) {
+        this.miner = miner;
+        this.evaluationPool = evaluationPool;
+        this.evaluationCache = evaluationCache;
+    }
+
+    public void addListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+//    each island draws from its own fork of the streams of the seed, and its evaluations are never timed out
+    public void setReproducible(long seed) {
+        this.randomStreams = new RandomStreams(seed);
+        this.reproducible = true;
+    }
+
+//    the best solution found so far by any island
+    public SearchSolution getBestSolution() {
+        EliteArchive archive = this.archive;
+        return archive == null ? null : archive.getBest();
+    }
+
+    public BPMNDiagram searchOptimalSolution(SimpleLog slog, List<AutomatedProcessDiscoveryOptimizer.MetaOpt> islands, int order, int neighbourhood, SearchBudget budget, String modelName) throws Exception {
+        SearchSolution best = search(slog, islands, order, neighbourhood, budget, modelName, false);
+        return best == null ? null : best.getBPMN();
+    }
+
+    public EfficientTree searchOptimalTree(SimpleLog slog, List<AutomatedProcessDiscoveryOptimizer.MetaOpt> islands, int order, int neighbourhood, SearchBudget budget, String modelName) throws Exception {
+        SearchSolution best = search(slog, islands, order, neighbourhood, budget, modelName, true);
+        return best == null ? null : best.getTree();
+    }
+
+    private SearchSolution search(final SimpleLog slog, List<AutomatedProcessDiscoveryOptimizer.MetaOpt> islands, final int order, final int neighbourhood,
+                                  SearchBudget budget, String modelName, final boolean tree) throws Exception {
+        final EliteArchive archive = new EliteArchive(ARCHIVE_SIZE);
+        final LogAbstractionCache logAbstractions = new LogAbstractionCache();
+        List<Callable<Object>> trajectories = new ArrayList<>();
+        List<Metaheuristics> explorers = new ArrayList<>();
+        SearchSolution best;
+        ExecutorService executor;
+        long eTime = System.currentTimeMillis();
+
+        this.archive = archive;
+        budget.start();
+
+        for (int i = 0; i < islands.size(); i++) {
+            final int island = i;
+            final Island proxy = new Island(miner, slog, randomStreams.getSeed(), island, reproducible ? null : archive);
+            final Metaheuristics explorer = createExplorer(islands.get(i), proxy);
+            final SearchBudget islandBudget = budget.fork();
+            final String islandName = modelName + "_" + islands.get(i) + "_" + island;
+
+            if (reproducible) proxy.setTimeout(Integer.MAX_VALUE);
+            explorer.setRandomStreams(randomStreams.fork(island));
+            explorer.setLogAbstractions(logAbstractions);
+            explorers.add(explorer);
+
+            explorer.addListener(new SearchListener() {
+                @Override
+                public void onImprovement(SearchSolution solution) {
+                    if (archive.offer(island, solution))
+                        for (SearchListener listener : listeners) listener.onImprovement(solution);
+                }
+            });
+
+            trajectories.add(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    if (tree) return explorer.searchOptimalTree(slog, order, neighbourhood, islandBudget, islandName);
+                    else return explorer.searchOptimalSolution(slog, order, neighbourhood, islandBudget, islandName);
+                }
+            });
+        }
+
+//        the islands spend most of their time waiting for the evaluations, they do not run on the evaluation pool
+        executor = Executors.newFixedThreadPool(islands.size(), new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "island-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            for (Future<Object> trajectory : executor.invokeAll(trajectories)) {
+                try {
+                    trajectory.get();
+                } catch (ExecutionException e) {
+                    System.out.println("ERROR - an island failed.");
+                    e.getCause().printStackTrace();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        best = archive.getBest();
+        if (reproducible) {
+//            the archive keeps the first solution offered among the ones with the same fscore, i.e. the first found in time
+            best = null;
+            for (Metaheuristics explorer : explorers) {
+                SearchSolution solution = explorer.getBestSolution();
+                if (solution != null && (best == null || solution.getFscore() > best.getFscore())) best = solution;
+            }
+        }
+
+        System.out.println("INFO - islands: " + islands.size() + ", best fscore: " + (best == null ? "-" : best.getFscore()));
+        System.out.println("eTIME - " + (double) (System.currentTimeMillis() - eTime) / 1000.0 + "s");
+
+        return best;
+    }
+
+    private Metaheuristics createExplorer(AutomatedProcessDiscoveryOptimizer.MetaOpt metaheuristics, MinerProxy proxy) {
+        switch (metaheuristics) {
+            case RLS:
+            case RLSTree:
+                return new RepeatedLocalSearch(proxy, evaluationPool, evaluationCache);
+            case ILS:
+            case ILSTree:
+                return new IteratedLocalSearch(proxy, evaluationPool, evaluationCache);
+            case TS:
+            case TSTree:
+                return new TabuSearch(proxy, evaluationPool, evaluationCache);
+            case SA:
+            case SATree:
+                return new SimulatedAnnealing(proxy, evaluationPool, evaluationCache);
+            default:
+                throw new IllegalArgumentException("unknown metaheuristics: " + metaheuristics);
+        }
+    }
+
+//    the MinerProxy of an island, it replaces its perturbations (and restarts, after the first one) with the immigrants,
+//    if it has an archive
+    private static class Island extends MinerProxy {
+        private int island;
+        private EliteArchive archive;
+        private Set<SearchSolution> taken;
+        private long lastMigration;
+        private boolean started;
+
+        Island(MinerProxy.MinerTAG miner, SimpleLog slog, long seed, int island, EliteArchive archive) {
+            super(miner, slog, seed, island);
+            this.island = island;
+            this.archive = archive;
+            this.taken = new HashSet<>();
+            this.lastMigration = System.currentTimeMillis();
+        }
+
+        @Override
+        public SimpleDirectlyFollowGraph perturb(SimpleLog slog, SimpleDirectlyFollowGraph sdfg) {
+            SimpleDirectlyFollowGraph immigrant = immigrate();
+            return immigrant == null ? super.perturb(slog, sdfg) : immigrant;
+        }
+
+        @Override
+        public SimpleDirectlyFollowGraph restart(SimpleLog slog) {
+            SimpleDirectlyFollowGraph immigrant = started ? immigrate() : null;
+            started = true;
+            return immigrant == null ? super.restart(slog) : immigrant;
+        }
+
+        private SimpleDirectlyFollowGraph immigrate() {
+            SearchSolution immigrant;
+
+            if (archive == null || System.currentTimeMillis() - lastMigration < MIGRATION_INTERVAL) return null;
+            if ((immigrant = archive.immigrant(island, taken)) == null) return null;
+
+            lastMigration = System.currentTimeMillis();
+            System.out.println("INFO - island " + island + " received an SDFG with fscore " + immigrant.getFscore());
+//            the searches modify their current SDFG, the immigrant stays in the archive
+            return new SimpleDirectlyFollowGraph(immigrant.getSDFG());
+        }
+    }
+}
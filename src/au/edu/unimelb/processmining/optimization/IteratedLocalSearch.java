@@ -1,28 +1,14 @@
 package au.edu.unimelb.processmining.optimization;
 
 import au.edu.qut.processmining.log.SimpleLog;
-import au.edu.unimelb.processmining.accuracy.abstraction.LogAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
-import org.processmining.acceptingpetrinet.models.AcceptingPetriNet;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
 
-import com.raffaeleconforti.conversion.bpmn.BPMNToPetriNetConverter;
-
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.*;
 import java.util.concurrent.*;
 
-import static java.lang.Thread.sleep;
-
 import au.edu.unimelb.processmining.accuracy.abstraction.distances.ConfusionMatrix;
-import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree2AcceptingPetriNet;
-import org.processmining.plugins.pnml.exporting.PnmlExportNetToPNML;
-import org.processmining.plugins.kutoolbox.utils.FakePluginContext;
-import org.processmining.models.graphbased.directed.petrinet.Petrinet;
-
-import java.io.File;
 
 public class IteratedLocalSearch implements Metaheuristics {
 
@@ -30,6 +16,15 @@ public class IteratedLocalSearch implements Metaheuristics {
 
     private MinerProxy minerProxy;
 
+    private EvaluationPool evaluationPool;
+
+    private EvaluationCache evaluationCache;
+
+    private volatile SearchSolution bestSolution;
+    private List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+    private RandomStreams randomStreams = new RandomStreams(1);
+    private LogAbstractionCache logAbstractions = new LogAbstractionCache();
+
     private EfficientTree currentTree;
     private EfficientTree bestTree;
 
@@ -50,7 +45,6 @@ public class IteratedLocalSearch implements Metaheuristics {
     private SubtraceAbstraction staLog;
     private SubtraceAbstraction staProcess;
 
-    private PrintWriter writer;
     private int perturbations;
 
     private int noImprovementCounter = 0;
@@ -62,26 +56,57 @@ public class IteratedLocalSearch implements Metaheuristics {
     private long ModifyTime;
     private long ComputeTime;
 
-    public IteratedLocalSearch(MinerProxy proxy) {
+    public IteratedLocalSearch(MinerProxy proxy, EvaluationPool evaluationPool, EvaluationCache evaluationCache) {
         minerProxy = proxy;
+        this.evaluationPool = evaluationPool;
+        this.evaluationCache = evaluationCache;
     }
 
     public SimpleDirectlyFollowGraph getBestSDFG() {
         return bestSDFG;
     }
 
-    public BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String modelName) throws IOException {
+    public void addListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+    public SearchSolution getBestSolution() {
+        return bestSolution;
+    }
+
+    public void setRandomStreams(RandomStreams randomStreams) {
+        this.randomStreams = randomStreams;
+    }
+
+    public void setLogAbstractions(LogAbstractionCache logAbstractions) {
+        this.logAbstractions = logAbstractions;
+    }
+
+//    called each time the best solution improves, bestSDFG and currentAccuracy are the ones of the model
+    private void publish(Object model, SearchBudget budget) {
+        bestSolution = new SearchSolution(model, bestSDFG, currentAccuracy[0], currentAccuracy[1], currentAccuracy[2], budget.getIterations(), budget.getEvaluations(), budget.getWallTime());
+        for (SearchListener listener : listeners) {
+            try {
+                listener.onImprovement(bestSolution);
+            } catch (Exception e) {
+                System.out.println("WARNING - search listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String modelName) {
         int iterations = 0;
         int icounter = 0;
         perturbations = 0;
-        staLog = LogAbstraction.subtrace(slog, order);
+        staLog = logAbstractions.subtrace(slog, order);
 
-        ExecutorService multiThreadService;
+        NeighbourhoodEvaluation evaluation;
+        Random mismatches = randomStreams.stream("mismatches");
         MarkovianBasedEvaluator evalThread;
         Future<Object[]> evalResult;
-        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new HashMap<>();
+        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new LinkedHashMap<>();
         String subtrace;
-        Set<SimpleDirectlyFollowGraph> neighbours = new HashSet<>();
+        Set<SimpleDirectlyFollowGraph> neighbours = new LinkedHashSet<>();
         Object[] result;
         ArrayList<String> differences;
 
@@ -96,19 +121,8 @@ public class IteratedLocalSearch implements Metaheuristics {
         bestFitness = new ArrayList<>();
         bestPrecision = new ArrayList<>();
 
-        writer = null;
-        try {
-            String safeName = modelName.replaceAll("[/\\\\.]", "_");
-            writer = new PrintWriter("." +
-                    "/ils_" + safeName + ".csv");
-            writer.println("iteration,fitness,precision,fscore,itime");
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("ERROR - impossible to print the markovian abstraction.");
-        }
-
         long eTime = System.currentTimeMillis();
-        long iTime = System.currentTimeMillis();
+        budget.start();
 
         start(slog, order);
         bestFitness.add(currentAccuracy[0]);
@@ -117,9 +131,9 @@ public class IteratedLocalSearch implements Metaheuristics {
         hits.add(iterations);
         bestSDFG = currentSDFG;
         bestBPMN = currentBPMN;
+        publish(bestBPMN, budget);
 
-        // System.currentTimeMillis() - eTime < timeout &&
-        while (System.currentTimeMillis() - eTime < timeout && iterations < maxit && currentSDFG != null) {
+        while (!budget.isExhausted() && currentSDFG != null) {
             try {
 
                 System.out.println("ITERATION: " + iterations);
@@ -132,26 +146,25 @@ public class IteratedLocalSearch implements Metaheuristics {
                     hits.add(iterations);
                     bestSDFG = currentSDFG;
                     bestBPMN = currentBPMN;
+                    publish(bestBPMN, budget);
                     noImprovementCounter = 0;
                 } else {
                     noImprovementCounter++;
                 }
 
-                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK) {
+                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK && !budget.isExhausted()) {
                     differences = staProcess.computeDifferences(staLog);
                     
                     order++;
                     System.out.println("\u001B[32mINFO - No improvement for " + noImprovementCounter + " iterations, increasing k to " + order + "\u001B[0m");
 
                     // Recompute Log abstraction at new k
-                    staLog = LogAbstraction.subtraceTree(slog, order);
+                    staLog = logAbstractions.subtraceTree(slog, order);
 
                     // Re-evaluate best tree at new k (no differences/pruning)
                     MarkovianBasedEvaluator reevaluateBest = new MarkovianBasedEvaluator(staLog, differences, slog, minerProxy, bestTree, order);
-                    ExecutorService reevaluateService = Executors.newSingleThreadExecutor();
-                    Future<Object[]> reevaluateResult = reevaluateService.submit(reevaluateBest);
-                    Object[] newResult = reevaluateResult.get(timeout, TimeUnit.MILLISECONDS);
-                    reevaluateService.shutdownNow();
+                    Object[] newResult = evaluationPool.evaluate(reevaluateBest, budget);
+                    if (newResult == null) break;
 
                     currentAccuracy[0] = (Double) newResult[0];
                     currentAccuracy[1] = (Double) newResult[1];
@@ -164,13 +177,10 @@ public class IteratedLocalSearch implements Metaheuristics {
                     noImprovementCounter = 0;
                 }
 
-                iTime = System.currentTimeMillis() - iTime;
                 if (export)
                     AutomatedProcessDiscoveryOptimizer.exportBPMN(currentBPMN, ".\\ils_" + modelName + "_" + iterations + ".bpmn");
-                writer.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-                writer.flush();
                 iterations++;
-                iTime = System.currentTimeMillis();
+                budget.countIteration();
 
                 long mineStart = System.currentTimeMillis();
                 if (currentAccuracy[1] > currentAccuracy[0]) {
@@ -182,12 +192,12 @@ public class IteratedLocalSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staLog.computeDifferences(staProcess);
-                    subtrace = staLog.nextMismatch();
+                    subtrace = staLog.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch();
+                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -203,12 +213,12 @@ public class IteratedLocalSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staProcess.computeDifferences(staLog);
-                    subtrace = staProcess.nextMismatch();
+                    subtrace = staProcess.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch();
+                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -226,8 +236,13 @@ public class IteratedLocalSearch implements Metaheuristics {
                     continue;
                 }
 
-                multiThreadService = Executors.newFixedThreadPool(neighbours.size());
+                evaluation = new NeighbourhoodEvaluation(evaluationPool, minerProxy.getTimeout());
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighbours) {
+                    if ((evalResult = evaluationCache.lookup(neighbourSDFG, order, false)) != null) {
+                        neighboursEvaluations.put(neighbourSDFG, evalResult);
+                        continue;
+                    }
+
                     try {
                         long modifyStart = System.currentTimeMillis();
                         tmpBPMN = minerProxy.getBPMN(neighbourSDFG);
@@ -239,12 +254,15 @@ public class IteratedLocalSearch implements Metaheuristics {
                     }
 
                     evalThread = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-                    evalResult = multiThreadService.submit(evalThread);
+                    evalThread.setCache(evaluationCache);
+                    evalThread.setParent(currentBPMN);
+                    evalResult = evaluation.submit(evaluationCache.memoize(neighbourSDFG, order, false, evalThread));
 
                     neighboursEvaluations.put(neighbourSDFG, evalResult);
                 }
 
-                sleep(minerProxy.getTimeout());
+                evaluation.await();
+                budget.countEvaluations(evaluation.getSubmitted());
 
                 improved = false;
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighboursEvaluations.keySet()) {
@@ -269,7 +287,6 @@ public class IteratedLocalSearch implements Metaheuristics {
 
                 neighbours.clear();
                 neighboursEvaluations.clear();
-                multiThreadService.shutdownNow();
 
 /**     once we checked all the neighbours accuracies, we select the one improving the current state or none at all.
  *      if the one improving the current state, also improves the global maximum, we update that.
@@ -287,16 +304,6 @@ public class IteratedLocalSearch implements Metaheuristics {
         }
 
         eTime = System.currentTimeMillis() - eTime;
-        String hitrow = "";
-        String fscorerow = "";
-        for (int i = 0; i < hits.size(); i++) {
-            hitrow += hits.get(i) + ",";
-            fscorerow += bestScores.get(i) + ",";
-        }
-
-        writer.println(hitrow + (double) (eTime) / 1000.0);
-        writer.println(fscorerow + (double) (eTime) / 1000.0);
-        writer.close();
 
         System.out.println("\u001B[32mTotal Mine Time: " + MineTime + "ms\u001B[0m");
         System.out.println("\u001B[32mTotal Modify Time: " + ModifyTime + "ms\u001B[0m");
@@ -312,26 +319,23 @@ public class IteratedLocalSearch implements Metaheuristics {
         System.out.println("eTIME - " + (double) (eTime) / 1000.0 + "s");
 //        System.out.println("STATS - total perturbations: " + perturbations);
 
-        Object[] petrinetObj = BPMNToPetriNetConverter.convert(bestBPMN);
-        Petrinet petrinet = (Petrinet) petrinetObj[0];
-        PnmlExportNetToPNML exporter = new PnmlExportNetToPNML();
-        exporter.exportPetriNetToPNMLFile(new FakePluginContext(), petrinet, new File("C:\\Users\\Amer\\Downloads\\Evaluation models\\" + "ILS" + ".pnml"));
 
         return bestBPMN;
     }
 
-    public EfficientTree searchOptimalTree(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String modelName) {
+    public EfficientTree searchOptimalTree(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String modelName) {
         int iterations = 0;
         int icounter = 0;
         perturbations = 0;
-        staLog = LogAbstraction.subtraceTree(slog, order);
+        staLog = logAbstractions.subtraceTree(slog, order);
 
-        ExecutorService multiThreadService;
+        NeighbourhoodEvaluation evaluation;
+        Random mismatches = randomStreams.stream("mismatches");
         MarkovianBasedEvaluator evalThread;
         Future<Object[]> evalResult;
-        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new HashMap<>();
+        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new LinkedHashMap<>();
         String subtrace;
-        Set<SimpleDirectlyFollowGraph> neighbours = new HashSet<>();
+        Set<SimpleDirectlyFollowGraph> neighbours = new LinkedHashSet<>();
         Object[] result;
         ArrayList<String> differences;
 
@@ -346,20 +350,8 @@ public class IteratedLocalSearch implements Metaheuristics {
         bestFitness = new ArrayList<>();
         bestPrecision = new ArrayList<>();
 
-
-        writer = null;
-        try {
-            String safeName = modelName.replaceAll("[/\\\\.]", "_");
-            writer = new PrintWriter("." +
-                    "/ils_" + safeName + ".csv");
-            writer.println("iteration,fitness,precision,fscore,itime");
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.out.println("ERROR - impossible to print the markovian abstraction.");
-        }
-
         long eTime = System.currentTimeMillis();
-        long iTime = System.currentTimeMillis();
+        budget.start();
 
         startTree(slog, order);
         bestFitness.add(currentAccuracy[0]);
@@ -368,9 +360,9 @@ public class IteratedLocalSearch implements Metaheuristics {
         hits.add(iterations);
         bestSDFG = currentSDFG;
         bestTree = currentTree;
+        publish(bestTree, budget);
 
-        // System.currentTimeMillis() - eTime < timeout &&
-        while (iterations < maxit && currentSDFG != null) {
+        while (!budget.isExhausted() && currentSDFG != null) {
             try {
 
                 if (currentAccuracy[2] > bestScores.get(bestScores.size() - 1)) {
@@ -381,14 +373,13 @@ public class IteratedLocalSearch implements Metaheuristics {
                     hits.add(iterations);
                     bestSDFG = currentSDFG;
                     bestTree = currentTree;
+                    publish(bestTree, budget);
                     noImprovementCounter = 0;
                 } else {
                     noImprovementCounter++;
                 }
 
-                iTime = System.currentTimeMillis() - iTime;
-
-                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK) {
+                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK && !budget.isExhausted()) {
                     // get traces that are in the model but not in the log and extend with every rising of k
                     differences = staProcess.computeDifferences(staLog);
 
@@ -396,14 +387,12 @@ public class IteratedLocalSearch implements Metaheuristics {
                     System.out.println("\u001B[32mINFO - No improvement for " + noImprovementCounter + " iterations, increasing k to " + order + "\u001B[0m");
 
                     // Recompute Log abstraction at new k
-                    staLog = LogAbstraction.subtraceTree(slog, order);
+                    staLog = logAbstractions.subtraceTree(slog, order);
 
                     // Re-evaluate best tree at new k
                     MarkovianBasedEvaluator reevaluateBest = new MarkovianBasedEvaluator(staLog, differences, slog, minerProxy, bestTree, order);
-                    ExecutorService reevaluateService = Executors.newSingleThreadExecutor();
-                    Future<Object[]> reevaluateResult = reevaluateService.submit(reevaluateBest);
-                    Object[] newResult = reevaluateResult.get(timeout, TimeUnit.MILLISECONDS);
-                    reevaluateService.shutdownNow();
+                    Object[] newResult = evaluationPool.evaluate(reevaluateBest, budget);
+                    if (newResult == null) break;
 
                     currentAccuracy[0] = (Double) newResult[0];
                     currentAccuracy[1] = (Double) newResult[1];
@@ -418,10 +407,8 @@ public class IteratedLocalSearch implements Metaheuristics {
 
                 if (export)
                     AutomatedProcessDiscoveryOptimizer.exportTree(currentTree, ".\\ils_" + modelName + "_" + iterations + ".ptml");
-                writer.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-                writer.flush();
                 iterations++;
-                iTime = System.currentTimeMillis();
+                budget.countIteration();
 
                 long mineStart = System.currentTimeMillis();
                 if (currentAccuracy[1] > currentAccuracy[0]) {
@@ -433,12 +420,12 @@ public class IteratedLocalSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staLog.computeDifferences(staProcess);
-                    subtrace = staLog.nextMismatch();
+                    subtrace = staLog.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch();
+                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -454,12 +441,12 @@ public class IteratedLocalSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staProcess.computeDifferences(staLog);
-                    subtrace = staProcess.nextMismatch();
+                    subtrace = staProcess.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch();
+                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -477,8 +464,13 @@ public class IteratedLocalSearch implements Metaheuristics {
                     continue;
                 }
 
-                multiThreadService = Executors.newFixedThreadPool(Math.min(32, neighbours.size()));
+                evaluation = new NeighbourhoodEvaluation(evaluationPool, minerProxy.getTimeout());
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighbours) {
+                    if ((evalResult = evaluationCache.lookup(neighbourSDFG, order, true)) != null) {
+                        neighboursEvaluations.put(neighbourSDFG, evalResult);
+                        continue;
+                    }
+
                     try {
                         long modifyStart = System.currentTimeMillis();
                         tmpTree = minerProxy.getTree(neighbourSDFG);
@@ -490,12 +482,14 @@ public class IteratedLocalSearch implements Metaheuristics {
                     }
 
                     evalThread = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-                    evalResult = multiThreadService.submit(evalThread);
+                    evalThread.setCache(evaluationCache);
+                    evalResult = evaluation.submit(evaluationCache.memoize(neighbourSDFG, order, true, evalThread));
 
                     neighboursEvaluations.put(neighbourSDFG, evalResult);
                 }
 
-                sleep(minerProxy.getTimeout());
+                evaluation.await();
+                budget.countEvaluations(evaluation.getSubmitted());
 
                 improved = false;
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighboursEvaluations.keySet()) {
@@ -521,7 +515,6 @@ public class IteratedLocalSearch implements Metaheuristics {
 
                 neighbours.clear();
                 neighboursEvaluations.clear();
-                multiThreadService.shutdownNow();
 
 /**     once we checked all the neighbours accuracies, we select the one improving the current state or none at all.
  *      if the one improving the current state, also improves the global maximum, we update that.
@@ -539,16 +532,6 @@ public class IteratedLocalSearch implements Metaheuristics {
         }
 
         eTime = System.currentTimeMillis() - eTime;
-        String hitrow = "";
-        String fscorerow = "";
-        for (int i = 0; i < hits.size(); i++) {
-            hitrow += hits.get(i) + ",";
-            fscorerow += bestScores.get(i) + ",";
-        }
-
-        writer.println(hitrow + (double) (eTime) / 1000.0);
-        writer.println(fscorerow + (double) (eTime) / 1000.0);
-        writer.close();
 
         System.out.println("\u001B[32mTotal Mine Time: " + MineTime + "ms\u001B[0m");
         System.out.println("\u001B[32mTotal Modify Time: " + ModifyTime + "ms\u001B[0m");
@@ -563,21 +546,12 @@ public class IteratedLocalSearch implements Metaheuristics {
 
         System.out.println("eTIME - " + (double) (eTime) / 1000.0 + "s");
 
-        /*AcceptingPetriNet net = EfficientTree2AcceptingPetriNet.convert(bestTree);
-        PnmlExportNetToPNML exporter = new PnmlExportNetToPNML();
-        try {
-            exporter.exportPetriNetToPNMLFile(new FakePluginContext(), net.getNet(), new File("C:\\Users\\Amer\\gitprojects\\bpmtk\\models\\ILSTree" + order + ".pnml"));
-        } catch (java.io.IOException e) {
-            e.printStackTrace();
-        }*/
 
         return bestTree;
     }
 
     private void start(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor = null;
-        Future<Object[]> evalResult = null;
         BPMNDiagram tmpBPMN;
         Object[] result;
 
@@ -590,11 +564,10 @@ public class IteratedLocalSearch implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-            executor = Executors.newSingleThreadExecutor();
+            markovianBasedEvaluator.setCache(evaluationCache);
 
             // Compute Phase
-            evalResult = executor.submit(markovianBasedEvaluator);
-            result = evalResult.get(minerProxy.getTimeout(), TimeUnit.MILLISECONDS);
+            result = evaluationPool.evaluate(markovianBasedEvaluator, minerProxy.getTimeout());
 
             currentAccuracy[0] = (Double) result[0];
             currentAccuracy[1] = (Double) result[1];
@@ -603,27 +576,19 @@ public class IteratedLocalSearch implements Metaheuristics {
             currentBPMN = (BPMNDiagram) result[4];
             ComputeTime += (long) result[5];
 
-            executor.shutdownNow();
 //            System.out.println("START - done.");
         } catch (TimeoutException e) {
             System.out.println("[TIMEOUT] Evaluation exceeded " + minerProxy.getTimeout() + " ms.");
-            if (executor != null) {
-                evalResult.cancel(true);
-                executor.shutdownNow();
-            }
             start(slog, order); // Retry
         } catch (Exception e) {
 //            System.out.println("ERROR - start failed.");
             e.printStackTrace();
-            if (executor != null) executor.shutdownNow();
             start(slog, order);
         }
     }
 
     private void startTree(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor = null;
-        Future<Object[]> evalResult = null;
         EfficientTree tmpTree;
         Object[] result;
 
@@ -636,12 +601,9 @@ public class IteratedLocalSearch implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-            executor = Executors.newSingleThreadExecutor();
+            markovianBasedEvaluator.setCache(evaluationCache);
 
-            // Submit evaluation thread
-            evalResult = executor.submit(markovianBasedEvaluator);
-            // sleep(10000000);
-            result = evalResult.get(minerProxy.getTimeout(), TimeUnit.MILLISECONDS);
+            result = evaluationPool.evaluate(markovianBasedEvaluator, minerProxy.getTimeout());
 
             currentAccuracy[0] = (Double) result[0];
             currentAccuracy[1] = (Double) result[1];
@@ -650,26 +612,19 @@ public class IteratedLocalSearch implements Metaheuristics {
             currentTree = (EfficientTree) result[4];
             ComputeTime += (long) result[5];
 
-            executor.shutdownNow();
 //            System.out.println("START - done.");
         } catch (TimeoutException e) {
             System.out.println("[TIMEOUT] Evaluation exceeded " + minerProxy.getTimeout() + " ms.");
-            if (executor != null) {
-                evalResult.cancel(true);
-                executor.shutdownNow();
-            }
             startTree(slog, order); // Retry
         } catch (Exception e) {
 //            System.out.println("ERROR - start failed.");
             e.printStackTrace();
-            if (executor != null) executor.shutdownNow();
             startTree(slog, order);
         }
     }
 
     private boolean perturb(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor;
         Future<Object[]> evalResult;
         BPMNDiagram tmpBPMN;
         Object[] result;
@@ -690,11 +645,10 @@ public class IteratedLocalSearch implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-            executor = Executors.newSingleThreadExecutor();
-            evalResult = executor.submit(markovianBasedEvaluator);
+            markovianBasedEvaluator.setCache(evaluationCache);
+            evalResult = evaluationPool.submit(markovianBasedEvaluator);
 
-            sleep(minerProxy.getTimeout());
-            if (evalResult.isDone()) {
+            if (NeighbourhoodEvaluation.await(evalResult, minerProxy.getTimeout())) {
                 result = evalResult.get();
                 currentAccuracy[0] = (Double) result[0];
                 currentAccuracy[1] = (Double) result[1];
@@ -704,13 +658,10 @@ public class IteratedLocalSearch implements Metaheuristics {
                 ComputeTime += (long) result[5];
                 currentSDFG = sdfg;
 //                System.out.println("PERTURBATION - done.");
-                writer.println("p,p,p,p,p");
-                executor.shutdownNow();
                 return true;
             } else {
 //                System.out.println("TIMEOUT - perturb failed.");
                 evalResult.cancel(true);
-                executor.shutdownNow();
                 return false;
             }
         } catch (Exception e) {
@@ -721,7 +672,6 @@ public class IteratedLocalSearch implements Metaheuristics {
 
     private boolean perturbTree(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor;
         Future<Object[]> evalResult;
         EfficientTree tmpTree;
         Object[] result;
@@ -742,11 +692,10 @@ public class IteratedLocalSearch implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-            executor = Executors.newSingleThreadExecutor();
-            evalResult = executor.submit(markovianBasedEvaluator);
+            markovianBasedEvaluator.setCache(evaluationCache);
+            evalResult = evaluationPool.submit(markovianBasedEvaluator);
 
-            sleep(minerProxy.getTimeout());
-            if (evalResult.isDone()) {
+            if (NeighbourhoodEvaluation.await(evalResult, minerProxy.getTimeout())) {
                 result = evalResult.get();
                 currentAccuracy[0] = (Double) result[0];
                 currentAccuracy[1] = (Double) result[1];
@@ -756,13 +705,10 @@ public class IteratedLocalSearch implements Metaheuristics {
                 ComputeTime += (long) result[5];
                 currentSDFG = sdfg;
 //                System.out.println("PERTURBATION - done.");
-                writer.println("p,p,p,p,p");
-                executor.shutdownNow();
                 return true;
             } else {
 //                System.out.println("TIMEOUT - perturb failed.");
                 evalResult.cancel(true);
-                executor.shutdownNow();
                 return false;
             }
         } catch (Exception e) {
@@ -0,0 +1,40 @@
+package au.edu.unimelb.processmining.optimization;
+
+import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.unimelb.processmining.accuracy.abstraction.LogAbstraction;
+import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The subtrace abstractions of a log (LogAbstraction.subtrace and subtraceTree), computed once for each order k.
+ * The searches sharing a cache (e.g. the islands of an IslandModel) share the subtraces and the dictionary of
+ * the abstractions: the first search asking for an order computes it, the others wait for it.
+ * Each call returns a new copy of the abstraction (see SubtraceAbstraction(SubtraceAbstraction)), since the searches
+ * write their own differences (computeDifferences) and draw their mismatches (nextMismatch) from it.
+ * The cache keeps the abstractions of the last log it was asked for.
+ */
+public class LogAbstractionCache {
+
+    private volatile SimpleLog slog;
+    private Map<Integer, SubtraceAbstraction> subtraces = new ConcurrentHashMap<>();
+    private Map<Integer, SubtraceAbstraction> subtraceTrees = new ConcurrentHashMap<>();
+
+    public SubtraceAbstraction subtrace(final SimpleLog slog, final int order) {
+        return new SubtraceAbstraction(forLog(slog).subtraces.computeIfAbsent(order, k -> LogAbstraction.subtrace(slog, k)));
+    }
+
+    public SubtraceAbstraction subtraceTree(final SimpleLog slog, final int order) {
+        return new SubtraceAbstraction(forLog(slog).subtraceTrees.computeIfAbsent(order, k -> LogAbstraction.subtraceTree(slog, k)));
+    }
+
+    private synchronized LogAbstractionCache forLog(SimpleLog slog) {
+        if( this.slog != slog ) {
+            subtraces.clear();
+            subtraceTrees.clear();
+            this.slog = slog;
+        }
+        return this;
+    }
+}
@@ -1,6 +1,8 @@
 package au.edu.unimelb.processmining.optimization;
 
 import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.unimelb.processmining.accuracy.abstraction.intermediate.ActivityGraph;
+import au.edu.unimelb.processmining.accuracy.abstraction.intermediate.AutomatonAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.mkAutomaton.MarkovianAutomatonAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
 import com.aliasi.util.Strings;
@@ -10,6 +12,7 @@ import org.python.antlr.ast.Str;
 
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 
 public class MarkovianBasedEvaluator implements Callable<Object[]> {
 
@@ -24,6 +27,9 @@ public class MarkovianBasedEvaluator implements Callable<Object[]> {
     //private SimpleDirectlyFollowGraph sdfg;
     private int order;
 
+    private EvaluationCache cache;
+    private BPMNDiagram parent;
+
     public MarkovianBasedEvaluator(SubtraceAbstraction staLog, SimpleLog slog, MinerProxy minerProxy, BPMNDiagram bpmn, int order) {
         this.staLog = staLog;
         this.proxy = minerProxy;
@@ -58,32 +64,62 @@ public class MarkovianBasedEvaluator implements Callable<Object[]> {
         this.differences = differences;
     }
 
+//    the cache memoises the process abstractions by model fingerprint, and provides them to the isomorphic models
+    public void setCache(EvaluationCache cache) {
+        this.cache = cache;
+    }
+
+//    the model the evaluated one is a neighbour of, its memoised abstraction is updated if the behaviours differ only
+//    by directly-follows pairs (see EvaluationCache.updateBehaviour)
+    public void setParent(BPMNDiagram parent) {
+        this.parent = parent;
+    }
+
     @Override
     public Object[] call() {
         SubtraceAbstraction staProcess;
+        AutomatonAbstraction automaton;
+        ActivityGraph graph = null;
+        String fingerprint = null;
+        String parentFingerprint;
         Object[] results = new Object[6];
 
         long start = System.currentTimeMillis();
 
         try {
-            if (tree != null) {
-                // 1. Compute Mk-automaton
-                MarkovianAutomatonAbstraction abstraction = new MarkovianAutomatonAbstraction(tree, order, slog);
-
-                // 2. Convert automaton to SubtraceAbstraction using internal label mapping
-                staProcess = SubtraceAbstraction.abstractProcessBehaviour(abstraction.getAutomaton().getFiniteStrings(), order, abstraction.getCharToIDs());
-            } else if (bpmn != null) {
-                staProcess = SubtraceAbstraction.abstractProcessBehaviour(this.bpmn, order, slog);
-            } else {
-                throw new IllegalStateException("Neither tree nor BPMN is initialized in MarkovianBasedEvaluator.");
-            }
-
-            if (differences != null) {
-                for (String dif : differences) {
-                    staProcess.removeUnusedSubtraces(dif);
+            if (cache != null && differences == null) fingerprint = ModelFingerprint.of(tree != null ? tree : bpmn);
+
+//            if the model is isomorphic to an evaluated one, its memoised abstraction is reused and only its accuracy
+//            is left to compute, otherwise the abstraction is updated from the parent's one or computed from scratch
+            staProcess = fingerprint == null ? null : cache.lookupBehaviour(fingerprint, order);
+
+            if (staProcess == null) {
+                if (tree != null) {
+                    // 1. Compute Mk-automaton
+                    MarkovianAutomatonAbstraction abstraction = new MarkovianAutomatonAbstraction(tree, order, slog);
+                    checkCancelled();
+
+                    // 2. Convert automaton to SubtraceAbstraction using internal label mapping
+                    staProcess = SubtraceAbstraction.abstractProcessBehaviour(abstraction, order);
+                } else if (bpmn != null) {
+                    automaton = SubtraceAbstraction.abstractAutomaton(this.bpmn, slog);
+                    checkCancelled();
+
+                    if (fingerprint != null && automaton != null) graph = ActivityGraph.of(automaton);
+                    if (graph != null && parent != null && (parentFingerprint = ModelFingerprint.of(parent)) != null)
+                        staProcess = cache.updateBehaviour(parentFingerprint, order, graph);
+                    if (staProcess == null && automaton != null) staProcess = SubtraceAbstraction.abstractProcessBehaviour(automaton, order);
+                } else {
+                    throw new IllegalStateException("Neither tree nor BPMN is initialized in MarkovianBasedEvaluator.");
                 }
+
+                checkCancelled();
+
+                if (fingerprint != null && staProcess != null) cache.storeBehaviour(fingerprint, order, staProcess, graph);
             }
 
+            if (differences != null && staProcess != null) staProcess.removeUnusedSubtraces(differences);
+
             if (staProcess == null) return new Object[]{0.0, 0.0, 0.0, null, tree != null ? tree : bpmn};
 
             double fitness = staLog.computeMAFitness(staProcess);
@@ -107,4 +143,9 @@ public class MarkovianBasedEvaluator implements Callable<Object[]> {
 
         return results;
     }
+
+//    the evaluations run on the shared EvaluationPool: when cancelled (interrupted), they stop at the end of the current step
+    private void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) throw new CancellationException("evaluation cancelled");
+    }
 }
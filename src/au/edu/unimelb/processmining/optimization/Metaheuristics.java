@@ -5,8 +5,27 @@ import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
 
 public interface Metaheuristics {
-    BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String name) throws Exception;
+    BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String name) throws Exception;
 
-    EfficientTree searchOptimalTree(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String name);
+    EfficientTree searchOptimalTree(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String name);
+
+    default BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String name) throws Exception {
+        return searchOptimalSolution(slog, order, neighbourhood, SearchBudget.of(maxit, timeout), name);
+    }
+
+    default EfficientTree searchOptimalTree(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String name) {
+        return searchOptimalTree(slog, order, neighbourhood, SearchBudget.of(maxit, timeout), name);
+    }
+
+    void addListener(SearchListener listener);
+
+//    the best solution found so far by the running (or last) search, null if none was evaluated yet
+    SearchSolution getBestSolution();
+
+//    the random choices of the search are drawn from these streams (by default, the ones of seed 1)
+    void setRandomStreams(RandomStreams randomStreams);
+
+//    the abstractions of the log are taken from this cache (by default, one of the search), searches on the same log can share it
+    void setLogAbstractions(LogAbstractionCache logAbstractions);
 
 }
@@ -2,8 +2,10 @@ package au.edu.unimelb.processmining.optimization;
 
 
 import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.qut.processmining.log.VariantStore;
 import au.edu.qut.processmining.miners.splitminer.SplitMiner;
-import au.edu.qut.processmining.miners.splitminer.dfgp.DirectlyFollowGraphPlus;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DenseDirectlyFollowGraph;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DirectlyFollowGraph;
 import au.edu.qut.processmining.miners.splitminer.ui.dfgp.DFGPUIResult;
 import org.processmining.fodina.Fodina;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
@@ -11,6 +13,7 @@ import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
 import org.processmining.plugins.bpmnminer.types.MinerSettings;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Random;
 
 public class MinerProxy {
@@ -25,6 +28,13 @@ public class MinerProxy {
     private SplitMiner sm;
     /***************************************************/
 
+    /***************** Shared SM and IM ****************/
+//    the DFGP before parallelisms detection and filtering, it is built once per log and copied for each restart and perturbation
+    private DirectlyFollowGraph unfilteredDFGP;
+    private VariantStore unfilteredVariants;
+    private DFGPUIResult.FilterType unfilteredFilterType;
+    /***************************************************/
+
     /****************** Fodina Miner *******************/
     private Fodina fodina;
     private MinerSettings fodinaSettings;
@@ -55,8 +65,16 @@ public class MinerProxy {
     }
 
     public MinerProxy(MinerTAG tag, SimpleLog slog) {
+        this(tag, slog, 1, 0);
+    }
+
+/**     seed shuffles the restart parameters (after the default ones),
+ *      start is the index of the restart parameters used by the first restart, the ones before it are used last.
+ *      e.g. the islands of an IslandModel share the seed and start from different parameters.
+ **/
+    public MinerProxy(MinerTAG tag, SimpleLog slog, long seed, int start) {
         ArrayList<Params> params;
-        Random random = new Random(1);
+        Random random = new Random(seed);
         Params param;
         Double dparam0;
 
@@ -140,10 +158,12 @@ public class MinerProxy {
             default:
                 break;
         }
+
+        if( restartParams != null && !restartParams.isEmpty() ) Collections.rotate(restartParams, -(start % restartParams.size()));
     }
 
     public SimpleDirectlyFollowGraph perturb(SimpleLog slog, SimpleDirectlyFollowGraph sdfg) {
-        DirectlyFollowGraphPlus dfgp;
+        DirectlyFollowGraph dfgp;
         SimpleDirectlyFollowGraph sdfgo;
         Params param;
 
@@ -153,8 +173,7 @@ public class MinerProxy {
                 param = perturbParams.remove(0);
                 perturbParams.add(param);
 
-                dfgp = new DirectlyFollowGraphPlus(slog, param.getParam(0), param.getParam(1), DFGPUIResult.FilterType.WTH, false);
-                dfgp.buildDFGP();
+                dfgp = buildDFGP(slog, param, DFGPUIResult.FilterType.WTH);
                 sdfgo = new SimpleDirectlyFollowGraph(sdfg);
                 sdfgo.setParallelisms(dfgp.getParallelisms());
                 return sdfgo;
@@ -172,8 +191,7 @@ public class MinerProxy {
                 param = perturbParams.remove(0);
                 perturbParams.add(param);
 
-                dfgp = new DirectlyFollowGraphPlus(slog, param.getParam(0), param.getParam(1), DFGPUIResult.FilterType.FWG, false);
-                dfgp.buildDFGP();
+                dfgp = buildDFGP(slog, param, DFGPUIResult.FilterType.FWG);
                 sdfgo = new SimpleDirectlyFollowGraph(dfgp, false);
                 return sdfgo;
             default:
@@ -182,7 +200,7 @@ public class MinerProxy {
     }
 
     public SimpleDirectlyFollowGraph restart(SimpleLog slog) {
-        DirectlyFollowGraphPlus dfgp;
+        DirectlyFollowGraph dfgp;
         SimpleDirectlyFollowGraph sdfg;
         Params param;
 
@@ -190,8 +208,7 @@ public class MinerProxy {
             case SM:
                 if (restartParams.isEmpty()) return null;
                 param = restartParams.remove(0);
-                dfgp = new DirectlyFollowGraphPlus(slog, param.getParam(0), param.getParam(1), DFGPUIResult.FilterType.WTH, false);
-                dfgp.buildDFGP();
+                dfgp = buildDFGP(slog, param, DFGPUIResult.FilterType.WTH);
                 return new SimpleDirectlyFollowGraph(dfgp, false);
             case FO:
                 while (true) {
@@ -231,8 +248,7 @@ public class MinerProxy {
 //                System.out.println("DEBUG - time for IM to shine");
                 if (restartParams.isEmpty()) return null;
                 param = restartParams.remove(0);
-                dfgp = new DirectlyFollowGraphPlus(slog, param.getParam(0), param.getParam(1), DFGPUIResult.FilterType.FWG, false);
-                dfgp.buildDFGP();
+                dfgp = buildDFGP(slog, param, DFGPUIResult.FilterType.FWG);
                 sdfg = new SimpleDirectlyFollowGraph(dfgp, false);
                 return sdfg;
             default:
@@ -240,6 +256,24 @@ public class MinerProxy {
         }
     }
 
+    private DirectlyFollowGraph buildDFGP(SimpleLog slog, Params param, DFGPUIResult.FilterType filterType) {
+        DirectlyFollowGraph dfgp;
+
+        synchronized (this) {
+            if( unfilteredDFGP == null || unfilteredDFGP.getSimpleLog() != slog || unfilteredVariants != slog.getVariants() || unfilteredFilterType != filterType ) {
+                unfilteredDFGP = new DenseDirectlyFollowGraph(slog, param.getParam(0), param.getParam(1), filterType, false);
+                unfilteredDFGP.buildUnfilteredDFGP();
+                unfilteredVariants = slog.getVariants();
+                unfilteredFilterType = filterType;
+            }
+            dfgp = unfilteredDFGP.copyUnfiltered();
+        }
+
+        dfgp.detectParallelisms(param.getParam(1));
+        dfgp.filter(param.getParam(0));
+        return dfgp;
+    }
+
     public BPMNDiagram getBPMN(SimpleDirectlyFollowGraph sdfg) throws Exception {
         switch (tag) {
             case SM:
@@ -268,6 +302,11 @@ public class MinerProxy {
         return timeout;
     }
 
+//    e.g. Integer.MAX_VALUE to never give up on an evaluation (reproducible runs)
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
     private class Params {
         double[] params;
 
@@ -0,0 +1,127 @@
+package au.edu.unimelb.processmining.optimization;
+
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNEdge;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Activity;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.bpmn.elements.Gateway;
+import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
+
+import java.util.*;
+
+/**
+ * Canonical forms of the discovered models: two models with the same fingerprint are isomorphic,
+ * hence they have the same behaviour (and the same process abstraction).
+ * A neighbour SDFG often differs from its parent by edges the miner does not turn into behaviour,
+ * in which case the model discovered from the neighbour has the fingerprint of the parent's one.
+ * The fingerprints are the keys of the memoised process abstractions (see EvaluationCache), they do not tell
+ * which part of two different models changed (the activity graphs do, for the local behaviours, see ActivityGraph).
+ */
+public class ModelFingerprint {
+
+    public static String of(Object model) {
+        if( model instanceof BPMNDiagram ) return of((BPMNDiagram) model);
+        if( model instanceof EfficientTree ) return of((EfficientTree) model);
+        return null;
+    }
+
+    /**
+     * the nodes are coloured by their type and label, and the colours are refined with the ones of their neighbours
+     * until they are stable (colour refinement). If each node has its own colour, the colours are a canonical
+     * numbering of the nodes and the fingerprint lists the nodes and the flows in that numbering.
+     * @return the fingerprint of the diagram, or null if the colours do not identify each node (e.g. duplicated labels)
+     */
+    public static String of(BPMNDiagram diagram) {
+        List<BPMNNode> nodes = new ArrayList<>(diagram.getNodes());
+        Map<BPMNNode, Integer> ids = new HashMap<>();
+        List<int[]> flows = new ArrayList<>();
+        List<List<Integer>> outgoings = new ArrayList<>();
+        List<List<Integer>> incomings = new ArrayList<>();
+        String[] labels = new String[nodes.size()];
+        String[] signatures = new String[nodes.size()];
+        int[] colours;
+        int classes, refined;
+        Integer src, tgt;
+
+        for( int i = 0; i < nodes.size(); i++ ) {
+            ids.put(nodes.get(i), i);
+            labels[i] = label(nodes.get(i));
+            outgoings.add(new ArrayList<Integer>());
+            incomings.add(new ArrayList<Integer>());
+        }
+
+        for( BPMNEdge<? extends BPMNNode, ? extends BPMNNode> flow : diagram.getFlows() ) {
+            if( (src = ids.get(flow.getSource())) == null || (tgt = ids.get(flow.getTarget())) == null ) return null;
+            flows.add(new int[]{src, tgt});
+            outgoings.get(src).add(tgt);
+            incomings.get(tgt).add(src);
+        }
+
+        colours = new int[nodes.size()];
+        classes = colour(labels, colours);
+        while( true ) {
+            for( int i = 0; i < nodes.size(); i++ )
+                signatures[i] = colours[i] + "|" + neighbours(outgoings.get(i), colours) + "|" + neighbours(incomings.get(i), colours);
+            refined = colour(signatures, colours);
+            if( refined == classes ) break;
+            classes = refined;
+        }
+
+        if( classes != nodes.size() ) return null;
+
+        String[] canonicalLabels = new String[nodes.size()];
+        for( int i = 0; i < nodes.size(); i++ ) canonicalLabels[colours[i]] = labels[i];
+
+        List<String> canonicalFlows = new ArrayList<>();
+        for( int[] flow : flows ) canonicalFlows.add(colours[flow[0]] + ">" + colours[flow[1]]);
+        Collections.sort(canonicalFlows);
+
+        return "BPMN" + Arrays.toString(canonicalLabels) + canonicalFlows;
+    }
+
+    /**
+     * the children of the commutative operators (xor, and, or, interleaved) are sorted, the ones of sequences and loops are not.
+     * @return the fingerprint of the tree
+     */
+    public static String of(EfficientTree tree) {
+        return "TREE" + of(tree, tree.getRoot());
+    }
+
+    private static String of(EfficientTree tree, int node) {
+        if( tree.isActivity(node) ) return "'" + tree.getActivityName(node) + "'";
+        if( tree.isTau(node) ) return "tau";
+
+        List<String> children = new ArrayList<>();
+        for( int child : tree.getChildren(node) ) children.add(of(tree, child));
+        if( tree.isXor(node) || tree.isConcurrent(node) || tree.isOr(node) || tree.isInterleaved(node) ) Collections.sort(children);
+
+        return tree.getNodeType(node) + children.toString();
+    }
+
+    private static String label(BPMNNode node) {
+        if( node instanceof Activity ) return "A:" + node.getLabel();
+        if( node instanceof Gateway ) return "G:" + ((Gateway) node).getGatewayType();
+        if( node instanceof Event ) return "E:" + ((Event) node).getEventType() + ":" + ((Event) node).getEventTrigger();
+        return node.getClass().getSimpleName() + ":" + node.getLabel();
+    }
+
+    private static String neighbours(List<Integer> neighbours, int[] colours) {
+        int[] sorted = new int[neighbours.size()];
+        for( int i = 0; i < sorted.length; i++ ) sorted[i] = colours[neighbours.get(i)];
+        Arrays.sort(sorted);
+        return Arrays.toString(sorted);
+    }
+
+//    the colours are the ranks of the signatures, so that they do not depend on the order of the nodes
+    private static int colour(String[] signatures, int[] colours) {
+        TreeMap<String, Integer> ranks = new TreeMap<>();
+        int rank = 0;
+
+        for( String signature : signatures ) ranks.put(signature, 0);
+        for( Map.Entry<String, Integer> entry : ranks.entrySet() ) entry.setValue(rank++);
+        for( int i = 0; i < signatures.length; i++ ) colours[i] = ranks.get(signatures[i]);
+
+        return ranks.size();
+    }
+}
@@ -0,0 +1,75 @@
+package au.edu.unimelb.processmining.optimization;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluations of the neighbours of the current solution running concurrently on an executor.
+ * The evaluations are consumed as they complete: await() returns as soon as all of them are done,
+ * or as soon as the still pending ones are past their deadline (start time + timeout, the executor
+ * can be busy with other evaluations and the time spent in its queue does not count).
+ * The evaluations not done by then are left to the caller, who can cancel them.
+ */
+public class NeighbourhoodEvaluation {
+
+    private CompletionService<Object[]> completionService;
+    private Map<Future<Object[]>, AtomicLong> deadlines;
+    private long timeout;
+    private int submitted;
+
+    public NeighbourhoodEvaluation(Executor executor, long timeout) {
+        this.completionService = new ExecutorCompletionService<>(executor);
+        this.deadlines = new HashMap<>();
+        this.timeout = timeout;
+    }
+
+    public Future<Object[]> submit(final Callable<Object[]> evaluation) {
+        final AtomicLong deadline = new AtomicLong(Long.MAX_VALUE);
+        Future<Object[]> future = completionService.submit(new Callable<Object[]>() {
+            @Override
+            public Object[] call() throws Exception {
+                deadline.set(System.currentTimeMillis() + timeout);
+                return evaluation.call();
+            }
+        });
+        deadlines.put(future, deadline);
+        submitted++;
+        return future;
+    }
+
+    public int getSubmitted() { return submitted; }
+
+    public void await() throws InterruptedException {
+        Future<Object[]> done;
+        long deadline, now;
+
+        while( !deadlines.isEmpty() ) {
+            now = System.currentTimeMillis();
+            deadline = Long.MAX_VALUE;
+            for( AtomicLong d : deadlines.values() ) deadline = Math.min(deadline, d.get());
+//            if none of the pending evaluations started yet, the earliest one cannot end before a timeout from now
+            if( deadline == Long.MAX_VALUE ) deadline = now + timeout;
+
+            if( deadline <= now || (done = completionService.poll(deadline - now, TimeUnit.MILLISECONDS)) == null ) {
+//                we stop waiting for the evaluations past their deadline
+                final long expired = System.currentTimeMillis();
+                deadlines.values().removeIf(d -> d.get() <= expired);
+            } else deadlines.remove(done);
+        }
+    }
+
+    /**
+     * waits for a single evaluation until it is done or the timeout expires.
+     * @return true if the evaluation is done (successfully or not)
+     */
+    public static boolean await(Future<Object[]> evaluation, long timeout) throws InterruptedException {
+        try {
+            evaluation.get(timeout, TimeUnit.MILLISECONDS);
+        } catch( ExecutionException | TimeoutException e ) {
+            // the caller checks isDone() and gets the result (or the exception) from the future
+        }
+        return evaluation.isDone();
+    }
+}
@@ -0,0 +1,46 @@
+package au.edu.unimelb.processmining.optimization;
+
+import java.util.Random;
+
+/**
+ * Seeded random number generators of a run of the optimizers. Each component of a search (e.g. the selection
+ * of the mismatches, the acceptance of the simulated annealing) takes its own stream, derived from the seed
+ * and the name of the component, and each island of an IslandModel forks its own streams: the numbers drawn
+ * by a component do not depend on the ones drawn by the others, nor on the order in which the threads run.
+ */
+public class RandomStreams {
+
+    private long seed;
+
+    public RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() { return seed; }
+
+    /**
+     * @return a new generator, the same sequence of numbers for the same seed and component
+     */
+    public Random stream(String component) {
+        return new Random(mix(seed * 31 + component.hashCode()));
+    }
+
+    /**
+     * @return the streams of the given island (or any other independent search of the same run)
+     */
+    public RandomStreams fork(int island) {
+        return new RandomStreams(mix(seed + 0x9E3779B97F4A7C15L * (island + 1)));
+    }
+
+//    the finalizer of SplitMix64, close seeds give unrelated generators
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return "seed: " + seed;
+    }
+}
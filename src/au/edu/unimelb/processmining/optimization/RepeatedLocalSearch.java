@@ -1,26 +1,26 @@
 package au.edu.unimelb.processmining.optimization;
 
 import au.edu.qut.processmining.log.SimpleLog;
-import au.edu.unimelb.processmining.accuracy.abstraction.LogAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
-import com.raffaeleconforti.context.FakePluginContext;
-import org.processmining.acceptingpetrinet.models.AcceptingPetriNet;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
-import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree2AcceptingPetriNet;
-import org.processmining.plugins.pnml.exporting.PnmlExportNetToPNML;
 
-import java.io.File;
-import java.io.PrintWriter;
 import java.util.*;
 import java.util.concurrent.*;
 
-import static java.lang.Thread.sleep;
-
 public class RepeatedLocalSearch implements Metaheuristics {
 
     private MinerProxy minerProxy;
 
+    private EvaluationPool evaluationPool;
+
+    private EvaluationCache evaluationCache;
+
+    private volatile SearchSolution bestSolution;
+    private List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+    private RandomStreams randomStreams = new RandomStreams(1);
+    private LogAbstractionCache logAbstractions = new LogAbstractionCache();
+
     private BPMNDiagram currentBPMN;
     private BPMNDiagram bestBPMN;
 
@@ -38,7 +38,6 @@ public class RepeatedLocalSearch implements Metaheuristics {
     private SubtraceAbstraction staLog;
     private SubtraceAbstraction staProcess;
 
-    private PrintWriter writer;
     private int restarts;
 
     int noImprovementCounter = 0;
@@ -48,25 +47,56 @@ public class RepeatedLocalSearch implements Metaheuristics {
     private long ModifyTime;
     private long ComputeTime;
 
-    public RepeatedLocalSearch(MinerProxy proxy) {
+    public RepeatedLocalSearch(MinerProxy proxy, EvaluationPool evaluationPool, EvaluationCache evaluationCache) {
         minerProxy = proxy;
+        this.evaluationPool = evaluationPool;
+        this.evaluationCache = evaluationCache;
+    }
+
+    public void addListener(SearchListener listener) {
+        listeners.add(listener);
     }
 
-    public BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String modelName) {
+    public SearchSolution getBestSolution() {
+        return bestSolution;
+    }
+
+    public void setRandomStreams(RandomStreams randomStreams) {
+        this.randomStreams = randomStreams;
+    }
+
+    public void setLogAbstractions(LogAbstractionCache logAbstractions) {
+        this.logAbstractions = logAbstractions;
+    }
+
+//    called each time the best solution improves, bestSDFG and currentAccuracy are the ones of the model
+    private void publish(Object model, SearchBudget budget) {
+        bestSolution = new SearchSolution(model, bestSDFG, currentAccuracy[0], currentAccuracy[1], currentAccuracy[2], budget.getIterations(), budget.getEvaluations(), budget.getWallTime());
+        for (SearchListener listener : listeners) {
+            try {
+                listener.onImprovement(bestSolution);
+            } catch (Exception e) {
+                System.out.println("WARNING - search listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String modelName) {
         int iterations = 0;
         int icounter = 0;
         boolean improved;
         boolean export = false;
 
         restarts = 0;
-        staLog = LogAbstraction.subtrace(slog, order);
+        staLog = logAbstractions.subtrace(slog, order);
 
-        ExecutorService multiThreadService;
+        NeighbourhoodEvaluation evaluation;
+        Random mismatches = randomStreams.stream("mismatches");
         MarkovianBasedEvaluator evalThread;
         Future<Object[]> evalResult;
-        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new HashMap<>();
+        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new LinkedHashMap<>();
         String subtrace;
-        Set<SimpleDirectlyFollowGraph> neighbours = new HashSet<>();
+        Set<SimpleDirectlyFollowGraph> neighbours = new LinkedHashSet<>();
         Object[] result;
         ArrayList<String> differences;
 
@@ -78,18 +108,8 @@ public class RepeatedLocalSearch implements Metaheuristics {
         bestFitness = new ArrayList<>();
         bestPrecision = new ArrayList<>();
 
-        writer = null;
-        try {
-            String safeName = modelName.replaceAll("[/\\\\.]", "_");
-            writer = new PrintWriter("." +
-                    "/ils_" + safeName + ".csv");
-            writer.println("iteration,fitness,precision,fscore,itime");
-        } catch (Exception e) {
-            System.out.println("ERROR - impossible to print the markovian abstraction.");
-        }
-
         long eTime = System.currentTimeMillis();
-        long iTime = System.currentTimeMillis();
+        budget.start();
 
         restart(slog, order);
         bestFitness.add(currentAccuracy[0]);
@@ -98,8 +118,9 @@ public class RepeatedLocalSearch implements Metaheuristics {
         hits.add(iterations);
         bestSDFG = currentSDFG;
         bestBPMN = currentBPMN;
+        publish(bestBPMN, budget);
 
-        while (iterations < maxit && currentSDFG != null) {
+        while (!budget.isExhausted() && currentSDFG != null) {
             try {
 
                 if (currentAccuracy[2] > bestScores.get(bestScores.size() - 1)) {
@@ -110,12 +131,13 @@ public class RepeatedLocalSearch implements Metaheuristics {
                     hits.add(iterations);
                     bestSDFG = currentSDFG;
                     bestBPMN = currentBPMN;
+                    publish(bestBPMN, budget);
                     noImprovementCounter = 0;
                 } else {
                     noImprovementCounter++;
                 }
 
-                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK) {
+                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK && !budget.isExhausted()) {
                     // get traces that are in the model but not in the log and ectend with every rising of k
                     differences = staProcess.computeDifferences(staLog);
 
@@ -123,14 +145,12 @@ public class RepeatedLocalSearch implements Metaheuristics {
                     System.out.println("\u001B[32mINFO - No improvement for " + noImprovementCounter + " iterations, increasing k to " + order + "\u001B[0m");
 
                     // Recompute Log abstraction at new k
-                    staLog = LogAbstraction.subtraceTree(slog, order);
+                    staLog = logAbstractions.subtraceTree(slog, order);
 
                     // Re-evaluate best tree at new k
                     MarkovianBasedEvaluator reevaluateBest = new MarkovianBasedEvaluator(staLog, differences, slog, minerProxy, bestTree, order);
-                    ExecutorService reevaluateService = Executors.newSingleThreadExecutor();
-                    Future<Object[]> reevaluateResult = reevaluateService.submit(reevaluateBest);
-                    Object[] newResult = reevaluateResult.get(timeout, TimeUnit.MILLISECONDS);
-                    reevaluateService.shutdownNow();
+                    Object[] newResult = evaluationPool.evaluate(reevaluateBest, budget);
+                    if (newResult == null) break;
 
                     currentAccuracy[0] = (Double) newResult[0];
                     currentAccuracy[1] = (Double) newResult[1];
@@ -143,14 +163,10 @@ public class RepeatedLocalSearch implements Metaheuristics {
                     noImprovementCounter = 0;
                 }
 
-                iTime = System.currentTimeMillis() - iTime;
                 if (export)
                     AutomatedProcessDiscoveryOptimizer.exportBPMN(currentBPMN, ".\\rls_" + modelName + "_" + iterations + ".bpmn");
-                writer.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-//                System.out.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-                writer.flush();
                 iterations++;
-                iTime = System.currentTimeMillis();
+                budget.countIteration();
 
                 long mineStart = System.currentTimeMillis();
                 if (currentAccuracy[1] > currentAccuracy[0]) {
@@ -162,12 +178,12 @@ public class RepeatedLocalSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staLog.computeDifferences(staProcess);
-                    subtrace = staLog.nextMismatch();
+                    subtrace = staLog.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch();
+                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -183,12 +199,12 @@ public class RepeatedLocalSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staProcess.computeDifferences(staLog);
-                    subtrace = staProcess.nextMismatch();
+                    subtrace = staProcess.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch();
+                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -206,8 +222,13 @@ public class RepeatedLocalSearch implements Metaheuristics {
                     continue;
                 }
 
-                multiThreadService = Executors.newFixedThreadPool(neighbours.size());
+                evaluation = new NeighbourhoodEvaluation(evaluationPool, minerProxy.getTimeout());
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighbours) {
+                    if ((evalResult = evaluationCache.lookup(neighbourSDFG, order, false)) != null) {
+                        neighboursEvaluations.put(neighbourSDFG, evalResult);
+                        continue;
+                    }
+
                     try {
                         long modifyStart = System.currentTimeMillis();
                         tmpBPMN = minerProxy.getBPMN(neighbourSDFG);
@@ -218,13 +239,16 @@ public class RepeatedLocalSearch implements Metaheuristics {
                         continue;
                     }
                     evalThread = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-                    evalResult = multiThreadService.submit(evalThread);
+                    evalThread.setCache(evaluationCache);
+                    evalThread.setParent(currentBPMN);
+                    evalResult = evaluation.submit(evaluationCache.memoize(neighbourSDFG, order, false, evalThread));
                     neighboursEvaluations.put(neighbourSDFG, evalResult);
 //                    System.out.println("INFO - exploring 1 neighbour.");
                 }
 
 //                System.out.println("INFO - synchronising with threads.");
-                sleep(minerProxy.getTimeout());
+                evaluation.await();
+                budget.countEvaluations(evaluation.getSubmitted());
 
                 improved = false;
                 int done = 0;
@@ -256,7 +280,6 @@ public class RepeatedLocalSearch implements Metaheuristics {
 
                 neighbours.clear();
                 neighboursEvaluations.clear();
-                multiThreadService.shutdownNow();
 
 /**     once we checked all the neighbours accuracies, we select the one improving the current state or none at all.
  *      if the one improving the current state, also improves the global maximum, we update that.
@@ -274,16 +297,6 @@ public class RepeatedLocalSearch implements Metaheuristics {
         }
 
         eTime = System.currentTimeMillis() - eTime;
-        String hitrow = "";
-        String fscorerow = "";
-        for (int i = 0; i < hits.size(); i++) {
-            hitrow += hits.get(i) + ",";
-            fscorerow += bestScores.get(i) + ",";
-        }
-
-        writer.println(hitrow + (double) (eTime) / 1000.0);
-        writer.println(fscorerow + (double) (eTime) / 1000.0);
-        writer.close();
 
         // Print summary
         System.out.println("\u001B[32mTotal Mine Time: " + MineTime + "ms\u001B[0m");
@@ -297,33 +310,27 @@ public class RepeatedLocalSearch implements Metaheuristics {
         System.out.println("eTIME - " + (double) (eTime) / 1000.0 + "s");
         System.out.println("STATS - total restarts: " + restarts);
 
-        AcceptingPetriNet net = EfficientTree2AcceptingPetriNet.convert(bestTree);
-        PnmlExportNetToPNML exporter = new PnmlExportNetToPNML();
-        try {
-            exporter.exportPetriNetToPNMLFile(new FakePluginContext(), net.getNet(), new File("C:\\Users\\Amer\\gitprojects\\bpmtk\\models\\RLSTree" + order + ".pnml"));
-        } catch (java.io.IOException e) {
-            e.printStackTrace();
-        }
 
         return bestBPMN;
     }
 
     @Override
-    public EfficientTree searchOptimalTree(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String modelName) {
+    public EfficientTree searchOptimalTree(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String modelName) {
         int iterations = 0;
         int icounter = 0;
         boolean improved;
         boolean export = false;
 
         restarts = 0;
-        staLog = LogAbstraction.subtraceTree(slog, order);
+        staLog = logAbstractions.subtraceTree(slog, order);
 
-        ExecutorService multiThreadService;
+        NeighbourhoodEvaluation evaluation;
+        Random mismatches = randomStreams.stream("mismatches");
         MarkovianBasedEvaluator evalThread;
         Future<Object[]> evalResult;
-        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new HashMap<>();
+        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new LinkedHashMap<>();
         String subtrace;
-        Set<SimpleDirectlyFollowGraph> neighbours = new HashSet<>();
+        Set<SimpleDirectlyFollowGraph> neighbours = new LinkedHashSet<>();
         Object[] result;
         ArrayList<String> differences;
 
@@ -335,18 +342,8 @@ public class RepeatedLocalSearch implements Metaheuristics {
         bestFitness = new ArrayList<>();
         bestPrecision = new ArrayList<>();
 
-        writer = null;
-        try {
-            String safeName = modelName.replaceAll("[/\\\\.]", "_");
-            writer = new PrintWriter("." +
-                    "/ils_" + safeName + ".csv");
-            writer.println("iteration,fitness,precision,fscore,itime");
-        } catch (Exception e) {
-            System.out.println("ERROR - impossible to print the markovian abstraction.");
-        }
-
         long eTime = System.currentTimeMillis();
-        long iTime = System.currentTimeMillis();
+        budget.start();
 
         restartTree(slog, order);
         bestFitness.add(currentAccuracy[0]);
@@ -355,8 +352,9 @@ public class RepeatedLocalSearch implements Metaheuristics {
         hits.add(iterations);
         bestSDFG = currentSDFG;
         bestTree = currentTree;
+        publish(bestTree, budget);
 
-        while (iterations < maxit && currentSDFG != null) {
+        while (!budget.isExhausted() && currentSDFG != null) {
             try {
 
                 if (currentAccuracy[2] > bestScores.get(bestScores.size() - 1)) {
@@ -367,6 +365,7 @@ public class RepeatedLocalSearch implements Metaheuristics {
                     hits.add(iterations);
                     bestSDFG = currentSDFG;
                     bestTree = currentTree;
+                    publish(bestTree, budget);
                     noImprovementCounter = 0;
                 } else {
                     noImprovementCounter++;
@@ -380,14 +379,12 @@ public class RepeatedLocalSearch implements Metaheuristics {
                     System.out.println("\u001B[32mINFO - No improvement for " + noImprovementCounter + " iterations, increasing k to " + order + "\u001B[0m");
 
                     // Recompute Log abstraction at new k
-                    staLog = LogAbstraction.subtraceTree(slog, order);
+                    staLog = logAbstractions.subtraceTree(slog, order);
 
                     // Re-evaluate best tree at new k
                     MarkovianBasedEvaluator reevaluateBest = new MarkovianBasedEvaluator(staLog, differences, slog, minerProxy, bestTree, order);
-                    ExecutorService reevaluateService = Executors.newSingleThreadExecutor();
-                    Future<Object[]> reevaluateResult = reevaluateService.submit(reevaluateBest);
-                    Object[] newResult = reevaluateResult.get(timeout, TimeUnit.MILLISECONDS);
-                    reevaluateService.shutdownNow();
+                    Object[] newResult = evaluationPool.evaluate(reevaluateBest, budget);
+                    if (newResult == null) break;
 
                     currentAccuracy[0] = (Double) newResult[0];
                     currentAccuracy[1] = (Double) newResult[1];
@@ -400,15 +397,11 @@ public class RepeatedLocalSearch implements Metaheuristics {
                     noImprovementCounter = 0;
                 }*/
 
-                iTime = System.currentTimeMillis() - iTime;
 
                 if (export)
                     AutomatedProcessDiscoveryOptimizer.exportTree(currentTree, ".\\rls_" + modelName + "_" + iterations + ".ptml");
-                writer.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-//                System.out.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-                writer.flush();
                 iterations++;
-                iTime = System.currentTimeMillis();
+                budget.countIteration();
 
                 long mineStart = System.currentTimeMillis();
                 if (currentAccuracy[1] > currentAccuracy[0]) {
@@ -420,12 +413,12 @@ public class RepeatedLocalSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staLog.computeDifferences(staProcess);
-                    subtrace = staLog.nextMismatch();
+                    subtrace = staLog.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch();
+                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -441,12 +434,12 @@ public class RepeatedLocalSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staProcess.computeDifferences(staLog);
-                    subtrace = staProcess.nextMismatch();
+                    subtrace = staProcess.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch();
+                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -464,8 +457,13 @@ public class RepeatedLocalSearch implements Metaheuristics {
                     continue;
                 }
 
-                multiThreadService = Executors.newFixedThreadPool(neighbours.size());
+                evaluation = new NeighbourhoodEvaluation(evaluationPool, minerProxy.getTimeout());
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighbours) {
+                    if ((evalResult = evaluationCache.lookup(neighbourSDFG, order, true)) != null) {
+                        neighboursEvaluations.put(neighbourSDFG, evalResult);
+                        continue;
+                    }
+
                     try {
                         long modifyStart = System.currentTimeMillis();
                         tmpTree = minerProxy.getTree(neighbourSDFG);
@@ -478,13 +476,15 @@ public class RepeatedLocalSearch implements Metaheuristics {
 
                     // time for computation in MarkovianBasedEvaluator
                     evalThread = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-                    evalResult = multiThreadService.submit(evalThread);
+                    evalThread.setCache(evaluationCache);
+                    evalResult = evaluation.submit(evaluationCache.memoize(neighbourSDFG, order, true, evalThread));
                     neighboursEvaluations.put(neighbourSDFG, evalResult);
 //                    System.out.println("INFO - exploring 1 neighbour.");
                 }
 
 //                System.out.println("INFO - synchronising with threads.");
-                sleep(minerProxy.getTimeout());
+                evaluation.await();
+                budget.countEvaluations(evaluation.getSubmitted());
 
                 improved = false;
                 int done = 0;
@@ -515,7 +515,6 @@ public class RepeatedLocalSearch implements Metaheuristics {
 
                 neighbours.clear();
                 neighboursEvaluations.clear();
-                multiThreadService.shutdownNow();
 
 /**     once we checked all the neighbours accuracies, we select the one improving the current state or none at all.
  *      if the one improving the current state, also improves the global maximum, we update that.
@@ -533,16 +532,6 @@ public class RepeatedLocalSearch implements Metaheuristics {
         }
 
         eTime = System.currentTimeMillis() - eTime;
-        String hitrow = "";
-        String fscorerow = "";
-        for (int i = 0; i < hits.size(); i++) {
-            hitrow += hits.get(i) + ",";
-            fscorerow += bestScores.get(i) + ",";
-        }
-
-        writer.println(hitrow + (double) (eTime) / 1000.0);
-        writer.println(fscorerow + (double) (eTime) / 1000.0);
-        writer.close();
 
         // Print summary
         System.out.println("\u001B[32mTotal Mine Time: " + MineTime + "ms\u001B[0m");
@@ -556,13 +545,6 @@ public class RepeatedLocalSearch implements Metaheuristics {
         System.out.println("eTIME - " + (double) (eTime) / 1000.0 + "s");
         System.out.println("STATS - total restarts: " + restarts);
 
-        AcceptingPetriNet net = EfficientTree2AcceptingPetriNet.convert(bestTree);
-        PnmlExportNetToPNML exporter = new PnmlExportNetToPNML();
-        try {
-            exporter.exportPetriNetToPNMLFile(new FakePluginContext(), net.getNet(), new File("C:\\Users\\Amer\\gitprojects\\bpmtk\\models\\RLSTree" + order + ".pnml"));
-        } catch (java.io.IOException e) {
-            e.printStackTrace();
-        }
 
         return bestTree;
     }
@@ -570,7 +552,6 @@ public class RepeatedLocalSearch implements Metaheuristics {
 
     private void restart(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor = null;
         Future<Object[]> evalResult;
         BPMNDiagram tmpBPMN;
         Object[] result;
@@ -586,11 +567,10 @@ public class RepeatedLocalSearch implements Metaheuristics {
             long modifyEnd = System.currentTimeMillis();
             ModifyTime = modifyEnd - modifyStart;
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-            executor = Executors.newSingleThreadExecutor();
-            evalResult = executor.submit(markovianBasedEvaluator);
+            markovianBasedEvaluator.setCache(evaluationCache);
+            evalResult = evaluationPool.submit(markovianBasedEvaluator);
 
-            sleep(minerProxy.getTimeout());
-            if (evalResult.isDone()) {
+            if (NeighbourhoodEvaluation.await(evalResult, minerProxy.getTimeout())) {
                 result = evalResult.get();
                 currentAccuracy[0] = (Double) result[0];
                 currentAccuracy[1] = (Double) result[1];
@@ -598,27 +578,22 @@ public class RepeatedLocalSearch implements Metaheuristics {
                 staProcess = (SubtraceAbstraction) result[3];
                 currentBPMN = (BPMNDiagram) result[4];
                 ComputeTime += (long) result[5];
-                executor.shutdownNow();
                 System.out.println("RESTART - done.");
 //                AutomatedProcessDiscoveryOptimizer.exportBPMN(currentBPMN, ".\\fo-test.bpmn");
-                writer.println("r,r,r,r,r");
             } else {
                 System.out.println("TIMEOUT - restart failed.");
                 evalResult.cancel(true);
-                executor.shutdownNow();
                 restart(slog, order);
             }
         } catch (Exception e) {
             System.out.println("WARNING - restart failed.");
             e.printStackTrace();
-            if (executor != null) executor.shutdownNow();
             restart(slog, order);
         }
     }
 
     private void restartTree(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor = null;
         Future<Object[]> evalResult;
         EfficientTree tmpTree;
         Object[] result;
@@ -635,11 +610,10 @@ public class RepeatedLocalSearch implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-            executor = Executors.newSingleThreadExecutor();
-            evalResult = executor.submit(markovianBasedEvaluator);
+            markovianBasedEvaluator.setCache(evaluationCache);
+            evalResult = evaluationPool.submit(markovianBasedEvaluator);
 
-            sleep(minerProxy.getTimeout());
-            if (evalResult.isDone()) {
+            if (NeighbourhoodEvaluation.await(evalResult, minerProxy.getTimeout())) {
                 result = evalResult.get();
                 currentAccuracy[0] = (Double) result[0];
                 currentAccuracy[1] = (Double) result[1];
@@ -647,20 +621,16 @@ public class RepeatedLocalSearch implements Metaheuristics {
                 staProcess = (SubtraceAbstraction) result[3];
                 currentTree = (EfficientTree) result[4];
                 ComputeTime += (long) result[5];
-                executor.shutdownNow();
                 System.out.println("RESTART - done.");
 //                AutomatedProcessDiscoveryOptimizer.exportBPMN(currentBPMN, ".\\fo-test.bpmn");
-                writer.println("r,r,r,r,r");
             } else {
                 System.out.println("TIMEOUT - restart failed.");
                 evalResult.cancel(true);
-                executor.shutdownNow();
                 restartTree(slog, order);
             }
         } catch (Exception e) {
             System.out.println("WARNING - restart failed.");
             e.printStackTrace();
-            if (executor != null) executor.shutdownNow();
             restartTree(slog, order);
         }
     }
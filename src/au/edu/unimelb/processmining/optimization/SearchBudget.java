@@ -0,0 +1,125 @@
+package au.edu.unimelb.processmining.optimization;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Budget of a search of the metaheuristics, it can bound the number of iterations, the number of evaluations
+ * of neighbours (the ones found in the EvaluationCache are free), the wall-clock time and the CPU time of the JVM
+ * (i.e. including the threads of the EvaluationPool, and any other search running concurrently).
+ * The budget is exhausted as soon as any of its limits is reached, or when it is stopped.
+ *
+ * A budget is consumed by one search at a time: start() resets its counters, and stop() can be called
+ * from any thread to end the search at its next iteration (its best solution so far is returned).
+ */
+public class SearchBudget {
+
+    private int maxIterations = Integer.MAX_VALUE;
+    private long maxEvaluations = Long.MAX_VALUE;
+    private long maxWallTime = Long.MAX_VALUE;
+    private long maxCpuTime = Long.MAX_VALUE;
+
+    private volatile int iterations;
+    private volatile long evaluations;
+    private volatile long wallStart;
+    private volatile long cpuStart;
+    private volatile boolean stopped;
+
+    private SearchBudget parent;
+
+    public static SearchBudget unlimited() { return new SearchBudget(); }
+
+//    the budget of the former searchOptimalSolution(slog, order, maxit, neighbourhood, timeout, name)
+    public static SearchBudget of(int maxit, long timeout) {
+        return new SearchBudget().iterations(maxit).wallTime(timeout);
+    }
+
+    /**
+     * @return a budget with the same limits, for a search running concurrently with others (e.g. an island of an IslandModel),
+     * it is exhausted also when this budget is (stopped, or out of wall-clock or CPU time)
+     */
+    public SearchBudget fork() {
+        SearchBudget fork = new SearchBudget().iterations(maxIterations).evaluations(maxEvaluations).wallTime(maxWallTime).cpuTime(maxCpuTime);
+        fork.parent = this;
+        return fork;
+    }
+
+    public SearchBudget iterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    public SearchBudget evaluations(long maxEvaluations) {
+        this.maxEvaluations = maxEvaluations;
+        return this;
+    }
+
+    /**
+     * @param maxWallTime in milliseconds
+     */
+    public SearchBudget wallTime(long maxWallTime) {
+        this.maxWallTime = maxWallTime;
+        return this;
+    }
+
+    /**
+     * @param maxCpuTime in milliseconds
+     */
+    public SearchBudget cpuTime(long maxCpuTime) {
+        this.maxCpuTime = maxCpuTime;
+        return this;
+    }
+
+    public void start() {
+        iterations = 0;
+        evaluations = 0;
+        wallStart = System.currentTimeMillis();
+        cpuStart = cpuTime();
+    }
+
+    public void stop() { stopped = true; }
+
+    public void countIteration() { iterations++; }
+
+    public void countEvaluations(int n) { evaluations += n; }
+
+    public boolean isExhausted() {
+        return stopped ||
+                (parent != null && parent.isExhausted()) ||
+                iterations >= maxIterations ||
+                evaluations >= maxEvaluations ||
+                getWallTime() >= maxWallTime ||
+                (maxCpuTime != Long.MAX_VALUE && getCpuTime() >= maxCpuTime);
+    }
+
+    public int getMaxIterations() { return maxIterations; }
+
+    public int getIterations() { return iterations; }
+
+    public long getEvaluations() { return evaluations; }
+
+    public long getWallTime() { return System.currentTimeMillis() - wallStart; }
+
+    public long getCpuTime() { return cpuTime() - cpuStart; }
+
+    /**
+     * @return the wall-clock time left (in milliseconds), an evaluation outside the loop of the search should not take longer
+     */
+    public long getRemainingTime() {
+        if( maxWallTime == Long.MAX_VALUE ) return Long.MAX_VALUE;
+        return Math.max(0, maxWallTime - getWallTime());
+    }
+
+//    the CPU time of the whole process when the JVM provides it, otherwise the one of the current thread
+    private static long cpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if( os instanceof com.sun.management.OperatingSystemMXBean )
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() / 1000000;
+        return ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "iterations: " + iterations + ", evaluations: " + evaluations + ", wall-time: " + getWallTime() + "ms, cpu-time: " + getCpuTime() + "ms";
+    }
+}
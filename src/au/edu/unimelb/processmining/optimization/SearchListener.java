@@ -0,0 +1,9 @@
+package au.edu.unimelb.processmining.optimization;
+
+/**
+ * Notified by the metaheuristics each time the best solution of the search improves (starting from the first one),
+ * on the thread running the search: it should return quickly.
+ */
+public interface SearchListener {
+    void onImprovement(SearchSolution solution);
+}
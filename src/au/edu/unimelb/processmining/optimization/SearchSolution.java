@@ -0,0 +1,58 @@
+package au.edu.unimelb.processmining.optimization;
+
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
+
+/**
+ * Best solution found by a search of the metaheuristics at some point of the search:
+ * the model (a BPMN diagram or a process tree, depending on the search), the SDFG it was discovered from,
+ * its accuracy, and how much of the SearchBudget was consumed when it was found.
+ */
+public class SearchSolution {
+
+    private Object model;
+    private SimpleDirectlyFollowGraph sdfg;
+    private double fitness;
+    private double precision;
+    private double fscore;
+    private int iteration;
+    private long evaluations;
+    private long time;
+
+    public SearchSolution(Object model, SimpleDirectlyFollowGraph sdfg, double fitness, double precision, double fscore, int iteration, long evaluations, long time) {
+        this.model = model;
+        this.sdfg = sdfg;
+        this.fitness = fitness;
+        this.precision = precision;
+        this.fscore = fscore;
+        this.iteration = iteration;
+        this.evaluations = evaluations;
+        this.time = time;
+    }
+
+    public Object getModel() { return model; }
+
+    public BPMNDiagram getBPMN() { return model instanceof BPMNDiagram ? (BPMNDiagram) model : null; }
+
+    public EfficientTree getTree() { return model instanceof EfficientTree ? (EfficientTree) model : null; }
+
+    public SimpleDirectlyFollowGraph getSDFG() { return sdfg; }
+
+    public double getFitness() { return fitness; }
+
+    public double getPrecision() { return precision; }
+
+    public double getFscore() { return fscore; }
+
+    public int getIteration() { return iteration; }
+
+    public long getEvaluations() { return evaluations; }
+
+//    milliseconds since the start of the search
+    public long getTime() { return time; }
+
+    @Override
+    public String toString() {
+        return iteration + "," + fitness + "," + precision + "," + fscore + "," + evaluations + "," + time;
+    }
+}
@@ -3,6 +3,7 @@ package au.edu.unimelb.processmining.optimization;
 import au.edu.qut.processmining.log.LogParser;
 import au.edu.qut.processmining.log.SimpleLog;
 import au.edu.qut.processmining.miners.splitminer.dfgp.DFGEdge;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DirectlyFollowGraph;
 import au.edu.qut.processmining.miners.splitminer.dfgp.DirectlyFollowGraphPlus;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
@@ -72,7 +73,7 @@ public class SimpleDirectlyFollowGraph extends DirectlyFollowGraphPlus {
             }
     }
 
-    public SimpleDirectlyFollowGraph(DirectlyFollowGraphPlus directlyFollowGraphPlus, boolean tabuSearch) {
+    public SimpleDirectlyFollowGraph(DirectlyFollowGraph directlyFollowGraphPlus, boolean tabuSearch) {
         this.parallelisms = directlyFollowGraphPlus.getParallelisms();
         this.loopsL1 = directlyFollowGraphPlus.getLoopsL1();
         this.startcode = directlyFollowGraphPlus.getStartcode();
@@ -121,6 +122,9 @@ public class SimpleDirectlyFollowGraph extends DirectlyFollowGraphPlus {
 
     public void setParallelisms(Map<Integer, HashSet<Integer>> parallelisms) { this.parallelisms = parallelisms; }
 
+    @Override
+    public Map<Integer, HashSet<Integer>> getParallelisms() { return parallelisms; }
+
     @Override
     public SimpleLog getSimpleLog(){ return slog; }
 
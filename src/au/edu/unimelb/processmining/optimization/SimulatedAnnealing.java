@@ -1,27 +1,31 @@
 package au.edu.unimelb.processmining.optimization;
 
 import au.edu.qut.processmining.log.SimpleLog;
-import au.edu.unimelb.processmining.accuracy.abstraction.LogAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
 
-import java.io.PrintWriter;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-
-import static java.lang.Thread.sleep;
 
 public class SimulatedAnnealing implements Metaheuristics {
 
     //    this represents the percentage of total iteration that must past before the temperature reaches 0
+    //    (the iterations of the budget: when the budget has no iteration limit the temperature hardly decreases)
     private static double TSP = 0.80;
 
     private MinerProxy minerProxy;
 
+    private EvaluationPool evaluationPool;
+
+    private EvaluationCache evaluationCache;
+
+    private volatile SearchSolution bestSolution;
+    private List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+    private RandomStreams randomStreams = new RandomStreams(1);
+    private LogAbstractionCache logAbstractions = new LogAbstractionCache();
+
     private BPMNDiagram currentBPMN;
     private BPMNDiagram bestBPMN;
 
@@ -39,7 +43,6 @@ public class SimulatedAnnealing implements Metaheuristics {
     private SubtraceAbstraction staLog;
     private SubtraceAbstraction staProcess;
 
-    private PrintWriter writer;
     private int restarts;
     private long MineTime;
     private long ComputeTime;
@@ -49,27 +52,59 @@ public class SimulatedAnnealing implements Metaheuristics {
 
     private int maxK = 5;
 
-    public SimulatedAnnealing(MinerProxy proxy) {
+    public SimulatedAnnealing(MinerProxy proxy, EvaluationPool evaluationPool, EvaluationCache evaluationCache) {
         minerProxy = proxy;
+        this.evaluationPool = evaluationPool;
+        this.evaluationCache = evaluationCache;
+    }
+
+    public void addListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+    public SearchSolution getBestSolution() {
+        return bestSolution;
+    }
+
+    public void setRandomStreams(RandomStreams randomStreams) {
+        this.randomStreams = randomStreams;
+    }
+
+    public void setLogAbstractions(LogAbstractionCache logAbstractions) {
+        this.logAbstractions = logAbstractions;
+    }
+
+//    called each time the best solution improves, bestSDFG and currentAccuracy are the ones of the model
+    private void publish(Object model, SearchBudget budget) {
+        bestSolution = new SearchSolution(model, bestSDFG, currentAccuracy[0], currentAccuracy[1], currentAccuracy[2], budget.getIterations(), budget.getEvaluations(), budget.getWallTime());
+        for (SearchListener listener : listeners) {
+            try {
+                listener.onImprovement(bestSolution);
+            } catch (Exception e) {
+                System.out.println("WARNING - search listener failed: " + e.getMessage());
+            }
+        }
     }
 
-    public BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String modelName) {
+    public BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String modelName) {
         int iterations = 0;
         double exponent;
         double probability;
-        int maxTemperature = (int) (maxit * TSP);
+        int maxTemperature = (int) (budget.getMaxIterations() * TSP);
         int icounter = 0;
         boolean improved;
         boolean export = false;
 
-        staLog = LogAbstraction.subtrace(slog, order);
+        staLog = logAbstractions.subtrace(slog, order);
 
-        ExecutorService multiThreadService;
+        NeighbourhoodEvaluation evaluation;
+        Random mismatches = randomStreams.stream("mismatches");
+        Random acceptance = randomStreams.stream("acceptance");
         MarkovianBasedEvaluator evalThread;
         Future<Object[]> evalResult;
-        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new HashMap<>();
+        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new LinkedHashMap<>();
         String subtrace;
-        Set<SimpleDirectlyFollowGraph> neighbours = new HashSet<>();
+        Set<SimpleDirectlyFollowGraph> neighbours = new LinkedHashSet<>();
         Object[] result;
 
         SimpleDirectlyFollowGraph tmpSDFG;
@@ -80,18 +115,8 @@ public class SimulatedAnnealing implements Metaheuristics {
         bestFitness = new ArrayList<>();
         bestPrecision = new ArrayList<>();
 
-        writer = null;
-        try {
-            String safeName = modelName.replaceAll("[/\\\\.]", "_");
-            writer = new PrintWriter("." +
-                    "/ils_" + safeName + ".csv");
-            writer.println("iteration,fitness,precision,fscore,itime");
-        } catch (Exception e) {
-            System.out.println("ERROR - impossible to print the markovian abstraction.");
-        }
-
         long eTime = System.currentTimeMillis();
-        long iTime = System.currentTimeMillis();
+        budget.start();
 
         restart(slog, order);
         bestFitness.add(currentAccuracy[0]);
@@ -100,8 +125,9 @@ public class SimulatedAnnealing implements Metaheuristics {
         hits.add(iterations);
         bestSDFG = currentSDFG;
         bestBPMN = currentBPMN;
+        publish(bestBPMN, budget);
 
-        while (System.currentTimeMillis() - eTime < timeout && iterations < maxit && currentSDFG != null) {
+        while (!budget.isExhausted() && currentSDFG != null) {
             try {
 
                 if (currentAccuracy[2] > bestScores.get(bestScores.size() - 1)) {
@@ -112,24 +138,24 @@ public class SimulatedAnnealing implements Metaheuristics {
                     hits.add(iterations);
                     bestSDFG = currentSDFG;
                     bestBPMN = currentBPMN;
+                    publish(bestBPMN, budget);
                     noImprovementCounter = 0;
                 } else {
                     noImprovementCounter++;
                 }
 
-                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK) {
+                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK && !budget.isExhausted()) {
                     order++;
                     System.out.println("\u001B[32mINFO - No improvement for " + noImprovementCounter + " iterations, increasing k to " + order + "\u001B[0m");
 
                     // Recompute Log abstraction at new k
-                    staLog = LogAbstraction.subtrace(slog, order);
+                    staLog = logAbstractions.subtrace(slog, order);
 
                     // Re-evaluate best tree at new k
                     MarkovianBasedEvaluator reevaluateBest = new MarkovianBasedEvaluator(staLog, slog, minerProxy, bestBPMN, order);
-                    ExecutorService reevaluateService = Executors.newSingleThreadExecutor();
-                    Future<Object[]> reevaluateResult = reevaluateService.submit(reevaluateBest);
-                    Object[] newResult = reevaluateResult.get(timeout, TimeUnit.MILLISECONDS);
-                    reevaluateService.shutdownNow();
+                    reevaluateBest.setCache(evaluationCache);
+                    Object[] newResult = evaluationPool.evaluate(reevaluateBest, budget);
+                    if (newResult == null) break;
 
                     currentAccuracy[0] = (Double) newResult[0];
                     currentAccuracy[1] = (Double) newResult[1];
@@ -142,13 +168,10 @@ public class SimulatedAnnealing implements Metaheuristics {
                     noImprovementCounter = 0;
                 }
 
-                iTime = System.currentTimeMillis() - iTime;
                 if (export)
                     AutomatedProcessDiscoveryOptimizer.exportBPMN(currentBPMN, ".\\sima_" + modelName + "_" + iterations + ".bpmn");
-                writer.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-                writer.flush();
                 iterations++;
-                iTime = System.currentTimeMillis();
+                budget.countIteration();
 
                 long mineStart = System.currentTimeMillis();
                 if (currentAccuracy[1] > currentAccuracy[0]) {
@@ -160,12 +183,12 @@ public class SimulatedAnnealing implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staLog.computeDifferences(staProcess);
-                    subtrace = staLog.nextMismatch();
+                    subtrace = staLog.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch();
+                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -181,12 +204,12 @@ public class SimulatedAnnealing implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staProcess.computeDifferences(staLog);
-                    subtrace = staProcess.nextMismatch();
+                    subtrace = staProcess.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch();
+                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -204,8 +227,13 @@ public class SimulatedAnnealing implements Metaheuristics {
                     continue;
                 }
 
-                multiThreadService = Executors.newFixedThreadPool(neighbours.size());
+                evaluation = new NeighbourhoodEvaluation(evaluationPool, minerProxy.getTimeout());
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighbours) {
+                    if ((evalResult = evaluationCache.lookup(neighbourSDFG, order, false)) != null) {
+                        neighboursEvaluations.put(neighbourSDFG, evalResult);
+                        continue;
+                    }
+
                     try {
                         long modifyStart = System.currentTimeMillis();
                         tmpBPMN = minerProxy.getBPMN(neighbourSDFG);
@@ -216,13 +244,16 @@ public class SimulatedAnnealing implements Metaheuristics {
                         continue;
                     }
                     evalThread = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-                    evalResult = multiThreadService.submit(evalThread);
+                    evalThread.setCache(evaluationCache);
+                    evalThread.setParent(currentBPMN);
+                    evalResult = evaluation.submit(evaluationCache.memoize(neighbourSDFG, order, false, evalThread));
                     neighboursEvaluations.put(neighbourSDFG, evalResult);
 //                    System.out.println("INFO - exploring 1 neighbour.");
                 }
 
 //                System.out.println("INFO - synchronising with threads.");
-                sleep(minerProxy.getTimeout());
+                evaluation.await();
+                budget.countEvaluations(evaluation.getSubmitted());
                 improved = false;
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighboursEvaluations.keySet()) {
                     evalResult = neighboursEvaluations.get(neighbourSDFG);
@@ -241,7 +272,7 @@ public class SimulatedAnnealing implements Metaheuristics {
                         } else if (iterations != maxTemperature && result[3] != null && icounter != 0) {
                             exponent = (currentAccuracy[2] - (Double) result[2]) / (maxTemperature - iterations);
                             probability = Math.exp(exponent);
-                            if (probability > Math.random()) {
+                            if (probability > acceptance.nextDouble()) {
 //                                System.out.println("INFO - annealing with probability: " + probability);
                                 currentAccuracy[0] = (Double) result[0];
                                 currentAccuracy[1] = (Double) result[1];
@@ -251,7 +282,6 @@ public class SimulatedAnnealing implements Metaheuristics {
                                 ComputeTime += (long) result[5];
                                 currentSDFG = neighbourSDFG;
                                 icounter = 0;
-                                writer.println("s,s,s,s,s");
 //                                break;
                             }
                         }
@@ -263,7 +293,6 @@ public class SimulatedAnnealing implements Metaheuristics {
  */
                 neighbours.clear();
                 neighboursEvaluations.clear();
-                multiThreadService.shutdownNow();
 
                 if (!improved && ++icounter == order) {
                     icounter = 0;
@@ -278,16 +307,6 @@ public class SimulatedAnnealing implements Metaheuristics {
         }
 
         eTime = System.currentTimeMillis() - eTime;
-        String hitrow = "";
-        String fscorerow = "";
-        for (int i = 0; i < hits.size(); i++) {
-            hitrow += hits.get(i) + ",";
-            fscorerow += bestScores.get(i) + ",";
-        }
-
-        writer.println(hitrow + (double) (eTime) / 1000.0);
-        writer.println(fscorerow + (double) (eTime) / 1000.0);
-        writer.close();
 
         // Print summary
         System.out.println("\u001B[32mTotal Mine Time: " + MineTime + "ms\u001B[0m");
@@ -304,23 +323,25 @@ public class SimulatedAnnealing implements Metaheuristics {
     }
 
     @Override
-    public EfficientTree searchOptimalTree(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String modelName) {
+    public EfficientTree searchOptimalTree(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String modelName) {
         int iterations = 0;
         double exponent;
         double probability;
-        int maxTemperature = (int) (maxit * TSP);
+        int maxTemperature = (int) (budget.getMaxIterations() * TSP);
         int icounter = 0;
         boolean improved;
         boolean export = false;
 
-        staLog = LogAbstraction.subtraceTree(slog, order);
+        staLog = logAbstractions.subtraceTree(slog, order);
 
-        ExecutorService multiThreadService;
+        NeighbourhoodEvaluation evaluation;
+        Random mismatches = randomStreams.stream("mismatches");
+        Random acceptance = randomStreams.stream("acceptance");
         MarkovianBasedEvaluator evalThread;
         Future<Object[]> evalResult;
-        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new HashMap<>();
+        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new LinkedHashMap<>();
         String subtrace;
-        Set<SimpleDirectlyFollowGraph> neighbours = new HashSet<>();
+        Set<SimpleDirectlyFollowGraph> neighbours = new LinkedHashSet<>();
         Object[] result;
 
         SimpleDirectlyFollowGraph tmpSDFG;
@@ -331,18 +352,8 @@ public class SimulatedAnnealing implements Metaheuristics {
         bestFitness = new ArrayList<>();
         bestPrecision = new ArrayList<>();
 
-        writer = null;
-        try {
-            String safeName = modelName.replaceAll("[/\\\\.]", "_");
-            writer = new PrintWriter("." +
-                    "/ils_" + safeName + ".csv");
-            writer.println("iteration,fitness,precision,fscore,itime");
-        } catch (Exception e) {
-            System.out.println("ERROR - impossible to print the markovian abstraction.");
-        }
-
         long eTime = System.currentTimeMillis();
-        long iTime = System.currentTimeMillis();
+        budget.start();
 
         restartTree(slog, order);
         bestFitness.add(currentAccuracy[0]);
@@ -351,8 +362,9 @@ public class SimulatedAnnealing implements Metaheuristics {
         hits.add(iterations);
         bestSDFG = currentSDFG;
         bestTree = currentTree;
+        publish(bestTree, budget);
 
-        while (System.currentTimeMillis() - eTime < timeout && iterations < maxit && currentSDFG != null) {
+        while (!budget.isExhausted() && currentSDFG != null) {
             try {
 
                 if (currentAccuracy[2] > bestScores.get(bestScores.size() - 1)) {
@@ -363,24 +375,24 @@ public class SimulatedAnnealing implements Metaheuristics {
                     hits.add(iterations);
                     bestSDFG = currentSDFG;
                     bestTree = currentTree;
+                    publish(bestTree, budget);
                     noImprovementCounter = 0;
                 } else {
                     noImprovementCounter++;
                 }
 
-                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK) {
+                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK && !budget.isExhausted()) {
                     order++;
                     System.out.println("\u001B[32mINFO - No improvement for " + noImprovementCounter + " iterations, increasing k to " + order + "\u001B[0m");
 
                     // Recompute Log abstraction at new k
-                    staLog = LogAbstraction.subtraceTree(slog, order);
+                    staLog = logAbstractions.subtraceTree(slog, order);
 
                     // Re-evaluate best tree at new k
                     MarkovianBasedEvaluator reevaluateBest = new MarkovianBasedEvaluator(staLog, slog, minerProxy, bestTree, order);
-                    ExecutorService reevaluateService = Executors.newSingleThreadExecutor();
-                    Future<Object[]> reevaluateResult = reevaluateService.submit(reevaluateBest);
-                    Object[] newResult = reevaluateResult.get(timeout, TimeUnit.MILLISECONDS);
-                    reevaluateService.shutdownNow();
+                    reevaluateBest.setCache(evaluationCache);
+                    Object[] newResult = evaluationPool.evaluate(reevaluateBest, budget);
+                    if (newResult == null) break;
 
                     currentAccuracy[0] = (Double) newResult[0];
                     currentAccuracy[1] = (Double) newResult[1];
@@ -393,13 +405,10 @@ public class SimulatedAnnealing implements Metaheuristics {
                     noImprovementCounter = 0;
                 }
 
-                iTime = System.currentTimeMillis() - iTime;
                 if (export)
                     AutomatedProcessDiscoveryOptimizer.exportTree(currentTree, ".\\sima_" + modelName + "_" + iterations + ".ptml");
-                writer.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-                writer.flush();
                 iterations++;
-                iTime = System.currentTimeMillis();
+                budget.countIteration();
 
                 long mineStart = System.currentTimeMillis();
                 if (currentAccuracy[1] > currentAccuracy[0]) {
@@ -411,12 +420,12 @@ public class SimulatedAnnealing implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staLog.computeDifferences(staProcess);
-                    subtrace = staLog.nextMismatch();
+                    subtrace = staLog.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch();
+                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -432,12 +441,12 @@ public class SimulatedAnnealing implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staProcess.computeDifferences(staLog);
-                    subtrace = staProcess.nextMismatch();
+                    subtrace = staProcess.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch();
+                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch(mismatches);
                         else {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -455,8 +464,13 @@ public class SimulatedAnnealing implements Metaheuristics {
                     continue;
                 }
 
-                multiThreadService = Executors.newFixedThreadPool(neighbours.size());
+                evaluation = new NeighbourhoodEvaluation(evaluationPool, minerProxy.getTimeout());
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighbours) {
+                    if ((evalResult = evaluationCache.lookup(neighbourSDFG, order, true)) != null) {
+                        neighboursEvaluations.put(neighbourSDFG, evalResult);
+                        continue;
+                    }
+
                     try {
                         long modifyStart = System.currentTimeMillis();
                         tmpTree = minerProxy.getTree(neighbourSDFG);
@@ -467,13 +481,15 @@ public class SimulatedAnnealing implements Metaheuristics {
                         continue;
                     }
                     evalThread = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-                    evalResult = multiThreadService.submit(evalThread);
+                    evalThread.setCache(evaluationCache);
+                    evalResult = evaluation.submit(evaluationCache.memoize(neighbourSDFG, order, true, evalThread));
                     neighboursEvaluations.put(neighbourSDFG, evalResult);
 //                    System.out.println("INFO - exploring 1 neighbour.");
                 }
 
 //                System.out.println("INFO - synchronising with threads.");
-                sleep(minerProxy.getTimeout());
+                evaluation.await();
+                budget.countEvaluations(evaluation.getSubmitted());
                 improved = false;
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighboursEvaluations.keySet()) {
                     evalResult = neighboursEvaluations.get(neighbourSDFG);
@@ -492,7 +508,7 @@ public class SimulatedAnnealing implements Metaheuristics {
                         } else if (iterations != maxTemperature && result[3] != null && icounter != 0) {
                             exponent = (currentAccuracy[2] - (Double) result[2]) / (maxTemperature - iterations);
                             probability = Math.exp(exponent);
-                            if (probability > Math.random()) {
+                            if (probability > acceptance.nextDouble()) {
 //                                System.out.println("INFO - annealing with probability: " + probability);
                                 currentAccuracy[0] = (Double) result[0];
                                 currentAccuracy[1] = (Double) result[1];
@@ -502,7 +518,6 @@ public class SimulatedAnnealing implements Metaheuristics {
                                 ComputeTime += (long) result[5];
                                 currentSDFG = neighbourSDFG;
                                 icounter = 0;
-                                writer.println("s,s,s,s,s");
 //                                break;
                             }
                         }
@@ -514,7 +529,6 @@ public class SimulatedAnnealing implements Metaheuristics {
  */
                 neighbours.clear();
                 neighboursEvaluations.clear();
-                multiThreadService.shutdownNow();
 
                 if (!improved && ++icounter == order) {
                     icounter = 0;
@@ -528,16 +542,6 @@ public class SimulatedAnnealing implements Metaheuristics {
             }
         }
         eTime = System.currentTimeMillis() - eTime;
-        String hitrow = "";
-        String fscorerow = "";
-        for (int i = 0; i < hits.size(); i++) {
-            hitrow += hits.get(i) + ",";
-            fscorerow += bestScores.get(i) + ",";
-        }
-
-        writer.println(hitrow + (double) (eTime) / 1000.0);
-        writer.println(fscorerow + (double) (eTime) / 1000.0);
-        writer.close();
 
         
 
@@ -560,7 +564,6 @@ public class SimulatedAnnealing implements Metaheuristics {
 
     private void restart(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor = null;
         Future<Object[]> evalResult;
         BPMNDiagram tmpBPMN;
         Object[] result;
@@ -574,11 +577,10 @@ public class SimulatedAnnealing implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-            executor = Executors.newSingleThreadExecutor();
-            evalResult = executor.submit(markovianBasedEvaluator);
+            markovianBasedEvaluator.setCache(evaluationCache);
+            evalResult = evaluationPool.submit(markovianBasedEvaluator);
 
-            sleep(minerProxy.getTimeout());
-            if (evalResult.isDone()) {
+            if (NeighbourhoodEvaluation.await(evalResult, minerProxy.getTimeout())) {
                 result = evalResult.get();
                 currentAccuracy[0] = (Double) result[0];
                 currentAccuracy[1] = (Double) result[1];
@@ -586,26 +588,21 @@ public class SimulatedAnnealing implements Metaheuristics {
                 staProcess = (SubtraceAbstraction) result[3];
                 currentBPMN = (BPMNDiagram) result[4];
                 ComputeTime += (long) result[5];
-                executor.shutdownNow();
 //                System.out.println("RESTART - done.");
-                writer.println("r,r,r,r,r");
             } else {
 //                System.out.println("TIMEOUT - restart failed.");
                 evalResult.cancel(true);
-                executor.shutdownNow();
                 restart(slog, order);
             }
         } catch (Exception e) {
 //            System.out.println("WARNING - restart failed.");
 //            e.printStackTrace();
-            if (executor != null) executor.shutdownNow();
             restart(slog, order);
         }
     }
 
     private void restartTree(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor = null;
         Future<Object[]> evalResult;
         EfficientTree tmpTree;
         Object[] result;
@@ -619,11 +616,10 @@ public class SimulatedAnnealing implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-            executor = Executors.newSingleThreadExecutor();
-            evalResult = executor.submit(markovianBasedEvaluator);
+            markovianBasedEvaluator.setCache(evaluationCache);
+            evalResult = evaluationPool.submit(markovianBasedEvaluator);
 
-            sleep(minerProxy.getTimeout());
-            if (evalResult.isDone()) {
+            if (NeighbourhoodEvaluation.await(evalResult, minerProxy.getTimeout())) {
                 result = evalResult.get();
                 currentAccuracy[0] = (Double) result[0];
                 currentAccuracy[1] = (Double) result[1];
@@ -631,19 +627,15 @@ public class SimulatedAnnealing implements Metaheuristics {
                 staProcess = (SubtraceAbstraction) result[3];
                 currentTree = (EfficientTree) result[4];
                 ComputeTime += (long) result[5];
-                executor.shutdownNow();
 //                System.out.println("RESTART - done.");
-                writer.println("r,r,r,r,r");
             } else {
 //                System.out.println("TIMEOUT - restart failed.");
                 evalResult.cancel(true);
-                executor.shutdownNow();
                 restartTree(slog, order);
             }
         } catch (Exception e) {
 //            System.out.println("WARNING - restart failed.");
 //            e.printStackTrace();
-            if (executor != null) executor.shutdownNow();
             restartTree(slog, order);
         }
     }
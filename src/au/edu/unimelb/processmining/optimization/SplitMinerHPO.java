@@ -1,25 +1,25 @@
 package au.edu.unimelb.processmining.optimization;
 
 import au.edu.qut.bpmn.metrics.ComplexityCalculator;
-import au.edu.qut.processmining.log.LogParser;
+import au.edu.qut.processmining.log.LogCache;
 import au.edu.qut.processmining.log.SimpleLog;
 import au.edu.qut.processmining.miners.splitminer.SplitMiner;
 import au.edu.qut.processmining.miners.splitminer.ui.dfgp.DFGPUIResult;
 import au.edu.qut.processmining.miners.splitminer.ui.miner.SplitMinerUIResult;
 import au.edu.unimelb.processmining.accuracy.abstraction.LogAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
-import com.raffaeleconforti.log.util.LogImporter;
 import org.deckfour.xes.classification.XEventNameClassifier;
-import org.deckfour.xes.factory.XFactoryNaiveImpl;
-import org.deckfour.xes.model.XLog;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SplitMinerHPO {
 
     private static int MKO = 5;
     private static boolean printall = true;
+    private static long TIMEOUT = 600000;
 
     private static double p_STEP = 0.10D;
     private static double p_MIN = 0.00D;
@@ -30,27 +30,18 @@ public class SplitMinerHPO {
     private static double f_MAX = 1.05D;
 
     public BPMNDiagram hyperparamEvaluation(String logPath) {
-        SplitMiner yam = new SplitMiner();
+        SplitMiner prototype;
         SimpleLog slog;
-        BPMNDiagram bpmn;
-        BPMNDiagram bestBPMN = null;
-        double[] bestAccuracy = {0.0, 0.0, 0.0};
-
-        ComplexityCalculator complexityCalculator = new ComplexityCalculator();
-        SubtraceAbstraction staLog, staProcess;
-
-        double fit;
-        double prec;
-        Double score;
-        int size;
-        int cfc;
-        double struct;
-        long eTime;
+        SubtraceAbstraction staLog;
         long teTime;
 
-        String combination;
         Double p_threshold;
         Double f_threshold;
+        final List<double[]> thresholds = new ArrayList<>();
+        List<Configuration> configurations = new ArrayList<>();
+
+        final BPMNDiagram[] bestBPMN = {null};
+        final double[] bestAccuracy = {0.0, 0.0, 0.0};
 
         PrintWriter writer;
 
@@ -60,8 +51,8 @@ public class SplitMinerHPO {
         if(!lName.contains("PRT")) lName = "PUB" + lName;
 
         try {
-            XLog xlog = LogImporter.importFromFile(new XFactoryNaiveImpl(), logPath);
-            slog = LogParser.getSimpleLog(xlog, new XEventNameClassifier());
+            slog = LogCache.getSimpleLog(logPath, new XEventNameClassifier());
+            if (slog == null) throw new IOException("log not loaded: " + logPath);
         } catch (Exception e) {
             System.out.println("ERROR - impossible to load the log");
             return null;
@@ -79,58 +70,99 @@ public class SplitMinerHPO {
 
         staLog = LogAbstraction.subtrace(slog, MKO);
         teTime = System.currentTimeMillis();
+
+//        the DFGP of the log is built once, each configuration filters its own copy of it
+        prototype = new SplitMiner();
+        prototype.prepareDFGP(slog, DFGPUIResult.FilterType.FWG, false);
+
         f_threshold = f_MIN;
         do {
             p_threshold = p_MIN;
             do {
-                try {
-                    System.setOut(new PrintStream(new OutputStream() {
-                        @Override
-                        public void write(int b) throws IOException {}
-                    }));
-
-                    eTime = System.currentTimeMillis();
-                    bpmn = yam.mineBPMNModel(slog, new XEventNameClassifier(), f_threshold, p_threshold, DFGPUIResult.FilterType.FWG, false, true, false, SplitMinerUIResult.StructuringTime.NONE);
-
-                    staProcess = SubtraceAbstraction.abstractProcessBehaviour(bpmn, MKO, slog);
-                    fit = staLog.minus(staProcess);
-                    prec = staProcess.minus(staLog);
-
-                    complexityCalculator.setBPMN(bpmn);
-                    size = Integer.valueOf(complexityCalculator.computeSize());
-                    cfc = Integer.valueOf(complexityCalculator.computeCFC());
-                    struct = Double.valueOf(complexityCalculator.computeStructuredness());
-
-                    score = (fit * prec * 2) / (fit + prec);
-                    if( score.isNaN() ) score = -1.0;
-
-                    eTime = System.currentTimeMillis() - eTime;
-                    combination = f_threshold + "," + p_threshold + "," + fit + "," + prec + "," + score + "," + size + "," + cfc + "," + struct + "," + ((double)eTime/1000.0);
-                    writer.println(combination);
-                    writer.flush();
-
-                    if(bestAccuracy[2] < score) {
-                        bestAccuracy[0] = fit;
-                        bestAccuracy[1] = prec;
-                        bestAccuracy[2] = score;
-                        bestBPMN = bpmn;
-                    }
-
-                    if(printall) AutomatedProcessDiscoveryOptimizer.exportBPMN(bpmn, ".\\smhpo_" + lName + "_" + f_threshold + "_" + p_threshold + ".bpmn");
-                } catch (Exception e) {
-//                    e.printStackTrace();
-                    System.out.println("ERROR - splitminer output model broken @ " + f_threshold + " : " + p_threshold);
-                }
+                thresholds.add(new double[]{f_threshold, p_threshold});
+                configurations.add(new Configuration(new SplitMiner(prototype), slog, staLog, f_threshold, p_threshold));
                 p_threshold += p_STEP;
             } while ( p_threshold <= p_MAX );
             f_threshold += f_STEP;
         } while( f_threshold <= f_MAX );
 
+        final PrintWriter results = writer;
+        final String modelName = lName;
+        (new GridEvaluator(TIMEOUT)).evaluate(configurations, new GridEvaluator.Listener() {
+            @Override
+            public void onResult(GridEvaluator.Result result) {
+                double[] t = thresholds.get(result.getIndex());
+                Object[] r = result.getValues();
+
+                System.out.print(result.getLog());
+                if( r == null ) {
+                    System.out.println("ERROR - splitminer output model " + (result.isTimedOut() ? "timed out" : "broken") + " @ " + t[0] + " : " + t[1]);
+                    return;
+                }
+
+                results.println(t[0] + "," + t[1] + "," + r[1] + "," + r[2] + "," + r[3] + "," + r[4] + "," + r[5] + "," + r[6] + "," + ((Long)r[7]/1000.0));
+                results.flush();
+
+                if(bestAccuracy[2] < (Double) r[3]) {
+                    bestAccuracy[0] = (Double) r[1];
+                    bestAccuracy[1] = (Double) r[2];
+                    bestAccuracy[2] = (Double) r[3];
+                    bestBPMN[0] = (BPMNDiagram) r[0];
+                }
+
+                if(printall) AutomatedProcessDiscoveryOptimizer.exportBPMN((BPMNDiagram) r[0], ".\\smhpo_" + modelName + "_" + t[0] + "_" + t[1] + ".bpmn");
+            }
+        });
+
         writer.println("-,-," + bestAccuracy[0] + "," + bestAccuracy[1] + "," + bestAccuracy[2] + ",-,-,-," + (double)(System.currentTimeMillis() - teTime)/1000.0);
         writer.flush();
         writer.close();
-        AutomatedProcessDiscoveryOptimizer.exportBPMN(bestBPMN, ".\\smhpo_" + lName + "_best.bpmn");
-        return bestBPMN;
+        AutomatedProcessDiscoveryOptimizer.exportBPMN(bestBPMN[0], ".\\smhpo_" + lName + "_best.bpmn");
+        return bestBPMN[0];
     }
 
+//    returns {bpmn, fitness, precision, fscore, size, cfc, structuredness, mining-time}
+    private static class Configuration implements GridEvaluator.Task {
+        private SplitMiner yam;
+        private SimpleLog slog;
+        private SubtraceAbstraction staLog;
+        private double f_threshold;
+        private double p_threshold;
+
+        Configuration(SplitMiner yam, SimpleLog slog, SubtraceAbstraction staLog, double f_threshold, double p_threshold) {
+            this.yam = yam;
+            this.slog = slog;
+            this.staLog = staLog;
+            this.f_threshold = f_threshold;
+            this.p_threshold = p_threshold;
+        }
+
+        @Override
+        public Object[] call(PrintStream log) {
+            ComplexityCalculator complexityCalculator = new ComplexityCalculator();
+            SubtraceAbstraction staProcess;
+            BPMNDiagram bpmn;
+            double fit, prec;
+            Double score;
+            long eTime = System.currentTimeMillis();
+
+            bpmn = yam.mineBPMNModel(slog, new XEventNameClassifier(), f_threshold, p_threshold, DFGPUIResult.FilterType.FWG, false, true, false, SplitMinerUIResult.StructuringTime.NONE);
+
+            staProcess = SubtraceAbstraction.abstractProcessBehaviour(bpmn, MKO, slog);
+            fit = staLog.minus(staProcess);
+            prec = staProcess.minus(staLog);
+
+            complexityCalculator.setBPMN(bpmn);
+
+            score = (fit * prec * 2) / (fit + prec);
+            if( score.isNaN() ) score = -1.0;
+            log.println("INFO - splitminer @ " + f_threshold + " : " + p_threshold + " > fitness, precision, f-score: " + fit + ", " + prec + ", " + score);
+
+            return new Object[]{bpmn, fit, prec, score,
+                    Integer.valueOf(complexityCalculator.computeSize()),
+                    Integer.valueOf(complexityCalculator.computeCFC()),
+                    Double.valueOf(complexityCalculator.computeStructuredness()),
+                    System.currentTimeMillis() - eTime};
+        }
+    }
 }
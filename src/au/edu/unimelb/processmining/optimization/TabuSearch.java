@@ -1,22 +1,23 @@
 package au.edu.unimelb.processmining.optimization;
 
 import au.edu.qut.processmining.log.SimpleLog;
-import au.edu.unimelb.processmining.accuracy.abstraction.LogAbstraction;
 import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
 import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
 import org.processmining.plugins.InductiveMiner.efficienttree.EfficientTree;
 
-import java.io.PrintWriter;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-
-import static java.lang.Thread.sleep;
 
 public class TabuSearch implements Metaheuristics {
     private MinerProxy minerProxy;
+    private EvaluationPool evaluationPool;
+    private EvaluationCache evaluationCache;
+
+    private volatile SearchSolution bestSolution;
+    private List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+    private RandomStreams randomStreams = new RandomStreams(1);
+    private LogAbstractionCache logAbstractions = new LogAbstractionCache();
 
     private BPMNDiagram currentBPMN;
     private BPMNDiagram bestBPMN;
@@ -35,7 +36,6 @@ public class TabuSearch implements Metaheuristics {
     private SubtraceAbstraction staLog;
     private SubtraceAbstraction staProcess;
 
-    private PrintWriter writer;
     private int tabuizations;
 
     private long MineTime;
@@ -52,11 +52,41 @@ public class TabuSearch implements Metaheuristics {
     private ArrayList<SimpleDirectlyFollowGraph> backupSDFG;
     private ArrayList<SubtraceAbstraction> backupSTAprocess;
 
-    public TabuSearch(MinerProxy proxy) {
+    public TabuSearch(MinerProxy proxy, EvaluationPool evaluationPool, EvaluationCache evaluationCache) {
         minerProxy = proxy;
+        this.evaluationPool = evaluationPool;
+        this.evaluationCache = evaluationCache;
+    }
+
+    public void addListener(SearchListener listener) {
+        listeners.add(listener);
+    }
+
+    public SearchSolution getBestSolution() {
+        return bestSolution;
+    }
+
+    public void setRandomStreams(RandomStreams randomStreams) {
+        this.randomStreams = randomStreams;
+    }
+
+    public void setLogAbstractions(LogAbstractionCache logAbstractions) {
+        this.logAbstractions = logAbstractions;
     }
 
-    public BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String modelName) {
+//    called each time the best solution improves, bestSDFG and currentAccuracy are the ones of the model
+    private void publish(Object model, SearchBudget budget) {
+        bestSolution = new SearchSolution(model, bestSDFG, currentAccuracy[0], currentAccuracy[1], currentAccuracy[2], budget.getIterations(), budget.getEvaluations(), budget.getWallTime());
+        for (SearchListener listener : listeners) {
+            try {
+                listener.onImprovement(bestSolution);
+            } catch (Exception e) {
+                System.out.println("WARNING - search listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public BPMNDiagram searchOptimalSolution(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String modelName) {
         int iterations = 0;
         int icounter = 0;
         boolean improved;
@@ -71,14 +101,15 @@ public class TabuSearch implements Metaheuristics {
 
         backupSDFG = new ArrayList<>();
         backupSTAprocess = new ArrayList<>();
-        staLog = LogAbstraction.subtrace(slog, order);
+        staLog = logAbstractions.subtrace(slog, order);
 
-        ExecutorService multiThreadService;
+        NeighbourhoodEvaluation evaluation;
+        Random mismatches = randomStreams.stream("mismatches");
         MarkovianBasedEvaluator evalThread;
         Future<Object[]> evalResult;
-        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new HashMap<>();
+        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new LinkedHashMap<>();
         String subtrace;
-        Set<SimpleDirectlyFollowGraph> neighbours = new HashSet<>();
+        Set<SimpleDirectlyFollowGraph> neighbours = new LinkedHashSet<>();
         Object[] result;
 
         SimpleDirectlyFollowGraph tmpSDFG;
@@ -89,20 +120,11 @@ public class TabuSearch implements Metaheuristics {
         bestFitness = new ArrayList<>();
         bestPrecision = new ArrayList<>();
 
-        writer = null;
-        try {
-            String safeName = modelName.replaceAll("[/\\\\.]", "_");
-            writer = new PrintWriter("." +
-                    "/ils_" + safeName + ".csv");
-            writer.println("iteration,fitness,precision,fscore,itime");
-        } catch (Exception e) {
-            System.out.println("ERROR - impossible to print the markovian abstraction.");
-        }
 
 //        System.out.println("INFO - tabu search starting...");
 
         long eTime = System.currentTimeMillis();
-        long iTime = System.currentTimeMillis();
+        budget.start();
 
         start(slog, order);
         bestFitness.add(currentAccuracy[0]);
@@ -111,8 +133,9 @@ public class TabuSearch implements Metaheuristics {
         hits.add(iterations);
         bestSDFG = currentSDFG;
         bestBPMN = currentBPMN;
+        publish(bestBPMN, budget);
 
-        while (System.currentTimeMillis() - eTime < timeout && iterations < maxit && currentSDFG != null) {
+        while (!budget.isExhausted() && currentSDFG != null) {
             try {
 
                 if (currentAccuracy[2] > bestScores.get(bestScores.size() - 1)) {
@@ -123,6 +146,7 @@ public class TabuSearch implements Metaheuristics {
                     hits.add(iterations);
                     bestSDFG = currentSDFG;
                     bestBPMN = currentBPMN;
+                    publish(bestBPMN, budget);
                     noImprovementCounter = 0;
 //                    visitableSDFG.add(0, currentSDFG);
 //                    visitableSTAprocess.add(0, staProcess);
@@ -130,19 +154,18 @@ public class TabuSearch implements Metaheuristics {
                     noImprovementCounter++;
                 }
 
-                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK) {
+                if (noImprovementCounter >= maxIterationsBeforeRaise && order < maxK && !budget.isExhausted()) {
                     order++;
                     System.out.println("\u001B[32mINFO - No improvement for " + noImprovementCounter + " iterations, increasing k to " + order + "\u001B[0m");
 
                     // Recompute Log abstraction at new k
-                    staLog = LogAbstraction.subtrace(slog, order);
+                    staLog = logAbstractions.subtrace(slog, order);
 
                     // Re-evaluate best tree at new k
                     MarkovianBasedEvaluator reevaluateBest = new MarkovianBasedEvaluator(staLog, slog, minerProxy, bestBPMN, order);
-                    ExecutorService reevaluateService = Executors.newSingleThreadExecutor();
-                    Future<Object[]> reevaluateResult = reevaluateService.submit(reevaluateBest);
-                    Object[] newResult = reevaluateResult.get(timeout, TimeUnit.MILLISECONDS);
-                    reevaluateService.shutdownNow();
+                    reevaluateBest.setCache(evaluationCache);
+                    Object[] newResult = evaluationPool.evaluate(reevaluateBest, budget);
+                    if (newResult == null) break;
 
                     currentAccuracy[0] = (Double) newResult[0];
                     currentAccuracy[1] = (Double) newResult[1];
@@ -155,13 +178,10 @@ public class TabuSearch implements Metaheuristics {
                     noImprovementCounter = 0;
                 }
 
-                iTime = System.currentTimeMillis() - iTime;
                 if (export)
                     AutomatedProcessDiscoveryOptimizer.exportBPMN(currentBPMN, ".\\tabu_" + modelName + "_" + iterations + ".bpmn");
-                writer.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-                writer.flush();
                 iterations++;
-                iTime = System.currentTimeMillis();
+                budget.countIteration();
 
                 long mineStart = System.currentTimeMillis();
                 if (currentAccuracy[1] > currentAccuracy[0]) {
@@ -173,12 +193,12 @@ public class TabuSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staLog.computeDifferences(staProcess);
-                    subtrace = staLog.nextMismatch();
+                    subtrace = staLog.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch();
+                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch(mismatches);
                         else if (!tabu.contains(tmpSDFG)) {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -194,12 +214,12 @@ public class TabuSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staProcess.computeDifferences(staLog);
-                    subtrace = staProcess.nextMismatch();
+                    subtrace = staProcess.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch();
+                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch(mismatches);
                         else if (!tabu.contains(tmpSDFG)) {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -218,8 +238,13 @@ public class TabuSearch implements Metaheuristics {
                     continue;
                 }
 
-                multiThreadService = Executors.newFixedThreadPool(neighbours.size());
+                evaluation = new NeighbourhoodEvaluation(evaluationPool, minerProxy.getTimeout());
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighbours) {
+                    if ((evalResult = evaluationCache.lookup(neighbourSDFG, order, false)) != null) {
+                        neighboursEvaluations.put(neighbourSDFG, evalResult);
+                        continue;
+                    }
+
                     try {
                         long modifyStart = System.currentTimeMillis();
                         tmpBPMN = minerProxy.getBPMN(neighbourSDFG);
@@ -230,13 +255,16 @@ public class TabuSearch implements Metaheuristics {
                         continue;
                     }
                     evalThread = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-                    evalResult = multiThreadService.submit(evalThread);
+                    evalThread.setCache(evaluationCache);
+                    evalThread.setParent(currentBPMN);
+                    evalResult = evaluation.submit(evaluationCache.memoize(neighbourSDFG, order, false, evalThread));
                     neighboursEvaluations.put(neighbourSDFG, evalResult);
 //                    System.out.println("INFO - exploring 1 neighbour.");
                 }
 
 //                System.out.println("INFO - synchronising with threads.");
-                sleep(minerProxy.getTimeout());
+                evaluation.await();
+                budget.countEvaluations(evaluation.getSubmitted());
 
                 improved = false;
                 tabucounter = 0;
@@ -274,7 +302,6 @@ public class TabuSearch implements Metaheuristics {
 
                 neighbours.clear();
                 neighboursEvaluations.clear();
-                multiThreadService.shutdownNow();
 
 /**     once we checked all the neighbours accuracies, we select the one improving the current state or none at all.
  *      if the one improving the current state, also improves the global maximum, we update that.
@@ -296,16 +323,7 @@ public class TabuSearch implements Metaheuristics {
             }
         }
         eTime = System.currentTimeMillis() - eTime;
-        String hitrow = "";
-        String fscorerow = "";
-        for (int i = 0; i < hits.size(); i++) {
-            hitrow += hits.get(i) + ",";
-            fscorerow += bestScores.get(i) + ",";
-        }
 
-        writer.println(hitrow + (double) (eTime) / 1000.0);
-        writer.println(fscorerow + (double) (eTime) / 1000.0);
-        writer.close();
         // Print summary
         System.out.println("\u001B[32mTotal Mine Time: " + MineTime + "ms\u001B[0m");
         System.out.println("\u001B[32mTotal Modify Time: " + ModifyTime + "ms\u001B[0m");
@@ -321,7 +339,7 @@ public class TabuSearch implements Metaheuristics {
         return bestBPMN;
     }
 
-    public EfficientTree searchOptimalTree(SimpleLog slog, int order, int maxit, int neighbourhood, int timeout, String modelName) {
+    public EfficientTree searchOptimalTree(SimpleLog slog, int order, int neighbourhood, SearchBudget budget, String modelName) {
         int iterations = 0;
         int icounter = 0;
         boolean improved;
@@ -336,14 +354,15 @@ public class TabuSearch implements Metaheuristics {
 
         backupSDFG = new ArrayList<>();
         backupSTAprocess = new ArrayList<>();
-        staLog = LogAbstraction.subtraceTree(slog, order);
+        staLog = logAbstractions.subtraceTree(slog, order);
 
-        ExecutorService multiThreadService;
+        NeighbourhoodEvaluation evaluation;
+        Random mismatches = randomStreams.stream("mismatches");
         MarkovianBasedEvaluator evalThread;
         Future<Object[]> evalResult;
-        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new HashMap<>();
+        Map<SimpleDirectlyFollowGraph, Future<Object[]>> neighboursEvaluations = new LinkedHashMap<>();
         String subtrace;
-        Set<SimpleDirectlyFollowGraph> neighbours = new HashSet<>();
+        Set<SimpleDirectlyFollowGraph> neighbours = new LinkedHashSet<>();
         Object[] result;
 
         SimpleDirectlyFollowGraph tmpSDFG;
@@ -354,20 +373,11 @@ public class TabuSearch implements Metaheuristics {
         bestFitness = new ArrayList<>();
         bestPrecision = new ArrayList<>();
 
-        writer = null;
-        try {
-            String safeName = modelName.replaceAll("[/\\\\.]", "_");
-            writer = new PrintWriter("." +
-                    "/ils_" + safeName + ".csv");
-            writer.println("iteration,fitness,precision,fscore,itime");
-        } catch (Exception e) {
-            System.out.println("ERROR - impossible to print the markovian abstraction.");
-        }
 
 //        System.out.println("INFO - tabu search starting...");
 
         long eTime = System.currentTimeMillis();
-        long iTime = System.currentTimeMillis();
+        budget.start();
 
         startTree(slog, order);
         bestFitness.add(currentAccuracy[0]);
@@ -376,8 +386,9 @@ public class TabuSearch implements Metaheuristics {
         hits.add(iterations);
         bestSDFG = currentSDFG;
         bestTree = currentTree;
+        publish(bestTree, budget);
 
-        while (System.currentTimeMillis() - eTime < timeout && iterations < maxit && currentSDFG != null) {
+        while (!budget.isExhausted() && currentSDFG != null) {
             try {
 
                 if (currentAccuracy[2] > bestScores.get(bestScores.size() - 1)) {
@@ -388,6 +399,7 @@ public class TabuSearch implements Metaheuristics {
                     hits.add(iterations);
                     bestSDFG = currentSDFG;
                     bestTree = currentTree;
+                    publish(bestTree, budget);
                     noImprovementCounter = 0;
 //                    visitableSDFG.add(0, currentSDFG);
 //                    visitableSTAprocess.add(0, staProcess);
@@ -400,14 +412,13 @@ public class TabuSearch implements Metaheuristics {
                     System.out.println("\u001B[32mINFO - No improvement for " + noImprovementCounter + " iterations, increasing k to " + order + "\u001B[0m");
 
                     // Recompute Log abstraction at new k
-                    staLog = LogAbstraction.subtraceTree(slog, order);
+                    staLog = logAbstractions.subtraceTree(slog, order);
 
                     // Re-evaluate best tree at new k
                     MarkovianBasedEvaluator reevaluateBest = new MarkovianBasedEvaluator(staLog, slog, minerProxy, bestTree, order);
-                    ExecutorService reevaluateService = Executors.newSingleThreadExecutor();
-                    Future<Object[]> reevaluateResult = reevaluateService.submit(reevaluateBest);
-                    Object[] newResult = reevaluateResult.get(timeout, TimeUnit.MILLISECONDS);
-                    reevaluateService.shutdownNow();
+                    reevaluateBest.setCache(evaluationCache);
+                    Object[] newResult = evaluationPool.evaluate(reevaluateBest, budget);
+                    if (newResult == null) break;
 
                     currentAccuracy[0] = (Double) newResult[0];
                     currentAccuracy[1] = (Double) newResult[1];
@@ -420,13 +431,10 @@ public class TabuSearch implements Metaheuristics {
                     noImprovementCounter = 0;
                 }*/
 
-                iTime = System.currentTimeMillis() - iTime;
                 if (export)
                     AutomatedProcessDiscoveryOptimizer.exportTree(currentTree, ".\\tabu_" + modelName + "_" + iterations + ".ptml");
-                writer.println(iterations + "," + currentAccuracy[0] + "," + currentAccuracy[1] + "," + currentAccuracy[2] + "," + iTime);
-                writer.flush();
                 iterations++;
-                iTime = System.currentTimeMillis();
+                budget.countIteration();
 
                 long mineStart = System.currentTimeMillis();
                 if (currentAccuracy[1] > currentAccuracy[0]) {
@@ -438,12 +446,12 @@ public class TabuSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staLog.computeDifferences(staProcess);
-                    subtrace = staLog.nextMismatch();
+                    subtrace = staLog.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staLog.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch();
+                        if ((subtrace = tmpSDFG.enhance(subtrace, 1)) == null) subtrace = staLog.nextMismatch(mismatches);
                         else if (!tabu.contains(tmpSDFG)) {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -459,12 +467,12 @@ public class TabuSearch implements Metaheuristics {
  *      for each of this copy we compute the f-score, and we retain the one with highest f-score.
  **/
                     staProcess.computeDifferences(staLog);
-                    subtrace = staProcess.nextMismatch();
+                    subtrace = staProcess.nextMismatch(mismatches);
                     tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
                     while (neighbours.size() != neighbourhood && subtrace != null) {
-                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch()) == null) break;
+                        if (subtrace.isEmpty() && (subtrace = staProcess.nextMismatch(mismatches)) == null) break;
 
-                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch();
+                        if ((subtrace = tmpSDFG.reduce(subtrace, 1)) == null) subtrace = staProcess.nextMismatch(mismatches);
                         else if (!tabu.contains(tmpSDFG)) {
                             neighbours.add(tmpSDFG);
                             tmpSDFG = new SimpleDirectlyFollowGraph(currentSDFG);
@@ -482,8 +490,13 @@ public class TabuSearch implements Metaheuristics {
                     continue;
                 }
 
-                multiThreadService = Executors.newFixedThreadPool(neighbours.size());
+                evaluation = new NeighbourhoodEvaluation(evaluationPool, minerProxy.getTimeout());
                 for (SimpleDirectlyFollowGraph neighbourSDFG : neighbours) {
+                    if ((evalResult = evaluationCache.lookup(neighbourSDFG, order, true)) != null) {
+                        neighboursEvaluations.put(neighbourSDFG, evalResult);
+                        continue;
+                    }
+
                     try {
                         long modifyStart = System.currentTimeMillis();
                         tmpTree = minerProxy.getTree(neighbourSDFG);
@@ -494,13 +507,15 @@ public class TabuSearch implements Metaheuristics {
                         continue;
                     }
                     evalThread = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-                    evalResult = multiThreadService.submit(evalThread);
+                    evalThread.setCache(evaluationCache);
+                    evalResult = evaluation.submit(evaluationCache.memoize(neighbourSDFG, order, true, evalThread));
                     neighboursEvaluations.put(neighbourSDFG, evalResult);
 //                    System.out.println("INFO - exploring 1 neighbour.");
                 }
 
 //                System.out.println("INFO - synchronising with threads.");
-                sleep(minerProxy.getTimeout());
+                evaluation.await();
+                budget.countEvaluations(evaluation.getSubmitted());
 
                 improved = false;
                 tabucounter = 0;
@@ -538,7 +553,6 @@ public class TabuSearch implements Metaheuristics {
 
                 neighbours.clear();
                 neighboursEvaluations.clear();
-                multiThreadService.shutdownNow();
 
 /**     once we checked all the neighbours accuracies, we select the one improving the current state or none at all.
  *      if the one improving the current state, also improves the global maximum, we update that.
@@ -560,16 +574,6 @@ public class TabuSearch implements Metaheuristics {
             }
         }
         eTime = System.currentTimeMillis() - eTime;
-        String hitrow = "";
-        String fscorerow = "";
-        for (int i = 0; i < hits.size(); i++) {
-            hitrow += hits.get(i) + ",";
-            fscorerow += bestScores.get(i) + ",";
-        }
-
-        writer.println(hitrow + (double) (eTime) / 1000.0);
-        writer.println(fscorerow + (double) (eTime) / 1000.0);
-        writer.close();
 
         // Print summary
         System.out.println("\u001B[32mTotal Mine Time: " + MineTime + "ms\u001B[0m");
@@ -589,8 +593,6 @@ public class TabuSearch implements Metaheuristics {
 
     private void start(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor = null;
-        Future<Object[]> evalResult;
         BPMNDiagram tmpBPMN;
         Object[] result;
 
@@ -603,31 +605,24 @@ public class TabuSearch implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpBPMN, order);
-            executor = Executors.newSingleThreadExecutor();
-            evalResult = executor.submit(markovianBasedEvaluator);
-
-            result = evalResult.get(minerProxy.getTimeout(), TimeUnit.MILLISECONDS);
+            markovianBasedEvaluator.setCache(evaluationCache);
+            result = evaluationPool.evaluate(markovianBasedEvaluator, minerProxy.getTimeout());
             currentAccuracy[0] = (Double) result[0];
             currentAccuracy[1] = (Double) result[1];
             currentAccuracy[2] = (Double) result[2];
             staProcess = (SubtraceAbstraction) result[3];
             currentBPMN = (BPMNDiagram) result[4];
             ComputeTime += (long) result[5];
-            executor.shutdownNow();
 //            System.out.println("START - tabu done.");
-            writer.println("r,r,r,r,r");
 
         } catch (Exception e) {
 //            System.out.println("ERROR - tabu start failed.");
 //            e.printStackTrace();
-            if (executor != null) executor.shutdownNow();
             start(slog, order);
         }
     }
     private void startTree(SimpleLog slog, int order) {
         MarkovianBasedEvaluator markovianBasedEvaluator;
-        ExecutorService executor = null;
-        Future<Object[]> evalResult;
         EfficientTree tmpTree;
         Object[] result;
 
@@ -640,24 +635,19 @@ public class TabuSearch implements Metaheuristics {
             ModifyTime = modifyEnd - modifyStart;
 
             markovianBasedEvaluator = new MarkovianBasedEvaluator(staLog, slog, minerProxy, tmpTree, order);
-            executor = Executors.newSingleThreadExecutor();
-            evalResult = executor.submit(markovianBasedEvaluator);
-
-            result = evalResult.get(minerProxy.getTimeout(), TimeUnit.MILLISECONDS);
+            markovianBasedEvaluator.setCache(evaluationCache);
+            result = evaluationPool.evaluate(markovianBasedEvaluator, minerProxy.getTimeout());
             currentAccuracy[0] = (Double) result[0];
             currentAccuracy[1] = (Double) result[1];
             currentAccuracy[2] = (Double) result[2];
             staProcess = (SubtraceAbstraction) result[3];
             currentTree = (EfficientTree) result[4];
             ComputeTime += (long) result[5];
-            executor.shutdownNow();
 //            System.out.println("START - tabu done.");
-            writer.println("r,r,r,r,r");
 
         } catch (Exception e) {
 //            System.out.println("ERROR - tabu start failed.");
 //            e.printStackTrace();
-            if (executor != null) executor.shutdownNow();
             startTree(slog, order);
         }
     }
@@ -670,7 +660,6 @@ public class TabuSearch implements Metaheuristics {
         if (visitableSDFG.isEmpty()) {
             if (!backupSDFG.isEmpty()) {
 //            System.out.println("INFO - tabuization error.");
-                writer.println("tx,tx,tx,tx,tx");
 //                System.out.println("tx,tx,tx,tx,tx");
                 currentSDFG = backupSDFG.remove(0);
                 staProcess = backupSTAprocess.remove(0);
@@ -684,7 +673,6 @@ public class TabuSearch implements Metaheuristics {
             currentSDFG = visitableSDFG.remove(0);
             staProcess = visitableSTAprocess.remove(0);
             tabuizations++;
-            writer.println("t,t,t,t,t");
 //            System.out.println("t,t,t,t,t");
 //        System.out.println("INFO - tabuization done.");
         }
@@ -4,6 +4,7 @@ import au.edu.qut.bpmn.io.BPMNDiagramImporter;
 import au.edu.qut.bpmn.io.impl.BPMNDiagramImporterImpl;
 import au.edu.qut.bpmn.metrics.ComplexityCalculator;
 import au.edu.qut.processmining.log.ComplexLog;
+import au.edu.qut.processmining.log.LogCache;
 import au.edu.qut.processmining.log.LogParser;
 import au.edu.qut.processmining.log.SimpleLog;
 import au.edu.qut.processmining.miners.omega.OmegaMiner;
@@ -136,7 +137,7 @@ public class ServiceProvider {
                     for (File logFile : logFiles) {
                         System.out.println("[RUNNING] OPTF on log: " + logFile.getName());
                         try {
-                            testProvider.APDO(logFile.getAbsolutePath(), fargs[1], fargs[2], fargs[3]);
+                            testProvider.APDO(logFile.getAbsolutePath(), fargs[1], fargs[2], fargs[3], fargs.length > 4 ? fargs[4] : "1");
                         } catch (Exception e) {
                             System.out.println("[ERROR] Failed on log: " + logFile.getName());
                             e.printStackTrace();
@@ -200,16 +201,9 @@ public class ServiceProvider {
     }
 
     private static void averageDistanceLogComplexity(String logPath) {
-        XLog log = null;
+        SimpleLog slog = LogCache.getSimpleLog(logPath, new XEventNameClassifier());
+        if (slog == null) return;
 
-        try {
-            log = LogImporter.importFromFile(new XFactoryNaiveImpl(), logPath);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return;
-        }
-
-        SimpleLog slog = LogParser.getSimpleLog(log, new XEventNameClassifier());
         long etime = System.currentTimeMillis();
         System.out.println("RESULT - " + (new ComplexityCalculator()).logComplexity(slog));
         etime = System.currentTimeMillis() - etime;
@@ -279,18 +273,10 @@ public class ServiceProvider {
     }
 
     private static void logAnalysis(String logPath) {
-        XLog log = null;
-
         System.out.println("LOGSA - starting analysis ... ");
 
-        try {
-            log = LogImporter.importFromFile(new XFactoryNaiveImpl(), logPath);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return;
-        }
-
-        SimpleLog slog = LogParser.getComplexLog(log, new XEventNameClassifier());
+        SimpleLog slog = LogCache.getComplexLog(logPath, new XEventNameClassifier());
+        if (slog == null) return;
 
         System.out.println("LOGSA - total traces: " + slog.size());
         System.out.println("LOGSA - total events: " + slog.getTotalEvents());
@@ -398,7 +384,7 @@ public class ServiceProvider {
 //        filter = aux2;
 
         try {
-            SimpleLog cLog = LogParser.getComplexLog(LogImporter.importFromFile(new XFactoryNaiveImpl(), logPath), new XEventNameClassifier());
+            SimpleLog cLog = LogCache.getComplexLog(logPath, new XEventNameClassifier());
             DirectlyFollowGraphPlus dfgp = new DirectlyFollowGraphPlus(cLog, eta, epsilon, DFGPUIResult.FilterType.FWG, parallelismFirst);
 
             if (outputDFG && (cLog instanceof ComplexLog)) {
@@ -445,7 +431,7 @@ public class ServiceProvider {
 //        filter = aux2;
 
         try {
-            SimpleLog cLog = LogParser.getComplexLog(LogImporter.importFromFile(new XFactoryNaiveImpl(), logPath), new XEventNameClassifier());
+            SimpleLog cLog = LogCache.getComplexLog(logPath, new XEventNameClassifier());
             DirectlyFollowGraphPlus dfgp = new DirectlyFollowGraphPlus(cLog, eta, epsilon, DFGPUIResult.FilterType.FWG, parallelismFirst);
 
             if (outputDFG && (cLog instanceof ComplexLog)) {
@@ -480,9 +466,9 @@ public class ServiceProvider {
             XEventClassifier xEventClassifier = new XEventNameClassifier();
 
             SplitMiner yam = new SplitMiner();
-            XLog log = LogImporter.importFromFile(new XFactoryNaiveImpl(), args[3]);
+            SimpleLog cLog = LogCache.getComplexLog(args[3], xEventClassifier);
             long etime = System.currentTimeMillis();
-            BPMNDiagram output = yam.mineBPMNModel(LogParser.getComplexLog(log, xEventClassifier), xEventClassifier, eta, epsilon, DFGPUIResult.FilterType.FWG, Boolean.valueOf(args[2]), replaceIORs, true, SplitMinerUIResult.StructuringTime.NONE);
+            BPMNDiagram output = yam.mineBPMNModel(cLog, xEventClassifier, eta, epsilon, DFGPUIResult.FilterType.FWG, Boolean.valueOf(args[2]), replaceIORs, true, SplitMinerUIResult.StructuringTime.NONE);
             etime = System.currentTimeMillis() - etime;
 
             System.out.println("eTIME - " + (double) etime / 1000.0 + "s");
@@ -546,7 +532,13 @@ public class ServiceProvider {
     }
 
     public void APDO(String logPath, String order, String metaopt, String miner) throws Exception {
+        APDO(logPath, order, metaopt, miner, "1");
+    }
+
+//    with more than one island, the metaheuristics runs on an IslandModel
+    public void APDO(String logPath, String order, String metaopt, String miner, String islands) throws Exception {
         AutomatedProcessDiscoveryOptimizer optimizer = new AutomatedProcessDiscoveryOptimizer(Integer.valueOf(order), AutomatedProcessDiscoveryOptimizer.MetaOpt.valueOf(metaopt), MinerProxy.MinerTAG.valueOf(miner));
+        optimizer.setIslands(Integer.valueOf(islands));
         optimizer.init(logPath);
         if (!metaopt.contains("Tree")) {
             optimizer.searchOptimalBPMN();
@@ -604,8 +596,7 @@ public class ServiceProvider {
     public void printDFG(String[] args) {
         try {
             double eta = Double.valueOf(args[1]);
-            XLog log = LogImporter.importFromFile(new XFactoryNaiveImpl(), args[0]);
-            SimpleLog slog = LogParser.getSimpleLog(log, new XEventNameClassifier());
+            SimpleLog slog = LogCache.getSimpleLog(args[0], new XEventNameClassifier());
             long etime = System.currentTimeMillis();
             DirectlyFollowGraphPlus dfgp = new DirectlyFollowGraphPlus(slog, eta, 0.0, DFGPUIResult.FilterType.FWG, false);
             dfgp.buildDirectlyFollowsGraph();
@@ -699,10 +690,10 @@ public class ServiceProvider {
             settings.l2lThreshold = Double.valueOf(args[1]);
 
             Fodina fodina = new Fodina();
-            XLog log = LogImporter.importFromFile(new XFactoryNaiveImpl(), args[2]);
+            SimpleLog slog = LogCache.getSimpleLog(args[2], new XEventNameClassifier());
 
             long etime = System.currentTimeMillis();
-            BPMNDiagram output = fodina.discoverBPMNDiagram(LogParser.getSimpleLog(log, new XEventNameClassifier()), settings);
+            BPMNDiagram output = fodina.discoverBPMNDiagram(slog, settings);
             etime = System.currentTimeMillis() - etime;
 
             System.out.println("eTIME - " + (double) etime / 1000.0 + "s");
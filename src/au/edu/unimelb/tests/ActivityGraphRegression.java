@@ -0,0 +1,204 @@
+package au.edu.unimelb.tests;
+
+import au.edu.qut.processmining.log.IncrementalLogParser;
+import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.unimelb.processmining.accuracy.abstraction.intermediate.ActivityGraph;
+import au.edu.unimelb.processmining.accuracy.abstraction.intermediate.AutomatonAbstraction;
+import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.Subtrace;
+import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.SubtraceAbstraction;
+import org.deckfour.xes.classification.XEventNameClassifier;
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.factory.XFactory;
+import org.deckfour.xes.factory.XFactoryNaiveImpl;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XTrace;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagramImpl;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Event;
+import org.processmining.models.graphbased.directed.bpmn.elements.Gateway;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class ActivityGraphRegression {
+
+    private static final int MAX_ORDER = 5;
+
+    /**
+     * compares the process abstractions updated from the parent's ones (ActivityGraph.update) with the ones computed
+     * from scratch (SubtraceAbstraction.abstractProcessBehaviour), for the orders 2 to 5, on random BPMN models with
+     * only exclusive gateways and their neighbours, which add or remove a few flows between two activities.
+     * the update may refuse a neighbour (e.g. when an activity is no longer reachable), but the subtraces it returns
+     * must be identical. a model with a parallel gateway is not local, and must have no activity graph.
+     */
+    public static void main(String[] args) {
+        int models = Integer.parseInt(args[0]);
+        int activities = Integer.parseInt(args[1]);
+        Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 42);
+        SimpleLog log = createLog(activities);
+
+        int updated = 0, refused = 0, errors = 0;
+        long fullTime = 0, updateTime = 0, eStart;
+
+        for (int m = 0; m < models; m++) {
+            boolean[][] parent = createRandomGraph(activities, random);
+            boolean[][] child = createNeighbour(parent, random);
+
+            AutomatonAbstraction parentAutomaton = SubtraceAbstraction.abstractAutomaton(createBPMN(parent, false), log);
+            AutomatonAbstraction childAutomaton = SubtraceAbstraction.abstractAutomaton(createBPMN(child, false), log);
+            ActivityGraph parentGraph = ActivityGraph.of(parentAutomaton);
+            ActivityGraph childGraph = ActivityGraph.of(childAutomaton);
+
+            if (parentGraph == null || childGraph == null) {
+                System.out.println("ERROR - model " + m + ": no activity graph");
+                errors++;
+                continue;
+            }
+
+            if (ActivityGraph.of(SubtraceAbstraction.abstractAutomaton(createBPMN(parent, true), log)) != null) {
+                System.out.println("ERROR - model " + m + ": activity graph of a parallel model");
+                errors++;
+            }
+
+            for (int order = 2; order <= MAX_ORDER; order++) {
+                SubtraceAbstraction parentAbstraction = SubtraceAbstraction.abstractProcessBehaviour(SubtraceAbstraction.abstractAutomaton(createBPMN(parent, false), log), order);
+
+                eStart = System.nanoTime();
+                SubtraceAbstraction expected = SubtraceAbstraction.abstractProcessBehaviour(SubtraceAbstraction.abstractAutomaton(createBPMN(child, false), log), order);
+                fullTime += System.nanoTime() - eStart;
+
+                eStart = System.nanoTime();
+                SubtraceAbstraction actual = childGraph.update(parentAbstraction, parentGraph, order);
+                updateTime += System.nanoTime() - eStart;
+
+                if (actual == null) {
+                    refused++;
+                    continue;
+                }
+
+                updated++;
+                if (!print(expected).equals(print(actual))) {
+                    System.out.println("ERROR - model " + m + " order " + order);
+                    System.out.println("ERROR - expected: " + print(expected));
+                    System.out.println("ERROR - updated:  " + print(actual));
+                    errors++;
+                }
+            }
+        }
+
+        System.out.println("INFO - updated: " + updated + " refused: " + refused + " errors: " + errors);
+        System.out.println("INFO - full time (ms): " + fullTime / 1000000 + " update time (ms): " + updateTime / 1000000);
+    }
+
+    private static TreeSet<String> print(SubtraceAbstraction abstraction) {
+        TreeSet<String> prints = new TreeSet<>();
+        for (Subtrace subtrace : abstraction.getSubtraces()) prints.add(subtrace.forcePrint());
+        return prints;
+    }
+
+    // graph[a][b] for a directly-follows pair, graph[n][b] for a first activity, graph[a][n] for a last one,
+    // each activity has a successor or is a last one
+    private static boolean[][] createRandomGraph(int activities, Random random) {
+        boolean[][] graph = new boolean[activities + 1][activities + 1];
+
+        graph[activities][random.nextInt(activities)] = true;
+        for (int a = 0; a < activities; a++) {
+            for (int b = 0; b < activities; b++) graph[a][b] = random.nextDouble() < 0.3;
+            graph[a][activities] = random.nextDouble() < 0.2;
+            if (successors(graph, a) == 0) graph[a][activities] = true;
+        }
+
+        return graph;
+    }
+
+    // a copy of the graph with one to three directly-follows pairs added or removed
+    private static boolean[][] createNeighbour(boolean[][] graph, Random random) {
+        int activities = graph.length - 1;
+        boolean[][] neighbour = new boolean[activities + 1][];
+        for (int a = 0; a <= activities; a++) neighbour[a] = graph[a].clone();
+
+        for (int changes = 1 + random.nextInt(3); changes > 0; changes--) {
+            int a = random.nextInt(activities);
+            int b = random.nextInt(activities);
+            neighbour[a][b] = !neighbour[a][b];
+            if (successors(neighbour, a) == 0) neighbour[a][b] = true;
+        }
+
+        return neighbour;
+    }
+
+    private static int successors(boolean[][] graph, int a) {
+        int successors = 0;
+        for (boolean successor : graph[a]) if (successor) successors++;
+        return successors;
+    }
+
+    // each activity between an exclusive join and an exclusive split, the splits are connected to the joins of the successors,
+    // if parallel, the start event is followed by a parallel split to the first activity and to a last one
+    private static BPMNDiagram createBPMN(boolean[][] graph, boolean parallel) {
+        int activities = graph.length - 1;
+        BPMNDiagram diagram = new BPMNDiagramImpl("activity-graph");
+        List<BPMNNode> joins = new ArrayList<>();
+        List<BPMNNode> splits = new ArrayList<>();
+
+        BPMNNode start = diagram.addEvent("start", Event.EventType.START, Event.EventTrigger.NONE, Event.EventUse.CATCH, true, null);
+        BPMNNode end = diagram.addEvent("end", Event.EventType.END, Event.EventTrigger.NONE, Event.EventUse.THROW, true, null);
+        BPMNNode startSplit = diagram.addGateway("start-split", Gateway.GatewayType.DATABASED);
+        BPMNNode endJoin = diagram.addGateway("end-join", Gateway.GatewayType.DATABASED);
+
+        for (int a = 0; a <= activities; a++) {
+            BPMNNode join = a == activities ? endJoin : diagram.addGateway("join-" + a, Gateway.GatewayType.DATABASED);
+            BPMNNode split = a == activities ? startSplit : diagram.addGateway("split-" + a, Gateway.GatewayType.DATABASED);
+            if (a < activities) {
+                BPMNNode activity = diagram.addActivity(name(a), false, false, false, false, false);
+                diagram.addFlow(join, activity, "");
+                diagram.addFlow(activity, split, "");
+            }
+            joins.add(join);
+            splits.add(split);
+        }
+
+        for (int a = 0; a <= activities; a++)
+            for (int b = 0; b <= activities; b++)
+                if (graph[a][b]) diagram.addFlow(splits.get(a), joins.get(b), "");
+
+        if (parallel) {
+            BPMNNode parallelSplit = diagram.addGateway("parallel-split", Gateway.GatewayType.PARALLEL);
+            BPMNNode parallelJoin = diagram.addGateway("parallel-join", Gateway.GatewayType.PARALLEL);
+            BPMNNode first = diagram.addActivity(name(0), false, false, false, false, false);
+            BPMNNode second = diagram.addActivity(name(activities - 1), false, false, false, false, false);
+            diagram.addFlow(start, parallelSplit, "");
+            diagram.addFlow(parallelSplit, first, "");
+            diagram.addFlow(parallelSplit, second, "");
+            diagram.addFlow(first, parallelJoin, "");
+            diagram.addFlow(second, parallelJoin, "");
+            diagram.addFlow(parallelJoin, startSplit, "");
+        } else diagram.addFlow(start, startSplit, "");
+        diagram.addFlow(endJoin, end, "");
+
+        return diagram;
+    }
+
+    private static String name(int activity) {
+        return String.valueOf((char) ('a' + activity));
+    }
+
+    // a log with one trace of all the activities, for their ids
+    private static SimpleLog createLog(int activities) {
+        XFactory factory = new XFactoryNaiveImpl();
+        XTrace trace = factory.createTrace();
+        for (int a = 0; a < activities; a++) {
+            XEvent event = factory.createEvent();
+            XConceptExtension.instance().assignName(event, name(a));
+            trace.add(event);
+        }
+
+        IncrementalLogParser parser = new IncrementalLogParser(new XEventNameClassifier());
+        parser.append(Collections.singletonList(trace));
+        return parser.getSimpleLog();
+    }
+}
@@ -0,0 +1,87 @@
+package au.edu.unimelb.tests;
+
+import au.edu.qut.processmining.log.IncrementalLogParser;
+import au.edu.qut.processmining.log.graph.LogNode;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DFGEdge;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DirectlyFollowGraphPlus;
+import au.edu.qut.processmining.miners.splitminer.ui.dfgp.DFGPUIResult;
+import org.deckfour.xes.classification.XEventNameClassifier;
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.factory.XFactory;
+import org.deckfour.xes.factory.XFactoryNaiveImpl;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XTrace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+public class DFGPCopyRegression {
+
+    /**
+     * builds the unfiltered DFGP of a log, takes two copies of it (copyUnfiltered) and updates one of them
+     * with more traces (updateDirectlyFollowsGraph): the snapshot and the other copy must keep their nodes,
+     * edges and frequencies, while the updated copy must have the ones of a DFGP built on the whole log.
+     */
+    public static void main(String[] args) {
+        XFactory factory = new XFactoryNaiveImpl();
+        IncrementalLogParser parser = new IncrementalLogParser(new XEventNameClassifier());
+        int errors = 0;
+
+        parser.append(traces(factory, "abcd", "acbd", "abcd", "abbd"));
+        DirectlyFollowGraphPlus snapshot = new DirectlyFollowGraphPlus(parser.getSimpleLog(), 0.0, 0.0, DFGPUIResult.FilterType.NOF, true);
+        snapshot.buildUnfilteredDFGP();
+
+        DirectlyFollowGraphPlus updated = snapshot.copyUnfiltered();
+        DirectlyFollowGraphPlus sibling = snapshot.copyUnfiltered();
+        String snapshotBefore = print(snapshot);
+        String siblingBefore = print(sibling);
+
+        updated.updateDirectlyFollowsGraph(parser.append(traces(factory, "abcd", "aeed", "abbd")));
+
+        DirectlyFollowGraphPlus whole = new DirectlyFollowGraphPlus(parser.getSimpleLog(), 0.0, 0.0, DFGPUIResult.FilterType.NOF, true);
+        whole.buildUnfilteredDFGP();
+
+        if (!snapshotBefore.equals(print(snapshot))) {
+            System.out.println("ERROR - the snapshot changed: " + snapshotBefore + " -> " + print(snapshot));
+            errors++;
+        }
+        if (!siblingBefore.equals(print(sibling))) {
+            System.out.println("ERROR - the sibling copy changed: " + siblingBefore + " -> " + print(sibling));
+            errors++;
+        }
+        if (!print(whole).equals(print(updated))) {
+            System.out.println("ERROR - the updated copy differs from the whole log: " + print(updated) + " vs " + print(whole));
+            errors++;
+        }
+
+        System.out.println("INFO - errors: " + errors);
+    }
+
+    // the edges (with the frequencies of their nodes) and the length 1 loops, in a canonical order
+    private static String print(DirectlyFollowGraphPlus dfgp) {
+        TreeSet<String> edges = new TreeSet<>();
+        for (DFGEdge edge : dfgp.getEdges())
+            edges.add(print(edge.getSource()) + " > " + print(edge.getTarget()) + " : " + edge.getFrequency());
+        return edges + " loops: " + new TreeSet<>(dfgp.getLoopsL1());
+    }
+
+    private static String print(LogNode node) {
+        return node.getCode() + " [" + node.getFrequency() + "]";
+    }
+
+    // each trace is a string, one event per char
+    private static List<XTrace> traces(XFactory factory, String... traces) {
+        List<XTrace> batch = new ArrayList<>();
+        for (String trace : traces) {
+            XTrace xtrace = factory.createTrace();
+            for (char activity : trace.toCharArray()) {
+                XEvent event = factory.createEvent();
+                XConceptExtension.instance().assignName(event, String.valueOf(activity));
+                xtrace.add(event);
+            }
+            batch.add(xtrace);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,186 @@
+package au.edu.unimelb.tests;
+
+import au.edu.qut.processmining.log.IncrementalLogParser;
+import au.edu.qut.processmining.log.SimpleLogDelta;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DFGEdge;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DenseDirectlyFollowGraph;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DirectlyFollowGraph;
+import au.edu.qut.processmining.miners.splitminer.dfgp.DirectlyFollowGraphPlus;
+import au.edu.qut.processmining.miners.splitminer.ui.dfgp.DFGPUIResult;
+import org.deckfour.xes.classification.XEventNameClassifier;
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.factory.XFactory;
+import org.deckfour.xes.factory.XFactoryNaiveImpl;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XTrace;
+import org.processmining.models.graphbased.directed.bpmn.BPMNDiagram;
+import org.processmining.models.graphbased.directed.bpmn.BPMNNode;
+import org.processmining.models.graphbased.directed.bpmn.elements.Flow;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class DenseDFGPRegression {
+
+    private static final DFGPUIResult.FilterType[] FILTERS = {DFGPUIResult.FilterType.NOF, DFGPUIResult.FilterType.WTH, DFGPUIResult.FilterType.STD, DFGPUIResult.FilterType.FWG};
+
+    /**
+     * compares DenseDirectlyFollowGraph and DirectlyFollowGraphPlus on random logs, for all the filters and
+     * the thresholds (eta, epsilon) used by MinerProxy, as MinerProxy builds them: buildUnfilteredDFGP() once,
+     * then detectParallelisms(epsilon) and filter(eta) on a copyUnfiltered().
+     * the dense DFGPs are also built from half of the log and updated with the other half (updateDFGP).
+     * the edges (with their frequencies), the parallelisms, the length 1 loops and the sizes must be identical,
+     * and so must the diagrams of getDFGP(), with and without the activity labels.
+     */
+    public static void main(String[] args) {
+        int logs = Integer.parseInt(args[0]);
+        int activities = Integer.parseInt(args[1]);
+        Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 42);
+        XFactory factory = new XFactoryNaiveImpl();
+
+        int comparisons = 0, errors = 0;
+
+        for (int l = 0; l < logs; l++) {
+            // half of the logs have few traces, hence many edges with equal frequencies
+            List<XTrace> traces = createRandomLog(factory, activities, l % 2 == 0 ? 10 : 200, random);
+
+            // the parser appends the second half of the log to the first one, then all the DFGPs are built on the whole log
+            IncrementalLogParser parser = new IncrementalLogParser(new XEventNameClassifier());
+            parser.append(traces.subList(0, traces.size() / 2));
+
+            List<DirectlyFollowGraph> halves = new ArrayList<>();
+            for (DFGPUIResult.FilterType filterType : FILTERS)
+                for (int i = 0; i <= 5; i++)
+                    for (int j = 0; j <= 5; j++) {
+                        DirectlyFollowGraph half = new DenseDirectlyFollowGraph(parser.getSimpleLog(), i * 0.2, j * 0.2, filterType, false);
+                        half.buildUnfilteredDFGP();
+                        halves.add(half);
+                    }
+
+            SimpleLogDelta delta = parser.append(traces.subList(traces.size() / 2, traces.size()));
+
+            for (DFGPUIResult.FilterType filterType : FILTERS) {
+                // the filter type is set at construction, and kept by the copies
+                DirectlyFollowGraph dfgp = new DirectlyFollowGraphPlus(parser.getSimpleLog(), 0.0, 0.0, filterType, false);
+                DirectlyFollowGraph dense = new DenseDirectlyFollowGraph(parser.getSimpleLog(), 0.0, 0.0, filterType, false);
+                dfgp.buildUnfilteredDFGP();
+                dense.buildUnfilteredDFGP();
+
+                for (int i = 0; i <= 5; i++)
+                    for (int j = 0; j <= 5; j++) {
+                        DirectlyFollowGraph expectedGraph = complete(dfgp.copyUnfiltered(), i * 0.2, j * 0.2);
+                        DirectlyFollowGraph actualGraph = complete(dense.copyUnfiltered(), i * 0.2, j * 0.2);
+                        DirectlyFollowGraph updated = halves.remove(0);
+                        updated.updateDFGP(delta);
+                        String expected = print(expectedGraph);
+                        String actual = print(actualGraph);
+                        String actualUpdated = print(updated);
+                        comparisons++;
+
+                        if (!expected.equals(actual) || !expected.equals(actualUpdated)) {
+                            System.out.println("ERROR - log " + l + " " + filterType + " (" + i * 0.2 + ", " + j * 0.2 + ")");
+                            System.out.println("ERROR - expected: " + expected);
+                            if (!expected.equals(actual)) System.out.println("ERROR - dense:    " + actual);
+                            if (!expected.equals(actualUpdated)) System.out.println("ERROR - updated:  " + actualUpdated);
+                            errors++;
+                        }
+
+                        for (boolean labels : new boolean[] {true, false}) {
+                            expected = diagram(expectedGraph, labels);
+                            actual = diagram(actualGraph, labels);
+                            comparisons++;
+
+                            if (!expected.equals(actual)) {
+                                System.out.println("ERROR - diagram of log " + l + " " + filterType + " (" + i * 0.2 + ", " + j * 0.2 + ") labels: " + labels);
+                                System.out.println("ERROR - expected: " + expected);
+                                System.out.println("ERROR - dense:    " + actual);
+                                errors++;
+                            }
+                        }
+                    }
+            }
+        }
+
+        System.out.println("INFO - comparisons: " + comparisons + " errors: " + errors);
+    }
+
+    private static DirectlyFollowGraph complete(DirectlyFollowGraph copy, double eta, double epsilon) {
+        copy.detectParallelisms(epsilon);
+        copy.filter(eta);
+        return copy;
+    }
+
+    // the edges (with their frequencies), the parallelisms and the length 1 loops, in a canonical order
+    private static String print(DirectlyFollowGraph graph) {
+        TreeSet<String> edges = new TreeSet<>();
+        for (DFGEdge edge : graph.getEdges())
+            edges.add(edge.getSourceCode() + ">" + edge.getTargetCode() + ":" + edge.getFrequency());
+
+        Map<Integer, TreeSet<Integer>> parallelisms = new TreeMap<>();
+        for (Map.Entry<Integer, HashSet<Integer>> entry : graph.getParallelisms().entrySet())
+            parallelisms.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+
+        return "size: " + graph.size() + " edges: " + edges + " parallelisms: " + parallelisms + " loops: " + new TreeSet<>(graph.getLoopsL1());
+    }
+
+    // removeNode() keeps the edges that removeEdge() refuses to remove, so a filtered DFGP can have edges of removed nodes:
+    // DirectlyFollowGraphPlus fails to draw them, and so must DenseDirectlyFollowGraph
+    private static String diagram(DirectlyFollowGraph graph, boolean labels) {
+        try {
+            return print(graph.getDFGP(labels));
+        } catch (RuntimeException e) {
+            return "failed: " + e.getClass().getSimpleName();
+        }
+    }
+
+    // the nodes and the flows (source > target : frequency) of the diagram, by their labels, in a canonical order
+    private static String print(BPMNDiagram diagram) {
+        TreeSet<String> nodes = new TreeSet<>();
+        for (BPMNNode node : diagram.getNodes()) nodes.add(node.getLabel());
+
+        TreeSet<String> flows = new TreeSet<>();
+        for (Flow flow : diagram.getFlows())
+            flows.add(flow.getSource().getLabel() + ">" + flow.getTarget().getLabel() + ":" + flow.getLabel());
+
+        return "nodes: " + nodes + " flows: " + flows;
+    }
+
+    // traces generated by a random walk on a random DFG, with self loops, the activity names are one char each
+    private static List<XTrace> createRandomLog(XFactory factory, int activities, int traces, Random random) {
+        double[][] walk = new double[activities][activities + 1];
+        for (int a = 0; a < activities; a++)
+            for (int b = 0; b <= activities; b++)
+                walk[a][b] = random.nextDouble() < 0.4 ? random.nextDouble() : 0.0;
+
+        List<XTrace> log = new ArrayList<>();
+        for (int t = 0; t < traces; t++) {
+            XTrace xtrace = factory.createTrace();
+            int activity = random.nextInt(activities);
+            for (int length = 0; activity != activities && length < 3 * activities; length++) {
+                XEvent event = factory.createEvent();
+                XConceptExtension.instance().assignName(event, String.valueOf((char) ('a' + activity)));
+                xtrace.add(event);
+                activity = next(walk[activity], random);
+            }
+            log.add(xtrace);
+        }
+        return log;
+    }
+
+    // the next activity of the walk, activities (the last column) ends the trace
+    private static int next(double[] weights, Random random) {
+        double total = 0;
+        for (double weight : weights) total += weight;
+        if (total == 0) return weights.length - 1;
+
+        double r = random.nextDouble() * total;
+        for (int b = 0; b < weights.length; b++)
+            if ((r -= weights[b]) < 0) return b;
+        return weights.length - 1;
+    }
+}
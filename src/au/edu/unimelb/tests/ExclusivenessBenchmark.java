@@ -0,0 +1,103 @@
+package au.edu.unimelb.tests;
+
+import au.edu.qut.processmining.log.ActivitySets;
+import au.edu.qut.processmining.log.VariantStore;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+public class ExclusivenessBenchmark {
+
+    private enum Test {OLD, NEW}
+
+    private static final int RUNS = 10;
+    private static final int MAX_LENGTH = 40;
+
+
+    public static void main(String[] args) {
+        int activities = Integer.parseInt(args[0]);
+        int variants = Integer.parseInt(args[1]);
+        int traces = Integer.parseInt(args[2]);
+        Test code = Test.valueOf(args[3]);
+
+        VariantStore log = createSyntheticLog(activities, variants, traces, new Random(42));
+        int totalActivities = activities + 1;
+        int[] exclusiveness = null;
+        long totalTime = 0;
+
+        // Print CSV header
+        System.out.println("Test,NumActivities,NumVariants,NumTraces,AverageTime(ms)");
+
+        for (int run = 0; run <= RUNS; run++) {
+            long eStart = System.nanoTime();
+            switch (code) {
+                case OLD:
+                    exclusiveness = perTraceExclusiveness(log, totalActivities);
+                    break;
+                case NEW:
+                    exclusiveness = ActivitySets.fromVariants(log, totalActivities).getExclusiveness(totalActivities);
+                    break;
+            }
+            // the first run only warms up the JIT
+            if (run != 0) totalTime += System.nanoTime() - eStart;
+        }
+
+        if (!Arrays.equals(exclusiveness, perTraceExclusiveness(log, totalActivities)))
+            System.out.println("ERROR - exclusiveness differs from the per-trace computation");
+
+        System.out.printf(Locale.US, "%s,%d,%d,%d,%.2f%n", code, activities, log.size(), traces, totalTime / (RUNS * 1000000.0));
+    }
+
+    /**
+     * the computation LogParser used to do: one pass per trace (not per variant), with a HashSet of executed activities.
+     */
+    private static int[] perTraceExclusiveness(VariantStore log, int totalActivities) {
+        int[] exclusiveness = new int[totalActivities * totalActivities];
+        int[] codes = log.getActivities();
+        Set<Integer> executed = new HashSet<>();
+
+        for (int v = 0; v < log.size(); v++)
+            for (int f = 0; f < log.getFrequency(v); f++) {
+                executed.clear();
+                for (int i = log.getStart(v) + 1; i < log.getEnd(v) - 1; i++) executed.add(codes[i]);
+                for (int x : executed)
+                    for (int a = 0; a < totalActivities; a++)
+                        if (!executed.contains(a)) {
+                            exclusiveness[x * totalActivities + a]++;
+                            exclusiveness[a * totalActivities + x]++;
+                        }
+            }
+
+        return exclusiveness;
+    }
+
+    /**
+     * random variants over the activities 1..activities, the traces are spread over the variants following a Zipf-like distribution,
+     * as it happens in real-life logs where few variants cover most of the traces.
+     */
+    private static VariantStore createSyntheticLog(int activities, int variants, int traces, Random random) {
+        VariantStore.Builder builder = new VariantStore.Builder();
+        int[] trace = new int[MAX_LENGTH + 2];
+        double[] weights = new double[variants];
+        double totalWeight = 0;
+        int remaining = traces;
+        int length;
+
+        for (int v = 0; v < variants; v++) totalWeight += (weights[v] = 1.0 / (v + 1));
+
+        for (int v = 0; v < variants && remaining > 0; v++) {
+            length = 1 + random.nextInt(MAX_LENGTH);
+            trace[0] = 0;
+            for (int i = 1; i <= length; i++) trace[i] = 1 + random.nextInt(activities);
+            trace[length + 1] = -1;
+            int frequency = (v == variants - 1) ? remaining : Math.max(1, Math.min(remaining, (int) Math.round(traces * weights[v] / totalWeight)));
+            builder.add(trace, length + 2, frequency);
+            remaining -= frequency;
+        }
+
+        return builder.build();
+    }
+}
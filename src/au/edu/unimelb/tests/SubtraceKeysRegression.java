@@ -0,0 +1,111 @@
+package au.edu.unimelb.tests;
+
+import au.edu.unimelb.processmining.accuracy.abstraction.subtrace.Subtrace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SubtraceKeysRegression {
+
+    private static final int MAX_ORDER = 10;
+
+    // the largest activity whose code (activity + 3) fits in the 16 bits of a packed event
+    private static final int MAX_PACKED_ACTIVITY = (1 << 16) - 4;
+
+    /**
+     * compares the packed subtraces with their prints (the keys of the abstractions before), for the orders 1 to 10
+     * and activities on both sides of 2^16, i.e. packed and unpacked subtraces, also mixed in the same comparison:
+     * equals must be the equality of the prints, equal subtraces must have the same hashCode, and containsAny
+     * (with contains for the subtraces that do not pack, as in removeUnusedSubtraces) must match the prints containing
+     * the printed subtraces looked for.
+     */
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 42);
+
+        int checks = 0, errors = 0;
+
+        for (int order = 1; order <= MAX_ORDER; order++)
+            for (int round = 0; round < rounds; round++) {
+                // few activities in a round, so that equal subtraces and contained windows are frequent
+                int[] activities = createActivities(random);
+                Subtrace subtrace = createSubtrace(order, activities, random);
+                Subtrace other = random.nextInt(4) == 0 ? new Subtrace(subtrace) : createSubtrace(order + random.nextInt(2), activities, random);
+
+                checks++;
+                if (subtrace.equals(other) != subtrace.forcePrint().equals(other.forcePrint())) {
+                    System.out.println("ERROR - equals: " + subtrace.forcePrint() + " " + other.forcePrint());
+                    errors++;
+                }
+
+                checks++;
+                if (subtrace.equals(other) && subtrace.hashCode() != other.hashCode()) {
+                    System.out.println("ERROR - hashCode: " + subtrace.forcePrint() + " " + other.forcePrint());
+                    errors++;
+                }
+
+                Subtrace.Keys packed = new Subtrace.Keys();
+                List<int[]> unpacked = new ArrayList<>();
+                List<String> prints = new ArrayList<>();
+                long[] key = new long[2];
+                for (int n = random.nextInt(4); n > 0; n--) {
+                    // windows of the subtrace itself, or of other subtraces on the same activities
+                    int[] events = window(random.nextBoolean() ? subtrace : createSubtrace(order, activities, random), random);
+                    if (Subtrace.pack(events, key)) packed.add(key[0], key[1]);
+                    else unpacked.add(events);
+                    prints.add(print(events));
+                }
+
+                boolean expected = false;
+                for (String print : prints) expected |= subtrace.forcePrint().contains(print);
+
+                boolean actual = subtrace.containsAny(packed);
+                for (int[] events : unpacked) actual |= subtrace.contains(events);
+
+                checks++;
+                if (expected != actual) {
+                    System.out.println("ERROR - containsAny: " + subtrace.forcePrint() + " " + prints);
+                    errors++;
+                }
+            }
+
+        System.out.println("INFO - checks: " + checks + " errors: " + errors);
+    }
+
+    // up to 4 activities: small ones, the artificial MARK, and ones just below and just above what fits in a packed event
+    private static int[] createActivities(Random random) {
+        int[] activities = new int[1 + random.nextInt(4)];
+        for (int a = 0; a < activities.length; a++)
+            switch (random.nextInt(4)) {
+                case 0: activities[a] = Subtrace.MARK; break;
+                case 1: activities[a] = 1 + random.nextInt(10); break;
+                default: activities[a] = MAX_PACKED_ACTIVITY - 2 + random.nextInt(5);
+            }
+        return activities;
+    }
+
+    // a subtrace as the abstractions build them: up to order events are kept, then it is completed (INIT)
+    private static Subtrace createSubtrace(int order, int[] activities, Random random) {
+        Subtrace subtrace = new Subtrace(order);
+        for (int n = random.nextInt(order + 3); n > 0; n--) subtrace.add(activities[random.nextInt(activities.length)]);
+        subtrace.add(Subtrace.INIT);
+        return subtrace;
+    }
+
+    // consecutive events of the subtrace, as parsed from its print
+    private static int[] window(Subtrace subtrace, Random random) {
+        int[] events = Subtrace.parse(subtrace.forcePrint());
+        int start = random.nextInt(events.length + 1);
+        int end = start + random.nextInt(events.length - start + 1);
+        int[] window = new int[end - start];
+        System.arraycopy(events, start, window, 0, window.length);
+        return window;
+    }
+
+    private static String print(int[] events) {
+        StringBuilder print = new StringBuilder(":");
+        for (int event : events) print.append(event).append(":");
+        return print.toString();
+    }
+}
@@ -0,0 +1,170 @@
+package au.edu.unimelb.tests;
+
+import au.edu.qut.processmining.miners.splitminer.dfgp.WidestPaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+public class WidestPathsRegression {
+
+    private static final int MAX_FREQUENCY = 1000;
+
+
+    /**
+     * compares the edges selected by bestEdgesOnMaxCapacities before (breadth-first search with a work list)
+     * and after (WidestPaths) on random DFGs, forward from the start (node 0) and backward from the end (node n-1).
+     * the max capacities must be identical, and so must the selected edges, except where two edges give a node
+     * the same max capacity: the old search picked the first one in the (hash-based) order of the outgoing edges.
+     */
+    public static void main(String[] args) {
+        int graphs = Integer.parseInt(args[0]);
+        int nodes = Integer.parseInt(args[1]);
+        double density = Double.parseDouble(args[2]);
+        Random random = new Random(args.length > 3 ? Long.parseLong(args[3]) : 42);
+
+        int identical = 0, ties = 0, errors = 0;
+        long oldTime = 0, newTime = 0, eStart;
+
+        System.out.println("Graphs,Nodes,Density,Identical,TiesOnly,Errors,OldTime(ms),NewTime(ms)");
+
+        for (int g = 0; g < graphs; g++) {
+            // half of the graphs have distinct frequencies, the other half have many equal frequencies
+            int[] matrix = createRandomDFG(nodes, density, g % 2 == 0 ? MAX_FREQUENCY : 5, random);
+            int result = 0;
+
+            for (boolean forward : new boolean[] {true, false}) {
+                int root = forward ? 0 : nodes - 1;
+                int[] offsets = new int[nodes + 1];
+                List<Integer> csr = new ArrayList<>();
+                for (int node = 0; node < nodes; node++) {
+                    offsets[node] = csr.size();
+                    List<Integer> adjacent = new ArrayList<>();
+                    for (int next = 0; next < nodes; next++)
+                        if (matrix[forward ? node * nodes + next : next * nodes + node] != 0) adjacent.add(next);
+                    // the old search iterated the edges of a HashSet: their order was arbitrary
+                    Collections.shuffle(adjacent, random);
+                    csr.addAll(adjacent);
+                }
+                offsets[nodes] = csr.size();
+
+                int[] heads = new int[csr.size()];
+                int[] capacities = new int[csr.size()];
+                for (int node = 0; node < nodes; node++)
+                    for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                        heads[e] = csr.get(e);
+                        capacities[e] = matrix[forward ? node * nodes + heads[e] : heads[e] * nodes + node];
+                    }
+
+                int[] oldCapacities = new int[nodes];
+                int[] newCapacities = new int[nodes];
+
+                eStart = System.nanoTime();
+                int[] oldBest = workListWidestPaths(root, offsets, heads, capacities, oldCapacities);
+                oldTime += System.nanoTime() - eStart;
+
+                eStart = System.nanoTime();
+                int[] newBest = WidestPaths.compute(root, offsets, heads, capacities, newCapacities);
+                newTime += System.nanoTime() - eStart;
+
+                result = Math.max(result, compare(g, forward, offsets, heads, capacities, oldCapacities, newCapacities, oldBest, newBest));
+            }
+
+            if (result == 0) identical++;
+            else if (result == 1) ties++;
+            else errors++;
+        }
+
+        System.out.printf(Locale.US, "%d,%d,%.2f,%d,%d,%d,%.2f,%.2f%n", graphs, nodes, density, identical, ties, errors, oldTime / 1000000.0, newTime / 1000000.0);
+    }
+
+    /**
+     * @return 0 if the selected edges are the same, 1 if they differ only on ties, 2 otherwise
+     */
+    private static int compare(int graph, boolean forward, int[] offsets, int[] heads, int[] capacities, int[] oldCapacities, int[] newCapacities, int[] oldBest, int[] newBest) {
+        int[] tails = new int[heads.length];
+        int result = 0;
+
+        if (!Arrays.equals(oldCapacities, newCapacities)) {
+            System.out.println("ERROR - graph " + graph + (forward ? " forward" : " backward") + ": different max capacities");
+            return 2;
+        }
+
+        for (int node = 0; node + 1 < offsets.length; node++)
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) tails[e] = node;
+
+        for (int node = 0; node < oldBest.length; node++) {
+            if (oldBest[node] == newBest[node]) continue;
+            if (oldBest[node] == -1 || newBest[node] == -1) {
+                System.out.println("ERROR - graph " + graph + (forward ? " forward" : " backward") + ": node " + node + " reached by one search only");
+                return 2;
+            }
+            // the new edge must give the node its max capacity as the old one does
+            if (Math.min(newCapacities[tails[newBest[node]]], capacities[newBest[node]]) != newCapacities[node]) {
+                System.out.println("ERROR - graph " + graph + (forward ? " forward" : " backward") + ": node " + node + " is not on a widest path");
+                return 2;
+            }
+            result = 1;
+        }
+
+        return result;
+    }
+
+    /**
+     * the search DirectlyFollowGraphPlus.bestEdgesOnMaxCapacities used to do, on the same CSR graph of WidestPaths:
+     * a node goes back in the work list each time its capacity increases.
+     */
+    private static int[] workListWidestPaths(int root, int[] offsets, int[] heads, int[] capacities, int[] maxCapacities) {
+        int n = offsets.length - 1;
+        int[] bestEdges = new int[n];
+        List<Integer> toVisit = new ArrayList<>();
+        Set<Integer> unvisited = new HashSet<>();
+        int node, next, cap, maxCap;
+
+        Arrays.fill(bestEdges, -1);
+        Arrays.fill(maxCapacities, 0);
+        maxCapacities[root] = Integer.MAX_VALUE;
+
+        toVisit.add(root);
+        for (int i = 0; i < n; i++) if (i != root) unvisited.add(i);
+
+        while (!toVisit.isEmpty()) {
+            node = toVisit.remove(0);
+            cap = maxCapacities[node];
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                next = heads[e];
+                maxCap = (cap > capacities[e] ? capacities[e] : cap);
+                if (maxCap > maxCapacities[next]) {
+                    maxCapacities[next] = maxCap;
+                    bestEdges[next] = e;
+                    if (!toVisit.contains(next)) unvisited.add(next);
+                }
+                if (unvisited.contains(next)) {
+                    toVisit.add(next);
+                    unvisited.remove(next);
+                }
+            }
+        }
+
+        return bestEdges;
+    }
+
+    /**
+     * random DFG as a frequency matrix (0 = no edge), node 0 is the start (no incoming edges)
+     * and node n-1 is the end (no outgoing edges).
+     */
+    private static int[] createRandomDFG(int nodes, double density, int maxFrequency, Random random) {
+        int[] matrix = new int[nodes * nodes];
+
+        for (int src = 0; src < nodes - 1; src++)
+            for (int tgt = 1; tgt < nodes; tgt++)
+                if (src != tgt && random.nextDouble() < density) matrix[src * nodes + tgt] = 1 + random.nextInt(maxFrequency);
+
+        return matrix;
+    }
+}
@@ -11,6 +11,7 @@ import java.util.Map.Entry;
 
 import au.edu.qut.bpmn.helper.DiagramHandler;
 import au.edu.qut.processmining.log.SimpleLog;
+import au.edu.qut.processmining.log.VariantStore;
 import au.edu.unimelb.processmining.optimization.SimpleDirectlyFollowGraph;
 import com.raffaeleconforti.conversion.petrinet.PetriNetToBPMNConverter;
 import org.deckfour.xes.model.XLog;
@@ -47,7 +48,7 @@ public class Fodina {
 
 //		System.out.println("DEBUG - Fodina : from SLog > SDFG");
 
-		DependencyNet dependencyGraph = getDependencyGraph(slog.getTraces(), settings);
+		DependencyNet dependencyGraph = getDependencyGraph(slog, settings);
 		BitSet matrixDFG = dependencyNetToBitSet(dependencyGraph);
 
 		sdfg = new SimpleDirectlyFollowGraph(matrixDFG, slog, dependencyGraph.getTasks().size());
@@ -68,7 +69,7 @@ public class Fodina {
 //		System.out.println("DEBUG - Fodina : from SDFG > BPMN");
 
 		DependencyNet depnet = bitSetToDependencyNet(sdfg.getMatrixDFG(), sdfg.size());
-		Petrinet petrinet = (Petrinet) getPetriNet(slog.getTraces(), depnet, settings)[0];
+		Petrinet petrinet = (Petrinet) getPetriNet(slog, depnet, settings)[0];
 		Marking initialMarking = PetriNetToBPMNConverter.guessInitialMarking(petrinet);
 		Marking finalMarking = PetriNetToBPMNConverter.guessFinalMarking(petrinet);
 		bpmn = PetriNetToBPMNConverter.convert(petrinet, initialMarking, finalMarking, false);
@@ -78,6 +79,22 @@ public class Fodina {
 		return updateLabels(slog.getEvents(), bpmn);
 	}
 	
+	public IntegerEventLog simpleLogToIntegerEventLog(SimpleLog slog) {
+		VariantStore traces = slog.getVariants();
+		IntegerEventLog ieLog = new IntegerEventLog();
+		for (int t = 0; t < traces.size(); t++) {
+//			row[0] is left to 0 as in the string-based conversion below, followed by the whole trace
+			int[] row = new int[traces.getLength(t) + 1];
+			for (int i = 1; i < row.length; i++) {
+				row[i] = traces.getActivity(t, i - 1);
+				ieLog.setLabel(row[i], row[i] + "");
+			}
+			ieLog.addRow(row);
+			ieLog.setRowCount(row, ieLog.getRowCount(row) + traces.getFrequency(t) - 1);
+		}
+		return ieLog;
+	}
+
 	public IntegerEventLog simpleLogToIntegerEventLog(Map<String, Integer> simpleTraces) {
 		IntegerEventLog ieLog = new IntegerEventLog();
 		for (Entry<String, Integer> entry : simpleTraces.entrySet()) {
@@ -125,6 +142,11 @@ public class Fodina {
         return net;
 	}
 
+	public DependencyNet getDependencyGraph(SimpleLog slog, MinerSettings settings) {
+		IntegerEventLog ieLog = simpleLogToIntegerEventLog(slog);
+		return getDependencyGraph(ieLog, settings);
+	}
+
 	public DependencyNet getDependencyGraph(Map<String, Integer> simpleTraces, MinerSettings settings) {
 		IntegerEventLog ieLog = simpleLogToIntegerEventLog(simpleTraces);
 		return getDependencyGraph(ieLog, settings);
@@ -148,6 +170,11 @@ public class Fodina {
 		return depnet;
 	}
 
+	public Object[] getPetriNet(SimpleLog slog, DependencyNet depnet, MinerSettings settings) {
+		IntegerEventLog ieLog = simpleLogToIntegerEventLog(slog);
+		return getPetriNet(ieLog, depnet, settings);
+	}
+
 	public Object[] getPetriNet(Map<String, Integer> simpleTraces, DependencyNet depnet, MinerSettings settings) {
 		IntegerEventLog ieLog = simpleLogToIntegerEventLog(simpleTraces);
 		return getPetriNet(ieLog, depnet, settings);